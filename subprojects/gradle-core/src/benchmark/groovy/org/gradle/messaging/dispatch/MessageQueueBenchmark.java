@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.dispatch;
+
+import java.util.LinkedList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Compares the throughput of {@link MessageQueue} with a queue which guards a linked list with a single lock and
+ * condition, as {@link AsyncDispatch} used to. Lives in the benchmark source set, so is not run as part of the tests.
+ *
+ * <p>Usage: MessageQueueBenchmark [producers] [messages-per-producer] [capacity]</p>
+ *
+ * <p>Run using {@code gradle :core:messageQueueBenchmark}. Pass arguments with {@code -PbenchmarkArgs="8 100000 50"}.</p>
+ */
+public class MessageQueueBenchmark {
+    private static final Object MESSAGE = new Object();
+
+    public static void main(String[] args) throws Exception {
+        int producers = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 1000000;
+        int capacity = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+
+        for (int round = 1; round <= 5; round++) {
+            final MessageQueue<Object> messageQueue = new MessageQueue<Object>(capacity);
+            long nonBlocking = run(producers, messages, new Queue() {
+                public void put(Object message) {
+                    messageQueue.put(message);
+                }
+
+                public Object take() {
+                    return messageQueue.take();
+                }
+            });
+            final LockingQueue lockingQueue = new LockingQueue(capacity);
+            long locking = run(producers, messages, lockingQueue);
+            System.out.println(String.format("round %s: MessageQueue %s ms, locking queue %s ms", round, nonBlocking,
+                    locking));
+        }
+    }
+
+    private static long run(int producers, final int messages, final Queue queue) throws InterruptedException {
+        final CountDownLatch start = new CountDownLatch(1);
+        for (int i = 0; i < producers; i++) {
+            Thread producer = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int j = 0; j < messages; j++) {
+                        queue.put(MESSAGE);
+                    }
+                }
+            };
+            producer.setDaemon(true);
+            producer.start();
+        }
+
+        long startTime = System.nanoTime();
+        start.countDown();
+        long total = (long) producers * messages;
+        for (long i = 0; i < total; i++) {
+            queue.take();
+        }
+        return (System.nanoTime() - startTime) / 1000000;
+    }
+
+    private interface Queue {
+        void put(Object message);
+
+        Object take();
+    }
+
+    private static class LockingQueue implements Queue {
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private final LinkedList<Object> queue = new LinkedList<Object>();
+        private final int capacity;
+
+        private LockingQueue(int capacity) {
+            this.capacity = capacity;
+        }
+
+        public void put(Object message) {
+            lock.lock();
+            try {
+                while (queue.size() >= capacity) {
+                    condition.awaitUninterruptibly();
+                }
+                queue.add(message);
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        public Object take() {
+            lock.lock();
+            try {
+                while (queue.isEmpty()) {
+                    condition.awaitUninterruptibly();
+                }
+                Object message = queue.remove();
+                condition.signalAll();
+                return message;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
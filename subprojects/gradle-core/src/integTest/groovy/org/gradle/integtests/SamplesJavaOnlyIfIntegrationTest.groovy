@@ -52,21 +52,21 @@ public class SamplesJavaOnlyIfIntegrationTest {
 
         // Check tests have run
         assertExists(javaprojectDir, 'build/test-results/TEST-org.gradle.PersonTest.xml')
-        assertExists(javaprojectDir, 'build/test-results/TESTS-TestSuites.xml')
+        assertExists(javaprojectDir, 'build/test-results/binary/org.gradle.PersonTest.bin')
 
         // Check jar exists
         assertExists(javaprojectDir, "build/libs/onlyif.jar")
 
         // remove test results
         removeFile(javaprojectDir, 'build/test-results/TEST-org.gradle.PersonTest.xml')
-        removeFile(javaprojectDir, 'build/test-results/TESTS-TestSuites.xml')
+        removeFile(javaprojectDir, 'build/test-results/binary/org.gradle.PersonTest.bin')
 
         executer.inDirectory(javaprojectDir).withTasks('test').run()
 
         // assert that tests did not run
         // (since neither compile nor compileTests should have done anything)
         assertDoesNotExist(javaprojectDir, 'build/test-results/TEST-org.gradle.PersonTest.xml')
-        assertDoesNotExist(javaprojectDir, 'build/test-results/TESTS-TestSuites.xml')
+        assertDoesNotExist(javaprojectDir, 'build/test-results/binary/org.gradle.PersonTest.bin')
 
         // remove a compiled class file
         removeFile(javaprojectDir, 'build/classes/main/org/gradle/Person.class')
@@ -75,7 +75,7 @@ public class SamplesJavaOnlyIfIntegrationTest {
 
         // Check tests have run
         assertExists(javaprojectDir, 'build/test-results/TEST-org.gradle.PersonTest.xml')
-        assertExists(javaprojectDir, 'build/test-results/TESTS-TestSuites.xml')
+        assertExists(javaprojectDir, 'build/test-results/binary/org.gradle.PersonTest.bin')
     }
 
     private static void assertExists(File baseDir, String path) {
@@ -37,7 +37,9 @@ import org.gradle.util.TemporaryFolder;
 import org.jmock.Expectations;
 import org.jmock.Sequence;
 import org.jmock.integration.junit4.JMock;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
@@ -45,6 +47,9 @@ import org.junit.runner.RunWith;
 
 import java.io.ObjectInputStream;
 import java.io.Serializable;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -148,6 +153,49 @@ public class WorkerProcessIntegrationTest {
         execute(mainClass("no-such-class").expectStartFailure());
     }
 
+    @Test
+    public void reusableWorkerProcessRunsSuccessiveWorkers() throws Throwable {
+        final List<String> processNames = new ArrayList<String>();
+        context.checking(new Expectations() {{
+            exactly(2).of(listenerMock).send(with(notNullValue(String.class)), with(equalTo(0)));
+            will(new CustomAction("collect process name") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    processNames.add((String) invocation.getParameter(0));
+                    return null;
+                }
+            });
+        }});
+
+        for (int i = 0; i < 2; i++) {
+            ChildProcess process = worker(new ProcessNameRemoteProcess()).reusable();
+            process.start();
+            process.waitForStop();
+        }
+        workerFactory.stop();
+        server.stop();
+        exceptionListener.rethrow();
+
+        assertThat(processNames.get(1), equalTo(processNames.get(0)));
+    }
+
+    @Test
+    public void reusableWorkerProcessIsDiscardedWhenWorkerActionFails() throws Throwable {
+        context.checking(new Expectations() {{
+            one(listenerMock).send("message 1", 1);
+            one(listenerMock).send("message 2", 2);
+        }});
+
+        ChildProcess broken = worker(new BrokenRemoteProcess()).reusable().expectStopFailure();
+        broken.start();
+        broken.waitForStop();
+        ChildProcess next = worker(new RemoteProcess()).reusable();
+        next.start();
+        next.waitForStop();
+        workerFactory.stop();
+        server.stop();
+        exceptionListener.rethrow();
+    }
+
     private ChildProcess worker(Action<WorkerProcessContext> action) {
         return new ChildProcess(action);
     }
@@ -170,6 +218,7 @@ public class WorkerProcessIntegrationTest {
     private class ChildProcess {
         private boolean stopFails;
         private boolean startFails;
+        private boolean reusable;
         private WorkerProcess proc;
         private Action<WorkerProcessContext> action;
         private String mainClass;
@@ -189,6 +238,11 @@ public class WorkerProcessIntegrationTest {
             return this;
         }
 
+        ChildProcess reusable() {
+            reusable = true;
+            return this;
+        }
+
         public void start() {
             WorkerProcessBuilder builder = workerFactory.create();
             builder.applicationClasspath(classPathRegistry.getClassPathFiles("ANT"));
@@ -196,6 +250,7 @@ public class WorkerProcessIntegrationTest {
             builder.getJavaCommand().systemProperty("test.system.property", "value");
             builder.getJavaCommand().environment("TEST_ENV_VAR", "value");
             builder.worker(action);
+            builder.setReusable(reusable);
 
             if (mainClass != null) {
                 builder.getJavaCommand().setMain(mainClass);
@@ -285,6 +340,13 @@ public class WorkerProcessIntegrationTest {
         }
     }
 
+    public static class ProcessNameRemoteProcess implements Action<WorkerProcessContext>, Serializable {
+        public void execute(WorkerProcessContext workerProcessContext) {
+            TestListenerInterface sender = workerProcessContext.getServerConnection().addOutgoing(TestListenerInterface.class);
+            sender.send(ManagementFactory.getRuntimeMXBean().getName(), 0);
+        }
+    }
+
     public static class OtherRemoteProcess implements Action<WorkerProcessContext>, Serializable {
         public void execute(WorkerProcessContext workerProcessContext) {
             TestListenerInterface sender = workerProcessContext.getServerConnection().addOutgoing(TestListenerInterface.class);
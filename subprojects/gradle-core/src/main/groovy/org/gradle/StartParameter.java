@@ -79,6 +79,7 @@ public class StartParameter {
     private boolean noOpt;
     private boolean colorOutput = true;
     private boolean profile;
+    private int parallelThreadCount;
 
     /**
      * Creates a {@code StartParameter} with default values. This is roughly equivalent to running Gradle on the
@@ -124,6 +125,7 @@ public class StartParameter {
         startParameter.dryRun = dryRun;
         startParameter.noOpt = noOpt;
         startParameter.profile = profile;
+        startParameter.parallelThreadCount = parallelThreadCount;
         return startParameter;
     }
 
@@ -141,6 +143,7 @@ public class StartParameter {
         startParameter.logLevel = logLevel;
         startParameter.colorOutput = colorOutput;
         startParameter.profile = profile;
+        startParameter.parallelThreadCount = parallelThreadCount;
         return startParameter;
     }
 
@@ -526,6 +529,26 @@ public class StartParameter {
         return profile;
     }
 
+    /**
+     * Returns the maximum number of tasks which may be executed concurrently. A value of 0 or 1 means that tasks are
+     * executed one at a time, in the order of the task execution graph. The default value is 0.
+     *
+     * @return the maximum number of concurrently executing tasks.
+     */
+    public int getParallelThreadCount() {
+        return parallelThreadCount;
+    }
+
+    /**
+     * Specifies the maximum number of tasks which may be executed concurrently.
+     *
+     * @param parallelThreadCount the maximum number of concurrently executing tasks. Use 0 to execute tasks one at a
+     * time.
+     */
+    public void setParallelThreadCount(int parallelThreadCount) {
+        this.parallelThreadCount = parallelThreadCount;
+    }
+
     @Override
     public String toString() {
         return "StartParameter{" +
@@ -548,6 +571,7 @@ public class StartParameter {
                 ", dryRun=" + dryRun +
                 ", noOpt=" + noOpt +
                 ", profile=" + profile +
+                ", parallelThreadCount=" + parallelThreadCount +
                 '}';
     }
 }
\ No newline at end of file
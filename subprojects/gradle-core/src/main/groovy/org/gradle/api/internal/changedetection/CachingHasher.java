@@ -18,33 +18,150 @@ package org.gradle.api.internal.changedetection;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.util.UncheckedException;
 
 import java.io.*;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
+/**
+ * A {@link Hasher} which caches the hash of each file, keyed by the file's length and timestamp. When given a batch of
+ * files, the cache is queried for all of the files first, and the files whose hash is not cached are then hashed
+ * concurrently, using up to one thread per processor. The new hashes are written to the cache in a single pass once
+ * all of the files have been hashed.
+ *
+ * <p>Can be used by several threads at once. Access to the cache is serialized.</p>
+ */
 public class CachingHasher implements Hasher {
     private final PersistentIndexedCache<File, FileInfo> cache;
     private final Hasher hasher;
-    private long timestamp;
+    private final Executor executor;
+    private final int maxThreads;
 
     public CachingHasher(Hasher hasher, CacheRepository cacheRepository) {
+        this(hasher, cacheRepository, null);
+    }
+
+    public CachingHasher(Hasher hasher, CacheRepository cacheRepository, ExecutorFactory executorFactory) {
         this.hasher = hasher;
+        // The executor only starts threads when there are files to hash concurrently
+        executor = executorFactory == null ? null : executorFactory.create("File hasher");
+        maxThreads = Runtime.getRuntime().availableProcessors();
         cache = cacheRepository.cache("fileHashes").open().openIndexedCache(new FileInfoSerializer());
     }
 
     public byte[] hash(File file) {
-        FileInfo info = cache.get(file);
+        FileInfo info = lookup(file);
 
         long length = file.length();
-        timestamp = file.lastModified();
+        long timestamp = file.lastModified();
         if (info != null && length == info.length && timestamp == info.timestamp) {
             return info.hash;
         }
 
         byte[] hash = hasher.hash(file);
-        cache.put(file, new FileInfo(hash, length, timestamp));
+        synchronized (cache) {
+            cache.put(file, new FileInfo(hash, length, timestamp));
+        }
         return hash;
     }
 
+    public Map<File, byte[]> hash(Collection<File> files) {
+        Map<File, byte[]> hashes = new LinkedHashMap<File, byte[]>();
+        List<File> filesToHash = new ArrayList<File>();
+        List<FileInfo> fileInfos = new ArrayList<FileInfo>();
+        for (File file : files) {
+            FileInfo info = lookup(file);
+
+            long length = file.length();
+            long timestamp = file.lastModified();
+            if (info != null && length == info.length && timestamp == info.timestamp) {
+                hashes.put(file, info.hash);
+            } else {
+                filesToHash.add(file);
+                fileInfos.add(new FileInfo(null, length, timestamp));
+            }
+        }
+
+        byte[][] newHashes = hashConcurrently(filesToHash);
+        synchronized (cache) {
+            for (int i = 0; i < newHashes.length; i++) {
+                File file = filesToHash.get(i);
+                FileInfo info = fileInfos.get(i);
+                cache.put(file, new FileInfo(newHashes[i], info.length, info.timestamp));
+                hashes.put(file, newHashes[i]);
+            }
+        }
+        return hashes;
+    }
+
+    private FileInfo lookup(File file) {
+        synchronized (cache) {
+            return cache.get(file);
+        }
+    }
+
+    private byte[][] hashConcurrently(final List<File> files) {
+        final byte[][] hashes = new byte[files.size()][];
+        int workers = Math.min(maxThreads, files.size());
+        if (executor == null || workers <= 1) {
+            for (int i = 0; i < hashes.length; i++) {
+                hashes[i] = hasher.hash(files.get(i));
+            }
+            return hashes;
+        }
+
+        final AtomicInteger nextFile = new AtomicInteger();
+        final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+        final CountDownLatch finished = new CountDownLatch(workers - 1);
+        final Runnable worker = new Runnable() {
+            public void run() {
+                try {
+                    while (failure.get() == null) {
+                        int index = nextFile.getAndIncrement();
+                        if (index >= hashes.length) {
+                            break;
+                        }
+                        hashes[index] = hasher.hash(files.get(index));
+                    }
+                } catch (Throwable throwable) {
+                    failure.compareAndSet(null, throwable);
+                }
+            }
+        };
+
+        for (int i = 1; i < workers; i++) {
+            executor.execute(new Runnable() {
+                public void run() {
+                    try {
+                        worker.run();
+                    } finally {
+                        finished.countDown();
+                    }
+                }
+            });
+        }
+        worker.run();
+        try {
+            finished.await();
+        } catch (InterruptedException e) {
+            throw new UncheckedException(e);
+        }
+
+        Throwable throwable = failure.get();
+        if (throwable instanceof Error) {
+            throw (Error) throwable;
+        }
+        if (throwable != null) {
+            throw UncheckedException.asUncheckedException(throwable);
+        }
+        return hashes;
+    }
+
     public static class FileInfo implements Serializable {
         private final byte[] hash;
         private final long timestamp;
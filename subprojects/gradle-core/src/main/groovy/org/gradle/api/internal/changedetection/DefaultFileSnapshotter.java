@@ -18,19 +18,60 @@ package org.gradle.api.internal.changedetection;
 
 import org.gradle.api.file.FileCollection;
 import org.gradle.api.internal.file.SimpleFileCollection;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
 import org.gradle.util.ChangeListener;
 import org.gradle.util.NoOpChangeListener;
+import org.gradle.util.TimeProvider;
+import org.gradle.util.TrueTimeProvider;
 
-import java.io.File;
-import java.io.Serializable;
+import java.io.*;
 import java.math.BigInteger;
 import java.util.*;
 
+/**
+ * Creates snapshots of the contents of file collections.
+ *
+ * <p>When created with a {@link CacheRepository}, the snapshotter records a listing for each directory containing
+ * snapshotted files, which holds the type, length, timestamp and hash of each of the snapshotted files in the directory.
+ * When the timestamp of a directory has not changed since its listing was recorded, its entries have not been added,
+ * removed or replaced, so the types recorded in the listing are used without querying the file system, and the recorded
+ * hash of each file whose length and timestamp have not changed is reused. This means only one listing lookup is
+ * required per directory, rather than one hash lookup per file. Directories whose timestamp has changed are classified
+ * and hashed again, and their listing is replaced.</p>
+ *
+ * <p>Several snapshots can be created concurrently, provided the {@link Hasher} is thread-safe.</p>
+ */
 public class DefaultFileSnapshotter implements FileSnapshotter {
+    /**
+     * The minimum age of a directory timestamp, relative to when its listing was recorded, for the listing to be
+     * trusted. This allows for file systems with coarse grained timestamps, where the directory may have been modified
+     * again within the same tick after the listing was recorded.
+     */
+    static final long TIMESTAMP_RESOLUTION = 2000;
+    private static final byte FILE = 1;
+    private static final byte DIRECTORY = 2;
+    private static final byte MISSING = 3;
     private final Hasher hasher;
+    private final PersistentIndexedCache<File, DirectoryListing> listingCache;
+    private final TimeProvider timeProvider;
 
     public DefaultFileSnapshotter(Hasher hasher) {
         this.hasher = hasher;
+        this.listingCache = null;
+        this.timeProvider = null;
+    }
+
+    public DefaultFileSnapshotter(Hasher hasher, CacheRepository cacheRepository) {
+        this(hasher, cacheRepository, new TrueTimeProvider());
+    }
+
+    DefaultFileSnapshotter(Hasher hasher, CacheRepository cacheRepository, TimeProvider timeProvider) {
+        this.hasher = hasher;
+        this.timeProvider = timeProvider;
+        listingCache = cacheRepository.cache("directoryListings").open().openIndexedCache(
+                new DirectoryListingSerializer());
     }
 
     public FileCollectionSnapshot snapshot() {
@@ -39,18 +80,249 @@ public class DefaultFileSnapshotter implements FileSnapshotter {
 
     public FileCollectionSnapshot snapshot(FileCollection sourceFiles) {
         Map<String, FileSnapshot> snapshots = new HashMap<String, FileSnapshot>();
+        DirectoryListings listings = listingCache == null ? null : new DirectoryListings();
+        Set<File> filesToHash = new LinkedHashSet<File>();
         for (File file : sourceFiles.getAsFileTree()) {
-            if (file.isFile()) {
-                snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(hasher.hash(file)));
-            } else if (file.isDirectory()) {
-                snapshots.put(file.getAbsolutePath(), new DirSnapshot());
+            FileSnapshot snapshot = listings == null ? snapshotFile(file) : listings.snapshotFile(file);
+            if (snapshot == null) {
+                filesToHash.add(file);
+            } else {
+                snapshots.put(file.getAbsolutePath(), snapshot);
+            }
+        }
+
+        if (!filesToHash.isEmpty()) {
+            Map<File, byte[]> hashes = hasher.hash(filesToHash);
+            for (File file : filesToHash) {
+                byte[] hash = hashes.get(file);
+                if (listings != null) {
+                    listings.hashed(file, hash);
+                }
+                snapshots.put(file.getAbsolutePath(), new FileHashSnapshot(hash));
+            }
+        }
+
+        if (listings != null) {
+            listings.store();
+        }
+        return new FileCollectionSnapshotImpl(snapshots);
+    }
+
+    public void write(FileCollectionSnapshot snapshot, SnapshotEncoder encoder) throws IOException {
+        Map<String, FileSnapshot> snapshots = ((FileCollectionSnapshotImpl) snapshot).snapshots;
+        encoder.writeSmallInt(snapshots.size());
+        for (Map.Entry<String, FileSnapshot> entry : snapshots.entrySet()) {
+            encoder.writePath(entry.getKey());
+            FileSnapshot fileSnapshot = entry.getValue();
+            if (fileSnapshot instanceof FileHashSnapshot) {
+                encoder.writeByte(FILE);
+                encoder.writeHash(((FileHashSnapshot) fileSnapshot).hash);
+            } else if (fileSnapshot instanceof DirSnapshot) {
+                encoder.writeByte(DIRECTORY);
             } else {
-                snapshots.put(file.getAbsolutePath(), new MissingFileSnapshot());
+                encoder.writeByte(MISSING);
+            }
+        }
+    }
+
+    public FileCollectionSnapshot read(SnapshotDecoder decoder) throws IOException {
+        int count = decoder.readSmallInt();
+        Map<String, FileSnapshot> snapshots = new HashMap<String, FileSnapshot>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String path = decoder.readPath();
+            byte type = decoder.readByte();
+            switch (type) {
+                case FILE:
+                    snapshots.put(path, new FileHashSnapshot(decoder.readHash()));
+                    break;
+                case DIRECTORY:
+                    snapshots.put(path, new DirSnapshot());
+                    break;
+                case MISSING:
+                    snapshots.put(path, new MissingFileSnapshot());
+                    break;
+                default:
+                    throw new StreamCorruptedException(String.format("Unexpected file snapshot type %d.", type));
             }
         }
         return new FileCollectionSnapshotImpl(snapshots);
     }
 
+    /**
+     * Returns the snapshot for the given file, or null when the file needs to be hashed.
+     */
+    private FileSnapshot snapshotFile(File file) {
+        if (file.isFile()) {
+            return null;
+        } else if (file.isDirectory()) {
+            return new DirSnapshot();
+        } else {
+            return new MissingFileSnapshot();
+        }
+    }
+
+    /**
+     * The directory listings used while creating a single snapshot. Each listing is loaded at most once per snapshot,
+     * and only those listings which have changed are written back to the cache.
+     */
+    private class DirectoryListings {
+        private final Map<File, DirectoryListing> listings = new HashMap<File, DirectoryListing>();
+        private final Map<File, DirectoryEntry> pending = new HashMap<File, DirectoryEntry>();
+        private final Set<File> changed = new LinkedHashSet<File>();
+
+        /**
+         * Returns the snapshot for the given file, or null when the file needs to be hashed.
+         */
+        public FileSnapshot snapshotFile(File file) {
+            File dir = file.getParentFile();
+            DirectoryListing listing = dir == null ? null : getListing(dir);
+            if (listing == null) {
+                return DefaultFileSnapshotter.this.snapshotFile(file);
+            }
+
+            String name = file.getName();
+            DirectoryEntry entry = listing.entries.get(name);
+            if (entry == null) {
+                if (file.isDirectory()) {
+                    listing.entries.put(name, new DirectoryEntry(null, 0, 0));
+                    changed.add(dir);
+                    return new DirSnapshot();
+                }
+                if (!file.isFile()) {
+                    return new MissingFileSnapshot();
+                }
+            } else if (entry.isDirectory()) {
+                return new DirSnapshot();
+            }
+
+            long length = file.length();
+            long timestamp = file.lastModified();
+            if (entry != null && length == entry.length && timestamp == entry.timestamp) {
+                return new FileHashSnapshot(entry.hash);
+            }
+
+            pending.put(file, new DirectoryEntry(null, length, timestamp));
+            return null;
+        }
+
+        public void hashed(File file, byte[] hash) {
+            DirectoryEntry entry = pending.remove(file);
+            if (entry == null) {
+                return;
+            }
+            File dir = file.getParentFile();
+            listings.get(dir).entries.put(file.getName(), new DirectoryEntry(hash, entry.length, entry.timestamp));
+            changed.add(dir);
+        }
+
+        private DirectoryListing getListing(File dir) {
+            if (listings.containsKey(dir)) {
+                return listings.get(dir);
+            }
+
+            DirectoryListing listing = null;
+            long timestamp = dir.lastModified();
+            if (timestamp != 0) {
+                synchronized (listingCache) {
+                    listing = listingCache.get(dir);
+                }
+                if (listing == null || listing.timestamp != timestamp
+                        || listing.recordedAt - timestamp < TIMESTAMP_RESOLUTION) {
+                    listing = new DirectoryListing(timestamp, timeProvider.getCurrentTime());
+                    changed.add(dir);
+                }
+            }
+            listings.put(dir, listing);
+            return listing;
+        }
+
+        public void store() {
+            synchronized (listingCache) {
+                for (File dir : changed) {
+                    listingCache.put(dir, listings.get(dir));
+                }
+            }
+        }
+    }
+
+    public static class DirectoryListing implements Serializable {
+        private final long timestamp;
+        private final long recordedAt;
+        private final Map<String, DirectoryEntry> entries;
+
+        public DirectoryListing(long timestamp, long recordedAt) {
+            this(timestamp, recordedAt, new HashMap<String, DirectoryEntry>());
+        }
+
+        public DirectoryListing(long timestamp, long recordedAt, Map<String, DirectoryEntry> entries) {
+            this.timestamp = timestamp;
+            this.recordedAt = recordedAt;
+            this.entries = entries;
+        }
+    }
+
+    public static class DirectoryEntry implements Serializable {
+        private final byte[] hash;
+        private final long length;
+        private final long timestamp;
+
+        /**
+         * @param hash The hash of the file, or null for a directory.
+         */
+        public DirectoryEntry(byte[] hash, long length, long timestamp) {
+            this.hash = hash;
+            this.length = length;
+            this.timestamp = timestamp;
+        }
+
+        public boolean isDirectory() {
+            return hash == null;
+        }
+    }
+
+    private static class DirectoryListingSerializer implements Serializer<DirectoryListing> {
+        public DirectoryListing read(InputStream instr) throws Exception {
+            DataInputStream input = new DataInputStream(instr);
+            long timestamp = input.readLong();
+            long recordedAt = input.readLong();
+            int count = input.readInt();
+            Map<String, DirectoryEntry> entries = new HashMap<String, DirectoryEntry>(count * 2);
+            for (int i = 0; i < count; i++) {
+                String name = input.readUTF();
+                int hashLength = input.readInt();
+                byte[] hash = null;
+                if (hashLength >= 0) {
+                    hash = new byte[hashLength];
+                    input.readFully(hash);
+                }
+                long length = input.readLong();
+                long entryTimestamp = input.readLong();
+                entries.put(name, new DirectoryEntry(hash, length, entryTimestamp));
+            }
+            return new DirectoryListing(timestamp, recordedAt, entries);
+        }
+
+        public void write(OutputStream outstr, DirectoryListing value) throws Exception {
+            DataOutputStream output = new DataOutputStream(outstr);
+            output.writeLong(value.timestamp);
+            output.writeLong(value.recordedAt);
+            output.writeInt(value.entries.size());
+            for (Map.Entry<String, DirectoryEntry> entry : value.entries.entrySet()) {
+                output.writeUTF(entry.getKey());
+                byte[] hash = entry.getValue().hash;
+                if (hash == null) {
+                    output.writeInt(-1);
+                } else {
+                    output.writeInt(hash.length);
+                    output.write(hash);
+                }
+                output.writeLong(entry.getValue().length);
+                output.writeLong(entry.getValue().timestamp);
+            }
+            output.flush();
+        }
+    }
+
     private interface FileSnapshot extends Serializable {
         boolean isUpToDate(FileSnapshot snapshot);
     }
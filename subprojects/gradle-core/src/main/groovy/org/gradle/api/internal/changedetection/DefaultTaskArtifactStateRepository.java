@@ -24,21 +24,27 @@ import org.gradle.api.logging.Logger;
 import org.gradle.api.logging.Logging;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
 import org.gradle.util.ChangeListener;
 import org.gradle.util.DiffUtil;
 
-import java.io.File;
-import java.io.Serializable;
+import java.io.*;
 import java.util.*;
 
 import static java.util.Collections.*;
 
+/**
+ * Records the history of each task in a persistent cache, and uses it to decide whether a task is up-to-date. Can be
+ * used by several threads at once. Access to the history cache is serialized, and the snapshotters used must be
+ * thread-safe.
+ */
 public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepository {
     private static final int MAX_OUT_OF_DATE_MESSAGES = 10;
     private static final Logger LOGGER = Logging.getLogger(DefaultTaskArtifactStateRepository.class);
     private final CacheRepository repository;
     private final FileSnapshotter inputFilesSnapshotter;
     private final FileSnapshotter outputFilesSnapshotter;
+    private final Object lock = new Object();
     private PersistentIndexedCache<String, TaskHistory> taskHistoryCache;
 
     public DefaultTaskArtifactStateRepository(CacheRepository repository, FileSnapshotter inputFilesSnapshotter, FileSnapshotter outputFilesSnapshotter) {
@@ -48,15 +54,30 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
     }
 
     public TaskArtifactState getStateFor(final TaskInternal task) {
-        if (taskHistoryCache == null) {
-            loadTasks(task);
+        synchronized (lock) {
+            if (taskHistoryCache == null) {
+                loadTasks(task);
+            }
         }
 
         return new TaskArtifactStateImpl(task);
     }
 
     private void loadTasks(TaskInternal task) {
-        taskHistoryCache = repository.cache("taskArtifacts").forObject(task.getProject().getGradle()).open().openIndexedCache();
+        taskHistoryCache = repository.cache("taskArtifacts").forObject(task.getProject().getGradle()).open().openIndexedCache(
+                new TaskHistorySerializer());
+    }
+
+    private TaskHistory loadHistory(TaskInternal task) {
+        synchronized (lock) {
+            return taskHistoryCache.get(task.getPath());
+        }
+    }
+
+    private void storeHistory(TaskInternal task, TaskHistory history) {
+        synchronized (lock) {
+            taskHistoryCache.put(task.getPath(), history);
+        }
     }
 
     private static Set<String> outputFiles(TaskInternal task) {
@@ -272,6 +293,82 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
             this.inputProperties = new HashMap<String, Object>(task.getInputs().getProperties());
             this.inputFilesSnapshot = inputFilesSnapshot;
         }
+
+        private TaskConfiguration(String taskClass, Set<String> outputFiles, Map<String, Object> inputProperties,
+                                  FileCollectionSnapshot inputFilesSnapshot,
+                                  FileCollectionSnapshot outputFilesSnapshot) {
+            this.taskClass = taskClass;
+            this.outputFiles = outputFiles;
+            this.inputProperties = inputProperties;
+            this.inputFilesSnapshot = inputFilesSnapshot;
+            this.outputFilesSnapshot = outputFilesSnapshot;
+        }
+    }
+
+    /**
+     * Serializes task history using a {@link SnapshotEncoder}, rather than Java serialization. The file snapshots are
+     * written by the snapshotters which created them. The format starts with a version number, and history written
+     * using a different version is discarded.
+     */
+    private class TaskHistorySerializer implements Serializer<TaskHistory> {
+        private static final int FORMAT_VERSION = 0x47480001;
+
+        public TaskHistory read(InputStream instr) throws Exception {
+            SnapshotDecoder decoder = new SnapshotDecoder(instr);
+            if (decoder.readInt() != FORMAT_VERSION) {
+                return null;
+            }
+            TaskHistory history = new TaskHistory();
+            int count = decoder.readSmallInt();
+            for (int i = 0; i < count; i++) {
+                history.configurations.add(readConfiguration(decoder));
+            }
+            return history;
+        }
+
+        private TaskConfiguration readConfiguration(SnapshotDecoder decoder) throws Exception {
+            String taskClass = decoder.readString();
+            int outputFileCount = decoder.readSmallInt();
+            Set<String> outputFiles = new HashSet<String>(outputFileCount * 2);
+            for (int i = 0; i < outputFileCount; i++) {
+                outputFiles.add(decoder.readPath());
+            }
+            int propertyCount = decoder.readSmallInt();
+            Map<String, Object> inputProperties = new HashMap<String, Object>(propertyCount * 2);
+            for (int i = 0; i < propertyCount; i++) {
+                String name = decoder.readString();
+                inputProperties.put(name, decoder.readValue());
+            }
+            FileCollectionSnapshot inputFilesSnapshot = inputFilesSnapshotter.read(decoder);
+            FileCollectionSnapshot outputFilesSnapshot = outputFilesSnapshotter.read(decoder);
+            return new TaskConfiguration(taskClass, outputFiles, inputProperties, inputFilesSnapshot,
+                    outputFilesSnapshot);
+        }
+
+        public void write(OutputStream outstr, TaskHistory value) throws Exception {
+            SnapshotEncoder encoder = new SnapshotEncoder(outstr);
+            encoder.writeInt(FORMAT_VERSION);
+            encoder.writeSmallInt(value.configurations.size());
+            for (TaskConfiguration configuration : value.configurations) {
+                writeConfiguration(encoder, configuration);
+            }
+            encoder.flush();
+        }
+
+        private void writeConfiguration(SnapshotEncoder encoder, TaskConfiguration configuration) throws IOException {
+            encoder.writeString(configuration.taskClass);
+            encoder.writeSmallInt(configuration.outputFiles.size());
+            for (String outputFile : configuration.outputFiles) {
+                encoder.writePath(outputFile);
+            }
+            encoder.writeSmallInt(configuration.inputProperties.size());
+            for (Map.Entry<String, Object> entry : configuration.inputProperties.entrySet()) {
+                encoder.writeString(entry.getKey());
+                encoder.writeValue(entry.getValue());
+            }
+            inputFilesSnapshotter.write(configuration.inputFilesSnapshot, encoder);
+            outputFilesSnapshotter.write(configuration.outputFilesSnapshot, encoder);
+        }
     }
 
     private class TaskArtifactStateImpl implements TaskArtifactState {
@@ -311,7 +408,7 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
         }
 
         private TaskHistory getHistory() {
-            TaskHistory history = taskHistoryCache.get(task.getPath());
+            TaskHistory history = loadHistory(task);
             return history == null ? new TaskHistory() : history;
         }
 
@@ -348,7 +445,7 @@ public class DefaultTaskArtifactStateRepository implements TaskArtifactStateRepo
 
         public void update() {
             if (execution.snapshot()) {
-                taskHistoryCache.put(task.getPath(), history);
+                storeHistory(task, history);
             }
         }
     }
@@ -17,6 +17,8 @@ package org.gradle.api.internal.changedetection;
 
 import org.gradle.api.file.FileCollection;
 
+import java.io.IOException;
+
 public interface FileSnapshotter {
     /**
      * Creates an empty snapshot, which changes can be later merged into.
@@ -32,4 +34,20 @@ public interface FileSnapshotter {
      * @return The snapshot.
      */
     FileCollectionSnapshot snapshot(FileCollection files);
+
+    /**
+     * Writes the given snapshot, which must have been created by this snapshotter.
+     *
+     * @param snapshot The snapshot to write.
+     * @param encoder The encoder to write the snapshot to.
+     */
+    void write(FileCollectionSnapshot snapshot, SnapshotEncoder encoder) throws IOException;
+
+    /**
+     * Reads a snapshot previously written by {@link #write(FileCollectionSnapshot, SnapshotEncoder)}.
+     *
+     * @param decoder The decoder to read the snapshot from.
+     * @return The snapshot.
+     */
+    FileCollectionSnapshot read(SnapshotDecoder decoder) throws IOException;
 }
@@ -16,7 +16,17 @@
 package org.gradle.api.internal.changedetection;
 
 import java.io.File;
+import java.util.Collection;
+import java.util.Map;
 
 public interface Hasher {
     byte[] hash(File file);
+
+    /**
+     * Hashes each of the given files. Implementations may hash the files concurrently.
+     *
+     * @param files The files to hash.
+     * @return A map containing the hash for each of the given files.
+     */
+    Map<File, byte[]> hash(Collection<File> files);
 }
@@ -25,6 +25,7 @@ import org.gradle.util.IdGenerator;
 import org.gradle.util.NoOpChangeListener;
 
 import java.io.File;
+import java.io.IOException;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -58,20 +59,48 @@ public class OutputFilesSnapshotter implements FileSnapshotter {
     public FileCollectionSnapshot snapshot(FileCollection files) {
         Map<String, Long> snapshotDirIds = new HashMap<String, Long>();
         for (File file : files) {
-            Long dirId;
-            if (file.exists()) {
-                dirId = dirIdentiferCache.get(file.getAbsolutePath());
-                if (dirId == null) {
-                    dirId = idGenerator.generateId();
-                    dirIdentiferCache.put(file.getAbsolutePath(), dirId);
-                }
-            } else {
+            snapshotDirIds.put(file.getAbsolutePath(), getDirId(file));
+        }
+        return new OutputFilesSnapshot(snapshotDirIds, snapshotter.snapshot(files));
+    }
+
+    private Long getDirId(File file) {
+        // Tasks which share an output file may be snapshotted concurrently, so look up and generate the id atomically
+        synchronized (dirIdentiferCache) {
+            if (!file.exists()) {
                 dirIdentiferCache.remove(file.getAbsolutePath());
-                dirId = null;
+                return null;
+            }
+            Long dirId = dirIdentiferCache.get(file.getAbsolutePath());
+            if (dirId == null) {
+                dirId = idGenerator.generateId();
+                dirIdentiferCache.put(file.getAbsolutePath(), dirId);
             }
-            snapshotDirIds.put(file.getAbsolutePath(), dirId);
+            return dirId;
         }
-        return new OutputFilesSnapshot(snapshotDirIds, snapshotter.snapshot(files));
+    }
+
+    public void write(FileCollectionSnapshot snapshot, SnapshotEncoder encoder) throws IOException {
+        OutputFilesSnapshot outputFilesSnapshot = (OutputFilesSnapshot) snapshot;
+        encoder.writeSmallInt(outputFilesSnapshot.rootFileIds.size());
+        for (Map.Entry<String, Long> entry : outputFilesSnapshot.rootFileIds.entrySet()) {
+            encoder.writePath(entry.getKey());
+            encoder.writeBoolean(entry.getValue() != null);
+            if (entry.getValue() != null) {
+                encoder.writeLong(entry.getValue());
+            }
+        }
+        snapshotter.write(outputFilesSnapshot.filesSnapshot, encoder);
+    }
+
+    public FileCollectionSnapshot read(SnapshotDecoder decoder) throws IOException {
+        int count = decoder.readSmallInt();
+        Map<String, Long> rootFileIds = new HashMap<String, Long>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String path = decoder.readPath();
+            rootFileIds.put(path, decoder.readBoolean() ? decoder.readLong() : null);
+        }
+        return new OutputFilesSnapshot(rootFileIds, snapshotter.read(decoder));
     }
 
     private static class OutputFilesSnapshot implements FileCollectionSnapshot {
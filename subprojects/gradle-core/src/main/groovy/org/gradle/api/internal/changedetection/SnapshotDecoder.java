@@ -0,0 +1,104 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads task history written by a {@link SnapshotEncoder}.
+ */
+public class SnapshotDecoder {
+    private final DataInputStream input;
+    private final List<String> directories = new ArrayList<String>();
+
+    public SnapshotDecoder(InputStream inputStream) {
+        input = new DataInputStream(inputStream);
+    }
+
+    public byte readByte() throws IOException {
+        return input.readByte();
+    }
+
+    public boolean readBoolean() throws IOException {
+        return input.readBoolean();
+    }
+
+    public int readInt() throws IOException {
+        return input.readInt();
+    }
+
+    public long readLong() throws IOException {
+        return input.readLong();
+    }
+
+    public int readSmallInt() throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = input.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new StreamCorruptedException("Malformed variable length integer.");
+    }
+
+    public String readString() throws IOException {
+        return input.readUTF();
+    }
+
+    public String readPath() throws IOException {
+        int index = readSmallInt();
+        String directory;
+        if (index == 0) {
+            directory = input.readUTF();
+            directories.add(directory);
+        } else {
+            directory = directories.get(index - 1);
+        }
+        return directory + input.readUTF();
+    }
+
+    public byte[] readHash() throws IOException {
+        byte[] hash = new byte[readSmallInt()];
+        input.readFully(hash);
+        return hash;
+    }
+
+    public Object readValue() throws IOException, ClassNotFoundException {
+        byte type = input.readByte();
+        switch (type) {
+            case SnapshotEncoder.NULL:
+                return null;
+            case SnapshotEncoder.STRING:
+                return input.readUTF();
+            case SnapshotEncoder.BOOLEAN:
+                return input.readBoolean();
+            case SnapshotEncoder.INTEGER:
+                return input.readInt();
+            case SnapshotEncoder.LONG:
+                return input.readLong();
+            case SnapshotEncoder.SERIALIZED:
+                byte[] bytes = new byte[readSmallInt()];
+                input.readFully(bytes);
+                return new ObjectInputStream(new ByteArrayInputStream(bytes)).readObject();
+            default:
+                throw new StreamCorruptedException(String.format("Unexpected value type %d.", type));
+        }
+    }
+}
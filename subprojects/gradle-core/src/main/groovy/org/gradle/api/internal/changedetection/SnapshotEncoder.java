@@ -0,0 +1,130 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.changedetection;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Writes task history in a compact binary format. Each path is written as a reference to its parent directory plus its
+ * name. Each parent directory is written in full the first time it is used, and by index after that, so that the
+ * common prefixes of the paths are written only once per entry. Hashes are written as raw bytes.
+ */
+public class SnapshotEncoder {
+    static final byte NULL = 0;
+    static final byte STRING = 1;
+    static final byte BOOLEAN = 2;
+    static final byte INTEGER = 3;
+    static final byte LONG = 4;
+    static final byte SERIALIZED = 5;
+    static final int MAX_INLINE_STRING_LENGTH = 16 * 1024;
+
+    private final DataOutputStream output;
+    private final Map<String, Integer> directories = new HashMap<String, Integer>();
+
+    public SnapshotEncoder(OutputStream outputStream) {
+        output = new DataOutputStream(outputStream);
+    }
+
+    public void writeByte(byte value) throws IOException {
+        output.writeByte(value);
+    }
+
+    public void writeBoolean(boolean value) throws IOException {
+        output.writeBoolean(value);
+    }
+
+    public void writeInt(int value) throws IOException {
+        output.writeInt(value);
+    }
+
+    public void writeLong(long value) throws IOException {
+        output.writeLong(value);
+    }
+
+    /**
+     * Writes a non-negative integer using a variable length encoding, which uses a single byte for values less than
+     * 128.
+     */
+    public void writeSmallInt(int value) throws IOException {
+        if (value < 0) {
+            throw new IllegalArgumentException(String.format("Cannot encode negative value %d.", value));
+        }
+        while ((value & ~0x7F) != 0) {
+            output.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        output.writeByte(value);
+    }
+
+    public void writeString(String value) throws IOException {
+        output.writeUTF(value);
+    }
+
+    public void writePath(String path) throws IOException {
+        int separator = Math.max(path.lastIndexOf('/'), path.lastIndexOf(File.separatorChar));
+        String directory = path.substring(0, separator + 1);
+        Integer index = directories.get(directory);
+        if (index == null) {
+            directories.put(directory, directories.size());
+            writeSmallInt(0);
+            output.writeUTF(directory);
+        } else {
+            writeSmallInt(index + 1);
+        }
+        output.writeUTF(path.substring(separator + 1));
+    }
+
+    public void writeHash(byte[] hash) throws IOException {
+        writeSmallInt(hash.length);
+        output.write(hash);
+    }
+
+    /**
+     * Writes an arbitrary value. Strings, booleans, integers and longs are written directly, and any other value is
+     * written using Java serialization.
+     */
+    public void writeValue(Object value) throws IOException {
+        if (value == null) {
+            output.writeByte(NULL);
+        } else if (value instanceof String && ((String) value).length() <= MAX_INLINE_STRING_LENGTH) {
+            output.writeByte(STRING);
+            output.writeUTF((String) value);
+        } else if (value instanceof Boolean) {
+            output.writeByte(BOOLEAN);
+            output.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            output.writeByte(INTEGER);
+            output.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            output.writeByte(LONG);
+            output.writeLong((Long) value);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOutput = new ObjectOutputStream(bytes);
+            objectOutput.writeObject(value);
+            objectOutput.close();
+            output.writeByte(SERIALIZED);
+            writeSmallInt(bytes.size());
+            bytes.writeTo(output);
+        }
+    }
+
+    public void flush() throws IOException {
+        output.flush();
+    }
+}
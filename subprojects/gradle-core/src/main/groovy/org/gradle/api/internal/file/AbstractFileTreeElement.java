@@ -57,6 +57,12 @@ public abstract class AbstractFileTreeElement implements FileTreeElement {
                 return false;
             }
 
+            if (!isDirectory() && target.isFile() && hasSameContent(target)) {
+                // Only the timestamp differs, so leave the content alone
+                target.setLastModified(getLastModified());
+                return false;
+            }
+
             target.getParentFile().mkdirs();
 
             if (isDirectory()) {
@@ -71,7 +77,7 @@ public abstract class AbstractFileTreeElement implements FileTreeElement {
         }
     }
 
-    private void copyFile(File target) throws IOException {
+    protected void copyFile(File target) throws IOException {
         FileOutputStream outputStream = new FileOutputStream(target);
         try {
             copyTo(outputStream);
@@ -80,6 +86,50 @@ public abstract class AbstractFileTreeElement implements FileTreeElement {
         }
     }
 
+    /**
+     * Returns true if the given file has the same content as this file.
+     */
+    protected boolean hasSameContent(File target) throws IOException {
+        InputStream content = open();
+        try {
+            InputStream targetContent = new FileInputStream(target);
+            try {
+                byte[] buffer = new byte[8192];
+                byte[] targetBuffer = new byte[8192];
+                while (true) {
+                    int count = read(content, buffer);
+                    if (read(targetContent, targetBuffer) != count) {
+                        return false;
+                    }
+                    if (count == 0) {
+                        return true;
+                    }
+                    for (int i = 0; i < count; i++) {
+                        if (buffer[i] != targetBuffer[i]) {
+                            return false;
+                        }
+                    }
+                }
+            } finally {
+                targetContent.close();
+            }
+        } finally {
+            content.close();
+        }
+    }
+
+    private static int read(InputStream inputStream, byte[] buffer) throws IOException {
+        int count = 0;
+        while (count < buffer.length) {
+            int read = inputStream.read(buffer, count, buffer.length - count);
+            if (read < 0) {
+                break;
+            }
+            count += read;
+        }
+        return count;
+    }
+
     boolean needsCopy(File dest) {
         if (dest.exists()) {
             if (getLastModified() == dest.lastModified()) {
@@ -95,7 +95,7 @@ public class DefaultConfigurableFileTree extends AbstractFileTree implements Con
     }
 
     public DefaultConfigurableFileTree visit(FileVisitor visitor) {
-        DefaultDirectoryWalker walker = new DefaultDirectoryWalker(visitor);
+        DefaultDirectoryWalker walker = new DefaultDirectoryWalker(visitor).parallel(Integer.getInteger(DefaultDirectoryWalker.THREADS_PROPERTY, 1));
         walker.match(patternSet).start(getDir());
         return this;
     }
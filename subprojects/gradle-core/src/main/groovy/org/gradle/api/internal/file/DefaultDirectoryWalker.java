@@ -24,12 +24,16 @@ import org.gradle.api.file.RelativePath;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.messaging.concurrent.DefaultExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
 import org.gradle.util.GFileUtils;
+import org.gradle.util.UncheckedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -41,14 +45,21 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * A file or directory will only be visited if it matches all includes and no
  * excludes.
  *
+ * When more than one thread is requested using {@link #parallel(int)}, the
+ * contents of directories are listed ahead of time by a pool of threads. The
+ * visitor is still called from the thread which started the walk, in the same
+ * order as when walking with a single thread.
+ *
  * @author Steve Appling
  */
 public class DefaultDirectoryWalker implements DirectoryWalker {
+    public static final String THREADS_PROPERTY = "org.gradle.file.walker.threads";
     private static Logger logger = LoggerFactory.getLogger(DefaultDirectoryWalker.class);
 
     private FileVisitor visitor;
     private Spec<FileTreeElement> spec;
     private boolean depthFirst;
+    private int threads = 1;
 
     public DefaultDirectoryWalker(FileVisitor visitor) {
         spec = Specs.satisfyAll();
@@ -73,7 +84,12 @@ public class DefaultDirectoryWalker implements DirectoryWalker {
             if (root.isFile()) {
                 processSingleFile(root, stopFlag);
             } else {
-               walkDir(root, new RelativePath(false), stopFlag);
+                DirectoryLister lister = threads > 1 ? new ParallelDirectoryLister(threads, stopFlag) : new DirectoryLister();
+                try {
+                    walkDir(lister.list(root), new RelativePath(false), lister, stopFlag);
+                } finally {
+                    lister.stop();
+                }
             }
         } else {
             logger.info("file or directory '"+startFile.toString()+"', not found");
@@ -88,19 +104,14 @@ public class DefaultDirectoryWalker implements DirectoryWalker {
         }
     }
 
-    private void walkDir(File file, RelativePath path, AtomicBoolean stopFlag) {
-        File[] children = file.listFiles();
-        if (children == null) {
-            if (file.isDirectory() && !file.canRead()) {
-                throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", file));
-            }
-            // else, might be a link which points to nothing, or has been removed while we're visiting, or ...
-            throw new GradleException(String.format("Could not list contents of '%s'.", file));
-        }
+    private void walkDir(DirectoryListing listing, RelativePath path, DirectoryLister lister, AtomicBoolean stopFlag) {
+        lister.await(listing);
+        File[] children = listing.getChildren();
+        boolean[] childIsFile = listing.getChildIsFile();
         List<FileVisitDetailsImpl> dirs = new ArrayList<FileVisitDetailsImpl>();
         for (int i = 0; !stopFlag.get() && i < children.length; i++) {
             File child = children[i];
-            boolean isFile = child.isFile();
+            boolean isFile = childIsFile[i];
             RelativePath childPath = path.append(isFile, child.getName());
             FileVisitDetailsImpl details = new FileVisitDetailsImpl(child, childPath, stopFlag);
             if (isAllowed(details)) {
@@ -112,15 +123,21 @@ public class DefaultDirectoryWalker implements DirectoryWalker {
             }
         }
 
+        // start listing the dirs, so that they may be listed while the visitor is busy
+        List<DirectoryListing> dirListings = new ArrayList<DirectoryListing>(dirs.size());
+        for (int i = 0; !stopFlag.get() && i < dirs.size(); i++) {
+            dirListings.add(lister.list(dirs.get(i).getFile()));
+        }
+
         // now handle dirs
         for (int i = 0; !stopFlag.get() && i < dirs.size(); i++) {
             FileVisitDetailsImpl dir = dirs.get(i);
             if (depthFirst) {
-                walkDir(dir.getFile(), dir.getRelativePath(), stopFlag);
+                walkDir(dirListings.get(i), dir.getRelativePath(), lister, stopFlag);
                 visitor.visitDir(dir);
             } else {
                 visitor.visitDir(dir);
-                walkDir(dir.getFile(), dir.getRelativePath(), stopFlag);
+                walkDir(dirListings.get(i), dir.getRelativePath(), lister, stopFlag);
             }
         }
     }
@@ -134,6 +151,15 @@ public class DefaultDirectoryWalker implements DirectoryWalker {
         return this;
     }
 
+    /**
+     * Sets the number of threads to use to list the contents of directories. The default is 1, which lists each
+     * directory on the calling thread just before it is visited.
+     */
+    public DefaultDirectoryWalker parallel(int threads) {
+        this.threads = threads;
+        return this;
+    }
+
     private static class FileVisitDetailsImpl extends DefaultFileTreeElement implements FileVisitDetails {
         private final AtomicBoolean stop;
 
@@ -146,4 +172,168 @@ public class DefaultDirectoryWalker implements DirectoryWalker {
             stop.set(true);
         }
     }
+
+    /**
+     * The contents of a directory, along with whether each child is a file.
+     */
+    private static class DirectoryListing {
+        private final File dir;
+        private File[] children;
+        private boolean[] childIsFile;
+        private RuntimeException failure;
+        private boolean started;
+        private boolean complete;
+
+        private DirectoryListing(File dir) {
+            this.dir = dir;
+        }
+
+        public File[] getChildren() {
+            if (failure != null) {
+                throw failure;
+            }
+            return children;
+        }
+
+        public boolean[] getChildIsFile() {
+            return childIsFile;
+        }
+
+        void list() {
+            try {
+                File[] children = dir.listFiles();
+                if (children == null) {
+                    if (dir.isDirectory() && !dir.canRead()) {
+                        throw new GradleException(String.format("Could not list contents of directory '%s' as it is not readable.", dir));
+                    }
+                    // else, might be a link which points to nothing, or has been removed while we're visiting, or ...
+                    throw new GradleException(String.format("Could not list contents of '%s'.", dir));
+                }
+                boolean[] childIsFile = new boolean[children.length];
+                for (int i = 0; i < children.length; i++) {
+                    childIsFile[i] = children[i].isFile();
+                }
+                this.children = children;
+                this.childIsFile = childIsFile;
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+    }
+
+    /**
+     * Lists each directory on the calling thread, when it is required.
+     */
+    private static class DirectoryLister {
+        DirectoryListing list(File dir) {
+            return new DirectoryListing(dir);
+        }
+
+        void await(DirectoryListing listing) {
+            if (!listing.complete) {
+                listing.list();
+                listing.complete = true;
+            }
+        }
+
+        void stop() {
+        }
+    }
+
+    /**
+     * Lists directories using a pool of threads. Directories are listed in the order they are requested. When the
+     * walker requires a directory which no thread has started listing yet, the directory is listed on the calling
+     * thread rather than waiting for a pool thread to become available.
+     */
+    private static class ParallelDirectoryLister extends DirectoryLister {
+        private final Object lock = new Object();
+        private final LinkedList<DirectoryListing> queue = new LinkedList<DirectoryListing>();
+        private final int maxWorkers;
+        private final AtomicBoolean stopFlag;
+        private StoppableExecutor executor;
+        private int workers;
+        private boolean stopped;
+
+        private ParallelDirectoryLister(int threads, AtomicBoolean stopFlag) {
+            this.maxWorkers = threads - 1;
+            this.stopFlag = stopFlag;
+        }
+
+        @Override
+        DirectoryListing list(File dir) {
+            DirectoryListing listing = new DirectoryListing(dir);
+            synchronized (lock) {
+                queue.add(listing);
+                if (workers < maxWorkers) {
+                    if (executor == null) {
+                        executor = new DefaultExecutorFactory().create("Directory walker");
+                    }
+                    workers++;
+                    executor.execute(new Worker());
+                }
+            }
+            return listing;
+        }
+
+        @Override
+        void await(DirectoryListing listing) {
+            synchronized (lock) {
+                if (listing.started) {
+                    while (!listing.complete) {
+                        try {
+                            lock.wait();
+                        } catch (InterruptedException e) {
+                            throw new UncheckedException(e);
+                        }
+                    }
+                    return;
+                }
+                listing.started = true;
+            }
+            listing.list();
+            synchronized (lock) {
+                listing.complete = true;
+            }
+        }
+
+        @Override
+        void stop() {
+            StoppableExecutor executor;
+            synchronized (lock) {
+                stopped = true;
+                queue.clear();
+                executor = this.executor;
+            }
+            if (executor != null) {
+                executor.stop();
+            }
+        }
+
+        private class Worker implements Runnable {
+            public void run() {
+                while (true) {
+                    DirectoryListing listing;
+                    synchronized (lock) {
+                        listing = queue.poll();
+                        while (listing != null && listing.started) {
+                            listing = queue.poll();
+                        }
+                        if (listing == null || stopped || stopFlag.get()) {
+                            workers--;
+                            return;
+                        }
+                        listing.started = true;
+                    }
+                    try {
+                        listing.list();
+                    } finally {
+                        synchronized (lock) {
+                            listing.complete = true;
+                            lock.notifyAll();
+                        }
+                    }
+                }
+            }
+        }
+    }
 }
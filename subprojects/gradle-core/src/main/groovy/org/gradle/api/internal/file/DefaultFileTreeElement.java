@@ -18,8 +18,8 @@ package org.gradle.api.internal.file;
 import org.gradle.api.file.RelativePath;
 import org.gradle.util.GFileUtils;
 
-import java.io.File;
-import java.io.InputStream;
+import java.io.*;
+import java.nio.channels.FileChannel;
 
 public class DefaultFileTreeElement extends AbstractFileTreeElement {
     private final File file;
@@ -54,6 +54,38 @@ public class DefaultFileTreeElement extends AbstractFileTreeElement {
         return GFileUtils.openInputStream(file);
     }
 
+    @Override
+    protected void copyFile(File target) throws IOException {
+        // Let the operating system copy the content, rather than copying it through the heap
+        FileInputStream inputStream = new FileInputStream(file);
+        try {
+            FileOutputStream outputStream = new FileOutputStream(target);
+            try {
+                FileChannel source = inputStream.getChannel();
+                FileChannel destination = outputStream.getChannel();
+                long size = source.size();
+                long position = 0;
+                while (position < size) {
+                    long count = source.transferTo(position, size - position, destination);
+                    if (count == 0) {
+                        // The file has become shorter
+                        break;
+                    }
+                    position += count;
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    @Override
+    protected boolean hasSameContent(File target) throws IOException {
+        return file.length() == target.length() && super.hasSameContent(target);
+    }
+
     public RelativePath getRelativePath() {
         return relativePath;
     }
@@ -0,0 +1,623 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive;
+
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.file.FileTreeElement;
+import org.gradle.messaging.concurrent.DefaultExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+import org.gradle.util.UncheckedException;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.ZipException;
+
+/**
+ * Writes a ZIP file, compressing the entries using several threads.
+ *
+ * <p>Each entry is read into memory by the calling thread, and then compressed into its own buffer by a worker thread.
+ * The compressed entries are written to the output in the order they were added, so that the content of the ZIP file
+ * does not depend on the number of threads used, or on the order in which the entries happen to be compressed. The
+ * number of entries waiting to be written is bounded, and the calling thread compresses an entry itself when it has to
+ * wait for it. Entries which are larger than {@link #LARGE_ENTRY_SIZE} are not read into memory, but are streamed
+ * directly to the output once all the preceding entries have been written.</p>
+ *
+ * <p>Entries whose names indicate that their content is already compressed, such as JAR files and images, are stored
+ * rather than compressed again. So are entries which do not get smaller when compressed.</p>
+ *
+ * <p>The writer can be given a previous version of the ZIP file to reuse entries from, using {@link
+ * #reuseEntriesFrom(File)}. When an entry has the same name, size and CRC as an entry in the previous ZIP file, the
+ * compressed content of the previous entry is copied as is, instead of compressing the entry again. The CRC is
+ * calculated from the new content, so an entry is reused only when its content has not changed.</p>
+ */
+public class ParallelZipWriter {
+    static final long LARGE_ENTRY_SIZE = 16 * 1024 * 1024;
+    private static final long MAX_PENDING_BYTES = 64 * 1024 * 1024;
+    private static final Set<String> COMPRESSED_EXTENSIONS = new HashSet<String>(Arrays.asList(
+            "zip", "jar", "war", "ear", "gz", "tgz", "bz2", "png", "jpg", "jpeg", "gif"));
+
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int DATA_DESCRIPTOR = 0x08074b50;
+    private static final int CENTRAL_FILE_HEADER = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int STORED = ZipIndex.STORED;
+    private static final int DEFLATED = ZipIndex.DEFLATED;
+    private static final int DATA_DESCRIPTOR_FLAG = 1 << 3;
+    private static final int UTF8_NAMES_FLAG = 1 << 11;
+    private static final int VERSION_STORED = 10;
+    private static final int VERSION_DEFLATED = 20;
+    private static final int PLATFORM_UNIX = 3;
+    private static final int MAX_16_BIT = 0xffff;
+    private static final long MAX_32_BIT = 0xffffffffL;
+
+    private final CountingOutputStream outputStream;
+    private final int maxWorkers;
+    private final int maxPendingEntries;
+    private final long largeEntrySize;
+    private final Object lock = new Object();
+    private final LinkedList<Entry> queue = new LinkedList<Entry>();
+    private final LinkedList<Entry> pending = new LinkedList<Entry>();
+    private final List<Entry> written = new ArrayList<Entry>();
+    private final byte[] header = new byte[46];
+    private ZipIndex previousArchive;
+    private int reusedEntries;
+    private long pendingBytes;
+    private StoppableExecutor executor;
+    private int workers;
+    private boolean stopped;
+
+    /**
+     * @param outputStream The stream to write the ZIP file to.
+     * @param threads The number of threads to use to compress entries, including the calling thread.
+     */
+    public ParallelZipWriter(OutputStream outputStream, int threads) {
+        this(outputStream, threads, LARGE_ENTRY_SIZE);
+    }
+
+    ParallelZipWriter(OutputStream outputStream, int threads, long largeEntrySize) {
+        this.outputStream = new CountingOutputStream(outputStream);
+        this.largeEntrySize = largeEntrySize;
+        maxWorkers = threads - 1;
+        maxPendingEntries = threads <= 1 ? 0 : 4 * threads;
+    }
+
+    /**
+     * Reuses the compressed content of unchanged entries from the given ZIP file, which must not be the file being
+     * written. Must be called before any entries are added. Does nothing if the given file is not a ZIP file which this
+     * writer can read.
+     */
+    public void reuseEntriesFrom(File archive) throws IOException {
+        try {
+            previousArchive = ZipIndex.read(archive);
+        } catch (ZipException e) {
+            // Not a ZIP file, so nothing to reuse
+        }
+    }
+
+    /**
+     * Returns the number of entries whose compressed content was copied from the previous ZIP file.
+     */
+    public int getReusedEntries() {
+        return reusedEntries;
+    }
+
+    public void putDirectory(String path, long lastModified, int unixMode) throws IOException {
+        // Trailing slash in name indicates that entry is a directory
+        Entry entry = new Entry(path + '/', lastModified, unixMode, true);
+        entry.content = new byte[0];
+        add(entry);
+    }
+
+    public void putFile(FileTreeElement file, String path, long lastModified, int unixMode) throws IOException {
+        Entry entry = new Entry(path, lastModified, unixMode, false);
+        if (!entry.store && previousArchive != null) {
+            ZipIndex.Entry previous = previousArchive.getEntry(path);
+            entry.previous = previous != null && previous.isReadable() ? previous : null;
+        }
+        if (file.getSize() > largeEntrySize) {
+            writeAllPending();
+            writeLarge(entry, file);
+            return;
+        }
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream((int) Math.max(file.getSize(), 32));
+        file.copyTo(buffer);
+        entry.content = buffer.toByteArray();
+        entry.size = entry.content.length;
+        add(entry);
+    }
+
+    /**
+     * Writes the remaining entries and the central directory, and closes the output stream.
+     */
+    public void close() throws IOException {
+        try {
+            writeAllPending();
+            writeCentralDirectory();
+        } finally {
+            stopWorkers();
+            outputStream.close();
+        }
+    }
+
+    /**
+     * Discards the remaining entries and closes the output stream, without writing the central directory. Used when
+     * the ZIP file cannot be completed.
+     */
+    public void abort() throws IOException {
+        try {
+            stopWorkers();
+        } finally {
+            outputStream.close();
+        }
+    }
+
+    private void add(Entry entry) throws IOException {
+        synchronized (lock) {
+            if (stopped) {
+                throw new IllegalStateException("This ZIP writer has been closed.");
+            }
+            pending.add(entry);
+            pendingBytes += entry.content.length;
+            if (maxWorkers > 0) {
+                queue.add(entry);
+                if (workers < maxWorkers) {
+                    if (executor == null) {
+                        executor = new DefaultExecutorFactory().create("ZIP compression");
+                    }
+                    workers++;
+                    executor.execute(new Worker());
+                }
+            }
+        }
+
+        while (true) {
+            Entry next;
+            boolean mustWait;
+            synchronized (lock) {
+                next = pending.peek();
+                if (next == null) {
+                    return;
+                }
+                mustWait = pending.size() > maxPendingEntries || pendingBytes > MAX_PENDING_BYTES;
+                if (!next.complete && !mustWait) {
+                    return;
+                }
+            }
+            writeNext();
+        }
+    }
+
+    private void writeAllPending() throws IOException {
+        while (!pending.isEmpty()) {
+            writeNext();
+        }
+    }
+
+    private void writeNext() throws IOException {
+        Entry entry;
+        synchronized (lock) {
+            entry = pending.getFirst();
+        }
+        await(entry);
+        synchronized (lock) {
+            pending.removeFirst();
+            pendingBytes -= entry.size;
+        }
+        if (entry.failure != null) {
+            throw UncheckedException.asUncheckedException(entry.failure);
+        }
+
+        entry.offset = outputStream.getCount();
+        writeLocalFileHeader(entry);
+        if (entry.reused) {
+            copyPrevious(entry.previous);
+        } else {
+            outputStream.write(entry.data, 0, (int) entry.compressedSize);
+        }
+        entry.data = null;
+        written.add(entry);
+    }
+
+    private void await(Entry entry) {
+        synchronized (lock) {
+            if (entry.started) {
+                while (!entry.complete) {
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        throw new UncheckedException(e);
+                    }
+                }
+                return;
+            }
+            entry.started = true;
+        }
+        entry.compress();
+        synchronized (lock) {
+            entry.complete = true;
+        }
+    }
+
+    private void stopWorkers() {
+        StoppableExecutor executor;
+        synchronized (lock) {
+            stopped = true;
+            queue.clear();
+            pending.clear();
+            executor = this.executor;
+        }
+        if (executor != null) {
+            executor.stop();
+        }
+    }
+
+    private void writeLarge(Entry entry, FileTreeElement file) throws IOException {
+        entry.offset = outputStream.getCount();
+        if (entry.store) {
+            // Calculate the CRC first, so that it can be written in the header
+            CountingOutputStream counter = new CountingOutputStream(null);
+            CheckedOutputStream checksum = new CheckedOutputStream(counter, new CRC32());
+            file.copyTo(checksum);
+            entry.method = STORED;
+            entry.crc = checksum.getChecksum().getValue();
+            entry.size = counter.getCount();
+            entry.compressedSize = entry.size;
+            writeLocalFileHeader(entry);
+            long start = outputStream.getCount();
+            file.copyTo(new NonClosingOutputStream(outputStream));
+            if (outputStream.getCount() - start != entry.size) {
+                throw new IOException(String.format("Content of '%s' changed while it was being added.", entry.path));
+            }
+        } else if (entry.previous != null && entry.previous.getSize() == file.getSize() && checkUnchanged(entry, file)) {
+            writeLocalFileHeader(entry);
+            copyPrevious(entry.previous);
+        } else {
+            entry.method = DEFLATED;
+            entry.flags |= DATA_DESCRIPTOR_FLAG;
+            writeLocalFileHeader(entry);
+            long start = outputStream.getCount();
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                DeflaterOutputStream deflaterStream = new DeflaterOutputStream(new NonClosingOutputStream(outputStream), deflater, 64 * 1024);
+                CountingOutputStream uncompressed = new CountingOutputStream(deflaterStream);
+                CheckedOutputStream checksum = new CheckedOutputStream(uncompressed, new CRC32());
+                file.copyTo(checksum);
+                deflaterStream.finish();
+                entry.crc = checksum.getChecksum().getValue();
+                entry.size = uncompressed.getCount();
+            } finally {
+                deflater.end();
+            }
+            entry.compressedSize = outputStream.getCount() - start;
+            int pos = 0;
+            pos = putInt(DATA_DESCRIPTOR, pos);
+            pos = putInt(entry.crc, pos);
+            pos = putInt(checkSize(entry.compressedSize), pos);
+            pos = putInt(checkSize(entry.size), pos);
+            outputStream.write(header, 0, pos);
+        }
+        written.add(entry);
+    }
+
+    private boolean checkUnchanged(Entry entry, FileTreeElement file) {
+        CountingOutputStream counter = new CountingOutputStream(null);
+        CheckedOutputStream checksum = new CheckedOutputStream(counter, new CRC32());
+        file.copyTo(checksum);
+        return entry.reuse(checksum.getChecksum().getValue(), counter.getCount());
+    }
+
+    private void copyPrevious(ZipIndex.Entry previous) throws IOException {
+        InputStream content = previousArchive.openRaw(previous);
+        try {
+            IOUtils.copyLarge(content, outputStream);
+        } finally {
+            content.close();
+        }
+        reusedEntries++;
+    }
+
+    private void writeLocalFileHeader(Entry entry) throws IOException {
+        boolean descriptor = (entry.flags & DATA_DESCRIPTOR_FLAG) != 0;
+        int pos = 0;
+        pos = putInt(LOCAL_FILE_HEADER, pos);
+        pos = putShort(entry.method == DEFLATED ? VERSION_DEFLATED : VERSION_STORED, pos);
+        pos = putShort(entry.flags, pos);
+        pos = putShort(entry.method, pos);
+        pos = putInt(entry.dosTime, pos);
+        pos = putInt(descriptor ? 0 : entry.crc, pos);
+        pos = putInt(descriptor ? 0 : checkSize(entry.compressedSize), pos);
+        pos = putInt(descriptor ? 0 : checkSize(entry.size), pos);
+        pos = putShort(entry.name.length, pos);
+        pos = putShort(0, pos);
+        outputStream.write(header, 0, pos);
+        outputStream.write(entry.name);
+    }
+
+    private void writeCentralDirectory() throws IOException {
+        if (written.size() > MAX_16_BIT) {
+            throw new IOException(String.format("Cannot write more than %s entries to a ZIP file.", MAX_16_BIT));
+        }
+        long start = outputStream.getCount();
+        for (Entry entry : written) {
+            int pos = 0;
+            pos = putInt(CENTRAL_FILE_HEADER, pos);
+            pos = putShort((PLATFORM_UNIX << 8) | VERSION_DEFLATED, pos);
+            pos = putShort(entry.method == DEFLATED ? VERSION_DEFLATED : VERSION_STORED, pos);
+            pos = putShort(entry.flags, pos);
+            pos = putShort(entry.method, pos);
+            pos = putInt(entry.dosTime, pos);
+            pos = putInt(entry.crc, pos);
+            pos = putInt(checkSize(entry.compressedSize), pos);
+            pos = putInt(checkSize(entry.size), pos);
+            pos = putShort(entry.name.length, pos);
+            pos = putShort(0, pos);
+            pos = putShort(0, pos);
+            pos = putShort(0, pos);
+            pos = putShort(0, pos);
+            pos = putInt(entry.externalAttributes(), pos);
+            pos = putInt(checkSize(entry.offset), pos);
+            outputStream.write(header, 0, pos);
+            outputStream.write(entry.name);
+        }
+        long size = outputStream.getCount() - start;
+
+        int pos = 0;
+        pos = putInt(END_OF_CENTRAL_DIRECTORY, pos);
+        pos = putShort(0, pos);
+        pos = putShort(0, pos);
+        pos = putShort(written.size(), pos);
+        pos = putShort(written.size(), pos);
+        pos = putInt(checkSize(size), pos);
+        pos = putInt(checkSize(start), pos);
+        pos = putShort(0, pos);
+        outputStream.write(header, 0, pos);
+    }
+
+    private long checkSize(long value) throws IOException {
+        if (value > MAX_32_BIT) {
+            throw new IOException("Cannot write a ZIP file larger than 4GB.");
+        }
+        return value;
+    }
+
+    private int putShort(int value, int pos) {
+        header[pos] = (byte) value;
+        header[pos + 1] = (byte) (value >> 8);
+        return pos + 2;
+    }
+
+    private int putInt(long value, int pos) {
+        header[pos] = (byte) value;
+        header[pos + 1] = (byte) (value >> 8);
+        header[pos + 2] = (byte) (value >> 16);
+        header[pos + 3] = (byte) (value >> 24);
+        return pos + 4;
+    }
+
+    private static boolean isCompressed(String path) {
+        int index = path.lastIndexOf('.');
+        return index >= 0 && COMPRESSED_EXTENSIONS.contains(path.substring(index + 1).toLowerCase());
+    }
+
+    private static long toDosTime(long time) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(time);
+        int year = calendar.get(Calendar.YEAR);
+        if (year < 1980) {
+            // 1 January 1980
+            return 0x00210000L;
+        }
+        return (year - 1980) << 25
+                | (calendar.get(Calendar.MONTH) + 1) << 21
+                | calendar.get(Calendar.DAY_OF_MONTH) << 16
+                | calendar.get(Calendar.HOUR_OF_DAY) << 11
+                | calendar.get(Calendar.MINUTE) << 5
+                | calendar.get(Calendar.SECOND) >> 1;
+    }
+
+    private static byte[] encode(String path) {
+        try {
+            return path.getBytes("UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new UncheckedException(e);
+        }
+    }
+
+    private class Worker implements Runnable {
+        public void run() {
+            while (true) {
+                Entry entry;
+                synchronized (lock) {
+                    entry = queue.poll();
+                    while (entry != null && entry.started) {
+                        entry = queue.poll();
+                    }
+                    if (entry == null || stopped) {
+                        workers--;
+                        return;
+                    }
+                    entry.started = true;
+                }
+                try {
+                    entry.compress();
+                } finally {
+                    synchronized (lock) {
+                        entry.complete = true;
+                        lock.notifyAll();
+                    }
+                }
+            }
+        }
+    }
+
+    private static class Entry {
+        private final String path;
+        private final byte[] name;
+        private final long dosTime;
+        private final int unixMode;
+        private final boolean directory;
+        private final boolean store;
+        private int flags;
+        private ZipIndex.Entry previous;
+        private boolean reused;
+        private byte[] content;
+        private byte[] data;
+        private int method;
+        private long crc;
+        private long size;
+        private long compressedSize;
+        private long offset;
+        private Throwable failure;
+        private boolean started;
+        private boolean complete;
+
+        private Entry(String path, long lastModified, int unixMode, boolean directory) {
+            this.path = path;
+            this.name = encode(path);
+            this.dosTime = toDosTime(lastModified);
+            this.unixMode = unixMode;
+            this.directory = directory;
+            this.store = directory || isCompressed(path);
+            if (name.length != path.length()) {
+                flags |= UTF8_NAMES_FLAG;
+            }
+        }
+
+        int externalAttributes() {
+            return (unixMode << 16) | ((unixMode & 0200) == 0 ? 1 : 0) | (directory ? 0x10 : 0);
+        }
+
+        void compress() {
+            try {
+                CRC32 checksum = new CRC32();
+                checksum.update(content);
+                crc = checksum.getValue();
+                size = content.length;
+                if (reuse(crc, size)) {
+                    return;
+                }
+                if (!store) {
+                    byte[] compressed = deflate(content);
+                    if (compressed.length < content.length) {
+                        method = DEFLATED;
+                        data = compressed;
+                        compressedSize = compressed.length;
+                        return;
+                    }
+                }
+                method = STORED;
+                data = content;
+                compressedSize = content.length;
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                content = null;
+            }
+        }
+
+        boolean reuse(long crc, long size) {
+            if (previous == null || previous.getCrc() != crc || previous.getSize() != size) {
+                return false;
+            }
+            this.crc = crc;
+            this.size = size;
+            method = previous.getMethod();
+            compressedSize = previous.getCompressedSize();
+            reused = true;
+            return true;
+        }
+
+        private static byte[] deflate(byte[] content) {
+            Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+            try {
+                deflater.setInput(content);
+                deflater.finish();
+                ByteArrayOutputStream compressed = new ByteArrayOutputStream(content.length / 2 + 64);
+                byte[] buffer = new byte[8192];
+                while (!deflater.finished()) {
+                    int count = deflater.deflate(buffer);
+                    compressed.write(buffer, 0, count);
+                }
+                return compressed.toByteArray();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    private static class CountingOutputStream extends OutputStream {
+        private final OutputStream target;
+        private long count;
+
+        private CountingOutputStream(OutputStream target) {
+            this.target = target;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (target != null) {
+                target.write(b);
+            }
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (target != null) {
+                target.write(b, off, len);
+            }
+            count += len;
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (target != null) {
+                target.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (target != null) {
+                target.close();
+            }
+        }
+    }
+
+    private static class NonClosingOutputStream extends FilterOutputStream {
+        private NonClosingOutputStream(OutputStream target) {
+            super(target);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            out.write(b, off, len);
+        }
+
+        @Override
+        public void close() throws IOException {
+            flush();
+        }
+    }
+}
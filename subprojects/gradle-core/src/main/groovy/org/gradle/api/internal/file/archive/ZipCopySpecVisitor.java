@@ -15,7 +15,7 @@
  */
 package org.gradle.api.internal.file.archive;
 
-import org.apache.tools.zip.*;
+import org.apache.tools.zip.UnixStat;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.internal.file.copy.CopyAction;
@@ -23,33 +23,88 @@ import org.gradle.api.file.FileVisitDetails;
 import org.gradle.api.internal.file.copy.ArchiveCopyAction;
 import org.gradle.api.internal.file.copy.EmptyCopySpecVisitor;
 import org.gradle.api.internal.file.copy.ReadableCopySpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 
 public class ZipCopySpecVisitor extends EmptyCopySpecVisitor {
-    private ZipOutputStream zipOutStr;
+    /**
+     * The system property which specifies the number of threads to use to compress the entries of a ZIP file. Defaults
+     * to the number of available processors.
+     */
+    public static final String THREADS_PROPERTY = "org.gradle.archive.zip.threads";
+    private static Logger logger = LoggerFactory.getLogger(ZipCopySpecVisitor.class);
+    private ParallelZipWriter zipWriter;
     private File zipFile;
+    private File tempFile;
     private ReadableCopySpec spec;
 
     public void startVisit(CopyAction action) {
         ArchiveCopyAction archiveAction = (ArchiveCopyAction) action;
         zipFile = archiveAction.getArchivePath();
+        boolean incremental = action instanceof ZipCopyAction && ((ZipCopyAction) action).isIncremental();
+        // When updating incrementally, write the new archive next to the existing one and replace it at the end
+        tempFile = incremental && zipFile.isFile() ? new File(zipFile.getParentFile(), zipFile.getName() + ".tmp") : null;
         try {
-            zipOutStr = new ZipOutputStream(zipFile);
+            int threads = Integer.getInteger(THREADS_PROPERTY, Runtime.getRuntime().availableProcessors());
+            File target = tempFile != null ? tempFile : zipFile;
+            zipWriter = new ParallelZipWriter(new BufferedOutputStream(new FileOutputStream(target), 64 * 1024), threads);
+            if (tempFile != null) {
+                zipWriter.reuseEntriesFrom(zipFile);
+            }
         } catch (Exception e) {
+            if (zipWriter != null) {
+                abortVisit();
+            }
             throw new GradleException(String.format("Could not create ZIP '%s'.", zipFile), e);
         }
     }
 
+    public void abortVisit() {
+        try {
+            zipWriter.abort();
+        } catch (IOException e) {
+            // Ignore, so that the failure which caused the visit to be aborted is reported instead
+            logger.debug(String.format("Could not close ZIP '%s'.", zipFile), e);
+        } finally {
+            // The new archive is incomplete. When updating incrementally, the existing archive is left unchanged
+            if (tempFile != null) {
+                tempFile.delete();
+            } else {
+                zipFile.delete();
+            }
+            spec = null;
+            zipWriter = null;
+            tempFile = null;
+        }
+    }
+
     public void endVisit() {
+        boolean complete = false;
         try {
-            zipOutStr.close();
+            zipWriter.close();
+            if (tempFile != null) {
+                logger.debug("Reused {} entries from previous version of ZIP '{}'.", zipWriter.getReusedEntries(), zipFile);
+                if (!zipFile.delete() || !tempFile.renameTo(zipFile)) {
+                    throw new UncheckedIOException(String.format("Could not replace ZIP '%s'.", zipFile));
+                }
+            }
+            complete = true;
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         } finally {
+            if (tempFile != null) {
+                tempFile.delete();
+            } else if (!complete) {
+                zipFile.delete();
+            }
             spec = null;
-            zipOutStr = null;
+            zipWriter = null;
+            tempFile = null;
         }
     }
 
@@ -59,13 +114,8 @@ public class ZipCopySpecVisitor extends EmptyCopySpecVisitor {
 
     public void visitFile(FileVisitDetails fileDetails) {
         try {
-            ZipEntry archiveEntry = new ZipEntry(fileDetails.getRelativePath().getPathString());
-            archiveEntry.setMethod(ZipEntry.DEFLATED);
-            archiveEntry.setTime(fileDetails.getLastModified());
-            archiveEntry.setUnixMode(UnixStat.FILE_FLAG | spec.getFileMode());
-            zipOutStr.putNextEntry(archiveEntry);
-            fileDetails.copyTo(zipOutStr);
-            zipOutStr.closeEntry();
+            zipWriter.putFile(fileDetails, fileDetails.getRelativePath().getPathString(),
+                    fileDetails.getLastModified(), UnixStat.FILE_FLAG | spec.getFileMode());
         } catch (Exception e) {
             throw new GradleException(String.format("Could not add %s to ZIP '%s'.", fileDetails, zipFile), e);
         }
@@ -73,12 +123,8 @@ public class ZipCopySpecVisitor extends EmptyCopySpecVisitor {
 
     public void visitDir(FileVisitDetails dirDetails) {
         try {
-            // Trailing slash in name indicates that entry is a directory
-            ZipEntry archiveEntry = new ZipEntry(dirDetails.getRelativePath().getPathString() + '/');
-            archiveEntry.setTime(dirDetails.getLastModified());
-            archiveEntry.setUnixMode(UnixStat.DIR_FLAG | spec.getDirMode());
-            zipOutStr.putNextEntry(archiveEntry);
-            zipOutStr.closeEntry();
+            zipWriter.putDirectory(dirDetails.getRelativePath().getPathString(), dirDetails.getLastModified(),
+                    UnixStat.DIR_FLAG | spec.getDirMode());
         } catch (Exception e) {
             throw new GradleException(String.format("Could not add %s to ZIP '%s'.", dirDetails, zipFile), e);
         }
@@ -15,8 +15,6 @@
  */
 package org.gradle.api.internal.file.archive;
 
-import org.apache.tools.zip.ZipEntry;
-import org.apache.tools.zip.ZipFile;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.GradleException;
@@ -32,7 +30,9 @@ import org.gradle.util.HashUtil;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
-import java.util.*;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class ZipFileTree extends AbstractFileTree {
@@ -51,42 +51,63 @@ public class ZipFileTree extends AbstractFileTree {
 
     @Override
     protected Collection<DefaultConfigurableFileTree> getAsFileTrees() {
-        visitAll();
-        return zipFile.exists() ? Collections.singleton(new DefaultConfigurableFileTree(tmpDir, null, null)) : Collections.<DefaultConfigurableFileTree>emptyList();
+        if (!zipFile.exists()) {
+            return Collections.emptyList();
+        }
+        expand();
+        return Collections.singleton(new DefaultConfigurableFileTree(tmpDir, null, null));
     }
 
-    public FileTree visit(FileVisitor visitor) {
-        if (!zipFile.exists()) {
-            return this;
+    /**
+     * Expands the ZIP file into the temporary directory. The returned tree is used by code which reads the files from
+     * the file system, such as Ant tasks, so every entry has to be extracted. An entry is extracted again only when the
+     * size or timestamp of the extracted file no longer matches the entry.
+     */
+    private void expand() {
+        checkIsFile();
+        AtomicBoolean stopFlag = new AtomicBoolean();
+        try {
+            ZipIndex zip = ZipIndex.forFile(zipFile);
+            for (ZipIndex.Entry entry : zip.getEntries()) {
+                File target = new File(tmpDir, entry.getName());
+                if (entry.isDirectory()) {
+                    target.mkdirs();
+                } else if (!target.isFile() || target.length() != entry.getSize()
+                        || target.lastModified() != entry.getLastModified()) {
+                    new DetailsImpl(entry, zip, stopFlag).copyTo(target);
+                }
+            }
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not expand %s.", this), e);
         }
+    }
+
+    private void checkIsFile() {
         if (!zipFile.isFile()) {
             throw new InvalidUserDataException(String.format("Cannot expand %s as it is not a file.", this));
         }
+    }
+
+    public FileTree visit(FileVisitor visitor) {
+        if (!zipFile.exists()) {
+            return this;
+        }
+        checkIsFile();
 
         AtomicBoolean stopFlag = new AtomicBoolean();
 
         try {
-            ZipFile zip = new ZipFile(zipFile);
-            try {
-                // The iteration order of zip.getEntries() is based on the hash of the zip entry. This isn't much use
-                // to us. So, collect the entries in a map and iterate over them in alphabetical order.
-                Map<String, ZipEntry> entriesByName = new TreeMap<String, ZipEntry>();
-                Enumeration entries = zip.getEntries();
-                while (entries.hasMoreElements()) {
-                    ZipEntry entry = (ZipEntry) entries.nextElement();
-                    entriesByName.put(entry.getName(), entry);
-                }
-                Iterator<ZipEntry> sortedEntries = entriesByName.values().iterator();
-                while (!stopFlag.get() && sortedEntries.hasNext()) {
-                    ZipEntry entry = sortedEntries.next();
-                    if (entry.isDirectory()) {
-                        visitor.visitDir(new DetailsImpl(entry, zip, stopFlag));
-                    } else {
-                        visitor.visitFile(new DetailsImpl(entry, zip, stopFlag));
-                    }
+            // Only the central directory is read here, and the index is reused while the ZIP file is unchanged. The
+            // content of an entry is read from the ZIP file only if the visitor asks for it.
+            ZipIndex zip = ZipIndex.forFile(zipFile);
+            Iterator<ZipIndex.Entry> sortedEntries = zip.getEntries().iterator();
+            while (!stopFlag.get() && sortedEntries.hasNext()) {
+                ZipIndex.Entry entry = sortedEntries.next();
+                if (entry.isDirectory()) {
+                    visitor.visitDir(new DetailsImpl(entry, zip, stopFlag));
+                } else {
+                    visitor.visitFile(new DetailsImpl(entry, zip, stopFlag));
                 }
-            } finally {
-                zip.close();
             }
         } catch (Exception e) {
             throw new GradleException(String.format("Could not expand %s.", this), e);
@@ -96,12 +117,12 @@ public class ZipFileTree extends AbstractFileTree {
     }
 
     private class DetailsImpl extends AbstractFileTreeElement implements FileVisitDetails {
-        private final ZipEntry entry;
-        private final ZipFile zip;
+        private final ZipIndex.Entry entry;
+        private final ZipIndex zip;
         private final AtomicBoolean stopFlag;
         private File file;
 
-        public DetailsImpl(ZipEntry entry, ZipFile zip, AtomicBoolean stopFlag) {
+        public DetailsImpl(ZipIndex.Entry entry, ZipIndex zip, AtomicBoolean stopFlag) {
             this.entry = entry;
             this.zip = zip;
             this.stopFlag = stopFlag;
@@ -124,7 +145,7 @@ public class ZipFileTree extends AbstractFileTree {
         }
 
         public long getLastModified() {
-            return entry.getTime();
+            return entry.getLastModified();
         }
 
         public boolean isDirectory() {
@@ -137,7 +158,7 @@ public class ZipFileTree extends AbstractFileTree {
 
         public InputStream open()  {
             try {
-                return zip.getInputStream(entry);
+                return zip.open(entry);
             } catch (IOException e) {
                 throw new UncheckedIOException(e);
             }
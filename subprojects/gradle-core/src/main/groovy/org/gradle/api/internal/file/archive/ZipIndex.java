@@ -0,0 +1,359 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+import java.util.zip.ZipException;
+
+/**
+ * An index of the entries of a ZIP file, read from the central directory at the end of the file. The content of an
+ * entry is read only when the entry is opened, directly from the ZIP file.
+ *
+ * <p>Indexes are cached in memory by {@link #forFile(File)}. A cached index is used for as long as the size and last
+ * modified time of the ZIP file do not change.</p>
+ */
+public class ZipIndex {
+    static final int STORED = 0;
+    static final int DEFLATED = 8;
+    private static final int ENCRYPTED_FLAG = 1;
+    private static final int UTF8_NAMES_FLAG = 1 << 11;
+    private static final int LOCAL_FILE_HEADER = 0x04034b50;
+    private static final int LOCAL_FILE_HEADER_SIZE = 30;
+    private static final int CENTRAL_FILE_HEADER = 0x02014b50;
+    private static final int CENTRAL_FILE_HEADER_SIZE = 46;
+    private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+    private static final int MAX_COMMENT_SIZE = 0xffff;
+    private static final int MAX_CACHED_INDEXES = 100;
+    private static final Map<File, ZipIndex> CACHE = new LinkedHashMap<File, ZipIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, ZipIndex> eldest) {
+            return size() > MAX_CACHED_INDEXES;
+        }
+    };
+
+    private final File zipFile;
+    private final long length;
+    private final long lastModified;
+    private final Map<String, Entry> entriesByName;
+    private final List<Entry> entries;
+
+    private ZipIndex(File zipFile, long length, long lastModified, Map<String, Entry> entriesByName) {
+        this.zipFile = zipFile;
+        this.length = length;
+        this.lastModified = lastModified;
+        this.entriesByName = entriesByName;
+        entries = new ArrayList<Entry>(entriesByName.values());
+        Collections.sort(entries, new Comparator<Entry>() {
+            public int compare(Entry entry1, Entry entry2) {
+                return entry1.name.compareTo(entry2.name);
+            }
+        });
+    }
+
+    /**
+     * Returns the index for the given ZIP file, reusing the cached index if the file has not changed since it was
+     * read.
+     *
+     * @throws ZipException if the file is not a ZIP file.
+     */
+    public static ZipIndex forFile(File zipFile) throws IOException {
+        File key = zipFile.getAbsoluteFile();
+        synchronized (CACHE) {
+            ZipIndex index = CACHE.get(key);
+            if (index != null && index.length == key.length() && index.lastModified == key.lastModified()) {
+                return index;
+            }
+        }
+        ZipIndex index = read(key);
+        synchronized (CACHE) {
+            CACHE.put(key, index);
+        }
+        return index;
+    }
+
+    /**
+     * Reads the index of the given ZIP file, without using the cache.
+     *
+     * @throws ZipException if the file is not a ZIP file.
+     */
+    public static ZipIndex read(File zipFile) throws IOException {
+        // Take the size and timestamp before reading, so that a concurrent change invalidates the index
+        long length = zipFile.length();
+        long lastModified = zipFile.lastModified();
+        RandomAccessFile file = new RandomAccessFile(zipFile, "r");
+        try {
+            return new ZipIndex(zipFile, length, lastModified, readCentralDirectory(file, zipFile));
+        } finally {
+            file.close();
+        }
+    }
+
+    public File getZipFile() {
+        return zipFile;
+    }
+
+    /**
+     * Returns the entries of the ZIP file, sorted by name.
+     */
+    public List<Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Returns the entry with the given name, or null if there is no such entry.
+     */
+    public Entry getEntry(String name) {
+        return entriesByName.get(name);
+    }
+
+    /**
+     * Opens the uncompressed content of the given entry.
+     */
+    public InputStream open(Entry entry) throws IOException {
+        if (!entry.isReadable()) {
+            throw new ZipException(String.format("Cannot read entry '%s' of '%s' as it is encrypted or uses an unsupported compression method.", entry.name, zipFile));
+        }
+        if (entry.method == STORED) {
+            return openRaw(entry);
+        }
+        // The inflater needs an extra byte at the end of the compressed data when the ZLIB header is not used
+        InputStream content = new BoundedInputStream(openData(entry), entry.compressedSize, true);
+        return new InflaterInputStream(content, new Inflater(true), 8192) {
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    inf.end();
+                }
+            }
+        };
+    }
+
+    /**
+     * Opens the content of the given entry, as it is stored in the ZIP file.
+     */
+    public InputStream openRaw(Entry entry) throws IOException {
+        return new BoundedInputStream(openData(entry), entry.compressedSize, false);
+    }
+
+    private InputStream openData(Entry entry) throws IOException {
+        InputStream inputStream = new FileInputStream(zipFile);
+        try {
+            DataInputStream header = new DataInputStream(inputStream);
+            skipFully(inputStream, entry.offset);
+            byte[] buffer = new byte[LOCAL_FILE_HEADER_SIZE];
+            header.readFully(buffer);
+            if (getInt(buffer, 0) != LOCAL_FILE_HEADER) {
+                throw new ZipException(String.format("Could not find entry '%s' in '%s'.", entry.name, zipFile));
+            }
+            skipFully(inputStream, getShort(buffer, 26) + getShort(buffer, 28));
+            return inputStream;
+        } catch (IOException e) {
+            inputStream.close();
+            throw e;
+        }
+    }
+
+    private static void skipFully(InputStream inputStream, long count) throws IOException {
+        long remaining = count;
+        while (remaining > 0) {
+            long skipped = inputStream.skip(remaining);
+            if (skipped <= 0) {
+                throw new EOFException();
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static Map<String, Entry> readCentralDirectory(RandomAccessFile file, File zipFile) throws IOException {
+        // Search backwards for the end of central directory record, which may be followed by a comment
+        long length = file.length();
+        int tailLength = (int) Math.min(length, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_SIZE);
+        byte[] tail = new byte[tailLength];
+        file.seek(length - tailLength);
+        file.readFully(tail);
+        int end = tailLength - END_OF_CENTRAL_DIRECTORY_SIZE;
+        while (end >= 0 && getInt(tail, end) != END_OF_CENTRAL_DIRECTORY) {
+            end--;
+        }
+        if (end < 0) {
+            throw new ZipException(String.format("'%s' is not a ZIP file.", zipFile));
+        }
+        int count = getShort(tail, end + 10);
+        long directorySize = getInt(tail, end + 12);
+        long directoryOffset = getInt(tail, end + 16);
+        if (directoryOffset + directorySize > length - tailLength + end) {
+            throw new ZipException(String.format("'%s' has an invalid central directory.", zipFile));
+        }
+
+        byte[] directory = new byte[(int) directorySize];
+        file.seek(directoryOffset);
+        file.readFully(directory);
+        Map<String, Entry> entries = new HashMap<String, Entry>();
+        int pos = 0;
+        for (int i = 0; i < count; i++) {
+            if (pos + CENTRAL_FILE_HEADER_SIZE > directory.length || getInt(directory, pos) != CENTRAL_FILE_HEADER) {
+                throw new ZipException(String.format("'%s' has an invalid central directory.", zipFile));
+            }
+            int flags = getShort(directory, pos + 8);
+            int nameLength = getShort(directory, pos + 28);
+            int next = pos + CENTRAL_FILE_HEADER_SIZE + nameLength + getShort(directory, pos + 30) + getShort(directory, pos + 32);
+            if (next > directory.length) {
+                throw new ZipException(String.format("'%s' has an invalid central directory.", zipFile));
+            }
+            String name = (flags & UTF8_NAMES_FLAG) != 0
+                    ? new String(directory, pos + CENTRAL_FILE_HEADER_SIZE, nameLength, "UTF-8")
+                    : new String(directory, pos + CENTRAL_FILE_HEADER_SIZE, nameLength);
+            entries.put(name, new Entry(name, flags, getShort(directory, pos + 10), getInt(directory, pos + 12),
+                    getInt(directory, pos + 16), getInt(directory, pos + 20), getInt(directory, pos + 24),
+                    getInt(directory, pos + 42)));
+            pos = next;
+        }
+        return entries;
+    }
+
+    private static int getShort(byte[] buffer, int pos) {
+        return (buffer[pos] & 0xff) | (buffer[pos + 1] & 0xff) << 8;
+    }
+
+    private static long getInt(byte[] buffer, int pos) {
+        return ((long) getShort(buffer, pos + 2) << 16) | getShort(buffer, pos);
+    }
+
+    public static class Entry {
+        private final String name;
+        private final int flags;
+        private final int method;
+        private final long dosTime;
+        private final long crc;
+        private final long compressedSize;
+        private final long size;
+        private final long offset;
+
+        private Entry(String name, int flags, int method, long dosTime, long crc, long compressedSize, long size,
+                      long offset) {
+            this.name = name;
+            this.flags = flags;
+            this.method = method;
+            this.dosTime = dosTime;
+            this.crc = crc;
+            this.compressedSize = compressedSize;
+            this.size = size;
+            this.offset = offset;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public boolean isDirectory() {
+            return name.endsWith("/");
+        }
+
+        public int getMethod() {
+            return method;
+        }
+
+        public long getCrc() {
+            return crc;
+        }
+
+        public long getCompressedSize() {
+            return compressedSize;
+        }
+
+        public long getSize() {
+            return size;
+        }
+
+        public long getLastModified() {
+            Calendar calendar = Calendar.getInstance();
+            calendar.clear();
+            calendar.set((int) (1980 + (dosTime >> 25 & 0x7f)), (int) ((dosTime >> 21 & 0x0f) - 1),
+                    (int) (dosTime >> 16 & 0x1f), (int) (dosTime >> 11 & 0x1f), (int) (dosTime >> 5 & 0x3f),
+                    (int) (dosTime << 1 & 0x3e));
+            return calendar.getTimeInMillis();
+        }
+
+        /**
+         * Returns true if the content of this entry can be read, that is, if it is not encrypted and is either stored
+         * or deflated.
+         */
+        public boolean isReadable() {
+            if ((flags & ENCRYPTED_FLAG) != 0) {
+                return false;
+            }
+            return method == DEFLATED || method == STORED && compressedSize == size;
+        }
+    }
+
+    private static class BoundedInputStream extends FilterInputStream {
+        private long remaining;
+        private boolean pad;
+
+        private BoundedInputStream(InputStream inputStream, long limit, boolean pad) {
+            super(inputStream);
+            this.pad = pad;
+            remaining = limit;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                if (pad && length > 0) {
+                    pad = false;
+                    buffer[offset] = 0;
+                    return 1;
+                }
+                return -1;
+            }
+            int count = in.read(buffer, offset, (int) Math.min(length, remaining));
+            if (count < 0) {
+                throw new EOFException();
+            }
+            remaining -= count;
+            return count;
+        }
+
+        @Override
+        public long skip(long count) throws IOException {
+            long skipped = in.skip(Math.min(count, remaining));
+            remaining -= skipped;
+            return skipped;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return (int) Math.min(in.available(), remaining);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
@@ -58,9 +58,17 @@ public class CopyActionImpl implements CopyAction, CopySpecSource {
 
     public void execute() {
         visitor.startVisit(this);
-        for (ReadableCopySpec spec : root.getAllSpecs()) {
-            visitor.visitSpec(spec);
-            spec.getSource().visit(visitor);
+        boolean visited = false;
+        try {
+            for (ReadableCopySpec spec : root.getAllSpecs()) {
+                visitor.visitSpec(spec);
+                spec.getSource().visit(visitor);
+            }
+            visited = true;
+        } finally {
+            if (!visited) {
+                visitor.abortVisit();
+            }
         }
         visitor.endVisit();
     }
@@ -29,6 +29,12 @@ public interface CopySpecVisitor extends FileVisitor, WorkResult {
      */
     void endVisit();
 
+    /**
+     * Called instead of {@link #endVisit()} when the visit fails after it has started. Releases any resources held for
+     * the visit, and discards any incomplete output.
+     */
+    void abortVisit();
+
     /**
      * Visits a spec. Called before any of the files or directories of the spec are visited.
      */
@@ -36,6 +36,10 @@ public class DelegatingCopySpecVisitor implements CopySpecVisitor {
         getVisitor().endVisit();
     }
 
+    public void abortVisit() {
+        getVisitor().abortVisit();
+    }
+
     public void visitSpec(ReadableCopySpec spec) {
         getVisitor().visitSpec(spec);
     }
@@ -31,6 +31,9 @@ public class EmptyCopySpecVisitor implements CopySpecVisitor {
     public void endVisit() {
     }
 
+    public void abortVisit() {
+    }
+
     public void visitFile(FileVisitDetails fileDetails) {
     }
 
@@ -16,9 +16,7 @@
 package org.gradle.api.internal.file.copy;
 
 import groovy.lang.Closure;
-import groovy.text.SimpleTemplateEngine;
-import groovy.text.Template;
-import org.apache.tools.ant.util.ReaderInputStream;
+import org.apache.commons.io.IOUtils;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.Transformer;
 import org.gradle.api.UncheckedIOException;
@@ -27,10 +25,25 @@ import org.gradle.util.ConfigureUtil;
 
 import java.io.*;
 import java.lang.reflect.Constructor;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.CoderResult;
 import java.util.Map;
 
+/**
+ * A chain of filters which transform the content of a file.
+ *
+ * <p>Files which fit in memory are filtered as a single {@code String}, and the original bytes are used when the
+ * filters do not change the content. Larger files are streamed through a chain of {@code Reader}s.</p>
+ */
 public class FilterChain implements Transformer<InputStream> {
+    static final int IN_MEMORY_LIMIT = 1024 * 1024;
     private final ChainingTransformer<Reader> transformers = new ChainingTransformer<Reader>(Reader.class);
+    private final ChainingTransformer<String> textTransformers = new ChainingTransformer<String>(String.class);
 
     /**
      * Transforms the given Reader. The original Reader will be closed by the returned Reader.
@@ -43,7 +56,50 @@ public class FilterChain implements Transformer<InputStream> {
      * Transforms the given InputStream. The original InputStream will be closed by the returned InputStream.
      */
     public InputStream transform(InputStream original) {
-        return new ReaderInputStream(transform(new InputStreamReader(original)));
+        ByteArrayOutputStream head = new ByteArrayOutputStream();
+        boolean complete;
+        try {
+            complete = read(original, head, IN_MEMORY_LIMIT);
+            if (complete) {
+                original.close();
+            }
+        } catch (IOException e) {
+            closeQuietly(original);
+            throw new UncheckedIOException(e);
+        }
+
+        if (!complete) {
+            InputStream content = new SequenceInputStream(new ByteArrayInputStream(head.toByteArray()), original);
+            return new ReaderInputStream(transform(new InputStreamReader(content)), Charset.defaultCharset());
+        }
+
+        byte[] bytes = head.toByteArray();
+        String text = new String(bytes);
+        String transformed = textTransformers.transform(text);
+        if (transformed.equals(text)) {
+            return new ByteArrayInputStream(bytes);
+        }
+        return new ByteArrayInputStream(transformed.getBytes());
+    }
+
+    private static boolean read(InputStream inputStream, ByteArrayOutputStream outputStream, int limit) throws IOException {
+        byte[] buffer = new byte[8192];
+        while (outputStream.size() < limit) {
+            int count = inputStream.read(buffer, 0, Math.min(buffer.length, limit - outputStream.size()));
+            if (count < 0) {
+                return true;
+            }
+            outputStream.write(buffer, 0, count);
+        }
+        return false;
+    }
+
+    private static void closeQuietly(InputStream inputStream) {
+        try {
+            inputStream.close();
+        } catch (IOException e) {
+            // Ignore
+        }
     }
 
     public boolean hasFilters() {
@@ -55,7 +111,7 @@ public class FilterChain implements Transformer<InputStream> {
     }
 
     public void add(final Class<? extends FilterReader> filterType, final Map<String, ?> properties) {
-        transformers.add(new Transformer<Reader>() {
+        final Transformer<Reader> transformer = new Transformer<Reader>() {
             public Reader transform(Reader original) {
                 try {
                     Constructor<? extends FilterReader> constructor = filterType.getConstructor(Reader.class);
@@ -69,6 +125,19 @@ public class FilterChain implements Transformer<InputStream> {
                     throw new InvalidUserDataException("Error - Invalid filter specification for " + filterType.getName());
                 }
             }
+        };
+        transformers.add(transformer);
+        textTransformers.add(new Transformer<String>() {
+            public String transform(String original) {
+                Reader reader = transformer.transform(new StringReader(original));
+                try {
+                    return IOUtils.toString(reader);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                } finally {
+                    IOUtils.closeQuietly(reader);
+                }
+            }
         });
     }
 
@@ -78,26 +147,103 @@ public class FilterChain implements Transformer<InputStream> {
                 return new LineFilter(original, closure);
             }
         });
+        textTransformers.add(new Transformer<String>() {
+            public String transform(String original) {
+                return LineFilter.transform(original, closure);
+            }
+        });
     }
 
     public void expand(final Map<String, ?> properties) {
+        final TemplateExpander expander = new TemplateExpander(properties);
         transformers.add(new Transformer<Reader>() {
             public Reader transform(Reader original) {
                 try {
-                    Template template;
+                    String text;
                     try {
-                        SimpleTemplateEngine engine = new SimpleTemplateEngine();
-                        template = engine.createTemplate(original);
+                        text = IOUtils.toString(original);
                     } finally {
                         original.close();
                     }
-                    StringWriter writer = new StringWriter();
-                    template.make(properties).writeTo(writer);
-                    return new StringReader(writer.toString());
+                    return new StringReader(expander.expand(text));
                 } catch (IOException e) {
                     throw new UncheckedIOException(e);
                 }
             }
         });
+        textTransformers.add(new Transformer<String>() {
+            public String transform(String original) {
+                return expander.expand(original);
+            }
+        });
+    }
+
+    /**
+     * Encodes the characters of a Reader, a buffer at a time.
+     */
+    private static class ReaderInputStream extends InputStream {
+        private final Reader reader;
+        private final CharsetEncoder encoder;
+        private final CharBuffer chars = CharBuffer.allocate(8192);
+        private final ByteBuffer bytes = ByteBuffer.allocate(8192);
+        private boolean endOfInput;
+        private boolean flushed;
+
+        private ReaderInputStream(Reader reader, Charset charset) {
+            this.reader = reader;
+            encoder = charset.newEncoder().onMalformedInput(CodingErrorAction.REPLACE).onUnmappableCharacter(
+                    CodingErrorAction.REPLACE);
+            chars.flip();
+            bytes.flip();
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] buffer = new byte[1];
+            return read(buffer, 0, 1) < 0 ? -1 : buffer[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (length == 0) {
+                return 0;
+            }
+            if (!bytes.hasRemaining() && !fill()) {
+                return -1;
+            }
+            int count = Math.min(length, bytes.remaining());
+            bytes.get(buffer, offset, count);
+            return count;
+        }
+
+        private boolean fill() throws IOException {
+            bytes.clear();
+            while (bytes.position() == 0 && !flushed) {
+                if (!endOfInput) {
+                    chars.compact();
+                    endOfInput = reader.read(chars) < 0;
+                    chars.flip();
+                }
+                check(encoder.encode(chars, bytes, endOfInput));
+                if (endOfInput && !chars.hasRemaining()) {
+                    CoderResult result = encoder.flush(bytes);
+                    check(result);
+                    flushed = result.isUnderflow();
+                }
+            }
+            bytes.flip();
+            return bytes.hasRemaining();
+        }
+
+        private void check(CoderResult result) throws CharacterCodingException {
+            if (result.isError()) {
+                result.throwException();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
     }
 }
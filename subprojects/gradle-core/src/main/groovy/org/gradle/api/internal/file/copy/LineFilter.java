@@ -17,17 +17,18 @@ package org.gradle.api.internal.file.copy;
 
 import groovy.lang.Closure;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.Reader;
 
 public class LineFilter extends Reader {
     private final Closure closure;
-    private String transformedLine;
-    private int transformedIndex;
-    private final BufferedReader bufferedIn;
     private final String lineTerminator;
     private final Reader in;
+    private final char[] buffer = new char[8192];
+    private int bufferPos;
+    private int bufferLength;
+    private String transformedLine;
+    private int transformedIndex;
 
     /**
      * Creates a new filtered reader.
@@ -37,29 +38,64 @@ public class LineFilter extends Reader {
      */
     public LineFilter(Reader in, Closure closure) {
         this.in = in;
-        this.bufferedIn = new BufferedReader(in);
         this.closure = closure;
         lineTerminator = System.getProperty("line.separator");
     }
 
+    /**
+     * Filters each line of the given text, in the same way as a {@code LineFilter} reading the text would.
+     */
+    static String transform(String text, Closure closure) {
+        String lineTerminator = System.getProperty("line.separator");
+        StringBuilder result = new StringBuilder(text.length() + 64);
+        int length = text.length();
+        int start = 0;
+        while (start < length) {
+            int end = start;
+            while (end < length && text.charAt(end) != '\n' && text.charAt(end) != '\r') {
+                end++;
+            }
+            result.append(closure.call(text.substring(start, end)).toString());
+            if (end == length) {
+                break;
+            }
+            result.append(lineTerminator);
+            start = end + 1;
+            if (text.charAt(end) == '\r' && start < length && text.charAt(start) == '\n') {
+                start++;
+            }
+        }
+        return result.toString();
+    }
+
+    private boolean fill() throws IOException {
+        if (bufferPos < bufferLength) {
+            return true;
+        }
+        int count = in.read(buffer, 0, buffer.length);
+        bufferPos = 0;
+        bufferLength = Math.max(count, 0);
+        return count > 0;
+    }
+
     private String getTransformedLine() throws IOException {
         StringBuilder line = new StringBuilder();
         boolean eol = false;
-        int ch;
-        while (!eol && (ch = bufferedIn.read()) >= 0) {
-            if (ch == '\n') {
-                eol = true;
+        while (!eol && fill()) {
+            int start = bufferPos;
+            int end = start;
+            while (end < bufferLength && buffer[end] != '\n' && buffer[end] != '\r') {
+                end++;
             }
-            else if (ch == '\r') {
+            line.append(buffer, start, end - start);
+            bufferPos = end;
+            if (end < bufferLength) {
                 eol = true;
-                bufferedIn.mark(1);
-                if (bufferedIn.read() != '\n') {
-                    bufferedIn.reset();
+                bufferPos++;
+                if (buffer[end] == '\r' && fill() && buffer[bufferPos] == '\n') {
+                    bufferPos++;
                 }
             }
-            else {
-                line.append((char) ch);
-            }
         }
         if (line.length() == 0 && !eol) {
             return null;
@@ -74,9 +110,13 @@ public class LineFilter extends Reader {
     }
 
     private void ensureData() throws IOException {
-        if (transformedLine == null || transformedIndex >= transformedLine.length()) {
+        // Skip over lines which the closure transforms to an empty string
+        while (transformedLine == null || transformedIndex >= transformedLine.length()) {
             transformedLine = getTransformedLine();
             transformedIndex = 0;
+            if (transformedLine == null) {
+                return;
+            }
         }
     }
 
@@ -91,19 +131,18 @@ public class LineFilter extends Reader {
 
     @Override
     public int read(char[] cbuf, int off, int len) throws IOException {
-        for (int i = 0; i < len; i++) {
-            final int c = read();
-            if (c == -1) {
-                if (i == 0) {
-                    return -1;
-                }
-                else {
-                    return i;
-                }
+        int count = 0;
+        while (count < len) {
+            ensureData();
+            if (transformedLine == null) {
+                return count == 0 ? -1 : count;
             }
-            cbuf[off + i] = (char) c;
+            int chunk = Math.min(len - count, transformedLine.length() - transformedIndex);
+            transformedLine.getChars(transformedIndex, transformedIndex + chunk, cbuf, off + count);
+            transformedIndex += chunk;
+            count += chunk;
         }
-        return len;
+        return count;
     }
 
     public void close() throws IOException {
@@ -16,18 +16,23 @@
 package org.gradle.api.internal.file.copy;
 
 import org.gradle.api.file.FileVisitDetails;
-import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
-import org.gradle.api.internal.file.DefaultDirectoryWalker;
-import org.gradle.api.internal.file.DirectoryWalker;
 import org.gradle.util.GFileUtils;
 
 import java.io.File;
 import java.util.HashSet;
 import java.util.Set;
 
+/**
+ * A {@link CopySpecVisitor} which deletes the files and directories from the destination directory which were not
+ * visited.
+ *
+ * <p>Only the directories which contain visited files or directories are listed, so files which are up-to-date are not
+ * examined again, and stale directories are deleted without being traversed.</p>
+ */
 public class SyncCopySpecVisitor extends DelegatingCopySpecVisitor {
-    private final Set<RelativePath> visited = new HashSet<RelativePath>();
+    private final Set<String> visited = new HashSet<String>();
+    private final Set<String> visitedDirs = new HashSet<String>();
     private File baseDestDir;
     private boolean didWork;
 
@@ -37,48 +42,55 @@ public class SyncCopySpecVisitor extends DelegatingCopySpecVisitor {
 
     public void startVisit(CopyAction action) {
         baseDestDir = ((FileCopyAction) action).getDestinationDir();
+        visitedDirs.add("");
         getVisitor().startVisit(action);
     }
 
     @Override
     public void visitDir(FileVisitDetails dirDetails) {
-        visited.add(dirDetails.getRelativePath());
+        RelativePath path = dirDetails.getRelativePath();
+        add(path);
+        visitedDirs.add(path.getPathString());
         getVisitor().visitDir(dirDetails);
     }
 
     @Override
     public void visitFile(FileVisitDetails fileDetails) {
-        visited.add(fileDetails.getRelativePath());
+        add(fileDetails.getRelativePath());
         getVisitor().visitFile(fileDetails);
     }
 
+    private void add(RelativePath path) {
+        visited.add(path.getPathString());
+        for (RelativePath parent = path.getParent(); parent != null && visitedDirs.add(parent.getPathString());
+             parent = parent.getParent()) {
+            visited.add(parent.getPathString());
+        }
+    }
+
     @Override
     public void endVisit() {
-        FileVisitor visitor = new FileVisitor() {
-            public void visitDir(FileVisitDetails dirDetails) {
-                maybeDelete(dirDetails, true);
+        for (String dirPath : visitedDirs) {
+            File dir = dirPath.length() == 0 ? baseDestDir : new File(baseDestDir, dirPath);
+            String[] names = dir.list();
+            if (names == null) {
+                continue;
             }
-
-            public void visitFile(FileVisitDetails fileDetails) {
-                maybeDelete(fileDetails, false);
-            }
-
-            private void maybeDelete(FileVisitDetails fileDetails, boolean isDir) {
-                RelativePath path = fileDetails.getRelativePath();
+            for (String name : names) {
+                String path = dirPath.length() == 0 ? name : dirPath + '/' + name;
                 if (!visited.contains(path)) {
-                    if (isDir) {
-                        GFileUtils.deleteDirectory(fileDetails.getFile());
+                    File file = new File(dir, name);
+                    if (file.isDirectory()) {
+                        GFileUtils.deleteDirectory(file);
                     } else {
-                        GFileUtils.deleteQuietly(fileDetails.getFile());
+                        GFileUtils.deleteQuietly(file);
                     }
                     didWork = true;
                 }
             }
-        };
-
-        DirectoryWalker walker = new DefaultDirectoryWalker(visitor).depthFirst();
-        walker.start(baseDestDir);
+        }
         visited.clear();
+        visitedDirs.clear();
 
         getVisitor().endVisit();
     }
@@ -0,0 +1,137 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.copy;
+
+import groovy.lang.Closure;
+import groovy.lang.Writable;
+import groovy.text.SimpleTemplateEngine;
+import groovy.text.Template;
+import org.codehaus.groovy.runtime.InvokerHelper;
+import org.gradle.api.UncheckedIOException;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Map;
+
+/**
+ * Expands a template written for Groovy's {@link SimpleTemplateEngine}.
+ *
+ * <p>Compiling a template is expensive, and most templates contain nothing but plain text and references to the
+ * properties, of the form {@code $name} or {@code ${name}}. Such templates are expanded directly, by replacing each
+ * reference with the value of the property. Anything else, such as an expression, a scriptlet or an escape sequence,
+ * is handed to the template engine, so that the result is always the same as the template engine would produce.</p>
+ */
+public class TemplateExpander {
+    private final Map<String, ?> properties;
+
+    public TemplateExpander(Map<String, ?> properties) {
+        this.properties = properties;
+    }
+
+    public String expand(String text) {
+        String result = expandReferences(text);
+        return result != null ? result : expandTemplate(text);
+    }
+
+    /**
+     * Returns the expanded text, or null if the text contains something other than plain text and property
+     * references.
+     */
+    private String expandReferences(String text) {
+        int length = text.length();
+        StringWriter result = null;
+        int copied = 0;
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            if (c == '\\' || c == '\r' || c == '<' && i + 1 < length && text.charAt(i + 1) == '%') {
+                // Escape sequences, and line endings which the template engine normalises
+                return null;
+            }
+            if (c != '$') {
+                continue;
+            }
+
+            int start;
+            int end;
+            int next;
+            if (i + 1 < length && text.charAt(i + 1) == '{') {
+                start = i + 2;
+                end = identifierEnd(text, start);
+                if (end == start || end >= length || text.charAt(end) != '}') {
+                    return null;
+                }
+                next = end + 1;
+            } else {
+                start = i + 1;
+                end = identifierEnd(text, start);
+                if (end == start || end < length && text.charAt(end) == '.') {
+                    // Not a reference, or possibly a property path such as $project.name
+                    return null;
+                }
+                next = end;
+            }
+            String name = text.substring(start, end);
+            if (!properties.containsKey(name)) {
+                return null;
+            }
+            Object value = properties.get(name);
+            if (value instanceof Closure || value instanceof Writable) {
+                return null;
+            }
+
+            if (result == null) {
+                result = new StringWriter(length + 64);
+            }
+            result.write(text, copied, i - copied);
+            try {
+                InvokerHelper.write(result, value);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            copied = next;
+            i = next - 1;
+        }
+        if (result == null) {
+            return text;
+        }
+        result.write(text, copied, length - copied);
+        return result.toString();
+    }
+
+    private static int identifierEnd(String text, int start) {
+        int length = text.length();
+        if (start >= length || !Character.isJavaIdentifierStart(text.charAt(start)) || text.charAt(start) == '$') {
+            return start;
+        }
+        int end = start + 1;
+        while (end < length && Character.isJavaIdentifierPart(text.charAt(end)) && text.charAt(end) != '$') {
+            end++;
+        }
+        return end;
+    }
+
+    private String expandTemplate(String text) {
+        try {
+            Template template = new SimpleTemplateEngine().createTemplate(new StringReader(text));
+            StringWriter writer = new StringWriter();
+            template.make(properties).writeTo(writer);
+            return writer.toString();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
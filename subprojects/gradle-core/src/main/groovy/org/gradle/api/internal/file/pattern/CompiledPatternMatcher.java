@@ -0,0 +1,266 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.pattern;
+
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.specs.Spec;
+
+import java.util.*;
+
+/**
+ * Matches a path against a set of Ant style patterns, and is satisfied when any of the patterns matches the path.
+ *
+ * <p>Rather than evaluating each pattern in turn, the patterns are compiled into a single trie of pattern steps, so
+ * that patterns which start with the same steps share their state. The path is then matched by walking the trie once,
+ * one segment at a time, tracking the set of steps which the path may have reached so far. Steps without wildcards
+ * are looked up in a map, so the cost of matching a segment does not depend on the number of such steps.</p>
+ *
+ * <p>Patterns of the common form '**&#47;name' are handled separately, in the same way as {@link
+ * NameOnlyPatternMatcher}.</p>
+ */
+public class CompiledPatternMatcher implements Spec<RelativePath> {
+    private final boolean partialMatchDirs;
+    private final boolean caseSensitive;
+    private final Node root = new Node(false);
+    private final Set<String> names = new HashSet<String>();
+    private final List<WildcardStep> wildcardNames = new ArrayList<WildcardStep>();
+
+    public CompiledPatternMatcher(boolean partialMatchDirs, boolean caseSensitive, Iterable<String> patterns) {
+        this.partialMatchDirs = partialMatchDirs;
+        this.caseSensitive = caseSensitive;
+        for (String pattern : patterns) {
+            add(pattern);
+        }
+    }
+
+    private void add(String pattern) {
+        // trailing / or \ assumes **
+        if (pattern.endsWith("/") || pattern.endsWith("\\")) {
+            pattern = pattern + "**";
+        }
+        if (pattern.length() == 0) {
+            root.terminal = true;
+            return;
+        }
+        String[] parts = pattern.split("\\\\|/");
+        if (parts.length == 2 && "**".equals(parts[0]) && !"**".equals(parts[1])) {
+            // common name only case
+            if (isLiteral(parts[1])) {
+                names.add(key(parts[1]));
+            } else {
+                wildcardNames.add(new WildcardStep(parts[1], caseSensitive));
+            }
+            return;
+        }
+        Node node = root;
+        for (String part : parts) {
+            node = node.child(part);
+        }
+        node.terminal = true;
+    }
+
+    private boolean isLiteral(String step) {
+        return step.indexOf('*') < 0 && step.indexOf('?') < 0;
+    }
+
+    private String key(String name) {
+        return caseSensitive ? name : name.toLowerCase();
+    }
+
+    public boolean isSatisfiedBy(RelativePath path) {
+        if (!names.isEmpty() || !wildcardNames.isEmpty()) {
+            if (!path.isFile()) {
+                if (partialMatchDirs) {
+                    return true;
+                }
+            } else if (matchesName(path.getLastName())) {
+                return true;
+            }
+        }
+
+        List<Node> current = new ArrayList<Node>();
+        List<Node> next = new ArrayList<Node>();
+        root.addTo(current);
+        String[] segments = path.getSegments();
+        for (int i = 0; i < segments.length && !current.isEmpty(); i++) {
+            String segment = segments[i];
+            String key = null;
+            for (int j = 0; j < current.size(); j++) {
+                Node node = current.get(j);
+                if (node.greedy) {
+                    node.addTo(next);
+                }
+                if (node.literals != null) {
+                    if (key == null) {
+                        key = key(segment);
+                    }
+                    Node child = node.literals.get(key);
+                    if (child != null) {
+                        child.addTo(next);
+                    }
+                }
+                if (node.wildcards != null) {
+                    for (int k = 0; k < node.wildcards.size(); k++) {
+                        WildcardStep step = node.wildcards.get(k);
+                        if (step.matches(segment)) {
+                            step.target.addTo(next);
+                        }
+                    }
+                }
+            }
+            List<Node> tmp = current;
+            current = next;
+            next = tmp;
+            next.clear();
+        }
+
+        if (current.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < current.size(); i++) {
+            if (current.get(i).terminal) {
+                return true;
+            }
+        }
+        // the path is a prefix of some pattern
+        return partialMatchDirs && !path.isFile();
+    }
+
+    private boolean matchesName(String name) {
+        if (name == null) {
+            return false;
+        }
+        if (names.contains(key(name))) {
+            return true;
+        }
+        for (int i = 0; i < wildcardNames.size(); i++) {
+            if (wildcardNames.get(i).matches(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private class Node {
+        private final boolean greedy;
+        private boolean terminal;
+        private Map<String, Node> literals;
+        private List<WildcardStep> wildcards;
+        private Node greedyChild;
+
+        private Node(boolean greedy) {
+            this.greedy = greedy;
+        }
+
+        Node child(String step) {
+            if (step.equals("**")) {
+                if (greedy) {
+                    // consecutive ** steps are equivalent to a single one
+                    return this;
+                }
+                if (greedyChild == null) {
+                    greedyChild = new Node(true);
+                }
+                return greedyChild;
+            }
+            if (isLiteral(step)) {
+                if (literals == null) {
+                    literals = new HashMap<String, Node>();
+                }
+                String key = key(step);
+                Node child = literals.get(key);
+                if (child == null) {
+                    child = new Node(false);
+                    literals.put(key, child);
+                }
+                return child;
+            }
+            if (wildcards == null) {
+                wildcards = new ArrayList<WildcardStep>();
+            }
+            for (WildcardStep wildcard : wildcards) {
+                if (wildcard.source.equals(step)) {
+                    return wildcard.target;
+                }
+            }
+            WildcardStep wildcard = new WildcardStep(step, caseSensitive);
+            wildcard.target = new Node(false);
+            wildcards.add(wildcard);
+            return wildcard.target;
+        }
+
+        /**
+         * Adds this node to the given set of nodes, along with the nodes which can be reached from it without
+         * consuming a segment.
+         */
+        void addTo(List<Node> nodes) {
+            if (nodes.contains(this)) {
+                return;
+            }
+            nodes.add(this);
+            if (greedyChild != null) {
+                greedyChild.addTo(nodes);
+            }
+        }
+    }
+
+    /**
+     * A step containing wildcards. Checks the literal prefix and suffix of the step before using the full pattern.
+     */
+    private static class WildcardStep {
+        private final String source;
+        private final boolean caseSensitive;
+        private final String prefix;
+        private final String suffix;
+        private final boolean prefixAndSuffixOnly;
+        private final PatternStep step;
+        private Node target;
+
+        private WildcardStep(String source, boolean caseSensitive) {
+            this.source = source;
+            this.caseSensitive = caseSensitive;
+            int first = firstWildcard(source);
+            int last = Math.max(source.lastIndexOf('*'), source.lastIndexOf('?'));
+            prefix = source.substring(0, first);
+            suffix = source.substring(last + 1);
+            prefixAndSuffixOnly = first == last && source.charAt(first) == '*';
+            step = PatternStepFactory.getStep(source, true, caseSensitive);
+        }
+
+        private static int firstWildcard(String source) {
+            int star = source.indexOf('*');
+            int question = source.indexOf('?');
+            return star < 0 ? question : question < 0 ? star : Math.min(star, question);
+        }
+
+        boolean matches(String segment) {
+            if (segment.length() < prefix.length() + suffix.length()) {
+                // a '?' may match no characters, but the literal parts must always be present
+                return false;
+            }
+            if (!segment.regionMatches(!caseSensitive, 0, prefix, 0, prefix.length())) {
+                return false;
+            }
+            if (!segment.regionMatches(!caseSensitive, segment.length() - suffix.length(), suffix, 0, suffix.length())) {
+                return false;
+            }
+            if (prefixAndSuffixOnly && caseSensitive) {
+                return true;
+            }
+            return step.matches(segment, true);
+        }
+    }
+}
@@ -47,4 +47,12 @@ public class PatternMatcherFactory {
             return new DefaultPatternMatcher(partialMatchDirs, caseSensitive, parts);
         }
     }
+
+    /**
+     * Returns a matcher which is satisfied when any of the given patterns matches. The patterns are compiled into a
+     * single matcher, which is cheaper to evaluate than a matcher per pattern.
+     */
+    public static Spec<RelativePath> getPatternsMatcher(boolean partialMatchDirs, boolean caseSensitive, Iterable<String> patterns) {
+        return new CompiledPatternMatcher(partialMatchDirs, caseSensitive, patterns);
+    }
 }
@@ -24,6 +24,7 @@ import org.gradle.api.internal.GradleDistributionLocator;
 import org.gradle.cache.AutoCloseCacheFactory;
 import org.gradle.cache.CacheFactory;
 import org.gradle.cache.DefaultCacheFactory;
+import org.gradle.groovy.scripts.ScriptClassCache;
 import org.gradle.initialization.ClassLoaderFactory;
 import org.gradle.initialization.CommandLineConverter;
 import org.gradle.initialization.DefaultClassLoaderFactory;
@@ -60,6 +61,10 @@ public class GlobalServicesRegistry extends DefaultServiceRegistry {
         return new DefaultClassLoaderFactory(get(ClassPathRegistry.class));
     }
 
+    protected ScriptClassCache createScriptClassCache() {
+        return new ScriptClassCache(get(ClassLoaderFactory.class).getRootClassLoader());
+    }
+
     protected ListenerManager createListenerManager() {
         return new DefaultListenerManager();
     }
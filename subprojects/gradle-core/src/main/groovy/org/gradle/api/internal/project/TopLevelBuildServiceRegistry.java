@@ -251,7 +251,9 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
         FileSnapshotter fileSnapshotter = new DefaultFileSnapshotter(
                 new CachingHasher(
                         new DefaultHasher(),
-                        cacheRepository));
+                        cacheRepository,
+                        get(ExecutorFactory.class)),
+                cacheRepository);
 
         FileSnapshotter outputFilesSnapshotter = new OutputFilesSnapshotter(fileSnapshotter, new RandomLongIdGenerator(), cacheRepository);
         return new ShortCircuitTaskArtifactStateRepository(
@@ -265,7 +267,9 @@ public class TopLevelBuildServiceRegistry extends DefaultServiceRegistry impleme
         ScriptExecutionListener scriptExecutionListener = get(ListenerManager.class).getBroadcaster(ScriptExecutionListener.class);
         return new DefaultScriptCompilerFactory(
                 new CachingScriptCompilationHandler(
-                        new DefaultScriptCompilationHandler()),
+                        new DefaultScriptCompilationHandler(),
+                        get(ScriptClassCache.class),
+                        get(ListenerManager.class).getBroadcaster(ScriptClassCacheListener.class)),
                 new DefaultScriptRunnerFactory(
                         scriptExecutionListener),
                 get(CacheRepository.class));
@@ -16,8 +16,8 @@
 package org.gradle.api.tasks.bundling;
 
 import org.gradle.api.internal.file.FileResolver;
+import org.gradle.api.internal.file.archive.ZipCopyAction;
 import org.gradle.api.internal.file.archive.ZipCopySpecVisitor;
-import org.gradle.api.internal.file.copy.ArchiveCopyAction;
 import org.gradle.api.internal.file.copy.CopyActionImpl;
 
 import java.io.File;
@@ -30,23 +30,48 @@ import java.io.File;
 public class Zip extends AbstractArchiveTask {
     public static final String ZIP_EXTENSION = "zip";
     private final CopyActionImpl action;
+    private boolean incremental;
 
     public Zip() {
         setExtension(ZIP_EXTENSION);
-        action = new ZipCopyAction(getServices().get(FileResolver.class));
+        action = new ZipCopyActionImpl(getServices().get(FileResolver.class));
     }
 
     protected CopyActionImpl getCopyAction() {
         return action;
     }
 
-    private class ZipCopyAction extends CopyActionImpl implements ArchiveCopyAction {
-        public ZipCopyAction(FileResolver fileResolver) {
+    /**
+     * Returns whether this archive is updated incrementally. When true, and the archive already exists, the compressed
+     * content of each entry whose content has not changed is copied from the existing archive, rather than being
+     * compressed again. The default is false.
+     *
+     * @return true if this archive is updated incrementally.
+     */
+    public boolean isIncremental() {
+        return incremental;
+    }
+
+    /**
+     * Specifies whether this archive is updated incrementally.
+     *
+     * @param incremental true if this archive should be updated incrementally.
+     */
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    private class ZipCopyActionImpl extends CopyActionImpl implements ZipCopyAction {
+        public ZipCopyActionImpl(FileResolver fileResolver) {
             super(fileResolver, new ZipCopySpecVisitor());
         }
 
         public File getArchivePath() {
             return Zip.this.getArchivePath();
         }
+
+        public boolean isIncremental() {
+            return Zip.this.isIncremental();
+        }
     }
 }
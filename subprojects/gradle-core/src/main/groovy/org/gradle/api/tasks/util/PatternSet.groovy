@@ -94,8 +94,8 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
         boolean hasIncludes = includes || includeSpecs
         if (hasIncludes) {
             List<Spec<FileTreeElement>> matchers = new ArrayList<Spec<FileTreeElement>>()
-            for (String include: includes) {
-                matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternMatcher(true, caseSensitive, include)))
+            if (includes) {
+                matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternsMatcher(true, caseSensitive, includes)))
             }
             matchers.addAll(includeSpecs)
             includeSpec = new OrSpec<FileTreeElement>(matchers as Spec[])
@@ -108,8 +108,8 @@ class PatternSet implements AntBuilderAware, PatternFilterable {
         }
 
         List<Spec<FileTreeElement>> matchers = new ArrayList<Spec<FileTreeElement>>()
-        for (String exclude: allExcludes) {
-            matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternMatcher(false, caseSensitive, exclude)))
+        if (allExcludes) {
+            matchers.add(new RelativePathSpec(PatternMatcherFactory.getPatternsMatcher(false, caseSensitive, allExcludes)))
         }
         matchers.addAll(excludeSpecs)
         Spec<FileTreeElement> excludeSpec = new NotSpec<FileTreeElement>(new OrSpec<FileTreeElement>(matchers as Spec[]))
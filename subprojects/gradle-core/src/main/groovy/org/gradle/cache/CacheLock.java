@@ -0,0 +1,271 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.logging.Logger;
+import org.gradle.api.logging.Logging;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Controls access to a cache by the threads of this process and by other processes. The lock can be held by any
+ * number of readers, or by a single writer. Uses a {@link ReentrantReadWriteLock} to coordinate the threads of this
+ * process, and a {@link FileLock} on a lock file to coordinate with other processes.
+ *
+ * <p>The file lock is held only while this process holds the lock: it is acquired, shared for readers and exclusive for
+ * a writer, when the first thread of this process acquires the lock, and released when the last thread releases it. So,
+ * several processes can read from the cache at the same time, and a process waits for other processes only while they
+ * are reading or writing an entry.</p>
+ *
+ * <p>The lock file also contains a count of the modifications made to the cache, which is incremented when a writer
+ * first calls {@link #markModified()} while this process holds the file lock. When the count has changed since this
+ * process last held the file lock, the change action is run before the lock is granted, so that any state held in
+ * memory can be discarded. The change action is run by a single thread while no other thread of this process uses the
+ * cache, and with the file lock held exclusively, so that it can modify the cache.</p>
+ */
+public class CacheLock {
+    private static final Logger LOGGER = Logging.getLogger(CacheLock.class);
+    private static final long UNKNOWN = -1;
+    private static final long STALE = -2;
+    private final File lockFile;
+    private final Runnable changeAction;
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Object fileLockMonitor = new Object();
+    private RandomAccessFile file;
+    private FileLock fileLock;
+    private int readers;
+    private long modificationCount;
+    private boolean modified;
+    private boolean runningChangeAction;
+
+    public CacheLock(File lockFile) {
+        this(lockFile, null);
+    }
+
+    /**
+     * Creates a lock.
+     *
+     * @param lockFile The lock file to use.
+     * @param changeAction The action to run when the cache has been modified by another process. May be null.
+     */
+    public CacheLock(File lockFile, Runnable changeAction) {
+        this.lockFile = lockFile;
+        this.changeAction = changeAction;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("lock file '%s'", lockFile);
+    }
+
+    /**
+     * Acquires a shared lock. Blocks until any writer has released the lock. A writer can also acquire the shared
+     * lock.
+     */
+    public void lockShared() {
+        lock.readLock().lock();
+        if (lock.isWriteLockedByCurrentThread()) {
+            // Already holds the file lock exclusively
+            return;
+        }
+        try {
+            synchronized (fileLockMonitor) {
+                if (readers == 0) {
+                    acquireFileLock(true);
+                }
+                readers++;
+            }
+        } catch (RuntimeException e) {
+            lock.readLock().unlock();
+            throw e;
+        }
+    }
+
+    public void unlockShared() {
+        if (lock.isWriteLockedByCurrentThread()) {
+            lock.readLock().unlock();
+            return;
+        }
+        try {
+            synchronized (fileLockMonitor) {
+                readers--;
+                if (readers == 0) {
+                    releaseFileLock();
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Acquires an exclusive lock. Blocks until all readers and any other writer have released the lock. The lock is
+     * reentrant, but a reader cannot upgrade to an exclusive lock.
+     */
+    public void lockExclusive() {
+        lock.writeLock().lock();
+        if (lock.writeLock().getHoldCount() > 1) {
+            return;
+        }
+        try {
+            synchronized (fileLockMonitor) {
+                acquireFileLock(false);
+            }
+        } catch (RuntimeException e) {
+            lock.writeLock().unlock();
+            throw e;
+        }
+    }
+
+    public void unlockExclusive() {
+        try {
+            if (lock.writeLock().getHoldCount() == 1) {
+                synchronized (fileLockMonitor) {
+                    releaseFileLock();
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Records that the cache has been modified by the current writer, or by the change action.
+     */
+    public void markModified() {
+        synchronized (fileLockMonitor) {
+            assert lock.isWriteLockedByCurrentThread() || runningChangeAction;
+            if (!modified) {
+                // Update the count straight away, so that other processes see the change even if this process
+                // does not release the file lock cleanly
+                writeModificationCount(modificationCount + 1);
+                modified = true;
+            }
+        }
+    }
+
+    /**
+     * Closes the lock file. The lock must not be held by any thread.
+     */
+    public void close() {
+        synchronized (fileLockMonitor) {
+            if (file == null) {
+                return;
+            }
+            try {
+                file.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                file = null;
+            }
+        }
+    }
+
+    private void acquireFileLock(boolean shared) {
+        try {
+            if (file == null) {
+                lockFile.getParentFile().mkdirs();
+                file = new RandomAccessFile(lockFile, "rw");
+                modificationCount = UNKNOWN;
+            }
+            lockFile(shared);
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not lock %s.", this), e);
+        }
+        boolean acquired = false;
+        try {
+            long currentCount = readModificationCount(shared);
+            if (currentCount != modificationCount) {
+                boolean changedByOtherProcess = modificationCount != UNKNOWN;
+                if (changedByOtherProcess && changeAction != null) {
+                    if (shared) {
+                        // The change action may need to modify the cache, so hold the file lock exclusively. No other
+                        // thread of this process is using the cache, as there are no readers and no writer
+                        fileLock.release();
+                        fileLock = null;
+                        lockFile(false);
+                        currentCount = readModificationCount(false);
+                    }
+                    modificationCount = currentCount;
+                    runningChangeAction = true;
+                    try {
+                        changeAction.run();
+                    } finally {
+                        runningChangeAction = false;
+                    }
+                } else {
+                    modificationCount = currentCount;
+                }
+            }
+            acquired = true;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not lock %s.", this), e);
+        } finally {
+            if (!acquired) {
+                modificationCount = STALE;
+                releaseFileLock();
+            }
+        }
+    }
+
+    private void lockFile(boolean shared) throws IOException {
+        fileLock = file.getChannel().tryLock(0, Long.MAX_VALUE, shared);
+        if (fileLock == null) {
+            LOGGER.debug("Waiting for {} to be released by another process.", this);
+            fileLock = file.getChannel().lock(0, Long.MAX_VALUE, shared);
+        }
+    }
+
+    private void releaseFileLock() {
+        modified = false;
+        if (fileLock == null) {
+            return;
+        }
+        try {
+            fileLock.release();
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not unlock %s.", this), e);
+        } finally {
+            fileLock = null;
+        }
+    }
+    private long readModificationCount(boolean shared) throws IOException {
+        if (file.length() < 8) {
+            if (!shared) {
+                writeModificationCount(0);
+            }
+            return 0;
+        }
+        file.seek(0);
+        return file.readLong();
+    }
+
+    private void writeModificationCount(long count) {
+        try {
+            file.seek(0);
+            file.writeLong(count);
+            modificationCount = count;
+        } catch (IOException e) {
+            throw new UncheckedIOException(String.format("Could not update %s.", this), e);
+        }
+    }
+}
@@ -24,4 +24,12 @@ public interface CacheRepository {
      * @return The builder.
      */
     CacheBuilder cache(String key);
+
+    /**
+     * Closes the given cache, which was opened using a builder returned by this repository. The cache should not be
+     * used after it has been closed.
+     *
+     * @param cache The cache to close.
+     */
+    void close(PersistentCache cache);
 }
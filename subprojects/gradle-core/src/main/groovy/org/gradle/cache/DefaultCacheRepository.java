@@ -41,6 +41,10 @@ public class DefaultCacheRepository implements CacheRepository {
         return new PersistentCacheBuilder(key);
     }
 
+    public void close(PersistentCache cache) {
+        factory.close(cache);
+    }
+
     private class PersistentCacheBuilder implements CacheBuilder {
         private final String key;
         private Map<String, ?> properties = Collections.emptyMap();
@@ -28,6 +28,7 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
     private final File dir;
     private final File propertiesFile;
     private final Properties properties = new Properties();
+    private final CacheLock lock;
     private boolean valid;
     private BTreePersistentIndexedCache indexedCache;
     private SimpleStateCache stateCache;
@@ -36,8 +37,15 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
         this.dir = dir;
         propertiesFile = new File(dir, "cache.properties");
         this.properties.putAll(properties);
-        determineIfCacheIsValid(cacheUsage, properties);
-        buildCacheDir();
+        // The lock file lives outside the cache directory, as the directory may be deleted
+        lock = new CacheLock(new File(dir.getParentFile(), dir.getName() + ".lock"));
+        lock.lockExclusive();
+        try {
+            determineIfCacheIsValid(cacheUsage, properties);
+            buildCacheDir();
+        } finally {
+            lock.unlockExclusive();
+        }
     }
 
     @Override
@@ -74,7 +82,7 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
         valid = true;
     }
 
-    public <K, V> BTreePersistentIndexedCache<K, V> openIndexedCache(Serializer<V> serializer) {
+    public synchronized <K, V> BTreePersistentIndexedCache<K, V> openIndexedCache(Serializer<V> serializer) {
         if (indexedCache == null) {
             indexedCache = new BTreePersistentIndexedCache<K,V>(this, serializer);
         }
@@ -85,7 +93,7 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
         return openIndexedCache(new DefaultSerializer<V>());
     }
 
-    public <T> SimpleStateCache<T> openStateCache() {
+    public synchronized <T> SimpleStateCache<T> openStateCache() {
         if (stateCache == null) {
             stateCache = new SimpleStateCache<T>(this, new DefaultSerializer<T>());
         }
@@ -105,13 +113,19 @@ public class DefaultPersistentDirectoryCache implements PersistentCache {
     }
 
     public void markValid() {
-        GUtil.saveProperties(properties, propertiesFile);
+        lock.lockExclusive();
+        try {
+            GUtil.saveProperties(properties, propertiesFile);
+        } finally {
+            lock.unlockExclusive();
+        }
         valid = true;
     }
 
-    public void close() {
+    public synchronized void close() {
         if (indexedCache != null) {
             indexedCache.close();
         }
+        lock.close();
     }
 }
@@ -16,6 +16,7 @@
 package org.gradle.cache.btree;
 
 import org.gradle.api.UncheckedIOException;
+import org.gradle.cache.CacheLock;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
 import org.gradle.cache.Serializer;
@@ -28,8 +29,6 @@ import java.util.*;
 // todo - stream serialised value to file
 // todo - handle hash collisions
 // todo - don't store null links to child blocks in leaf index blocks
-// todo - align block boundaries
-// todo - concurrency control
 // todo - remove the check-sum from each block
 // todo - merge small values into a single data block
 // todo - discard when file corrupt
@@ -37,7 +36,28 @@ import java.util.*;
 // todo - free list leaks disk space
 // todo - merge adjacent free blocks
 // todo - use more efficient lookup for free block with nearest size
+/**
+ * A {@link PersistentIndexedCache} which stores its entries in a B-tree in a single file. Each read and write of an
+ * entry holds the {@link CacheLock} of the cache, shared for reads and exclusive for writes, so that the cache can be
+ * used by several threads and processes at the same time.
+ *
+ * <p>Readers do not modify the blocks they traverse, so any number of threads can look up entries concurrently. The
+ * blocks held in memory are shared by these threads, and {@link CachingBlockStore} loads each missing block once.</p>
+ */
 public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache<K, V> {
+    /**
+     * The system property which selects the {@link MappedFileBlockStore} for caches which do not specify a store.
+     */
+    public static final String MAPPED_FILE_PROPERTY = "org.gradle.cache.mapped";
+    /**
+     * The system property which specifies the maximum number of blocks to keep in memory for each cache.
+     */
+    public static final String MAX_CACHED_BLOCKS_PROPERTY = "org.gradle.cache.maxCachedBlocks";
+    /**
+     * The system property which specifies the maximum total size, in bytes, of the blocks to keep in memory for
+     * each cache.
+     */
+    public static final String MAX_CACHED_BYTES_PROPERTY = "org.gradle.cache.maxCachedBytes";
     private static final Logger LOGGER = LoggerFactory.getLogger(BTreePersistentIndexedCache.class);
     private final File cacheFile;
     private final PersistentCache backingCache;
@@ -45,6 +65,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     private final short maxChildIndexEntries;
     private final int minIndexChildNodes;
     private final StateCheckBlockStore store;
+    private final CacheLock lock;
+    private final CachingBlockStore cachingStore;
     private HeaderBlock header;
 
     public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer) {
@@ -53,13 +75,34 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
 
     public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer,
                                        short maxChildIndexEntries, int maxFreeListEntries) {
+        this(backingCache, serializer, maxChildIndexEntries, maxFreeListEntries, System.getProperty(
+                MAPPED_FILE_PROPERTY, "false").equals("true"));
+    }
+
+    /**
+     * Creates a cache.
+     *
+     * @param useMappedFile When true, accesses the cache file using a memory mapped region. When false, uses
+     * a system call for each read and write.
+     */
+    public BTreePersistentIndexedCache(PersistentCache backingCache, Serializer<V> serializer,
+                                       short maxChildIndexEntries, int maxFreeListEntries, boolean useMappedFile) {
         this.backingCache = backingCache;
         this.serializer = serializer;
         this.maxChildIndexEntries = maxChildIndexEntries;
         this.minIndexChildNodes = maxChildIndexEntries / 2;
         cacheFile = new File(backingCache.getBaseDir(), "cache.bin");
-        BlockStore cachingStore = new CachingBlockStore(new FileBackedBlockStore(cacheFile), IndexBlock.class, FreeListBlockStore.FreeListBlock.class);
+        BlockStore fileStore = useMappedFile ? new MappedFileBlockStore(cacheFile) : new FileBackedBlockStore(cacheFile);
+        cachingStore = new CachingBlockStore(fileStore, Integer.getInteger(MAX_CACHED_BLOCKS_PROPERTY,
+                CachingBlockStore.DEFAULT_MAX_BLOCKS), Long.getLong(MAX_CACHED_BYTES_PROPERTY,
+                CachingBlockStore.DEFAULT_MAX_BYTES), CachingBlockStore.EvictionPolicy.LEAST_RECENTLY_USED,
+                IndexBlock.class, FreeListBlockStore.FreeListBlock.class, DataBlock.class);
         store = new StateCheckBlockStore(new FreeListBlockStore(cachingStore, maxFreeListEntries));
+        lock = new CacheLock(new File(backingCache.getBaseDir(), "cache.lock"), new Runnable() {
+            public void run() {
+                reopen();
+            }
+        });
         try {
             open();
         } catch (Exception e) {
@@ -73,10 +116,32 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     private void open() throws Exception {
+        lock.lockExclusive();
         try {
             doOpen();
         } catch (CorruptedCacheException e) {
             rebuild();
+        } finally {
+            lock.unlockExclusive();
+        }
+    }
+
+    /**
+     * Discards the state held in memory, as the cache has been modified by another process. Called while holding the
+     * exclusive lock, as re-initialising the cache file modifies it.
+     */
+    private void reopen() {
+        if (!store.isOpen()) {
+            return;
+        }
+        store.close();
+        try {
+            doOpen();
+        } catch (CorruptedCacheException e) {
+            // Rebuild when the cache is next used
+            header = null;
+        } catch (Exception e) {
+            throw new UncheckedIOException(String.format("Could not open %s.", this), e);
         }
     }
 
@@ -97,6 +162,7 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         };
         Runnable initAction = new Runnable() {
             public void run() {
+                lock.markModified();
                 header = new HeaderBlock();
                 store.write(header);
                 header.index.newRoot();
@@ -112,13 +178,23 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     public V get(K key) {
         try {
             try {
-                DataBlock block = header.getRoot().get(key);
-                if (block != null) {
-                    return block.getValue();
+                lock.lockShared();
+                try {
+                    DataBlock block = getHeader().index.readRoot().get(key);
+                    if (block != null) {
+                        return block.getValue();
+                    }
+                    return null;
+                } finally {
+                    lock.unlockShared();
                 }
-                return null;
             } catch (CorruptedCacheException e) {
-                rebuild();
+                lock.lockExclusive();
+                try {
+                    rebuild();
+                } finally {
+                    lock.unlockExclusive();
+                }
                 return null;
             }
         } catch (Exception e) {
@@ -127,10 +203,12 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     }
 
     public void put(K key, V value) {
+        lock.lockExclusive();
         try {
+            lock.markModified();
             String keyString = key.toString();
             long hashCode = keyString.hashCode();
-            Lookup lookup = header.getRoot().find(hashCode);
+            Lookup lookup = getHeaderForUpdate().getRoot().find(hashCode);
             boolean needNewBlock = true;
             if (lookup.entry != null) {
                 DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
@@ -147,24 +225,44 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not add entry '%s' to %s.", key, this), e);
+        } finally {
+            lock.unlockExclusive();
         }
     }
 
     public void remove(K key) {
+        lock.lockExclusive();
         try {
-            Lookup lookup = header.getRoot().find(key.toString());
+            Lookup lookup = getHeaderForUpdate().getRoot().find(key.toString());
             if (lookup.entry == null) {
                 return;
             }
+            lock.markModified();
             lookup.indexBlock.remove(lookup.entry);
             DataBlock block = store.read(lookup.entry.dataBlock, DataBlock.class);
             store.remove(block);
             store.flush();
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Could not remove entry '%s' from %s.", key, this), e);
+        } finally {
+            lock.unlockExclusive();
         }
     }
 
+    private HeaderBlock getHeader() {
+        if (header == null) {
+            throw new CorruptedCacheException(String.format("Could not read header of %s.", this));
+        }
+        return header;
+    }
+
+    private HeaderBlock getHeaderForUpdate() throws Exception {
+        if (header == null) {
+            rebuild();
+        }
+        return header;
+    }
+
     private IndexBlock load(BlockPointer pos, IndexRoot root, IndexBlock parent, int index) {
         IndexBlock block = store.read(pos, IndexBlock.class);
         block.root = root;
@@ -182,28 +280,58 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
     }
 
+    /**
+     * Returns the statistics for the in-memory block cache of this cache.
+     */
+    public BlockCacheStatistics getStatistics() {
+        return cachingStore.getStatistics();
+    }
+
     public void close() {
+        if (!store.isOpen()) {
+            return;
+        }
+        LOGGER.debug(String.format("Closing %s. Block cache %s.", this, getStatistics()));
         try {
-            store.close();
+            lock.lockExclusive();
+            try {
+                // Closing the store may discard unused space at the end of the file
+                lock.markModified();
+                closeStore();
+            } finally {
+                lock.unlockExclusive();
+            }
+            lock.close();
         } catch (Exception e) {
             throw new UncheckedIOException(e);
         }
     }
 
+    private void closeStore() {
+        store.close();
+        header = null;
+    }
+
     public boolean isOpen() {
         return store.isOpen();
     }
 
     private void rebuild() throws Exception {
         LOGGER.warn(String.format("%s is corrupt. Discarding.", this));
+        lock.markModified();
         store.clear();
-        close();
+        closeStore();
         doOpen();
     }
 
     public void verify() {
         try {
-            doVerify();
+            lock.lockShared();
+            try {
+                doVerify();
+            } finally {
+                lock.unlockShared();
+            }
         } catch (Exception e) {
             throw new UncheckedIOException(String.format("Some problems were found when checking the integrity of %s.",
                     this), e);
@@ -289,6 +417,13 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             return load(rootPos, this, null, 0);
         }
 
+        /**
+         * Returns the root block for a lookup, without attaching it to the tree as {@link #getRoot()} does.
+         */
+        public IndexBlock readRoot() {
+            return store.read(rootPos, IndexBlock.class);
+        }
+
         public IndexBlock newRoot() {
             IndexBlock block = new IndexBlock();
             store.write(block);
@@ -432,13 +567,26 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
             maybeSplit();
         }
 
+        /**
+         * Returns the data block for the given key. Unlike {@link #find(String)}, does not modify this block or the
+         * blocks below it, so can be called by several readers at the same time.
+         */
         public DataBlock get(K key) throws Exception {
-            Lookup lookup = find(key.toString());
-            if (lookup.entry == null) {
-                return null;
+            IndexEntry searchEntry = new IndexEntry(key.toString().hashCode());
+            IndexBlock current = this;
+            while (true) {
+                int index = Collections.binarySearch(current.entries, searchEntry);
+                if (index >= 0) {
+                    return store.read(current.entries.get(index).dataBlock, DataBlock.class);
+                }
+                index = -index - 1;
+                BlockPointer childBlockPos = index == current.entries.size() ? current.tailPos
+                        : current.entries.get(index).childIndexBlock;
+                if (childBlockPos.isNull()) {
+                    return null;
+                }
+                current = store.read(childBlockPos, IndexBlock.class);
             }
-
-            return store.read(lookup.entry.dataBlock, DataBlock.class);
         }
 
         public Lookup find(String keyString) throws Exception {
@@ -625,13 +773,11 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
     private class DataBlock extends BlockPayload {
         private int size;
         private byte[] serialisedValue;
-        private V value;
 
         private DataBlock() {
         }
 
         public DataBlock(String key, V value) throws Exception {
-            this.value = value;
             setValue(value);
             size = serialisedValue.length;
         }
@@ -643,10 +789,8 @@ public class BTreePersistentIndexedCache<K, V> implements PersistentIndexedCache
         }
 
         public V getValue() throws Exception {
-            if (value == null) {
-                value = serializer.read(new ByteArrayInputStream(serialisedValue));
-            }
-            return value;
+            // Data blocks are cached, so deserialize a new value each time in case the caller modifies it
+            return serializer.read(new ByteArrayInputStream(serialisedValue));
         }
 
         @Override
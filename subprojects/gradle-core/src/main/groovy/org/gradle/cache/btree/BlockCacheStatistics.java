@@ -0,0 +1,63 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+/**
+ * Counts the reads served by a {@link CachingBlockStore}, and the blocks it has discarded.
+ */
+public class BlockCacheStatistics {
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    /**
+     * Returns the number of reads which were served from memory.
+     */
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * Returns the number of reads which were passed through to the backing store.
+     */
+    public long getMisses() {
+        return misses;
+    }
+
+    /**
+     * Returns the number of blocks discarded to keep the cache within its bounds.
+     */
+    public long getEvictions() {
+        return evictions;
+    }
+
+    void hit() {
+        hits++;
+    }
+
+    void miss() {
+        misses++;
+    }
+
+    void evicted() {
+        evictions++;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("hits: %d, misses: %d, evictions: %d", hits, misses, evictions);
+    }
+}
@@ -15,38 +15,83 @@
  */
 package org.gradle.cache.btree;
 
-import org.apache.commons.collections.map.LRUMap;
-
 import java.util.*;
 
+/**
+ * A {@link BlockStore} which keeps recently used blocks of the given types in memory. The cache is bounded both by
+ * number of blocks and by the total size of the blocks.
+ *
+ * <p>{@link #read(BlockPointer, Class)} can be called by several threads at the same time, provided that no other
+ * method is called concurrently. A block which is not in memory is loaded holding a lock for its stripe, so that
+ * concurrent reads of the same block load it only once, and reads of blocks in other stripes are not blocked.</p>
+ */
 public class CachingBlockStore implements BlockStore {
+    public static final int DEFAULT_MAX_BLOCKS = 1000;
+    public static final long DEFAULT_MAX_BYTES = 8 * 1024 * 1024;
+    private static final int STRIPES = 16;
+
+    /**
+     * Determines which block is discarded when the cache is full.
+     */
+    public enum EvictionPolicy {
+        /**
+         * Discards the block which was least recently read or written.
+         */
+        LEAST_RECENTLY_USED,
+        /**
+         * Discards the block which was added to the cache first.
+         */
+        FIRST_IN_FIRST_OUT
+    }
+
     private final BlockStore store;
     private final Map<BlockPointer, BlockPayload> dirty = new LinkedHashMap<BlockPointer, BlockPayload>();
-    private final Map<BlockPointer, BlockPayload> indexBlockCache = new LRUMap(100);
+    private final Map<BlockPointer, CachedBlock> blockCache;
     private final Set<Class<?>> cachableTypes = new HashSet<Class<?>>();
+    private final int maxBlocks;
+    private final long maxBytes;
+    private final BlockCacheStatistics statistics = new BlockCacheStatistics();
+    private final Object[] stripes = new Object[STRIPES];
+    private long cachedBytes;
 
     public CachingBlockStore(BlockStore store, Class<? extends BlockPayload>... cacheableBlockTypes) {
+        this(store, DEFAULT_MAX_BLOCKS, DEFAULT_MAX_BYTES, EvictionPolicy.LEAST_RECENTLY_USED, cacheableBlockTypes);
+    }
+
+    public CachingBlockStore(BlockStore store, int maxBlocks, long maxBytes, EvictionPolicy evictionPolicy,
+                             Class<? extends BlockPayload>... cacheableBlockTypes) {
         this.store = store;
+        this.maxBlocks = maxBlocks;
+        this.maxBytes = maxBytes;
+        blockCache = new LinkedHashMap<BlockPointer, CachedBlock>(16, 0.75f,
+                evictionPolicy == EvictionPolicy.LEAST_RECENTLY_USED);
         cachableTypes.addAll(Arrays.asList(cacheableBlockTypes));
+        for (int i = 0; i < stripes.length; i++) {
+            stripes[i] = new Object();
+        }
+    }
+
+    public BlockCacheStatistics getStatistics() {
+        return statistics;
     }
 
     public void open(Runnable initAction, Factory factory) {
         store.open(initAction, factory);
     }
 
-    public void close() {
+    public synchronized void close() {
         flush();
-        indexBlockCache.clear();
+        discardCachedBlocks();
         store.close();
     }
 
-    public void clear() {
+    public synchronized void clear() {
         dirty.clear();
-        indexBlockCache.clear();
+        discardCachedBlocks();
         store.clear();
     }
 
-    public void flush() {
+    public synchronized void flush() {
         Iterator<BlockPayload> iterator = dirty.values().iterator();
         while (iterator.hasNext()) {
             BlockPayload block = iterator.next();
@@ -60,41 +105,104 @@ public class CachingBlockStore implements BlockStore {
         store.attach(block);
     }
 
-    public void remove(BlockPayload block) {
+    public synchronized void remove(BlockPayload block) {
         dirty.remove(block.getPos());
-        indexBlockCache.remove(block.getPos());
+        uncache(block.getPos());
         store.remove(block);
     }
 
-    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+    public synchronized <T extends BlockPayload> T readFirst(Class<T> payloadType) {
         T block = store.readFirst(payloadType);
         maybeCache(block);
         return block;
     }
 
     public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
-        T block = payloadType.cast(dirty.get(pos));
+        T block = getCached(pos, payloadType);
         if (block != null) {
             return block;
         }
-        block = payloadType.cast(indexBlockCache.get(pos));
+        synchronized (stripes[(pos.hashCode() & Integer.MAX_VALUE) % stripes.length]) {
+            // Another thread may have loaded the block while this thread was waiting for the stripe
+            block = getCached(pos, payloadType);
+            if (block != null) {
+                return block;
+            }
+            block = store.read(pos, payloadType);
+            synchronized (this) {
+                statistics.miss();
+                maybeCache(block);
+            }
+            return block;
+        }
+    }
+
+    private synchronized <T extends BlockPayload> T getCached(BlockPointer pos, Class<T> payloadType) {
+        T block = payloadType.cast(dirty.get(pos));
         if (block != null) {
+            statistics.hit();
             return block;
         }
-        block = store.read(pos, payloadType);
-        maybeCache(block);
-        return block;
+        CachedBlock cached = blockCache.get(pos);
+        if (cached != null) {
+            statistics.hit();
+            return payloadType.cast(cached.payload);
+        }
+        return null;
     }
 
-    public void write(BlockPayload block) {
+    public synchronized void write(BlockPayload block) {
         store.attach(block);
         maybeCache(block);
         dirty.put(block.getPos(), block);
     }
 
     private <T extends BlockPayload> void maybeCache(T block) {
-        if (cachableTypes.contains(block.getClass())) {
-            indexBlockCache.put(block.getPos(), block);
+        if (!cachableTypes.contains(block.getClass())) {
+            return;
+        }
+        int size = block.getBlock().getSize();
+        if (size > maxBytes) {
+            uncache(block.getPos());
+            return;
+        }
+        CachedBlock previous = blockCache.put(block.getPos(), new CachedBlock(block, size));
+        if (previous != null) {
+            cachedBytes -= previous.size;
+        }
+        cachedBytes += size;
+        evict();
+    }
+
+    private void evict() {
+        Iterator<CachedBlock> iterator = blockCache.values().iterator();
+        while (blockCache.size() > maxBlocks || cachedBytes > maxBytes) {
+            CachedBlock block = iterator.next();
+            iterator.remove();
+            cachedBytes -= block.size;
+            statistics.evicted();
+        }
+    }
+
+    private void uncache(BlockPointer pos) {
+        CachedBlock cached = blockCache.remove(pos);
+        if (cached != null) {
+            cachedBytes -= cached.size;
+        }
+    }
+
+    private void discardCachedBlocks() {
+        blockCache.clear();
+        cachedBytes = 0;
+    }
+
+    private static class CachedBlock {
+        final BlockPayload payload;
+        final int size;
+
+        private CachedBlock(BlockPayload payload, int size) {
+            this.payload = payload;
+            this.size = size;
         }
     }
 }
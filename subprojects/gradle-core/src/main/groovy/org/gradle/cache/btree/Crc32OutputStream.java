@@ -0,0 +1,48 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+
+class Crc32OutputStream extends FilterOutputStream {
+    final CRC32 checksum;
+
+    Crc32OutputStream(OutputStream outputStream) {
+        super(outputStream);
+        this.checksum = new CRC32();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        checksum.update(b);
+        out.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes) throws IOException {
+        checksum.update(bytes);
+        out.write(bytes);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int count) throws IOException {
+        checksum.update(bytes, offset, count);
+        out.write(bytes, offset, count);
+    }
+}
@@ -18,7 +18,6 @@ package org.gradle.cache.btree;
 import org.gradle.api.UncheckedIOException;
 
 import java.io.*;
-import java.util.zip.CRC32;
 
 public class FileBackedBlockStore implements BlockStore {
     private RandomAccessFile file;
@@ -198,13 +197,8 @@ public class FileBackedBlockStore implements BlockStore {
         public void read() throws Exception {
             long pos = getPos().getPos();
             assert pos >= 0;
-            if (pos + HEADER_SIZE >= file.length()) {
-                throw blockCorruptedException();
-            }
-            file.seek(pos);
 
-            Crc32InputStream checkSumInputStream = new Crc32InputStream(new BufferedInputStream(
-                    new RandomAccessFileInputStream(file)));
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(new ByteArrayInputStream(readBytes(pos)));
             DataInputStream inputStream = new DataInputStream(checkSumInputStream);
 
             BlockPayload payload = getPayload();
@@ -221,9 +215,6 @@ public class FileBackedBlockStore implements BlockStore {
 
             // Read body
             payloadSize = inputStream.readInt();
-            if (pos + HEADER_SIZE + TAIL_SIZE + payloadSize > file.length()) {
-                throw blockCorruptedException();
-            }
             payload.read(inputStream);
 
             // Read and verify checksum
@@ -235,35 +226,37 @@ public class FileBackedBlockStore implements BlockStore {
             inputStream.close();
         }
 
+        /**
+         * Reads the bytes of the block at the given position. The file is locked only while the bytes are read, so that
+         * several threads can decode blocks at the same time.
+         */
+        private byte[] readBytes(long pos) throws IOException {
+            synchronized (FileBackedBlockStore.this) {
+                long length = file.length();
+                if (pos + HEADER_SIZE >= length) {
+                    throw blockCorruptedException();
+                }
+                byte[] header = new byte[HEADER_SIZE];
+                file.seek(pos);
+                file.readFully(header);
+                int size = ((header[2] & 0xFF) << 24) | ((header[3] & 0xFF) << 16) | ((header[4] & 0xFF) << 8)
+                        | (header[5] & 0xFF);
+                if (size < 0 || pos + HEADER_SIZE + TAIL_SIZE + size > length) {
+                    throw blockCorruptedException();
+                }
+                byte[] bytes = new byte[HEADER_SIZE + size + TAIL_SIZE];
+                System.arraycopy(header, 0, bytes, 0, HEADER_SIZE);
+                file.readFully(bytes, HEADER_SIZE, size + TAIL_SIZE);
+                return bytes;
+            }
+        }
+
         public RuntimeException blockCorruptedException() {
             return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
                     FileBackedBlockStore.this));
         }
     }
 
-    private static class RandomAccessFileInputStream extends InputStream {
-        private final RandomAccessFile file;
-
-        private RandomAccessFileInputStream(RandomAccessFile file) {
-            this.file = file;
-        }
-
-        @Override
-        public int read(byte[] bytes) throws IOException {
-            return file.read(bytes);
-        }
-
-        @Override
-        public int read() throws IOException {
-            return file.read();
-        }
-
-        @Override
-        public int read(byte[] bytes, int offset, int length) throws IOException {
-            return file.read(bytes, offset, length);
-        }
-    }
-
     private static class RandomAccessFileOutputStream extends OutputStream {
         private final RandomAccessFile file;
 
@@ -286,67 +279,4 @@ public class FileBackedBlockStore implements BlockStore {
             file.write(bytes, offset, length);
         }
     }
-
-    private static class Crc32InputStream extends FilterInputStream {
-        private final CRC32 checksum;
-
-        private Crc32InputStream(InputStream inputStream) {
-            super(inputStream);
-            checksum = new CRC32();
-        }
-
-        @Override
-        public int read() throws IOException {
-            int b = in.read();
-            if (b >= 0) {
-                checksum.update(b);
-            }
-            return b;
-        }
-
-        @Override
-        public int read(byte[] bytes) throws IOException {
-            int count = in.read(bytes);
-            if (count > 0) {
-                checksum.update(bytes, 0, count);
-            }
-            return count;
-        }
-
-        @Override
-        public int read(byte[] bytes, int offset, int max) throws IOException {
-            int count = in.read(bytes, offset, max);
-            if (count > 0) {
-                checksum.update(bytes, offset, count);
-            }
-            return count;
-        }
-    }
-
-    private static class Crc32OutputStream extends FilterOutputStream {
-        private final CRC32 checksum;
-
-        private Crc32OutputStream(OutputStream outputStream) {
-            super(outputStream);
-            this.checksum = new CRC32();
-        }
-
-        @Override
-        public void write(int b) throws IOException {
-            checksum.update(b);
-            out.write(b);
-        }
-
-        @Override
-        public void write(byte[] bytes) throws IOException {
-            checksum.update(bytes);
-            out.write(bytes);
-        }
-
-        @Override
-        public void write(byte[] bytes, int offset, int count) throws IOException {
-            checksum.update(bytes, offset, count);
-            out.write(bytes, offset, count);
-        }
-    }
 }
@@ -0,0 +1,402 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.api.UncheckedIOException;
+
+import java.io.*;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A {@link BlockStore} which accesses the backing file through a memory mapped region, rather than using a system
+ * call per read and write. Uses the same block format as {@link FileBackedBlockStore}.
+ *
+ * <p>Blocks are placed so that blocks which are smaller than a page never span a page boundary, and blocks which are
+ * a page or larger start on a page boundary and are padded to a whole number of pages. The mapped region grows in
+ * chunks of {@link #GROWTH_CHUNK_SIZE} bytes, so the file usually has some unused space at the end. So that this space
+ * is not treated as in use when the file is next opened, by this or another process, the end of the blocks is recorded
+ * in a trailer written after the last block each time the store is flushed following a write.</p>
+ */
+public class MappedFileBlockStore implements BlockStore {
+    static final int PAGE_SIZE = 4096;
+    static final int BLOCK_ALIGNMENT = 64;
+    static final int GROWTH_CHUNK_SIZE = 1024 * 1024;
+    static final long END_MARKER = 0x5A17C0DE5A17C0DEL;
+    static final int TRAILER_SIZE = 16;
+    private final File cacheFile;
+    private RandomAccessFile file;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private long nextBlock;
+    private boolean modified;
+    private Factory factory;
+
+    public MappedFileBlockStore(File cacheFile) {
+        this.cacheFile = cacheFile;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("cache '%s'", cacheFile);
+    }
+
+    public void open(Runnable runnable, Factory factory) {
+        this.factory = factory;
+        try {
+            file = new RandomAccessFile(cacheFile, "rw");
+            channel = file.getChannel();
+            nextBlock = file.length();
+            modified = false;
+            if (nextBlock > 0) {
+                map(nextBlock);
+                nextBlock = findEnd(nextBlock);
+            } else {
+                runnable.run();
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void close() {
+        unmap();
+        try {
+            file.close();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void clear() {
+        // The file cannot be truncated on some platforms, such as Windows, while it is mapped
+        unmap();
+        try {
+            file.setLength(0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        nextBlock = 0;
+        modified = false;
+    }
+
+    public void attach(BlockPayload block) {
+        if (block.getBlock() == null) {
+            block.setBlock(new BlockImpl(block));
+        }
+    }
+
+    public void remove(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        blockImpl.detach();
+    }
+
+    public void flush() {
+        if (!modified) {
+            return;
+        }
+        try {
+            ByteBuffer trailer = region(nextBlock, TRAILER_SIZE);
+            trailer.putLong(nextBlock);
+            trailer.putLong(END_MARKER);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        modified = false;
+    }
+
+    /**
+     * Locates the trailer which marks the end of the blocks, skipping any unused space at the end of the file.
+     */
+    private long findEnd(long length) {
+        int last = (int) length - 1;
+        while (last >= 0 && buffer.get(last) == 0) {
+            last--;
+        }
+        int trailerPos = last + 1 - TRAILER_SIZE;
+        if (trailerPos >= 0 && buffer.getLong(trailerPos + 8) == END_MARKER && buffer.getLong(trailerPos) == trailerPos) {
+            return trailerPos;
+        }
+        return length;
+    }
+
+    public <T extends BlockPayload> T readFirst(Class<T> payloadType) {
+        return read(new BlockPointer(0), payloadType);
+    }
+
+    public <T extends BlockPayload> T read(BlockPointer pos, Class<T> payloadType) {
+        assert !pos.isNull();
+        try {
+            T payload = payloadType.cast(factory.create(payloadType));
+            BlockImpl block = new BlockImpl(payload, pos);
+            block.read();
+            return payload;
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public void write(BlockPayload block) {
+        BlockImpl blockImpl = (BlockImpl) block.getBlock();
+        modified = true;
+        try {
+            blockImpl.write();
+        } catch (CorruptedCacheException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static int alignedSize(int size) {
+        int alignment = size >= PAGE_SIZE ? PAGE_SIZE : BLOCK_ALIGNMENT;
+        return (size + alignment - 1) / alignment * alignment;
+    }
+
+    private long alloc(int length) {
+        long pos = nextBlock;
+        long pageOffset = pos % PAGE_SIZE;
+        // A block of BLOCK_ALIGNMENT bytes never needs to be moved, so the header block stays adjacent to the first
+        // block, where FreeListBlockStore expects it to be
+        if (pageOffset != 0 && (length >= PAGE_SIZE || pageOffset + length > PAGE_SIZE)) {
+            pos += PAGE_SIZE - pageOffset;
+        }
+        nextBlock = pos + length;
+        return pos;
+    }
+
+    /**
+     * Returns a view of the given region of the file, growing the file and the mapped region as required.
+     */
+    private ByteBuffer region(long pos, int length) throws IOException {
+        long end = pos + length;
+        if (end > Integer.MAX_VALUE) {
+            throw new IOException(String.format("Cannot grow %s beyond %d bytes.", this, Integer.MAX_VALUE));
+        }
+        if (buffer == null || end > buffer.capacity()) {
+            long capacity = (end + GROWTH_CHUNK_SIZE - 1) / GROWTH_CHUNK_SIZE * GROWTH_CHUNK_SIZE;
+            map(Math.min(capacity, Integer.MAX_VALUE));
+        }
+        ByteBuffer region = buffer.duplicate();
+        region.position((int) pos);
+        region.limit((int) end);
+        return region;
+    }
+
+    private void map(long capacity) throws IOException {
+        unmap();
+        if (file.length() < capacity) {
+            file.setLength(capacity);
+        }
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+    }
+
+    /**
+     * Releases the current mapping, if any. A mapping is otherwise only released when its buffer is garbage collected,
+     * which leaks address space each time the region grows, and keeps the file locked on Windows. No view of the
+     * buffer may be used once it has been unmapped.
+     */
+    private void unmap() {
+        if (buffer == null) {
+            return;
+        }
+        MappedByteBuffer mapped = buffer;
+        buffer = null;
+        try {
+            Method cleanerMethod = mapped.getClass().getMethod("cleaner");
+            cleanerMethod.setAccessible(true);
+            Object cleaner = cleanerMethod.invoke(mapped);
+            if (cleaner != null) {
+                cleaner.getClass().getMethod("clean").invoke(cleaner);
+            }
+        } catch (Exception e) {
+            // Not supported by this JVM - leave the mapping to be released by the garbage collector
+        }
+    }
+
+    private final class BlockImpl extends Block {
+        private static final int HEADER_SIZE = 2 + INT_SIZE;
+        private static final int TAIL_SIZE = LONG_SIZE;
+        static final int BLOCK_MARKER = 0xCC;
+
+        private BlockPointer pos;
+        private int payloadSize;
+
+        private BlockImpl(BlockPayload payload, BlockPointer pos) {
+            this(payload);
+            setPos(pos);
+        }
+
+        public BlockImpl(BlockPayload payload) {
+            super(payload);
+            pos = null;
+            payloadSize = -1;
+        }
+
+        @Override
+        public boolean hasPos() {
+            return pos != null;
+        }
+
+        @Override
+        public BlockPointer getPos() {
+            if (pos == null) {
+                pos = new BlockPointer(alloc(getSize()));
+            }
+            return pos;
+        }
+
+        @Override
+        public void setPos(BlockPointer pos) {
+            assert this.pos == null && !pos.isNull();
+            this.pos = pos;
+        }
+
+        public int getSize() {
+            if (payloadSize < 0) {
+                payloadSize = alignedSize(getPayload().getSize() + HEADER_SIZE + TAIL_SIZE) - HEADER_SIZE - TAIL_SIZE;
+            }
+            return payloadSize + HEADER_SIZE + TAIL_SIZE;
+        }
+
+        @Override
+        public void setSize(int size) {
+            int newPayloadSize = size - HEADER_SIZE - TAIL_SIZE;
+            assert newPayloadSize >= payloadSize;
+            payloadSize = newPayloadSize;
+        }
+
+        public void write() throws Exception {
+            long pos = getPos().getPos();
+            ByteBuffer region = region(pos, getSize());
+
+            Crc32OutputStream checkSumOutputStream = new Crc32OutputStream(new ByteBufferOutputStream(region));
+            DataOutputStream outputStream = new DataOutputStream(checkSumOutputStream);
+
+            BlockPayload payload = getPayload();
+
+            // Write header
+            outputStream.writeByte(BLOCK_MARKER);
+            outputStream.writeByte(payload.getType());
+            outputStream.writeInt(payloadSize);
+
+            // Write body
+            payload.write(outputStream);
+
+            // Write checksum
+            outputStream.writeLong(checkSumOutputStream.checksum.getValue());
+            outputStream.close();
+        }
+
+        public void read() throws Exception {
+            long pos = getPos().getPos();
+            assert pos >= 0;
+            if (pos + HEADER_SIZE >= nextBlock) {
+                throw blockCorruptedException();
+            }
+            ByteBuffer region = region(pos, (int) (nextBlock - pos));
+
+            Crc32InputStream checkSumInputStream = new Crc32InputStream(new ByteBufferInputStream(region));
+            DataInputStream inputStream = new DataInputStream(checkSumInputStream);
+
+            BlockPayload payload = getPayload();
+
+            // Read header
+            byte type = inputStream.readByte();
+            if (type != (byte) BLOCK_MARKER) {
+                throw blockCorruptedException();
+            }
+            type = inputStream.readByte();
+            if (type != (byte) payload.getType()) {
+                throw blockCorruptedException();
+            }
+
+            // Read body
+            payloadSize = inputStream.readInt();
+            if (payloadSize < 0 || pos + HEADER_SIZE + TAIL_SIZE + payloadSize > nextBlock) {
+                throw blockCorruptedException();
+            }
+            payload.read(inputStream);
+
+            // Read and verify checksum
+            long actualChecksum = checkSumInputStream.checksum.getValue();
+            long checksum = inputStream.readLong();
+            if (actualChecksum != checksum) {
+                throw blockCorruptedException();
+            }
+            inputStream.close();
+        }
+
+        public RuntimeException blockCorruptedException() {
+            return new CorruptedCacheException(String.format("Corrupted %s found in %s.", this,
+                    MappedFileBlockStore.this));
+        }
+    }
+
+    private static class ByteBufferInputStream extends InputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            return buffer.get() & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+    }
+
+    private static class ByteBufferOutputStream extends OutputStream {
+        private final ByteBuffer buffer;
+
+        private ByteBufferOutputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (!buffer.hasRemaining()) {
+                throw new EOFException("Block is full.");
+            }
+            buffer.put((byte) b);
+        }
+
+        @Override
+        public void write(byte[] bytes, int offset, int length) throws IOException {
+            if (length > buffer.remaining()) {
+                throw new EOFException("Block is full.");
+            }
+            buffer.put(bytes, offset, length);
+        }
+    }
+}
@@ -27,13 +27,29 @@ import org.gradle.api.specs.Spec;
 import org.gradle.api.specs.Specs;
 import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
 import org.gradle.util.Clock;
+import org.gradle.util.UncheckedException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
+ * <p>Executes the tasks of the graph in dependency order. By default, tasks are executed one at a time. When a
+ * maximum number of parallel tasks greater than 1 is given, tasks whose dependencies have all completed are executed
+ * concurrently, up to that maximum.</p>
+ *
+ * <p>When executing in parallel, ready tasks are always started in execution plan order, task listeners are never
+ * notified concurrently, and each batch of tasks passed to {@link #addTasks(Iterable)} completes before the next batch
+ * is started. When a task fails, no further tasks are started, and the failure of the first failed task in execution
+ * plan order is rethrown once the tasks currently executing have completed.</p>
+ *
  * @author Hans Dockter
  */
 public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
@@ -42,10 +58,22 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
     private final ListenerBroadcast<TaskExecutionGraphListener> graphListeners;
     private final ListenerBroadcast<TaskExecutionListener> taskListeners;
     private final Set<Task> executionPlan = new LinkedHashSet<Task>();
+    private final List<List<Task>> batches = new ArrayList<List<Task>>();
+    private final Map<Task, Set<Task>> dependencies = new HashMap<Task, Set<Task>>();
+    private final Object listenerLock = new Object();
+    private final ExecutorFactory executorFactory;
+    private final int maxParallelTasks;
     private boolean populated;
     private Spec<? super Task> filter = Specs.satisfyAll();
 
     public DefaultTaskGraphExecuter(ListenerManager listenerManager) {
+        this(listenerManager, null, 1);
+    }
+
+    public DefaultTaskGraphExecuter(ListenerManager listenerManager, ExecutorFactory executorFactory,
+                                    int maxParallelTasks) {
+        this.executorFactory = executorFactory;
+        this.maxParallelTasks = maxParallelTasks;
         graphListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionGraphListener.class);
         taskListeners = listenerManager.createAnonymousBroadcaster(TaskExecutionListener.class);
     }
@@ -75,10 +103,12 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         graphListeners.getSource().graphPopulated(this);
 
         try {
-            doExecute(executionPlan);
+            doExecute();
             logger.debug("Timing: Executing the DAG took " + clock.getTime());
         } finally {
             executionPlan.clear();
+            batches.clear();
+            dependencies.clear();
         }
     }
 
@@ -91,6 +121,7 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         Set<Task> visiting = new HashSet<Task>();
         List<Task> queue = new ArrayList<Task>();
         queue.addAll(tasks);
+        List<Task> batch = new ArrayList<Task>();
         CachingTaskDependencyResolveContext context = new CachingTaskDependencyResolveContext();
 
         while (!queue.isEmpty()) {
@@ -118,13 +149,19 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                     }
                     queue.add(0, dependsOnTask);
                 }
+                dependencies.put(task, dependsOnTasks);
             } else {
                 // Have visited this task's dependencies - add it to the end of the plan
                 queue.remove(0);
                 visiting.remove(task);
                 executionPlan.add(task);
+                batch.add(task);
             }
         }
+
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
     }
 
     public void addTaskExecutionGraphListener(TaskExecutionGraphListener listener) {
@@ -155,18 +192,34 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
         taskListeners.add("afterExecute", closure);
     }
 
-    private void doExecute(Iterable<? extends Task> tasks) {
-        for (Task task : tasks) {
-            executeTask(task);
+    private void doExecute() {
+        if (maxParallelTasks <= 1 || executorFactory == null) {
+            for (Task task : executionPlan) {
+                executeTask(task);
+            }
+            return;
+        }
+
+        StoppableExecutor executor = executorFactory.create("Task worker");
+        try {
+            for (List<Task> batch : batches) {
+                new ParallelBatchExecution(batch, executor).run();
+            }
+        } finally {
+            executor.stop();
         }
     }
 
     private void executeTask(Task task) {
-        taskListeners.getSource().beforeExecute(task);
+        synchronized (listenerLock) {
+            taskListeners.getSource().beforeExecute(task);
+        }
         try {
             ((TaskInternal) task).execute();
         } finally {
-            taskListeners.getSource().afterExecute(task, task.getState());
+            synchronized (listenerLock) {
+                taskListeners.getSource().afterExecute(task, task.getState());
+            }
         }
     }
 
@@ -197,4 +250,103 @@ public class DefaultTaskGraphExecuter implements TaskGraphExecuter {
                     "Task information is not available, as this task execution graph has not been populated.");
         }
     }
+
+    private class ParallelBatchExecution {
+        private final Lock lock = new ReentrantLock();
+        private final Condition taskCompleted = lock.newCondition();
+        private final List<Task> batch;
+        private final Set<Task> batchTasks;
+        private final List<Task> pending;
+        private final Set<Task> completed = new HashSet<Task>();
+        private final Map<Task, Throwable> failures = new HashMap<Task, Throwable>();
+        private final Executor executor;
+        private int running;
+
+        private ParallelBatchExecution(List<Task> batch, Executor executor) {
+            this.batch = batch;
+            this.executor = executor;
+            batchTasks = new HashSet<Task>(batch);
+            pending = new LinkedList<Task>(batch);
+        }
+
+        public void run() {
+            lock.lock();
+            try {
+                while (true) {
+                    if (failures.isEmpty()) {
+                        startReadyTasks();
+                    }
+                    if (running == 0) {
+                        break;
+                    }
+                    try {
+                        taskCompleted.await();
+                    } catch (InterruptedException e) {
+                        throw new UncheckedException(e);
+                    }
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            for (Task task : batch) {
+                Throwable failure = failures.get(task);
+                if (failure instanceof Error) {
+                    throw (Error) failure;
+                }
+                if (failure != null) {
+                    throw UncheckedException.asUncheckedException(failure);
+                }
+            }
+            if (!pending.isEmpty()) {
+                throw new IllegalStateException(String.format("Unable to execute tasks %s.", pending));
+            }
+        }
+
+        private void startReadyTasks() {
+            for (Iterator<Task> iterator = pending.iterator(); running < maxParallelTasks && iterator.hasNext();) {
+                final Task task = iterator.next();
+                if (!isReady(task)) {
+                    continue;
+                }
+                iterator.remove();
+                running++;
+                executor.execute(new Runnable() {
+                    public void run() {
+                        Throwable failure = null;
+                        try {
+                            executeTask(task);
+                        } catch (Throwable throwable) {
+                            failure = throwable;
+                        }
+                        taskFinished(task, failure);
+                    }
+                });
+            }
+        }
+
+        private boolean isReady(Task task) {
+            for (Task dependency : dependencies.get(task)) {
+                if (batchTasks.contains(dependency) && !completed.contains(dependency)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void taskFinished(Task task, Throwable failure) {
+            lock.lock();
+            try {
+                running--;
+                if (failure != null) {
+                    failures.put(task, failure);
+                } else {
+                    completed.add(task);
+                }
+                taskCompleted.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
 }
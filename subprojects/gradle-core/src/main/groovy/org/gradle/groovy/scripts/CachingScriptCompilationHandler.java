@@ -15,21 +15,34 @@
  */
 package org.gradle.groovy.scripts;
 
+import groovy.lang.GroovySystem;
 import groovy.lang.Script;
+import org.gradle.util.Clock;
+import org.gradle.util.HashUtil;
 
 import java.io.File;
 import java.util.*;
 
+/**
+ * Caches the script classes loaded by a build. Classes which can be shared between builds are also cached in the given
+ * {@link ScriptClassCache}, so that later builds in the same process can skip loading and initialising them.
+ */
 public class CachingScriptCompilationHandler implements ScriptCompilationHandler {
     private final ScriptCompilationHandler handler;
+    private final ScriptClassCache sharedCache;
+    private final ScriptClassCacheListener listener;
     private final Map<Collection<Object>, Class<?>> cachedClasses = new HashMap<Collection<Object>, Class<?>>();
 
-    public CachingScriptCompilationHandler(ScriptCompilationHandler handler) {
+    public CachingScriptCompilationHandler(ScriptCompilationHandler handler, ScriptClassCache sharedCache,
+                                           ScriptClassCacheListener listener) {
         this.handler = handler;
+        this.sharedCache = sharedCache;
+        this.listener = listener;
     }
 
     public void compileToDir(ScriptSource source, ClassLoader classLoader, File scriptCacheDir, Transformer transformer,
                              Class<? extends Script> scriptBaseClass) {
+        sharedCache.remove(scriptCacheDir);
         handler.compileToDir(source, classLoader, scriptCacheDir, transformer, scriptBaseClass);
     }
 
@@ -38,9 +51,30 @@ public class CachingScriptCompilationHandler implements ScriptCompilationHandler
         List<Object> key = Arrays.asList(source.getClassName(), classLoader, scriptCacheDir);
         Class<?> c = cachedClasses.get(key);
         if (c == null) {
-            c = handler.loadFromDir(source, classLoader, scriptCacheDir, scriptBaseClass);
+            c = loadViaSharedCache(source, classLoader, scriptCacheDir, scriptBaseClass);
             cachedClasses.put(key, c);
         }
         return c.asSubclass(scriptBaseClass);
     }
+
+    private <T extends Script> Class<?> loadViaSharedCache(ScriptSource source, ClassLoader classLoader,
+                                                           File scriptCacheDir, Class<T> scriptBaseClass) {
+        if (!sharedCache.canShare(classLoader)) {
+            return handler.loadFromDir(source, classLoader, scriptCacheDir, scriptBaseClass);
+        }
+
+        String sourceHash = HashUtil.createHash(source.getResource().getText());
+        ScriptClassCache.CachedClass cachedClass = sharedCache.get(scriptCacheDir, sourceHash);
+        if (cachedClass != null && scriptBaseClass.isAssignableFrom(cachedClass.getScriptClass())) {
+            listener.scriptClassReused(source, cachedClass.getLoadTime());
+            return cachedClass.getScriptClass();
+        }
+
+        Clock clock = new Clock();
+        Class<?> c = handler.loadFromDir(source, classLoader, scriptCacheDir, scriptBaseClass);
+        // Create the meta-class now, so that it is reused along with the class
+        GroovySystem.getMetaClassRegistry().getMetaClass(c);
+        sharedCache.put(scriptCacheDir, sourceHash, classLoader, c, clock.getTimeInMs());
+        return c;
+    }
 }
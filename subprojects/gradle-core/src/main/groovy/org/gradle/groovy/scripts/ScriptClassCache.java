@@ -0,0 +1,120 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.groovy.scripts;
+
+import org.gradle.util.MultiParentClassLoader;
+
+import java.io.File;
+import java.net.URLClassLoader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A cache of loaded script classes which is shared by all builds run in the same process, such as the builds run by a
+ * daemon.
+ *
+ * <p>A script class is reused only if the source of the script has not changed, and if the ClassLoader the class was
+ * loaded with adds no classes to the shared root ClassLoader. A script class can then be used by any build, as it will
+ * see the same classes in every build.</p>
+ */
+public class ScriptClassCache {
+    private final ClassLoader rootClassLoader;
+    private final Map<File, CachedClass> classes = new HashMap<File, CachedClass>();
+
+    public ScriptClassCache(ClassLoader rootClassLoader) {
+        this.rootClassLoader = rootClassLoader;
+    }
+
+    /**
+     * Returns true if script classes loaded using the given ClassLoader can be shared between builds.
+     */
+    public boolean canShare(ClassLoader classLoader) {
+        if (classLoader == rootClassLoader) {
+            return true;
+        }
+        if (classLoader instanceof MultiParentClassLoader) {
+            for (ClassLoader parent : ((MultiParentClassLoader) classLoader).getParents()) {
+                if (!canShare(parent)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+        if (classLoader instanceof URLClassLoader && ((URLClassLoader) classLoader).getURLs().length == 0) {
+            return canShare(classLoader.getParent());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the class loaded from the given directory for the script with the given hash, or null if there is no
+     * such class which can be reused.
+     */
+    public CachedClass get(File classesDir, String sourceHash) {
+        CachedClass cachedClass;
+        synchronized (classes) {
+            cachedClass = classes.get(classesDir.getAbsoluteFile());
+        }
+        if (cachedClass == null || !cachedClass.sourceHash.equals(sourceHash)) {
+            return null;
+        }
+        // Check again, as URLs or parents may have been added to the ClassLoader since the class was loaded
+        if (!canShare(cachedClass.classLoader)) {
+            return null;
+        }
+        return cachedClass;
+    }
+
+    public void put(File classesDir, String sourceHash, ClassLoader classLoader, Class<?> scriptClass, long loadTime) {
+        synchronized (classes) {
+            classes.put(classesDir.getAbsoluteFile(), new CachedClass(sourceHash, classLoader, scriptClass, loadTime));
+        }
+    }
+
+    /**
+     * Discards the class loaded from the given directory, if any.
+     */
+    public void remove(File classesDir) {
+        synchronized (classes) {
+            classes.remove(classesDir.getAbsoluteFile());
+        }
+    }
+
+    public static class CachedClass {
+        private final String sourceHash;
+        private final ClassLoader classLoader;
+        private final Class<?> scriptClass;
+        private final long loadTime;
+
+        private CachedClass(String sourceHash, ClassLoader classLoader, Class<?> scriptClass, long loadTime) {
+            this.sourceHash = sourceHash;
+            this.classLoader = classLoader;
+            this.scriptClass = scriptClass;
+            this.loadTime = loadTime;
+        }
+
+        public Class<?> getScriptClass() {
+            return scriptClass;
+        }
+
+        /**
+         * Returns the time, in milliseconds, it took to load and initialise the class.
+         */
+        public long getLoadTime() {
+            return loadTime;
+        }
+    }
+}
@@ -0,0 +1,27 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.groovy.scripts;
+
+/**
+ * Notified when a build reuses a script class loaded by an earlier build.
+ */
+public interface ScriptClassCacheListener {
+    /**
+     * @param source The script.
+     * @param savedTime The time, in milliseconds, it originally took to load the class.
+     */
+    void scriptClassReused(ScriptSource source, long savedTime);
+}
@@ -59,6 +59,7 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
     private static final String NO_OPT = "no-opt";
     private static final String EXCLUDE_TASK = "x";
     private static final String PROFILE = "profile";
+    private static final String PARALLEL_THREADS = "parallel-threads";
 
     private static BiMap<String, StartParameter.ShowStacktrace> showStacktraceMap = HashBiMap.create();
     private final CommandLineConverter<LoggingConfiguration> loggingConfigurationCommandLineConverter = new LoggingCommandLineConverter();
@@ -96,6 +97,7 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
         parser.option(NO_OPT).hasDescription("Ignore any task optimization.");
         parser.option(EXCLUDE_TASK, "exclude-task").hasArguments().hasDescription("Specify a task to be excluded from execution.");
         parser.option(PROFILE).hasDescription("Profiles build execution time and generates a report in the <build_dir>/reports/profile directory.");
+        parser.option(PARALLEL_THREADS).hasArgument().hasDescription("Specifies the maximum number of tasks to execute concurrently. Tasks are executed one at a time by default.");
     }
 
     @Override
@@ -206,6 +208,21 @@ public class DefaultCommandLineConverter extends AbstractCommandLineConverter<St
             startParameter.setProfile(true);
         }
 
+        if (options.hasOption(PARALLEL_THREADS)) {
+            String value = options.option(PARALLEL_THREADS).getValue();
+            int threadCount;
+            try {
+                threadCount = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                threadCount = 0;
+            }
+            if (threadCount < 1) {
+                throw new CommandLineArgumentException(String.format(
+                        "Error: The --%s option requires a positive integer value, found '%s'.", PARALLEL_THREADS, value));
+            }
+            startParameter.setParallelThreadCount(threadCount);
+        }
+
         return startParameter;
     }
 
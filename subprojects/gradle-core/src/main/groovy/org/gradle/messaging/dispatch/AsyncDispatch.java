@@ -19,8 +19,9 @@ package org.gradle.messaging.dispatch;
 import org.gradle.messaging.concurrent.AsyncStoppable;
 import org.gradle.util.UncheckedException;
 
-import java.util.LinkedList;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
@@ -31,6 +32,12 @@ import java.util.concurrent.locks.ReentrantLock;
  * of a pool of delegate {@link org.gradle.messaging.dispatch.Dispatch} instances.</p>
  *
  * <p>One or more {@link org.gradle.messaging.dispatch.Receive} instances can use used as a source of messages.</p>
+ *
+ * <p>When a delegate is a {@link BatchDispatch}, its worker thread takes all the queued messages at once and delivers
+ * them as a single batch. A batch delay can be set, to trade some latency for larger batches.</p>
+ *
+ * <p>Messages are queued in a {@link MessageQueue}, so that dispatching and delivering messages does not contend on a
+ * lock. The lock of this dispatch is used only to start and stop the worker threads.</p>
  */
 public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
     private enum State {
@@ -40,11 +47,11 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
     private static final int MAX_QUEUE_SIZE = 200;
     private final Lock lock = new ReentrantLock();
     private final Condition condition = lock.newCondition();
-    private final LinkedList<T> queue = new LinkedList<T>();
+    private final MessageQueue<T> queue;
     private final Executor executor;
-    private final int maxQueueSize;
     private int dispatchers;
     private State state;
+    private volatile long batchDelayNanos;
 
     public AsyncDispatch(Executor executor) {
         this(executor, null, MAX_QUEUE_SIZE);
@@ -56,13 +63,21 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
 
     public AsyncDispatch(Executor executor, final Dispatch<? super T> dispatch, int maxQueueSize) {
         this.executor = executor;
-        this.maxQueueSize = maxQueueSize;
+        queue = new MessageQueue<T>(maxQueueSize);
         state = State.Init;
         if (dispatch != null) {
             dispatchTo(dispatch);
         }
     }
 
+    /**
+     * Sets how long a worker thread waits for more messages to arrive before delivering a batch which is not full to a
+     * {@link BatchDispatch}. Defaults to 0, which delivers whatever messages are queued without waiting.
+     */
+    public void setBatchDelay(long delay, TimeUnit unit) {
+        batchDelayNanos = unit.toNanos(delay);
+    }
+
     public void dispatchTo(final Dispatch<? super T> dispatch) {
         onDispatchThreadStart();
         executor.execute(new Runnable() {
@@ -100,29 +115,17 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
 
     private void setState(State state) {
         this.state = state;
+        queue.close();
         condition.signalAll();
     }
 
     private void dispatchMessages(Dispatch<? super T> dispatch) {
+        if (dispatch instanceof BatchDispatch) {
+            dispatchBatches((BatchDispatch<? super T>) dispatch);
+            return;
+        }
         while (true) {
-            T message = null;
-            lock.lock();
-            try {
-                while (state != State.Stopped && queue.isEmpty()) {
-                    try {
-                        condition.await();
-                    } catch (InterruptedException e) {
-                        throw new UncheckedException(e);
-                    }
-                }
-                if (!queue.isEmpty()) {
-                    message = queue.remove();
-                    condition.signalAll();
-                }
-            } finally {
-                lock.unlock();
-            }
-
+            T message = queue.take();
             if (message == null) {
                 // Have been stopped and nothing to deliver
                 return;
@@ -132,23 +135,21 @@ public class AsyncDispatch<T> implements StoppableDispatch<T>, AsyncStoppable {
         }
     }
 
-    public void dispatch(final T message) {
-        lock.lock();
-        try {
-            while (state != State.Stopped && queue.size() >= maxQueueSize) {
-                try {
-                    condition.await();
-                } catch (InterruptedException e) {
-                    throw new UncheckedException(e);
-                }
-            }
-            if (state == State.Stopped) {
-                throw new IllegalStateException("This message dispatch has been stopped.");
+    private void dispatchBatches(BatchDispatch<? super T> dispatch) {
+        while (true) {
+            List<T> batch = queue.takeAll(batchDelayNanos);
+            if (batch.isEmpty()) {
+                // Have been stopped and nothing to deliver
+                return;
             }
-            queue.add(message);
-            condition.signalAll();
-        } finally {
-            lock.unlock();
+
+            dispatch.dispatchBatch(batch);
+        }
+    }
+
+    public void dispatch(final T message) {
+        if (!queue.put(message)) {
+            throw new IllegalStateException("This message dispatch has been stopped.");
         }
     }
 
@@ -38,7 +38,7 @@ public class AsyncReceive<T> implements AsyncStoppable {
     private final Executor executor;
     private final Dispatch<? super T> dispatch;
     private int receivers;
-    private State state = State.Init;
+    private volatile State state = State.Init;
 
     public AsyncReceive(Executor executor, final Dispatch<? super T> dispatch) {
         this.executor = executor;
@@ -89,13 +89,8 @@ public class AsyncReceive<T> implements AsyncStoppable {
 
             dispatch.dispatch(message);
 
-            lock.lock();
-            try {
-                if (state != State.Init) {
-                    return;
-                }
-            } finally {
-                lock.unlock();
+            if (state != State.Init) {
+                return;
             }
         }
     }
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.dispatch;
+
+import org.slf4j.Logger;
+
+import java.util.List;
+
+public class DiscardOnFailureBatchDispatch<T> extends DiscardOnFailureDispatch<T> implements BatchDispatch<T> {
+    private final BatchDispatch<? super T> dispatch;
+    private final Logger logger;
+
+    public DiscardOnFailureBatchDispatch(BatchDispatch<? super T> dispatch, Logger logger) {
+        super(dispatch, logger);
+        this.dispatch = dispatch;
+        this.logger = logger;
+    }
+
+    public void dispatchBatch(List<? extends T> messages) {
+        try {
+            dispatch.dispatchBatch(messages);
+        } catch (Throwable e) {
+            logger.error(String.format("Could not dispatch %s messages to %s. Discarding messages.", messages.size(), dispatch), e);
+        }
+    }
+}
@@ -0,0 +1,230 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.dispatch;
+
+import org.gradle.util.UncheckedException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded FIFO queue of messages, for use by multiple producer threads and one or more consumer threads.
+ *
+ * <p>Adding and removing messages does not take a lock. Messages are held in a non-blocking linked queue, and the
+ * capacity is reserved using an atomic counter. A lock is used only by a thread which has to wait, that is, by a
+ * producer when the queue is full, or by a consumer when the queue is empty, and by the threads which wake it up.</p>
+ *
+ * <p>The queue can be closed. After this, no more messages can be added. Messages already in the queue can still be
+ * taken.</p>
+ */
+public class MessageQueue<T> {
+    private final int capacity;
+    private final ConcurrentLinkedQueue<Node<T>> queue = new ConcurrentLinkedQueue<Node<T>>();
+    private final AtomicInteger size = new AtomicInteger();
+    private final AtomicInteger waitingProducers = new AtomicInteger();
+    private final AtomicInteger waitingConsumers = new AtomicInteger();
+    private final Lock lock = new ReentrantLock();
+    private final Condition notFull = lock.newCondition();
+    private final Condition notEmpty = lock.newCondition();
+    private volatile boolean closed;
+
+    public MessageQueue(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds a message to the end of this queue. Blocks while the queue is full.
+     *
+     * @return true if the message was added, false if this queue has been closed.
+     */
+    public boolean put(T message) {
+        if (closed) {
+            return false;
+        }
+        if (!reserve() && !waitForCapacity()) {
+            return false;
+        }
+        // Wrap the message, so that it is removed by identity below, rather than some equal message of another producer
+        Node<T> node = new Node<T>(message);
+        queue.offer(node);
+        if (closed && queue.remove(node)) {
+            // Closed while adding the message, and no consumer has taken it
+            release();
+            return false;
+        }
+        if (waitingConsumers.get() > 0) {
+            lock.lock();
+            try {
+                notEmpty.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Removes the message at the head of this queue. Blocks while the queue is empty and not closed.
+     *
+     * @return The message, or null if this queue is closed and empty.
+     */
+    public T take() {
+        T message = poll();
+        if (message != null) {
+            return message;
+        }
+        lock.lock();
+        waitingConsumers.incrementAndGet();
+        try {
+            while (true) {
+                message = poll();
+                if (message != null || closed) {
+                    return message;
+                }
+                notEmpty.await();
+            }
+        } catch (InterruptedException e) {
+            throw new UncheckedException(e);
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Removes all the messages in this queue. Blocks while the queue is empty and not closed. Once there is a message,
+     * waits for up to the given time for the queue to fill up before removing the messages.
+     *
+     * @return The messages. Empty if this queue is closed and empty.
+     */
+    public List<T> takeAll(long delayNanos) {
+        List<T> messages = new ArrayList<T>();
+        T message = take();
+        if (message == null) {
+            return messages;
+        }
+        messages.add(message);
+        if (delayNanos > 0) {
+            waitForFull(delayNanos);
+        }
+        for (int i = 0; i < capacity && (message = poll()) != null; i++) {
+            messages.add(message);
+        }
+        return messages;
+    }
+
+    /**
+     * Closes this queue, and wakes up any waiting threads.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size.get() == 0;
+    }
+
+    private T poll() {
+        Node<T> node = queue.poll();
+        if (node == null) {
+            return null;
+        }
+        release();
+        return node.message;
+    }
+
+    private boolean reserve() {
+        while (true) {
+            int current = size.get();
+            if (current >= capacity) {
+                return false;
+            }
+            if (size.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    private void release() {
+        size.decrementAndGet();
+        if (waitingProducers.get() > 0) {
+            // One slot has become free, so wake up one producer
+            lock.lock();
+            try {
+                notFull.signal();
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    private boolean waitForCapacity() {
+        lock.lock();
+        waitingProducers.incrementAndGet();
+        try {
+            while (true) {
+                if (closed) {
+                    return false;
+                }
+                if (reserve()) {
+                    return true;
+                }
+                notFull.await();
+            }
+        } catch (InterruptedException e) {
+            throw new UncheckedException(e);
+        } finally {
+            waitingProducers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private void waitForFull(long delayNanos) {
+        lock.lock();
+        waitingConsumers.incrementAndGet();
+        try {
+            long remaining = delayNanos;
+            while (!closed && size.get() < capacity && remaining > 0) {
+                remaining = notEmpty.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            throw new UncheckedException(e);
+        } finally {
+            waitingConsumers.decrementAndGet();
+            lock.unlock();
+        }
+    }
+
+    private static class Node<T> {
+        private final T message;
+
+        private Node(T message) {
+            this.message = message;
+        }
+    }
+}
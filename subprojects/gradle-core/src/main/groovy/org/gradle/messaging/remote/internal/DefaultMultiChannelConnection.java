@@ -29,6 +29,12 @@ import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
 class DefaultMultiChannelConnection implements MultiChannelConnection<Object> {
+    /**
+     * The system property which specifies how many milliseconds to wait for more outgoing messages before writing
+     * queued messages to the connection. Defaults to 0, which writes queued messages as soon as possible.
+     */
+    static final String BATCH_DELAY_PROPERTY = "org.gradle.messaging.batch.delay";
+
     private final URI sourceAddress;
     private final URI destinationAddress;
     private final EndOfStreamDispatch outgoingDispatch;
@@ -47,8 +53,10 @@ class DefaultMultiChannelConnection implements MultiChannelConnection<Object> {
         this.destinationAddress = destinationAddress;
 
         // Outgoing pipeline: <source> -> <channel-mux> -> <end-of-stream-dispatch> -> <async-queue> -> <ignore-failures> -> <connection>
+        // When the connection accepts batches, the queued messages are written to it in batches
         outgoingQueue = new AsyncDispatch<Object>(executor);
-        outgoingQueue.dispatchTo(wrapFailures(connection));
+        outgoingQueue.setBatchDelay(Long.getLong(BATCH_DELAY_PROPERTY, 0), TimeUnit.MILLISECONDS);
+        outgoingQueue.dispatchTo(wrapBatchFailures(connection));
         outgoingDispatch = new EndOfStreamDispatch(new ChannelMessageMarshallingDispatch(outgoingQueue));
 
         // Incoming pipeline: <connection> -> <async-receive> -> <ignore-failures> -> <end-of-stream-filter> -> <channel-demux> -> <channel-async-queue> -> <ignore-failures> -> <handler>
@@ -66,6 +74,13 @@ class DefaultMultiChannelConnection implements MultiChannelConnection<Object> {
         return new DiscardOnFailureDispatch<Object>(dispatch, LoggerFactory.getLogger(DefaultMultiChannelConnector.class));
     }
 
+    private Dispatch<Object> wrapBatchFailures(Dispatch<Object> dispatch) {
+        if (dispatch instanceof BatchDispatch) {
+            return new DiscardOnFailureBatchDispatch<Object>((BatchDispatch<Object>) dispatch, LoggerFactory.getLogger(DefaultMultiChannelConnector.class));
+        }
+        return wrapFailures(dispatch);
+    }
+
     public URI getLocalAddress() {
         if (sourceAddress == null) {
             throw new UnsupportedOperationException();
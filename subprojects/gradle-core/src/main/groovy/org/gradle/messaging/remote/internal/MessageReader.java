@@ -0,0 +1,126 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamClass;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.gradle.messaging.remote.internal.MessageWriter.*;
+
+/**
+ * Reads a sequence of messages written by a {@link MessageWriter}.
+ */
+public class MessageReader {
+    private final InputStream inputStream;
+    private final ClassLoader classLoader;
+    private final List<ObjectStreamClass> classes = new ArrayList<ObjectStreamClass>();
+    private final List<String> strings = new ArrayList<String>();
+    private DecodingObjectInputStream objectStream;
+
+    public MessageReader(InputStream inputStream, ClassLoader classLoader) {
+        this.inputStream = inputStream;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * Reads the next message. Blocks until the message is available.
+     *
+     * @throws java.io.EOFException When the end of the stream is reached.
+     */
+    public Object read() throws IOException, ClassNotFoundException {
+        if (objectStream == null) {
+            objectStream = new DecodingObjectInputStream(inputStream, classLoader);
+        }
+        return readMessage();
+    }
+
+    private Object readMessage() throws IOException, ClassNotFoundException {
+        byte type = objectStream.readByte();
+        switch (type) {
+            case OBJECT:
+                return objectStream.readObject();
+            case CHANNEL_MESSAGE:
+                int channel = objectStream.readInt();
+                return new ChannelMessage(channel, readMessage());
+            case METHOD_INVOCATION:
+                int key = objectStream.readInt();
+                int argumentCount = objectStream.readInt();
+                Object[] arguments = argumentCount < 0 ? null : new Object[argumentCount];
+                ClassNotFoundException failure = null;
+                for (int i = 0; i < argumentCount; i++) {
+                    // Keep reading after a failure, so that the next message can be read
+                    try {
+                        arguments[i] = objectStream.readObject();
+                    } catch (ClassNotFoundException e) {
+                        failure = failure == null ? e : failure;
+                    }
+                }
+                if (failure != null) {
+                    throw failure;
+                }
+                return new RemoteMethodInvocation(key, arguments);
+            case NEW_STREAM:
+                // The writer discarded a message it could not serialize, and started a new object stream
+                objectStream = new DecodingObjectInputStream(inputStream, classLoader);
+                return readMessage();
+            default:
+                throw new StreamCorruptedException(String.format("Unexpected message type %s received.", type));
+        }
+    }
+
+    private class DecodingObjectInputStream extends Message.ExceptionReplacingObjectInputStream {
+        public DecodingObjectInputStream(InputStream inputSteam, ClassLoader classLoader) throws IOException {
+            super(inputSteam, classLoader);
+        }
+
+        @Override
+        protected ObjectStreamClass readClassDescriptor() throws IOException, ClassNotFoundException {
+            int id = readInt();
+            if (id != NEW_ENTRY) {
+                if (id < 0 || id >= classes.size()) {
+                    throw new StreamCorruptedException(String.format("Unknown class descriptor %s received.", id));
+                }
+                return classes.get(id);
+            }
+            ObjectStreamClass desc = super.readClassDescriptor();
+            classes.add(desc);
+            return desc;
+        }
+
+        @Override
+        protected Object resolveObject(Object obj) throws IOException {
+            if (obj instanceof String) {
+                String string = (String) obj;
+                if (string.length() >= MIN_SHARED_STRING_LENGTH && strings.size() < MAX_SHARED_STRINGS) {
+                    strings.add(string);
+                }
+                return string;
+            }
+            if (obj instanceof StringReference) {
+                int id = ((StringReference) obj).id;
+                if (id >= strings.size()) {
+                    throw new StreamCorruptedException(String.format("Unknown string %s received.", id));
+                }
+                return strings.get(id);
+            }
+            return super.resolveObject(obj);
+        }
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal;
+
+import java.io.*;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Writes a sequence of messages to a stream, to be read by a {@link MessageReader}.
+ *
+ * <p>Unlike {@link Message#send(Object, java.io.OutputStream)}, a single object stream is used for all messages
+ * written to the stream. The object stream is reset after each message, so that objects are not retained between
+ * messages. Class descriptors and long strings are shared between messages: the first time one is written it is
+ * given an id, and later messages refer to it by this id. {@link ChannelMessage} and {@link RemoteMethodInvocation}
+ * messages are written field by field, rather than as serialized objects.</p>
+ *
+ * <p>Each message is serialized to a buffer before it is written to the stream, so that a message which cannot be
+ * serialized is not partially written. After such a failure, the class descriptors and strings which were given an id
+ * while writing the message are forgotten, and a new object stream is started, so that later messages can still be
+ * written. The reader switches to the new object stream when it reads the {@link #NEW_STREAM} marker.</p>
+ */
+public class MessageWriter {
+    static final int NEW_ENTRY = -1;
+    static final int MIN_SHARED_STRING_LENGTH = 16;
+    static final int MAX_SHARED_STRINGS = 4096;
+    static final byte OBJECT = 0;
+    static final byte CHANNEL_MESSAGE = 1;
+    static final byte METHOD_INVOCATION = 2;
+    static final byte NEW_STREAM = 3;
+
+    private final OutputStream outputStream;
+    private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+    private final Map<Object, Integer> classIds = new HashMap<Object, Integer>();
+    private final Map<String, Integer> stringIds = new HashMap<String, Integer>();
+    private EncodingObjectOutputStream objectStream;
+    private boolean failed;
+
+    public MessageWriter(OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    /**
+     * Writes the given message. Does not flush the target stream.
+     */
+    public void write(Object message) throws IOException {
+        if (failed) {
+            throw new IOException("Cannot write message, as this writer could not recover from a previous failure.");
+        }
+        if (objectStream == null) {
+            objectStream = new EncodingObjectOutputStream(buffer);
+            objectStream.flush();
+            buffer.writeTo(outputStream);
+            buffer.reset();
+        }
+
+        int classCount = classIds.size();
+        int stringCount = stringIds.size();
+        boolean serialized = false;
+        try {
+            writeMessage(message);
+            objectStream.reset();
+            objectStream.flush();
+            serialized = true;
+        } finally {
+            if (!serialized) {
+                discardMessage(classCount, stringCount);
+            }
+        }
+
+        buffer.writeTo(outputStream);
+        buffer.reset();
+    }
+
+    private void discardMessage(int classCount, int stringCount) throws IOException {
+        failed = true;
+        objectStream.flush();
+        buffer.reset();
+        removeNewEntries(classIds, classCount);
+        removeNewEntries(stringIds, stringCount);
+
+        // The object stream may hold state from the partially written message, so replace it with a new one
+        objectStream.reset();
+        objectStream.writeByte(NEW_STREAM);
+        objectStream.flush();
+        objectStream = new EncodingObjectOutputStream(buffer);
+        objectStream.flush();
+        buffer.writeTo(outputStream);
+        buffer.reset();
+        failed = false;
+    }
+
+    private static void removeNewEntries(Map<?, Integer> ids, int count) {
+        for (Iterator<Integer> iterator = ids.values().iterator(); iterator.hasNext();) {
+            if (iterator.next() >= count) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private void writeMessage(Object message) throws IOException {
+        if (message instanceof ChannelMessage && ((ChannelMessage) message).getChannel() instanceof Integer) {
+            ChannelMessage channelMessage = (ChannelMessage) message;
+            objectStream.writeByte(CHANNEL_MESSAGE);
+            objectStream.writeInt((Integer) channelMessage.getChannel());
+            writeMessage(channelMessage.getPayload());
+        } else if (message instanceof RemoteMethodInvocation && ((RemoteMethodInvocation) message).getKey() instanceof Integer) {
+            RemoteMethodInvocation invocation = (RemoteMethodInvocation) message;
+            Object[] arguments = invocation.getArguments();
+            objectStream.writeByte(METHOD_INVOCATION);
+            objectStream.writeInt((Integer) invocation.getKey());
+            objectStream.writeInt(arguments == null ? -1 : arguments.length);
+            if (arguments != null) {
+                for (Object argument : arguments) {
+                    objectStream.writeObject(argument);
+                }
+            }
+        } else {
+            objectStream.writeByte(OBJECT);
+            objectStream.writeObject(message);
+        }
+    }
+
+    /**
+     * Replaces a string which has already been written.
+     */
+    static class StringReference implements Serializable {
+        final int id;
+
+        StringReference(int id) {
+            this.id = id;
+        }
+    }
+
+    private class EncodingObjectOutputStream extends Message.ExceptionReplacingObjectOutputStream {
+        public EncodingObjectOutputStream(OutputStream outputSteam) throws IOException {
+            super(outputSteam);
+        }
+
+        @Override
+        protected void writeClassDescriptor(ObjectStreamClass desc) throws IOException {
+            Object key = desc.forClass() != null ? desc.forClass() : desc;
+            Integer id = classIds.get(key);
+            if (id != null) {
+                writeInt(id);
+                return;
+            }
+            writeInt(NEW_ENTRY);
+            super.writeClassDescriptor(desc);
+            classIds.put(key, classIds.size());
+        }
+
+        @Override
+        protected Object replaceObject(Object obj) throws IOException {
+            if (obj instanceof String) {
+                String string = (String) obj;
+                if (string.length() < MIN_SHARED_STRING_LENGTH) {
+                    return string;
+                }
+                Integer id = stringIds.get(string);
+                if (id != null) {
+                    return new StringReference(id);
+                }
+                if (stringIds.size() < MAX_SHARED_STRINGS) {
+                    stringIds.put(string, stringIds.size());
+                }
+                return string;
+            }
+            return super.replaceObject(obj);
+        }
+    }
+}
@@ -19,6 +19,9 @@ package org.gradle.messaging.remote.internal;
 import org.gradle.api.GradleException;
 import org.gradle.api.UncheckedIOException;
 import org.gradle.messaging.concurrent.CompositeStoppable;
+import org.gradle.messaging.dispatch.BatchDispatch;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.EOFException;
 import java.io.IOException;
@@ -28,14 +31,25 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 
-public class SocketConnection<T> implements Connection<T> {
+/**
+ * A {@link Connection} over a socket. Each call to {@link #dispatch} writes and flushes a single message, whereas
+ * {@link #dispatchBatch} writes all the given messages and then flushes them together.
+ */
+public class SocketConnection<T> implements Connection<T>, BatchDispatch<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SocketConnection.class);
     private final SocketChannel socket;
     private final Object localAddress;
     private final Object remoteAddress;
     private final ClassLoader classLoader;
     private final InputStream instr;
     private final OutputStream outstr;
+    private final MessageReader reader;
+    private final MessageWriter writer;
+    private final AtomicLong messagesWritten = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
 
     public SocketConnection(SocketChannel socket, Object localAddress, Object remoteAddress, ClassLoader classLoader) {
         this.socket = socket;
@@ -48,6 +62,8 @@ public class SocketConnection<T> implements Connection<T> {
             socket.configureBlocking(false);
             outstr = new SocketOutputStream(socket);
             instr = new SocketInputStream(socket);
+            reader = new MessageReader(instr, classLoader);
+            writer = new MessageWriter(outstr);
         } catch (IOException e) {
             throw new UncheckedIOException(e);
         }
@@ -60,7 +76,7 @@ public class SocketConnection<T> implements Connection<T> {
 
     public T receive() {
         try {
-            return (T) Message.receive(instr, classLoader);
+            return (T) reader.read();
         } catch (Exception e) {
             if (isEndOfStream(e)) {
                 return null;
@@ -81,11 +97,41 @@ public class SocketConnection<T> implements Connection<T> {
 
     public void dispatch(T message) {
         try {
-            Message.send(message, outstr);
+            writer.write(message);
             outstr.flush();
         } catch (Exception e) {
             throw new GradleException(String.format("Could not write message to '%s'.", remoteAddress), e);
         }
+        messagesWritten.incrementAndGet();
+        flushes.incrementAndGet();
+    }
+
+    public void dispatchBatch(List<? extends T> messages) {
+        try {
+            for (T message : messages) {
+                writer.write(message);
+            }
+            outstr.flush();
+        } catch (Exception e) {
+            throw new GradleException(String.format("Could not write %s messages to '%s'.", messages.size(), remoteAddress), e);
+        }
+        messagesWritten.addAndGet(messages.size());
+        flushes.incrementAndGet();
+    }
+
+    /**
+     * Returns the number of messages written to this connection.
+     */
+    public long getMessagesWritten() {
+        return messagesWritten.get();
+    }
+
+    /**
+     * Returns the number of times this connection has flushed written messages to the socket. Together with {@link
+     * #getMessagesWritten()}, this gives the average number of messages per flush.
+     */
+    public long getFlushes() {
+        return flushes.get();
     }
 
     public void requestStop() {
@@ -93,6 +139,9 @@ public class SocketConnection<T> implements Connection<T> {
     }
 
     public void stop() {
+        if (LOGGER.isDebugEnabled()) {
+            LOGGER.debug("Wrote {} messages in {} flushes to {}.", new Object[]{messagesWritten.get(), flushes.get(), this});
+        }
         new CompositeStoppable(instr, outstr, socket).stop();
     }
 
@@ -172,19 +221,22 @@ public class SocketConnection<T> implements Connection<T> {
 
         @Override
         public void write(byte[] src, int offset, int max) throws IOException {
-            int remaining = max;
-            int currentPos = offset;
-            while (remaining > 0) {
-                int count = Math.min(remaining, buffer.remaining());
-                if (count > 0) {
-                    buffer.put(src, currentPos, count);
-                    remaining -= count;
-                    currentPos += count;
-                }
-                if (buffer.remaining() == 0) {
-                    flush();
+            if (max <= buffer.remaining()) {
+                buffer.put(src, offset, max);
+                return;
+            }
+
+            // Does not fit in the buffer: write the buffered bytes and the source bytes using a single gathering write
+            buffer.flip();
+            ByteBuffer[] buffers = new ByteBuffer[]{buffer, ByteBuffer.wrap(src, offset, max)};
+            while (buffers[1].remaining() > 0) {
+                selector.select();
+                if (!selector.isOpen()) {
+                    throw new EOFException();
                 }
+                socket.write(buffers);
             }
+            buffer.clear();
         }
 
         @Override
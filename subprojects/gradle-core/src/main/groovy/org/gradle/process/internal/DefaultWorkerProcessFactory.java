@@ -16,11 +16,14 @@
 
 package org.gradle.process.internal;
 
+import org.gradle.api.Action;
 import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.api.internal.Factory;
 import org.gradle.api.internal.file.FileResolver;
 import org.gradle.api.logging.LogLevel;
+import org.gradle.messaging.remote.ConnectEvent;
 import org.gradle.messaging.remote.MessagingServer;
+import org.gradle.messaging.remote.ObjectConnection;
 import org.gradle.process.internal.child.ApplicationClassesInIsolatedClassLoaderWorkerFactory;
 import org.gradle.process.internal.child.ApplicationClassesInSystemClassLoaderWorkerFactory;
 import org.gradle.process.internal.child.WorkerFactory;
@@ -44,6 +47,7 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
     private final ClassPathRegistry classPathRegistry;
     private final FileResolver resolver;
     private final IdGenerator<?> idGenerator;
+    private final WorkerProcessPool pool = new WorkerProcessPool();
 
     public DefaultWorkerProcessFactory(LogLevel workerLogLevel, MessagingServer server,
                                        ClassPathRegistry classPathRegistry, FileResolver resolver,
@@ -59,6 +63,13 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
         return new DefaultWorkerProcessBuilder();
     }
 
+    /**
+     * Stops the reusable worker processes created by this factory.
+     */
+    public void stop() {
+        pool.stop();
+    }
+
     private class DefaultWorkerProcessBuilder extends WorkerProcessBuilder {
         public DefaultWorkerProcessBuilder() {
             super(resolver);
@@ -72,13 +83,23 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
                 throw new IllegalStateException("No worker action specified for this worker process.");
             }
 
-            final DefaultWorkerProcess workerProcess = new DefaultWorkerProcess();
-            URI localAddress = server.accept(workerProcess.getConnectAction());
+            if (isReusable() && isLoadApplicationInSystemClassLoader()) {
+                throw new IllegalStateException("A reusable worker process cannot load the application classes in the system ClassLoader.");
+            }
 
+            final DefaultWorkerProcess workerProcess = new DefaultWorkerProcess();
             List<URL> implementationClassPath = ClasspathUtil.getClasspath(getWorker().getClass().getClassLoader());
             Object id = idGenerator.generateId();
             String displayName = String.format("Gradle Worker %s", id);
 
+            WorkerProcessPool.Lease lease = null;
+            Action<ConnectEvent<ObjectConnection>> connectAction = workerProcess.getConnectAction();
+            if (isReusable()) {
+                lease = pool.createLease(displayName, getJavaCommand());
+                connectAction = lease.getConnectAction(connectAction);
+            }
+            URI localAddress = server.accept(connectAction);
+
             WorkerFactory workerFactory;
             if (isLoadApplicationInSystemClassLoader()) {
                 workerFactory = new ApplicationClassesInSystemClassLoaderWorkerFactory(id, displayName, this,
@@ -90,16 +111,22 @@ public class DefaultWorkerProcessFactory implements Factory<WorkerProcessBuilder
             Callable<?> workerMain = workerFactory.create();
             getJavaCommand().classpath(workerFactory.getSystemClasspath());
 
-            // Build configuration for GradleWorkerMain
-            byte[] config = GUtil.serialize(workerMain);
-
             LOGGER.debug("Creating {}", displayName);
             LOGGER.debug("Using application classpath {}", getApplicationClasspath());
             LOGGER.debug("Using implementation classpath {}", implementationClassPath);
 
-            getJavaCommand().setStandardInput(new ByteArrayInputStream(config));
             getJavaCommand().setDisplayName(displayName);
-            ExecHandle execHandle = getJavaCommand().build();
+            ExecHandle execHandle;
+            if (lease != null) {
+                // The main action is sent to a pooled process when the lease is started
+                lease.setWorkerMain(workerMain);
+                execHandle = lease;
+            } else {
+                // Build configuration for GradleWorkerMain
+                byte[] config = GUtil.serialize(workerMain);
+                getJavaCommand().setStandardInput(new ByteArrayInputStream(config));
+                execHandle = getJavaCommand().build();
+            }
 
             workerProcess.setExecHandle(execHandle);
 
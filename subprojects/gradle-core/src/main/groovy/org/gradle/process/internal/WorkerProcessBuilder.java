@@ -36,6 +36,11 @@ import java.util.Set;
  * <p>A worker process can optionally specify an application classpath. The classes of this classpath are loaded into an
  * isolated ClassLoader, which is made visible to the worker action ClassLoader. Only the packages specified in the set
  * of shared packages are visible to the worker action ClassLoader.</p>
+ *
+ * <p>A worker process can optionally be reusable. A reusable worker process is returned to a pool when the worker action
+ * has completed, and is used to run a later worker whose process would be started using the same command. Each worker
+ * run by a reusable worker process has its own application and worker action ClassLoaders. The process is shared, so
+ * system properties and the state of the system classes are not reset between workers.</p>
  */
 public abstract class WorkerProcessBuilder {
     private final JavaExecHandleBuilder javaCommand;
@@ -44,6 +49,7 @@ public abstract class WorkerProcessBuilder {
     private Action<WorkerProcessContext> action;
     private LogLevel logLevel = LogLevel.LIFECYCLE;
     private boolean loadApplicationInSystemClassLoader;
+    private boolean reusable;
 
     public WorkerProcessBuilder(FileResolver fileResolver) {
         javaCommand = new JavaExecHandleBuilder(fileResolver);
@@ -101,5 +107,17 @@ public abstract class WorkerProcessBuilder {
         this.loadApplicationInSystemClassLoader = loadApplicationInSystemClassLoader;
     }
 
+    public boolean isReusable() {
+        return reusable;
+    }
+
+    /**
+     * Specifies whether the worker process can be reused to run later workers. A reusable worker process cannot load
+     * the application classes in the system ClassLoader.
+     */
+    public void setReusable(boolean reusable) {
+        this.reusable = reusable;
+    }
+
     public abstract WorkerProcess build();
 }
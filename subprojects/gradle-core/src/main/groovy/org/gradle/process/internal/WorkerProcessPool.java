@@ -0,0 +1,498 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.process.internal;
+
+import org.gradle.api.Action;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.messaging.concurrent.CompositeStoppable;
+import org.gradle.messaging.concurrent.Stoppable;
+import org.gradle.messaging.remote.ConnectEvent;
+import org.gradle.messaging.remote.ObjectConnection;
+import org.gradle.process.ExecResult;
+import org.gradle.process.internal.child.WorkerActionListener;
+import org.gradle.util.UncheckedException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * <p>A pool of reusable worker processes.</p>
+ *
+ * <p>A reusable worker process reads the main action of each worker it runs from its stdin, and runs the worker using
+ * new application and implementation ClassLoaders. A process is leased to run a single worker, and is returned to the
+ * pool when the worker action has completed. The process can then be leased by a later worker whose process would be
+ * started using the same command line, working directory and environment. A process whose worker action fails is not
+ * returned to the pool.</p>
+ *
+ * <p>The processes in the pool are stopped when the pool is stopped.</p>
+ */
+class WorkerProcessPool implements Stoppable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WorkerProcessPool.class);
+    private static final ExecResult COMPLETED = new ExecResult() {
+        public int getExitValue() {
+            return 0;
+        }
+
+        public ExecResult assertNormalExitValue() throws ExecException {
+            return this;
+        }
+
+        public ExecResult rethrowFailure() throws ExecException {
+            return this;
+        }
+    };
+    private final Lock lock = new ReentrantLock();
+    private final Map<String, List<PooledProcess>> idleProcesses = new HashMap<String, List<PooledProcess>>();
+    private final Set<PooledProcess> processes = new HashSet<PooledProcess>();
+    private boolean stopped;
+
+    /**
+     * Creates a lease of a pooled process. A process is leased when the returned handle is started. The given command is
+     * used to start a new process when there is no compatible idle process.
+     */
+    Lease createLease(String displayName, JavaExecHandleBuilder javaCommand) {
+        return new Lease(displayName, javaCommand);
+    }
+
+    public void stop() {
+        List<PooledProcess> processesToStop;
+        lock.lock();
+        try {
+            stopped = true;
+            processesToStop = new ArrayList<PooledProcess>(processes);
+            processes.clear();
+            idleProcesses.clear();
+        } finally {
+            lock.unlock();
+        }
+        new CompositeStoppable(processesToStop).stop();
+    }
+
+    private PooledProcess acquire(JavaExecHandleBuilder javaCommand) {
+        String key = getKey(javaCommand);
+        PooledProcess process = null;
+        lock.lock();
+        try {
+            if (stopped) {
+                throw new IllegalStateException("Cannot lease a worker process, as the worker process pool has been stopped.");
+            }
+            List<PooledProcess> idle = idleProcesses.get(key);
+            while (process == null && idle != null && !idle.isEmpty()) {
+                PooledProcess candidate = idle.remove(idle.size() - 1);
+                if (candidate.isRunning()) {
+                    process = candidate;
+                } else {
+                    processes.remove(candidate);
+                }
+            }
+            if (process != null) {
+                LOGGER.debug("Reusing {}.", process);
+                return process;
+            }
+            process = new PooledProcess(key, javaCommand);
+            processes.add(process);
+        } finally {
+            lock.unlock();
+        }
+
+        try {
+            process.start();
+        } catch (RuntimeException e) {
+            discard(process);
+            throw e;
+        }
+        return process;
+    }
+
+    private void release(PooledProcess process) {
+        lock.lock();
+        try {
+            if (!stopped && process.isRunning()) {
+                List<PooledProcess> idle = idleProcesses.get(process.key);
+                if (idle == null) {
+                    idle = new ArrayList<PooledProcess>();
+                    idleProcesses.put(process.key, idle);
+                }
+                idle.add(process);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        discard(process);
+    }
+
+    private void discard(PooledProcess process) {
+        lock.lock();
+        try {
+            processes.remove(process);
+        } finally {
+            lock.unlock();
+        }
+        process.stop();
+    }
+
+    private static String getKey(JavaExecHandleBuilder javaCommand) {
+        return String.format("%s%n%s%n%s", javaCommand.getCommandLine(), javaCommand.getWorkingDir(),
+                new TreeMap<String, Object>(javaCommand.getEnvironment()));
+    }
+
+    /**
+     * A worker process in the pool.
+     */
+    private static class PooledProcess implements Stoppable {
+        private final String key;
+        private final String displayName;
+        private final ExecHandle execHandle;
+        private final MainActionInputStream mainActions = new MainActionInputStream();
+        private final Lock lock = new ReentrantLock();
+        private boolean started;
+        private boolean running;
+        private boolean stopped;
+        private ExecResult result;
+        private Lease lease;
+
+        PooledProcess(String key, JavaExecHandleBuilder javaCommand) {
+            this.key = key;
+            displayName = javaCommand.getDisplayName();
+            javaCommand.setStandardInput(mainActions);
+            execHandle = javaCommand.build();
+            execHandle.addListener(new ExecHandleListener() {
+                public void executionStarted(ExecHandle execHandle) {
+                }
+
+                public void executionFinished(ExecHandle execHandle, ExecResult execResult) {
+                    onProcessStop(execResult);
+                }
+            });
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+
+        void start() {
+            lock.lock();
+            try {
+                started = true;
+                running = true;
+            } finally {
+                lock.unlock();
+            }
+            execHandle.start();
+        }
+
+        boolean isRunning() {
+            lock.lock();
+            try {
+                return running;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Sets the lease which is notified when this process stops, or null to clear the lease.
+         */
+        void setLease(Lease lease) {
+            ExecResult result;
+            lock.lock();
+            try {
+                this.lease = lease;
+                result = running ? null : this.result;
+            } finally {
+                lock.unlock();
+            }
+            if (lease != null && result != null) {
+                lease.processStopped(result);
+            }
+        }
+
+        void execute(Callable<?> workerMain) {
+            try {
+                mainActions.add(workerMain);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        void abort() {
+            if (isRunning()) {
+                execHandle.abort();
+            }
+        }
+
+        public void stop() {
+            lock.lock();
+            try {
+                if (stopped) {
+                    return;
+                }
+                stopped = true;
+                if (!started) {
+                    return;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            // The process exits when it reaches the end of stdin
+            mainActions.close();
+            try {
+                execHandle.waitForFinish();
+            } catch (ExecException e) {
+                LOGGER.debug(String.format("Could not stop %s.", displayName), e);
+            }
+        }
+
+        private void onProcessStop(ExecResult execResult) {
+            Lease lease;
+            lock.lock();
+            try {
+                running = false;
+                result = execResult;
+                lease = this.lease;
+            } finally {
+                lock.unlock();
+            }
+            if (lease != null) {
+                lease.processStopped(execResult);
+            }
+        }
+    }
+
+    /**
+     * The stdin of a pooled process. Holds the serialized main actions which have been sent to the process and not yet
+     * read by it.
+     */
+    private static class MainActionInputStream extends InputStream {
+        private static final byte[] END_OF_STREAM = new byte[0];
+        private final BlockingQueue<byte[]> chunks = new LinkedBlockingQueue<byte[]>();
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private ObjectOutputStream objectStream;
+        private byte[] current;
+        private int pos;
+
+        synchronized void add(Callable<?> workerMain) throws IOException {
+            if (objectStream == null) {
+                objectStream = new ObjectOutputStream(buffer);
+            }
+            objectStream.writeObject(workerMain);
+            objectStream.reset();
+            objectStream.flush();
+            chunks.add(buffer.toByteArray());
+            buffer.reset();
+        }
+
+        @Override
+        public void close() {
+            chunks.add(END_OF_STREAM);
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] bytes = new byte[1];
+            int nread = read(bytes, 0, 1);
+            return nread < 0 ? -1 : bytes[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) throws IOException {
+            if (current == END_OF_STREAM) {
+                return -1;
+            }
+            if (current == null || pos == current.length) {
+                try {
+                    current = chunks.take();
+                } catch (InterruptedException e) {
+                    throw UncheckedException.asUncheckedException(e);
+                }
+                pos = 0;
+                if (current == END_OF_STREAM) {
+                    return -1;
+                }
+            }
+            int count = Math.min(length, current.length - pos);
+            System.arraycopy(current, pos, bytes, offset, count);
+            pos += count;
+            return count;
+        }
+    }
+
+    /**
+     * An {@link ExecHandle} for a single use of a pooled process. Finishes when the worker action run by the lease has
+     * completed, or when the process stops.
+     */
+    class Lease implements ExecHandle {
+        private final String displayName;
+        private final JavaExecHandleBuilder javaCommand;
+        private Callable<?> workerMain;
+        private final List<ExecHandleListener> listeners = new CopyOnWriteArrayList<ExecHandleListener>();
+        private final Lock lock = new ReentrantLock();
+        private final Condition condition = lock.newCondition();
+        private PooledProcess process;
+        private ExecResult result;
+
+        Lease(String displayName, JavaExecHandleBuilder javaCommand) {
+            this.displayName = displayName;
+            this.javaCommand = javaCommand;
+        }
+
+        @Override
+        public String toString() {
+            return displayName;
+        }
+
+        /**
+         * Returns an action which registers for notifications from the worker action, and then executes the given
+         * action. Must be used to accept the connection from the worker action.
+         */
+        Action<ConnectEvent<ObjectConnection>> getConnectAction(final Action<ConnectEvent<ObjectConnection>> action) {
+            return new Action<ConnectEvent<ObjectConnection>>() {
+                public void execute(ConnectEvent<ObjectConnection> event) {
+                    event.getConnection().addIncoming(WorkerActionListener.class, new WorkerActionListener() {
+                        public void completed() {
+                            finished(COMPLETED);
+                        }
+                    });
+                    action.execute(event);
+                }
+            };
+        }
+
+        /**
+         * Sets the main action to send to the process when this lease is started.
+         */
+        void setWorkerMain(Callable<?> workerMain) {
+            this.workerMain = workerMain;
+        }
+
+        public File getDirectory() {
+            return javaCommand.getWorkingDir();
+        }
+
+        public String getCommand() {
+            return javaCommand.getExecutable();
+        }
+
+        public List<String> getArguments() {
+            return javaCommand.getAllArguments();
+        }
+
+        public Map<String, String> getEnvironment() {
+            return javaCommand.getActualEnvironment();
+        }
+
+        public ExecHandle start() {
+            PooledProcess process = acquire(javaCommand);
+            lock.lock();
+            try {
+                this.process = process;
+            } finally {
+                lock.unlock();
+            }
+            for (ExecHandleListener listener : listeners) {
+                listener.executionStarted(this);
+            }
+            process.setLease(this);
+            process.execute(workerMain);
+            return this;
+        }
+
+        public void abort() {
+            PooledProcess process;
+            lock.lock();
+            try {
+                process = this.process;
+            } finally {
+                lock.unlock();
+            }
+            if (process != null) {
+                process.abort();
+            }
+        }
+
+        public ExecResult waitForFinish() {
+            PooledProcess process;
+            ExecResult result;
+            lock.lock();
+            try {
+                while (this.result == null) {
+                    try {
+                        condition.await();
+                    } catch (InterruptedException e) {
+                        throw UncheckedException.asUncheckedException(e);
+                    }
+                }
+                result = this.result;
+                process = this.process;
+                this.process = null;
+            } finally {
+                lock.unlock();
+            }
+
+            if (process != null) {
+                process.setLease(null);
+                if (result == COMPLETED) {
+                    release(process);
+                } else {
+                    discard(process);
+                }
+            }
+            return result.rethrowFailure();
+        }
+
+        public void addListener(ExecHandleListener listener) {
+            listeners.add(listener);
+        }
+
+        public void removeListener(ExecHandleListener listener) {
+            listeners.remove(listener);
+        }
+
+        void processStopped(ExecResult execResult) {
+            finished(execResult);
+        }
+
+        private void finished(ExecResult execResult) {
+            lock.lock();
+            try {
+                if (result != null) {
+                    return;
+                }
+                result = execResult;
+                condition.signalAll();
+            } finally {
+                lock.unlock();
+            }
+            for (ExecHandleListener listener : listeners) {
+                listener.executionFinished(this, execResult);
+            }
+        }
+    }
+}
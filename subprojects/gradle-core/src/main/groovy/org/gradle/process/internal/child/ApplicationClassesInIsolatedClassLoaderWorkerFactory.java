@@ -16,8 +16,10 @@
 
 package org.gradle.process.internal.child;
 
+import org.gradle.api.Action;
 import org.gradle.api.internal.ClassPathRegistry;
 import org.gradle.process.internal.WorkerProcessBuilder;
+import org.gradle.process.internal.WorkerProcessContext;
 import org.gradle.util.GFileUtils;
 
 import java.io.File;
@@ -48,6 +50,8 @@ import java.util.concurrent.Callable;
  *                (ActionExecutionWorker + action implementation)
  * </pre>
  *
+ * <p>A reusable worker process creates new application and implementation ClassLoaders for each worker action it is
+ * sent. The bootstrap and system ClassLoaders are shared by all worker actions.</p>
  */
 public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements WorkerFactory {
     private final Object workerId;
@@ -74,8 +78,11 @@ public class ApplicationClassesInIsolatedClassLoaderWorkerFactory implements Wor
 
     public Callable<?> create() {
         List<URL> applicationClassPath = GFileUtils.toURLs(processBuilder.getApplicationClasspath());
-        ActionExecutionWorker injectedWorker = new ActionExecutionWorker(processBuilder.getWorker(), workerId,
-                displayName, serverAddress);
+        Action<WorkerProcessContext> action = processBuilder.getWorker();
+        if (processBuilder.isReusable()) {
+            action = new ReusableWorkerAction(action);
+        }
+        ActionExecutionWorker injectedWorker = new ActionExecutionWorker(action, workerId, displayName, serverAddress);
         ImplementationClassLoaderWorker worker = new ImplementationClassLoaderWorker(processBuilder.getLogLevel(),
                 processBuilder.getSharedPackages(), implementationClassPath, injectedWorker);
         return new IsolatedApplicationClassLoaderWorker(applicationClassPath, worker);
@@ -50,7 +50,15 @@ public class ImplementationClassLoaderWorker implements Action<WorkerContext>, S
     public void execute(WorkerContext workerContext) {
         LoggingManagerInternal loggingManager = createLoggingManager();
         loggingManager.setLevel(logLevel).start();
+        try {
+            executeWorkerAction(workerContext);
+        } finally {
+            // A reusable worker process runs this stage again for the next worker action
+            loggingManager.stop();
+        }
+    }
 
+    private void executeWorkerAction(WorkerContext workerContext) {
         FilteringClassLoader filteredWorkerClassLoader = new FilteringClassLoader(getClass().getClassLoader());
         filteredWorkerClassLoader.allowPackage("org.slf4j");
         filteredWorkerClassLoader.allowClass(Action.class);
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.process.internal.child;
+
+import org.gradle.api.Action;
+import org.gradle.process.internal.WorkerProcessContext;
+
+import java.io.Serializable;
+
+/**
+ * <p>Wraps the worker action of a reusable worker process. Notifies the build process when the worker action has
+ * completed, so that the worker process can be returned to the pool.</p>
+ *
+ * <p>It is instantiated in the implementation ClassLoader and called from {@link ActionExecutionWorker}.<p>
+ */
+public class ReusableWorkerAction implements Action<WorkerProcessContext>, Serializable {
+    private final Action<WorkerProcessContext> action;
+
+    public ReusableWorkerAction(Action<WorkerProcessContext> action) {
+        this.action = action;
+    }
+
+    public void execute(WorkerProcessContext workerProcessContext) {
+        action.execute(workerProcessContext);
+        workerProcessContext.getServerConnection().addOutgoing(WorkerActionListener.class).completed();
+    }
+}
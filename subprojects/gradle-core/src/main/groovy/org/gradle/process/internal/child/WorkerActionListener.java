@@ -15,20 +15,15 @@
  */
 
 
-package org.gradle.api.internal.tasks.testing.junit
+package org.gradle.process.internal.child;
 
-import org.apache.tools.ant.taskdefs.optional.junit.XMLResultAggregator
 /**
- * @author Tom Eyckmans
+ * Receives notifications from a worker action which is run in a reusable worker process.
  */
-
-class AntJUnitReport {
-
-    void execute(File testResultsDir, File testReportDir, AntBuilder ant) {
-        ant.project.addTaskDefinition('junitreport2', XMLResultAggregator.class)
-        ant.junitreport2(todir: testResultsDir.absolutePath) {
-            fileset(dir: testResultsDir.absolutePath, includes: 'TEST-*.xml')
-            report(todir: testReportDir.absolutePath)
-        }
-    }
-}
\ No newline at end of file
+public interface WorkerActionListener {
+    /**
+     * Called when the worker action has completed successfully, and the worker process can be used to run another
+     * worker action.
+     */
+    void completed();
+}
@@ -16,18 +16,27 @@
 
 package org.gradle.process.internal.launcher;
 
+import java.io.EOFException;
 import java.io.ObjectInputStream;
 import java.util.concurrent.Callable;
 
 /**
- * The main entry point for a worker process. Reads a serialized Callable from stdin, and executes it.
+ * The main entry point for a worker process. Reads serialized Callables from stdin, and executes each of them in turn.
  */
 public class GradleWorkerMain {
     public void run() throws Exception {
-        // Read the main action from stdin and execute it
+        // Read each main action from stdin and execute it. A reusable worker process is sent a main action for each
+        // worker action it runs, so keep going until the end of stdin.
         ObjectInputStream instr = new ObjectInputStream(System.in);
-        Callable<?> main = (Callable<?>) instr.readObject();
-        main.call();
+        while (true) {
+            Callable<?> main;
+            try {
+                main = (Callable<?>) instr.readObject();
+            } catch (EOFException e) {
+                return;
+            }
+            main.call();
+        }
     }
 
     public static void main(String[] args) {
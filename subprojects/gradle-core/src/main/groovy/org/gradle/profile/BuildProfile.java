@@ -44,6 +44,8 @@ public class BuildProfile {
     long projectsLoaded;
     long projectsEvaluated;
     long buildFinished;
+    int reusedScriptClasses;
+    long scriptLoadingSaved;
 
     public BuildProfile(Gradle gradle) {
         this.gradle = gradle;
@@ -203,6 +205,31 @@ public class BuildProfile {
         return result;
     }
 
+    /**
+     * Records that a script class loaded by an earlier build was reused.
+     * @param savedTime time (in mSec) it took the earlier build to load the class
+     */
+    public void addReusedScriptClass(long savedTime) {
+        reusedScriptClasses++;
+        scriptLoadingSaved += savedTime;
+    }
+
+    /**
+     * Get the number of script classes reused from earlier builds in the same process.
+     * @return
+     */
+    public int getReusedScriptClasses() {
+        return reusedScriptClasses;
+    }
+
+    /**
+     * Get the time (in mSec) saved by reusing script classes loaded by earlier builds.
+     * @return
+     */
+    public long getElapsedScriptLoadingSaved() {
+        return scriptLoadingSaved;
+    }
+
     /** Returns max execution time of a project. Useful for deciding the max length of bar chart.
      *
      * @return max execution time of a project (in millis)
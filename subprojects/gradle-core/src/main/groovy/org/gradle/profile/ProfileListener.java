@@ -22,13 +22,15 @@ import org.gradle.api.execution.TaskExecutionListener;
 import org.gradle.api.initialization.Settings;
 import org.gradle.api.invocation.Gradle;
 import org.gradle.api.tasks.TaskState;
+import org.gradle.groovy.scripts.ScriptClassCacheListener;
+import org.gradle.groovy.scripts.ScriptSource;
 
 import java.io.File;
 import java.io.IOException;
 import java.text.SimpleDateFormat;
 import java.util.*;
 
-public class ProfileListener implements BuildListener, ProjectEvaluationListener, TaskExecutionListener {
+public class ProfileListener implements BuildListener, ProjectEvaluationListener, TaskExecutionListener, ScriptClassCacheListener {
     private BuildProfile buildProfile;
     private static final String OUTPUT_DIR = "reports/profile/";
     private static final SimpleDateFormat FILE_DATE_FORMAT = new SimpleDateFormat("yyyy-MM-dd-HH-mm-ss");
@@ -109,6 +111,12 @@ public class ProfileListener implements BuildListener, ProjectEvaluationListener
         taskProfile.setState(state);
     }
 
+    // ScriptClassCacheListener
+
+    public void scriptClassReused(ScriptSource source, long savedTime) {
+        buildProfile.addReusedScriptClass(savedTime);
+    }
+
     /**
      * Container for easier manipulation of outputs. Holds information on output file and template that will be used to write into this file.
      */
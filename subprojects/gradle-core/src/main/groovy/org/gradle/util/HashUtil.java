@@ -21,7 +21,6 @@ import java.math.BigInteger;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.io.File;
-import java.io.InputStream;
 import java.io.FileInputStream;
 import java.io.IOException;
 
@@ -29,6 +28,14 @@ import java.io.IOException;
  * @author Hans Dockter
  */
 public class HashUtil {
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final ThreadLocal<byte[]> BUFFERS = new ThreadLocal<byte[]>() {
+        @Override
+        protected byte[] initialValue() {
+            return new byte[BUFFER_SIZE];
+        }
+    };
+
     public static String createHash(String scriptText) {
         MessageDigest messageDigest;
         try {
@@ -48,8 +55,10 @@ public class HashUtil {
             throw UncheckedException.asUncheckedException(e);
         }
         try {
-            byte[] buffer = new byte[4096];
-            InputStream instr = new FileInputStream(file);
+            // Stream the file through a fixed size buffer per thread, so that memory use does not depend on the size of
+            // the file
+            byte[] buffer = BUFFERS.get();
+            FileInputStream instr = new FileInputStream(file);
             try {
                 while (true) {
                     int nread = instr.read(buffer);
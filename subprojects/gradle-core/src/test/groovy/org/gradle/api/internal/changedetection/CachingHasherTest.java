@@ -16,6 +16,8 @@
 package org.gradle.api.internal.changedetection;
 
 import org.gradle.cache.*;
+import org.gradle.messaging.concurrent.DefaultExecutorFactory;
+import org.gradle.util.HashUtil;
 
 import static org.gradle.util.Matchers.*;
 import org.gradle.util.TemporaryFolder;
@@ -30,6 +32,8 @@ import org.junit.Before;
 import org.junit.runner.RunWith;
 
 import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
 
 @RunWith(JMock.class)
 public class CachingHasherTest {
@@ -113,4 +117,69 @@ public class CachingHasherTest {
 
         assertThat(hasher.hash(file), sameInstance(hash));
     }
+
+    @Test
+    public void hashesOnlyThoseFilesInBatchWhoseHashIsNotCached() {
+        final File other = tmpDir.createFile("other").write("other content");
+        final byte[] otherHash = "other".getBytes();
+        context.checking(new Expectations() {{
+            one(cache).get(file);
+            will(returnValue(new CachingHasher.FileInfo(hash, file.length(), file.lastModified())));
+            one(cache).get(other);
+            will(returnValue(null));
+            one(delegate).hash(other);
+            will(returnValue(otherHash));
+            one(cache).put(with(equalTo(other)), with(reflectionEquals(new CachingHasher.FileInfo(otherHash,
+                    other.length(), other.lastModified()))));
+        }});
+
+        Map<File, byte[]> hashes = hasher.hash(Arrays.asList(file, other));
+
+        assertThat(hashes.size(), equalTo(2));
+        assertThat(hashes.get(file), sameInstance(hash));
+        assertThat(hashes.get(other), sameInstance(otherHash));
+    }
+
+    @Test
+    public void hashesBatchOfFilesConcurrently() {
+        final PersistentIndexedCache<File, CachingHasher.FileInfo> cache = context.mock(PersistentIndexedCache.class,
+                "concurrentCache");
+        final File[] files = new File[20];
+        for (int i = 0; i < files.length; i++) {
+            files[i] = tmpDir.createFile("file" + i).write("content " + i);
+        }
+        context.checking(new Expectations(){{
+            CacheBuilder cacheBuilder = context.mock(CacheBuilder.class, "concurrentCacheBuilder");
+            PersistentCache persistentCache = context.mock(PersistentCache.class, "concurrentPersistentCache");
+
+            one(cacheRepository).cache("fileHashes");
+            will(returnValue(cacheBuilder));
+
+            one(cacheBuilder).open();
+            will(returnValue(persistentCache));
+
+            one(persistentCache).openIndexedCache(with(notNullValue(Serializer.class)));
+            will(returnValue(cache));
+
+            allowing(cache).get(with(notNullValue(File.class)));
+            will(returnValue(null));
+
+            exactly(files.length).of(cache).put(with(notNullValue(File.class)), with(notNullValue(
+                    CachingHasher.FileInfo.class)));
+        }});
+        DefaultExecutorFactory executorFactory = new DefaultExecutorFactory();
+        CachingHasher hasher = new CachingHasher(new DefaultHasher(), cacheRepository, executorFactory);
+
+        Map<File, byte[]> hashes;
+        try {
+            hashes = hasher.hash(Arrays.asList(files));
+        } finally {
+            executorFactory.stop();
+        }
+
+        assertThat(hashes.size(), equalTo(files.length));
+        for (File file : files) {
+            assertTrue(Arrays.equals(hashes.get(file), HashUtil.createHash(file)));
+        }
+    }
 }
@@ -29,9 +29,15 @@ import org.gradle.util.TestFile
 import org.gradle.api.file.FileCollection
 import org.gradle.util.ChangeListener
 import org.gradle.api.file.FileTree
+import org.gradle.cache.CacheBuilder
+import org.gradle.cache.CacheRepository
+import org.gradle.cache.PersistentCache
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.util.TimeProvider
 
 @RunWith(JMock.class)
 public class DefaultFileSnapshotterTest {
+    private static final long OLD_TIMESTAMP = 1000000000000L
     private final JUnit4GroovyMockery context = new JUnit4GroovyMockery()
     private final Hasher hasher = new DefaultHasher()
     private int counter
@@ -316,6 +322,97 @@ public class DefaultFileSnapshotterTest {
         target.changesSince(snapshotter.snapshot(), listener)
     }
 
+    @Test
+    public void reusesRecordedHashesWhenDirectoryHasNotChanged() {
+        Hasher hasher = context.mock(Hasher.class)
+        DefaultFileSnapshotter snapshotter = listingSnapshotter(hasher)
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile file = dir.createFile('file')
+        dir.setLastModified(OLD_TIMESTAMP)
+
+        context.checking {
+            one(hasher).hash([file] as Set)
+            will(returnValue([(file): 'hash'.bytes]))
+        }
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(file))
+
+        snapshotter.snapshot(files(file)).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void hashesFileWhenItHasChangedAndDirectoryHasNotChanged() {
+        DefaultFileSnapshotter snapshotter = listingSnapshotter(hasher)
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile file = dir.createFile('file')
+        dir.setLastModified(OLD_TIMESTAMP)
+
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(file))
+
+        file.write('new content')
+        file.setLastModified(OLD_TIMESTAMP)
+        dir.setLastModified(OLD_TIMESTAMP)
+
+        context.checking {
+            one(listener).changed(file)
+        }
+        snapshotter.snapshot(files(file)).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void fileHasChangedWhenTypeHasChangedAndDirectoryListingIsRecorded() {
+        DefaultFileSnapshotter snapshotter = listingSnapshotter(hasher)
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile file = dir.createFile('file')
+        dir.setLastModified(OLD_TIMESTAMP)
+
+        FileCollectionSnapshot snapshot = snapshotter.snapshot(files(file))
+
+        file.delete()
+        file.createDir()
+
+        context.checking {
+            one(listener).changed(file)
+        }
+        snapshotter.snapshot(files(file)).changesSince(snapshot, listener)
+    }
+
+    @Test
+    public void doesNotTrustListingRecordedShortlyAfterDirectoryWasModified() {
+        Hasher hasher = context.mock(Hasher.class)
+        TestFile dir = tmpDir.createDir('dir')
+        TestFile file = dir.createFile('file')
+        dir.setLastModified(OLD_TIMESTAMP)
+        DefaultFileSnapshotter snapshotter = listingSnapshotter(hasher, OLD_TIMESTAMP + 500)
+
+        context.checking {
+            exactly(2).of(hasher).hash([file] as Set)
+            will(returnValue([(file): 'hash'.bytes]))
+        }
+        snapshotter.snapshot(files(file))
+        snapshotter.snapshot(files(file))
+    }
+
+    private DefaultFileSnapshotter listingSnapshotter(Hasher hasher, long currentTime = System.currentTimeMillis()) {
+        Map<File, DefaultFileSnapshotter.DirectoryListing> listings = [:]
+        PersistentIndexedCache<File, DefaultFileSnapshotter.DirectoryListing> cache = [
+                get: {File key -> listings[key]},
+                put: {File key, DefaultFileSnapshotter.DirectoryListing value -> listings[key] = value},
+                remove: {File key -> listings.remove(key)}
+        ] as PersistentIndexedCache
+        CacheRepository cacheRepository = context.mock(CacheRepository.class)
+        CacheBuilder cacheBuilder = context.mock(CacheBuilder.class)
+        PersistentCache persistentCache = context.mock(PersistentCache.class)
+        context.checking {
+            one(cacheRepository).cache('directoryListings')
+            will(returnValue(cacheBuilder))
+            one(cacheBuilder).open()
+            will(returnValue(persistentCache))
+            one(persistentCache).openIndexedCache(withParam(notNullValue()))
+            will(returnValue(cache))
+        }
+        return new DefaultFileSnapshotter(hasher, cacheRepository, {currentTime} as TimeProvider)
+    }
+
     private FileCollection files(File... files) {
         FileTree collection = context.mock(FileTree.class)
         context.checking {
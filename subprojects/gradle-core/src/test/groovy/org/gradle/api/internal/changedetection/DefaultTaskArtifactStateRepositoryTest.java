@@ -24,18 +24,24 @@ import org.gradle.cache.CacheBuilder;
 import org.gradle.cache.CacheRepository;
 import org.gradle.cache.PersistentCache;
 import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.Serializer;
 import org.gradle.util.*;
 import org.hamcrest.Matcher;
 import org.jmock.Expectations;
+import org.jmock.api.Invocation;
 import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
+import org.jmock.lib.action.CustomAction;
 import org.junit.Before;
 import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.util.*;
+import java.util.concurrent.*;
 
 import static org.gradle.util.Matchers.*;
 import static org.gradle.util.WrapUtil.*;
@@ -554,6 +560,57 @@ public class DefaultTaskArtifactStateRepositoryTest {
         assertThat(state.getOutputFiles().getFiles(), equalTo(toLinkedSet((File) outputDirFile2)));
     }
 
+    @Test
+    public void tasksCanBeCheckedAndUpdatedConcurrently() throws Exception {
+        outputDir.createDir();
+        List<TaskInternal> tasks = new ArrayList<TaskInternal>();
+        Map<TaskInternal, TestFile> outputs = new HashMap<TaskInternal, TestFile>();
+        for (int i = 0; i < 20; i++) {
+            TestFile taskInputFile = tmpDir.createFile("input-" + i);
+            TestFile taskOutputFile = tmpDir.file("output-" + i);
+            // All of the tasks share an output directory
+            TaskInternal task = builder().withPath("task" + i).withInputFiles(taskInputFile, inputDir).withOutputFiles(
+                    taskOutputFile, outputDir).task();
+            tasks.add(task);
+            outputs.put(task, taskOutputFile);
+        }
+        expectEmptyCacheLocated();
+
+        assertThat(checkConcurrently(tasks, outputs), equalTo(Collections.nCopies(tasks.size(), false)));
+        assertThat(checkConcurrently(tasks, outputs), equalTo(Collections.nCopies(tasks.size(), true)));
+    }
+
+    private List<Boolean> checkConcurrently(List<TaskInternal> tasks, final Map<TaskInternal, TestFile> outputs)
+            throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            final CountDownLatch start = new CountDownLatch(1);
+            List<Future<Boolean>> futures = new ArrayList<Future<Boolean>>();
+            for (final TaskInternal task : tasks) {
+                futures.add(executor.submit(new Callable<Boolean>() {
+                    public Boolean call() throws Exception {
+                        start.await();
+                        TaskArtifactState state = repository.getStateFor(task);
+                        boolean upToDate = state.isUpToDate();
+                        if (!upToDate) {
+                            outputs.get(task).createFile();
+                            state.update();
+                        }
+                        return upToDate;
+                    }
+                }));
+            }
+            start.countDown();
+            List<Boolean> results = new ArrayList<Boolean>();
+            for (Future<Boolean> future : futures) {
+                results.add(future.get(30, TimeUnit.SECONDS));
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
     private void execute() {
         execute(task());
     }
@@ -581,8 +638,12 @@ public class DefaultTaskArtifactStateRepositoryTest {
             one(builder).open();
             will(returnValue(persistentCache));
             
-            one(persistentCache).openIndexedCache();
-            will(returnValue(new TestIndexedCache()));
+            one(persistentCache).openIndexedCache(with(notNullValue(Serializer.class)));
+            will(new CustomAction("open serializing cache") {
+                public Object invoke(Invocation invocation) throws Throwable {
+                    return new SerializingIndexedCache((Serializer<Object>) invocation.getParameter(0));
+                }
+            });
         }});
     }
 
@@ -684,4 +745,39 @@ public class DefaultTaskArtifactStateRepositoryTest {
             entries.remove(key);
         }
     }
+
+    public static class SerializingIndexedCache implements PersistentIndexedCache<Object, Object> {
+        private final Map<Object, byte[]> entries = new HashMap<Object, byte[]>();
+        private final Serializer<Object> serializer;
+
+        public SerializingIndexedCache(Serializer<Object> serializer) {
+            this.serializer = serializer;
+        }
+
+        public Object get(Object key) {
+            byte[] content = entries.get(key);
+            if (content == null) {
+                return null;
+            }
+            try {
+                return serializer.read(new ByteArrayInputStream(content));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+        }
+
+        public void put(Object key, Object value) {
+            ByteArrayOutputStream outstr = new ByteArrayOutputStream();
+            try {
+                serializer.write(outstr, value);
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
+            entries.put(key, outstr.toByteArray());
+        }
+
+        public void remove(Object key) {
+            entries.remove(key);
+        }
+    }
 }
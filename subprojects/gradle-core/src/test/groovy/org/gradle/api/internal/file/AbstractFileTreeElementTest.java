@@ -20,6 +20,7 @@ import org.gradle.util.TestFile;
 import org.gradle.util.TemporaryFolder;
 import org.gradle.util.GFileUtils;
 
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
 import org.junit.Rule;
@@ -51,6 +52,44 @@ public class AbstractFileTreeElementTest {
         assertTrue(element.needsCopy(dest));
     }
 
+    @Test
+    public void doesNotRewriteTargetWhichHasSameContent() throws IOException {
+        TestFile source = tmpDir.createFile("src").write("content");
+        TestFile dest = tmpDir.getDir().file("dest").write("content");
+        dest.setLastModified(source.lastModified() - 10000);
+
+        TestFileTreeElement element = new TestFileTreeElement(source);
+
+        assertFalse(element.copyTo(dest));
+        assertEquals(source.lastModified(), dest.lastModified());
+    }
+
+    @Test
+    public void copiesFileWhenTargetHasDifferentContent() throws IOException {
+        TestFile source = tmpDir.createFile("src").write("content");
+        TestFile dest = tmpDir.getDir().file("dest").write("CONTENT");
+        dest.setLastModified(source.lastModified() - 10000);
+
+        TestFileTreeElement element = new TestFileTreeElement(source);
+
+        assertTrue(element.copyTo(dest));
+        dest.assertContents(equalTo("content"));
+        assertEquals(source.lastModified(), dest.lastModified());
+    }
+
+    @Test
+    public void copiesRegularFile() throws IOException {
+        TestFile source = tmpDir.createFile("src").write("content");
+        TestFile dest = tmpDir.getDir().file("dir/dest").write("longer content");
+        dest.setLastModified(source.lastModified() - 10000);
+
+        DefaultFileTreeElement element = new DefaultFileTreeElement(source, RelativePath.parse(true, "src"));
+
+        assertTrue(element.copyTo(dest));
+        dest.assertContents(equalTo("content"));
+        assertFalse(element.copyTo(dest));
+    }
+
     private class TestFileTreeElement extends AbstractFileTreeElement {
         private final TestFile file;
 
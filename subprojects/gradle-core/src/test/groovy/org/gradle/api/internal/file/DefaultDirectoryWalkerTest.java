@@ -16,10 +16,13 @@
 package org.gradle.api.internal.file;
 
 import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.file.FileVisitor;
 import org.gradle.api.file.RelativePath;
 import org.gradle.api.internal.file.copy.CopySpecVisitor;
 import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
 import org.hamcrest.BaseMatcher;
 import org.hamcrest.Description;
 import org.hamcrest.Matcher;
@@ -32,6 +35,7 @@ import org.jmock.integration.junit4.JMock;
 import org.jmock.integration.junit4.JUnit4Mockery;
 import org.jmock.lib.legacy.ClassImposteriser;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -40,11 +44,16 @@ import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
 @RunWith(JMock.class)
 public class DefaultDirectoryWalkerTest {
     private JUnit4Mockery context = new JUnit4Mockery() {{
         setImposteriser(ClassImposteriser.INSTANCE);
     }};
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
     private CopySpecVisitor visitor;
     private DirectoryWalker walker;
 
@@ -179,6 +188,61 @@ public class DefaultDirectoryWalkerTest {
         walker.start(root.getMock());
     }
 
+    @Test public void parallelWalkVisitsInSameOrderAsSequentialWalk() {
+        TestFile root = createTree();
+
+        List<String> expected = walk(root, 1, false, -1);
+        assertThat(expected.size(), equalTo(24));
+        assertThat(walk(root, 4, false, -1), equalTo(expected));
+
+        expected = walk(root, 1, true, -1);
+        assertThat(walk(root, 4, true, -1), equalTo(expected));
+    }
+
+    @Test public void parallelWalkCanBeStoppedByVisitor() {
+        TestFile root = createTree();
+
+        List<String> expected = walk(root, 1, false, 7);
+        assertThat(expected.size(), equalTo(7));
+        assertThat(walk(root, 4, false, 7), equalTo(expected));
+    }
+
+    private TestFile createTree() {
+        TestFile root = tmpDir.createDir("root");
+        for (int i = 0; i < 3; i++) {
+            root.file("file" + i).createFile();
+            for (int j = 0; j < 3; j++) {
+                root.file("dir" + i, "sub" + j, "file").createFile();
+            }
+        }
+        return root;
+    }
+
+    private List<String> walk(File root, int threads, boolean depthFirst, final int stopAfter) {
+        final List<String> visited = new ArrayList<String>();
+        DefaultDirectoryWalker walker = new DefaultDirectoryWalker(new FileVisitor() {
+            public void visitDir(FileVisitDetails dirDetails) {
+                visit(dirDetails);
+            }
+
+            public void visitFile(FileVisitDetails fileDetails) {
+                visit(fileDetails);
+            }
+
+            private void visit(FileVisitDetails details) {
+                visited.add(details.getRelativePath().getPathString());
+                if (visited.size() == stopAfter) {
+                    details.stopVisiting();
+                }
+            }
+        }).parallel(threads);
+        if (depthFirst) {
+            walker.depthFirst();
+        }
+        walker.start(root);
+        return visited;
+    }
+
     private Action stopVisiting() {
         return new Action() {
             public void describeTo(Description description) {
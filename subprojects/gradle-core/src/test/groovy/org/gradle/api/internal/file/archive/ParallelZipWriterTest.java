@@ -0,0 +1,223 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.archive;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.gradle.api.file.RelativePath;
+import org.gradle.api.internal.file.DefaultFileTreeElement;
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class ParallelZipWriterTest {
+    @Rule
+    public final TemporaryFolder tmpDir = new TemporaryFolder();
+    private TestFile textFile;
+    private TestFile jarFile;
+    private TestFile randomFile;
+
+    @Before
+    public void setUp() throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("line ").append(i).append('\n');
+        }
+        textFile = tmpDir.getDir().file("file.txt").write(text);
+        jarFile = tmpDir.getDir().file("lib.jar").write(text);
+        byte[] random = new byte[4096];
+        new Random(1).nextBytes(random);
+        randomFile = tmpDir.getDir().file("file.bin");
+        FileUtils.writeByteArrayToFile(randomFile, random);
+    }
+
+    @Test
+    public void writesEntriesInTheOrderTheyWereAdded() throws IOException {
+        TestFile zip = write(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "out.zip");
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertThat(names(zipFile), equalTo(Arrays.asList("dir/", "dir/file.txt", "lib.jar", "file.bin", "dir/file2.txt")));
+            assertTrue(zipFile.getEntry("dir/").isDirectory());
+            assertContent(zipFile, "dir/file.txt", textFile);
+            assertContent(zipFile, "lib.jar", jarFile);
+            assertContent(zipFile, "file.bin", randomFile);
+            assertContent(zipFile, "dir/file2.txt", textFile);
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void storesEntriesWhichAreAlreadyCompressedOrDoNotCompress() throws IOException {
+        TestFile zip = write(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "out.zip");
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertThat(zipFile.getEntry("dir/file.txt").getMethod(), equalTo(ZipEntry.DEFLATED));
+            assertThat(zipFile.getEntry("lib.jar").getMethod(), equalTo(ZipEntry.STORED));
+            assertThat(zipFile.getEntry("file.bin").getMethod(), equalTo(ZipEntry.STORED));
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void contentDoesNotDependOnNumberOfThreads() throws IOException {
+        TestFile zip1 = write(1, ParallelZipWriter.LARGE_ENTRY_SIZE, "out1.zip");
+        TestFile zip2 = write(2, ParallelZipWriter.LARGE_ENTRY_SIZE, "out2.zip");
+        TestFile zip8 = write(8, ParallelZipWriter.LARGE_ENTRY_SIZE, "out8.zip");
+
+        assertTrue(FileUtils.contentEquals(zip1, zip2));
+        assertTrue(FileUtils.contentEquals(zip1, zip8));
+    }
+
+    @Test
+    public void streamsLargeEntries() throws IOException {
+        TestFile zip = write(4, 100, "out.zip");
+
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertThat(names(zipFile), equalTo(Arrays.asList("dir/", "dir/file.txt", "lib.jar", "file.bin", "dir/file2.txt")));
+            assertThat(zipFile.getEntry("dir/file.txt").getMethod(), equalTo(ZipEntry.DEFLATED));
+            assertThat(zipFile.getEntry("lib.jar").getMethod(), equalTo(ZipEntry.STORED));
+            assertContent(zipFile, "dir/file.txt", textFile);
+            assertContent(zipFile, "lib.jar", jarFile);
+            assertContent(zipFile, "file.bin", randomFile);
+            assertContent(zipFile, "dir/file2.txt", textFile);
+        } finally {
+            zipFile.close();
+        }
+
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zip.unzipTo(expandDir);
+        expandDir.file("dir/file.txt").assertContents(equalTo(textFile.getText()));
+    }
+
+    @Test
+    public void reusesCompressedContentOfUnchangedEntries() throws IOException {
+        TestFile previous = write(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "previous.zip");
+
+        ParallelZipWriter writer = writer(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "out.zip", previous);
+        TestFile zip = write(writer, "out.zip");
+
+        assertThat(writer.getReusedEntries(), equalTo(3));
+        assertTrue(FileUtils.contentEquals(previous, zip));
+    }
+
+    @Test
+    public void compressesEntriesWhichHaveChanged() throws IOException {
+        TestFile previous = write(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "previous.zip");
+        textFile.write("changed");
+
+        ParallelZipWriter writer = writer(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "out.zip", previous);
+        TestFile zip = write(writer, "out.zip");
+
+        assertThat(writer.getReusedEntries(), equalTo(1));
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertThat(names(zipFile), equalTo(Arrays.asList("dir/", "dir/file.txt", "lib.jar", "file.bin", "dir/file2.txt")));
+            assertContent(zipFile, "dir/file.txt", textFile);
+            assertContent(zipFile, "file.bin", randomFile);
+            assertContent(zipFile, "dir/file2.txt", textFile);
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void reusesCompressedContentOfUnchangedLargeEntries() throws IOException {
+        TestFile previous = write(4, 100, "previous.zip");
+
+        ParallelZipWriter writer = writer(4, 100, "out.zip", previous);
+        TestFile zip = write(writer, "out.zip");
+
+        assertThat(writer.getReusedEntries(), equalTo(3));
+        ZipFile zipFile = new ZipFile(zip);
+        try {
+            assertContent(zipFile, "dir/file.txt", textFile);
+            assertContent(zipFile, "lib.jar", jarFile);
+            assertContent(zipFile, "file.bin", randomFile);
+            assertContent(zipFile, "dir/file2.txt", textFile);
+        } finally {
+            zipFile.close();
+        }
+    }
+
+    @Test
+    public void ignoresPreviousFileWhichIsNotAZipFile() throws IOException {
+        ParallelZipWriter writer = writer(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "out.zip", textFile);
+        TestFile zip = write(writer, "out.zip");
+
+        assertThat(writer.getReusedEntries(), equalTo(0));
+        assertTrue(FileUtils.contentEquals(write(4, ParallelZipWriter.LARGE_ENTRY_SIZE, "expected.zip"), zip));
+    }
+
+    private TestFile write(int threads, long largeEntrySize, String name) throws IOException {
+        return write(writer(threads, largeEntrySize, name, null), name);
+    }
+
+    private ParallelZipWriter writer(int threads, long largeEntrySize, String name, File previous) throws IOException {
+        ParallelZipWriter writer = new ParallelZipWriter(new FileOutputStream(tmpDir.getDir().file(name)), threads, largeEntrySize);
+        if (previous != null) {
+            writer.reuseEntriesFrom(previous);
+        }
+        return writer;
+    }
+
+    private TestFile write(ParallelZipWriter writer, String name) throws IOException {
+        writer.putDirectory("dir", 1000L, 0755);
+        writer.putFile(element(textFile), "dir/file.txt", 1000L, 0644);
+        writer.putFile(element(jarFile), "lib.jar", 1000L, 0644);
+        writer.putFile(element(randomFile), "file.bin", 1000L, 0644);
+        writer.putFile(element(textFile), "dir/file2.txt", 1000L, 0644);
+        writer.close();
+        return tmpDir.getDir().file(name);
+    }
+
+    private DefaultFileTreeElement element(File file) {
+        return new DefaultFileTreeElement(file, RelativePath.parse(true, file.getName()));
+    }
+
+    private List<String> names(ZipFile zipFile) {
+        List<String> names = new ArrayList<String>();
+        for (Enumeration<? extends ZipEntry> entries = zipFile.entries(); entries.hasMoreElements();) {
+            names.add(entries.nextElement().getName());
+        }
+        return names;
+    }
+
+    private void assertContent(ZipFile zipFile, String name, File expected) throws IOException {
+        byte[] content = IOUtils.toByteArray(zipFile.getInputStream(zipFile.getEntry(name)));
+        assertTrue(Arrays.equals(content, FileUtils.readFileToByteArray(expected)));
+    }
+}
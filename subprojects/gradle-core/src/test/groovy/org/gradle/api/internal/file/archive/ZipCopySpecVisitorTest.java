@@ -81,6 +81,44 @@ public class ZipCopySpecVisitorTest {
         expandDir.file("file2").assertContents(equalTo("contents of file2"));
     }
 
+    @Test
+    public void updatesExistingZipFileIncrementally() {
+        final TestFile zipFile = tmpDir.getDir().file("test.zip");
+        final ZipCopyAction incrementalAction = context.mock(ZipCopyAction.class);
+
+        context.checking(new Expectations(){{
+            allowing(copyAction).getArchivePath();
+            will(returnValue(zipFile));
+            allowing(incrementalAction).getArchivePath();
+            will(returnValue(zipFile));
+            allowing(incrementalAction).isIncremental();
+            will(returnValue(true));
+        }});
+
+        FileVisitDetails dir = dir("dir");
+        FileVisitDetails file1 = file("dir/file1");
+        FileVisitDetails file2 = file("file2");
+
+        visitor.startVisit(copyAction);
+        visitor.visitSpec(copySpec);
+        visitor.visitDir(dir);
+        visitor.visitFile(file1);
+        visitor.endVisit();
+
+        visitor.startVisit(incrementalAction);
+        visitor.visitSpec(copySpec);
+        visitor.visitDir(dir);
+        visitor.visitFile(file1);
+        visitor.visitFile(file2);
+        visitor.endVisit();
+
+        assertThat(tmpDir.getDir().list(), equalTo(new String[]{"test.zip"}));
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zipFile.unzipTo(expandDir);
+        expandDir.file("dir/file1").assertContents(equalTo("contents of dir/file1"));
+        expandDir.file("file2").assertContents(equalTo("contents of file2"));
+    }
+
     @Test
     public void wrapsFailureToOpenOutputFile() {
         final TestFile zipFile = tmpDir.createDir("test.zip");
@@ -120,6 +158,57 @@ public class ZipCopySpecVisitorTest {
         }
     }
 
+    @Test
+    public void discardsIncompleteZipFileWhenVisitIsAborted() {
+        final TestFile zipFile = tmpDir.getDir().file("test.zip");
+
+        context.checking(new Expectations(){{
+            allowing(copyAction).getArchivePath();
+            will(returnValue(zipFile));
+        }});
+
+        visitor.startVisit(copyAction);
+        visitor.visitSpec(copySpec);
+        visitor.visitFile(file("file1"));
+        visitor.abortVisit();
+
+        zipFile.assertDoesNotExist();
+    }
+
+    @Test
+    public void leavesExistingZipFileUnchangedWhenIncrementalUpdateIsAborted() {
+        final TestFile zipFile = tmpDir.getDir().file("test.zip");
+        final ZipCopyAction incrementalAction = context.mock(ZipCopyAction.class);
+
+        context.checking(new Expectations(){{
+            allowing(copyAction).getArchivePath();
+            will(returnValue(zipFile));
+            allowing(incrementalAction).getArchivePath();
+            will(returnValue(zipFile));
+            allowing(incrementalAction).isIncremental();
+            will(returnValue(true));
+        }});
+
+        FileVisitDetails file1 = file("file1");
+
+        visitor.startVisit(copyAction);
+        visitor.visitSpec(copySpec);
+        visitor.visitFile(file1);
+        visitor.endVisit();
+
+        visitor.startVisit(incrementalAction);
+        visitor.visitSpec(copySpec);
+        visitor.visitFile(file1);
+        visitor.visitFile(file("file2"));
+        visitor.abortVisit();
+
+        assertThat(tmpDir.getDir().list(), equalTo(new String[]{"test.zip"}));
+        TestFile expandDir = tmpDir.getDir().file("expanded");
+        zipFile.unzipTo(expandDir);
+        expandDir.file("file1").assertContents(equalTo("contents of file1"));
+        expandDir.file("file2").assertDoesNotExist();
+    }
+
     private FileVisitDetails file(final String path) {
         final FileVisitDetails details = context.mock(FileVisitDetails.class, path);
 
@@ -130,6 +219,9 @@ public class ZipCopySpecVisitorTest {
             allowing(details).getLastModified();
             will(returnValue(1000L));
 
+            allowing(details).getSize();
+            will(returnValue(100L));
+
             allowing(details).copyTo(with(notNullValue(OutputStream.class)));
             will(new Action() {
                 public void describeTo(Description description) {
@@ -170,6 +262,9 @@ public class ZipCopySpecVisitorTest {
             allowing(details).getLastModified();
             will(returnValue(1000L));
 
+            allowing(details).getSize();
+            will(returnValue(100L));
+
             allowing(details).copyTo(with(notNullValue(OutputStream.class)));
             will(new Action() {
                 public void describeTo(Description description) {
@@ -27,6 +27,13 @@ import static org.gradle.api.tasks.AntBuilderAwareUtil.*;
 import static org.gradle.api.file.FileVisitorUtil.*;
 import org.gradle.api.InvalidUserDataException;
 import org.gradle.api.GradleException;
+import org.gradle.api.file.EmptyFileVisitor;
+import org.gradle.api.file.FileVisitDetails;
+import org.gradle.api.internal.file.DefaultConfigurableFileTree;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashMap;
+import java.util.Map;
 
 import static java.util.Collections.*;
 
@@ -53,6 +60,69 @@ public class ZipFileTreeTest {
         assertSetContainsForAllTypes(tree, toList("subdir/file1.txt", "subdir2/file2.txt"));
     }
 
+    @Test
+    public void readsContentOfFilesWithoutExpandingZipFile() {
+        rootDir.file("subdir/file1.txt").write("content 1");
+        rootDir.file("subdir2/file2.txt").write("content 2");
+        rootDir.zipTo(zipFile);
+
+        final Map<String, String> content = new HashMap<String, String>();
+        tree.visit(new EmptyFileVisitor() {
+            @Override
+            public void visitFile(FileVisitDetails fileDetails) {
+                ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+                fileDetails.copyTo(outputStream);
+                content.put(fileDetails.getPath(), outputStream.toString());
+            }
+        });
+
+        assertThat(content.size(), equalTo(2));
+        assertThat(content.get("subdir/file1.txt"), equalTo("content 1"));
+        assertThat(content.get("subdir2/file2.txt"), equalTo("content 2"));
+        assertFalse(expandDir.exists());
+    }
+
+    @Test
+    public void visitsNewContentsWhenZipFileChanges() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.zipTo(zipFile);
+        assertVisits(tree, toList("subdir/file1.txt"), toList("subdir"));
+
+        rootDir.file("subdir/file2.txt").write("content");
+        zipFile.delete();
+        rootDir.zipTo(zipFile);
+        zipFile.setLastModified(zipFile.lastModified() - 10000);
+
+        assertVisits(tree, toList("subdir/file1.txt", "subdir/file2.txt"), toList("subdir"));
+    }
+
+    @Test
+    public void expandsOnlyChangedEntriesWhenConvertedToFileTrees() {
+        rootDir.file("subdir/file1.txt").write("content");
+        rootDir.file("subdir/file2.txt").write("content");
+        rootDir.zipTo(zipFile);
+
+        DefaultConfigurableFileTree fileTree = tree.getAsFileTrees().iterator().next();
+        TestFile expanded = new TestFile(fileTree.getDir());
+        expanded.file("subdir/file1.txt").assertContents(equalTo("content"));
+        expanded.file("subdir/file2.txt").assertContents(equalTo("content"));
+
+        // Same size and timestamp as the entry, so is not extracted again
+        TestFile file1 = expanded.file("subdir/file1.txt");
+        long lastModified = file1.lastModified();
+        file1.write("CONTENT");
+        file1.setLastModified(lastModified);
+
+        rootDir.file("subdir/file2.txt").write("new content");
+        zipFile.delete();
+        rootDir.zipTo(zipFile);
+        zipFile.setLastModified(zipFile.lastModified() - 10000);
+
+        tree.getAsFileTrees();
+        expanded.file("subdir/file1.txt").assertContents(equalTo("CONTENT"));
+        expanded.file("subdir/file2.txt").assertContents(equalTo("new content"));
+    }
+
     @Test
     public void canStopVisitingFiles() {
         rootDir.file("subdir/file1.txt").write("content");
@@ -68,6 +68,25 @@ public class CopyActionImplTest extends Specification {
         0 * visitor._
     }
    
+    def abortsVisitWhenSpecCannotBeCopied() {
+        FileTree source = Mock()
+        _ * source.matching(_) >> source
+        RuntimeException failure = new RuntimeException()
+
+        when:
+        copyAction.execute()
+
+        then:
+        RuntimeException e = thrown()
+        e == failure
+        1 * visitor.startVisit(copyAction)
+        1 * visitor.visitSpec(copyAction.rootSpec)
+        1 * resolver.resolveFilesAsTree([[] as Set] as Object[]) >> source
+        1 * source.visit(visitor) >> { throw failure }
+        1 * visitor.abortVisit()
+        0 * visitor._
+    }
+
     def allSourceIncludesSourceFromAllSpecs() {
         FileTree mainSource = Mock()
         _ * mainSource.matching(_) >> mainSource
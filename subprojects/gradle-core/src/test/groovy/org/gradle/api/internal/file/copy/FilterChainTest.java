@@ -20,10 +20,13 @@ import org.gradle.util.HelperUtil;
 import org.gradle.util.WrapUtil;
 import org.junit.Test;
 
+import java.io.ByteArrayInputStream;
 import java.io.FilterReader;
 import java.io.IOException;
+import java.io.InputStream;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.Arrays;
 
 import static org.gradle.util.WrapUtil.*;
 import static org.hamcrest.Matchers.*;
@@ -71,6 +74,44 @@ public class FilterChainTest {
         assertThat(IOUtils.toString(transformedReader), equalTo("[1][2][3]"));
     }
 
+    @Test
+    public void expandsPropertyReferencesWithoutUsingTemplateEngine() throws IOException {
+        filterChain.expand(WrapUtil.toMap("prop", 1));
+        Reader transformedReader = filterChain.transform(new StringReader("[$prop][${prop}] $prop"));
+        assertThat(IOUtils.toString(transformedReader), equalTo("[1][1] 1"));
+    }
+
+    @Test
+    public void transformsInputStream() throws IOException {
+        filterChain.expand(WrapUtil.toMap("prop", "value"));
+        filterChain.add(HelperUtil.toClosure("{ it.toUpperCase() }"));
+        InputStream transformed = filterChain.transform(new ByteArrayInputStream("one $prop\ntwo".getBytes()));
+        String separator = System.getProperty("line.separator");
+        assertThat(IOUtils.toString(transformed), equalTo("ONE VALUE" + separator + "TWO"));
+    }
+
+    @Test
+    public void usesOriginalContentWhenFiltersDoNotChangeIt() throws IOException {
+        filterChain.expand(WrapUtil.toMap("prop", 1));
+        byte[] content = "no properties\nhere\n".getBytes();
+        InputStream transformed = filterChain.transform(new ByteArrayInputStream(content));
+        assertTrue(Arrays.equals(IOUtils.toByteArray(transformed), content));
+    }
+
+    @Test
+    public void streamsContentWhichDoesNotFitInMemory() throws IOException {
+        filterChain.add(HelperUtil.toClosure("{ it.toUpperCase() }"));
+        StringBuilder content = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        String separator = System.getProperty("line.separator");
+        for (int i = 0; content.length() <= FilterChain.IN_MEMORY_LIMIT; i++) {
+            content.append("line ").append(i).append('\n');
+            expected.append("LINE ").append(i).append(separator);
+        }
+        InputStream transformed = filterChain.transform(new ByteArrayInputStream(content.toString().getBytes()));
+        assertThat(IOUtils.toString(transformed), equalTo(expected.toString()));
+    }
+
     public static class TestFilterReader extends FilterReader {
         String property;
 
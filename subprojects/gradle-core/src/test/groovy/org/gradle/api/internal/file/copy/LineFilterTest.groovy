@@ -68,6 +68,31 @@ public class LineFilterTest {
         assertThat(filter.text, equalTo(lines("1 - one", "2 - two", "3 - three")))
     }
 
+    @Test public void testLinesLongerThanBuffer() {
+        String line = 'x' * 10000
+        Reader input = new StringReader("$line\r\n$line")
+        int lineCount = 1;
+        LineFilter filter = new LineFilter(input, { "${lineCount++} - $it" as String })
+
+        assertThat(filter.text, equalTo(lines("1 - $line", "2 - $line")))
+    }
+
+    @Test public void testLinesFilteredToEmptyString() {
+        Reader input = new StringReader("one\ntwo\nthree");
+        LineFilter filter = new LineFilter(input, { it == 'two' ? it : '' })
+
+        assertThat(filter.text, equalTo(lines("", "two", "")))
+    }
+
+    @Test public void transformsTextInTheSameWayAsReader() {
+        ["", "\n\n", "one", "one\r\ntwo\r\nthree\r\n", "one\ntwo\nthree", "one\rtwo\r\n\rthree"].each { String text ->
+            int lineCount = 1;
+            String expected = new LineFilter(new StringReader(text), { "${lineCount++} - $it" as String }).text
+            lineCount = 1;
+            assertThat(LineFilter.transform(text, { "${lineCount++} - $it" as String }), equalTo(expected))
+        }
+    }
+
     private String lines(String ... lines) {
         return (lines as List).join(System.getProperty('line.separator'))
     }
@@ -80,6 +80,21 @@ public class SyncCopySpecVisitorTest {
         destDir.assertHasDescendants("included.txt");
     }
 
+    @Test
+    public void deletesExtraFilesFromParentDirectoriesOfVisitedFiles() {
+        TestFile destDir = tmpDir.createDir("dest");
+        destDir.file("subdir/nested/included.txt").createFile();
+        destDir.file("subdir/nested/extra.txt").createFile();
+        destDir.file("subdir/extra.txt").createFile();
+        destDir.file("subdir/extra/extra.txt").createFile();
+
+        visitor.startVisit(action(destDir));
+        visitor.visitFile(file("subdir/nested/included.txt"));
+        visitor.endVisit();
+
+        destDir.assertHasDescendants("subdir/nested/included.txt");
+    }
+
     @Test
     public void doesNotDeleteDestDirectoryWhenNothingCopied() {
         TestFile destDir = tmpDir.createDir("dest");
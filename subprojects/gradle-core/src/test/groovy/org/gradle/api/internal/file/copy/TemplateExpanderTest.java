@@ -0,0 +1,68 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.copy;
+
+import groovy.lang.MissingPropertyException;
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class TemplateExpanderTest {
+    private final Map<String, Object> properties = new HashMap<String, Object>();
+    private final TemplateExpander expander = new TemplateExpander(properties);
+
+    @Test
+    public void returnsTextWithoutReferencesUnchanged() {
+        String text = "some text\n";
+        assertThat(expander.expand(text), sameInstance(text));
+    }
+
+    @Test
+    public void replacesPropertyReferences() {
+        properties.put("prop", 12);
+        properties.put("name", "value");
+        properties.put("empty", null);
+
+        assertThat(expander.expand("[$prop][${name}]-$name-${empty}"), equalTo("[12][value]-value-null"));
+    }
+
+    @Test
+    public void usesTemplateEngineForExpressionsScriptletsAndEscapes() {
+        properties.put("prop", 1);
+        properties.put("name", "value");
+        properties.put("map", Collections.singletonMap("name", "value"));
+
+        assertThat(expander.expand("${prop + 1}"), equalTo("2"));
+        assertThat(expander.expand("<% out << prop %>"), equalTo("1"));
+        assertThat(expander.expand("$map.name"), equalTo("value"));
+        assertThat(expander.expand("\\$name"), equalTo("$name"));
+    }
+
+    @Test
+    public void failsForUnknownProperty() {
+        try {
+            expander.expand("$unknown");
+            fail();
+        } catch (MissingPropertyException e) {
+            assertThat(e.getProperty(), equalTo("unknown"));
+        }
+    }
+}
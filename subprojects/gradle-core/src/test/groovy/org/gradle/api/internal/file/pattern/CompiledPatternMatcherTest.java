@@ -0,0 +1,136 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.file.pattern;
+
+import org.gradle.api.file.RelativePath;
+import org.junit.Test;
+
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CompiledPatternMatcherTest {
+    private CompiledPatternMatcher matcher;
+
+    @Test public void matchesWhenAnyPatternMatches() {
+        matcher = matcher(false, true, "a/b", "a/c", "d/*.txt");
+
+        assertTrue(matcher.isSatisfiedBy(file("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("d", "x.txt")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "d")));
+        assertFalse(matcher.isSatisfiedBy(file("a")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "b", "c")));
+        assertFalse(matcher.isSatisfiedBy(file("d", "x.java")));
+    }
+
+    @Test public void matchesWildcards() {
+        matcher = matcher(false, true, "*.java", "a*b", "any??ing", "x*y*z");
+
+        assertTrue(matcher.isSatisfiedBy(file("Thing.java")));
+        assertTrue(matcher.isSatisfiedBy(file(".java")));
+        assertTrue(matcher.isSatisfiedBy(file("ab")));
+        assertTrue(matcher.isSatisfiedBy(file("aXXb")));
+        assertTrue(matcher.isSatisfiedBy(file("anything")));
+        assertTrue(matcher.isSatisfiedBy(file("xyz")));
+        assertTrue(matcher.isSatisfiedBy(file("x1y2z")));
+        assertFalse(matcher.isSatisfiedBy(file("Thing.groovy")));
+        assertFalse(matcher.isSatisfiedBy(file("ba")));
+        assertFalse(matcher.isSatisfiedBy(file("anyXXXing")));
+        assertFalse(matcher.isSatisfiedBy(file("xzy")));
+    }
+
+    @Test public void matchesGreedySteps() {
+        matcher = matcher(false, true, "a/**/c", "**/test/**");
+
+        assertTrue(matcher.isSatisfiedBy(file("a", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "c", "a", "c")));
+        assertTrue(matcher.isSatisfiedBy(file("test")));
+        assertTrue(matcher.isSatisfiedBy(file("src", "test", "main")));
+        assertTrue(matcher.isSatisfiedBy(file("src", "main", "test")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "c", "d")));
+        assertFalse(matcher.isSatisfiedBy(file("src", "main", "fred")));
+    }
+
+    @Test public void matchesTrailingSeparatorAsGreedy() {
+        matcher = matcher(false, true, "a/b/", "c\\");
+
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "x")));
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(file("c", "x", "y")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "x")));
+    }
+
+    @Test public void partiallyMatchesDirs() {
+        matcher = matcher(true, true, "a/b/c", "d/**/e");
+
+        assertTrue(matcher.isSatisfiedBy(dir("a")));
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(dir("d", "x", "y")));
+        assertFalse(matcher.isSatisfiedBy(dir("b")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "b")));
+
+        matcher = matcher(false, true, "a/b/c");
+        assertFalse(matcher.isSatisfiedBy(dir("a", "b")));
+        assertTrue(matcher.isSatisfiedBy(dir("a", "b", "c")));
+    }
+
+    @Test public void matchesNameOnlyPatternsAgainstFiles() {
+        matcher = matcher(false, true, "**/CVS", "**/*~", "**/.svn/**");
+
+        assertTrue(matcher.isSatisfiedBy(file("CVS")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "CVS")));
+        assertTrue(matcher.isSatisfiedBy(file("a", "b", "thing~")));
+        assertTrue(matcher.isSatisfiedBy(dir("a", ".svn")));
+        assertTrue(matcher.isSatisfiedBy(file("a", ".svn", "entries")));
+        assertFalse(matcher.isSatisfiedBy(dir("a", "CVS")));
+        assertFalse(matcher.isSatisfiedBy(file("a", "CVS", "thing")));
+
+        matcher = matcher(true, true, "**/CVS");
+        assertTrue(matcher.isSatisfiedBy(dir("a")));
+    }
+
+    @Test public void emptyPatternMatchesOnlyEmptyPath() {
+        matcher = matcher(true, true, "");
+
+        assertTrue(matcher.isSatisfiedBy(new RelativePath(false)));
+        assertFalse(matcher.isSatisfiedBy(dir("a")));
+    }
+
+    @Test public void matchesCaseInsensitive() {
+        matcher = matcher(false, true, "a/b", "**/*.txt");
+        assertFalse(matcher.isSatisfiedBy(file("A", "B")));
+        assertFalse(matcher.isSatisfiedBy(file("A.TXT")));
+
+        matcher = matcher(false, false, "a/b", "**/*.txt", "**/Name");
+        assertTrue(matcher.isSatisfiedBy(file("A", "B")));
+        assertTrue(matcher.isSatisfiedBy(file("A.TXT")));
+        assertTrue(matcher.isSatisfiedBy(file("nAME")));
+    }
+
+    private CompiledPatternMatcher matcher(boolean partialMatchDirs, boolean caseSensitive, String... patterns) {
+        return new CompiledPatternMatcher(partialMatchDirs, caseSensitive, Arrays.asList(patterns));
+    }
+
+    private RelativePath file(String... segments) {
+        return new RelativePath(true, segments);
+    }
+
+    private RelativePath dir(String... segments) {
+        return new RelativePath(false, segments);
+    }
+}
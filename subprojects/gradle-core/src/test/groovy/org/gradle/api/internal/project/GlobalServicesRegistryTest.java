@@ -22,6 +22,7 @@ import org.gradle.api.internal.DefaultClassPathRegistry;
 import org.gradle.api.internal.GradleDistributionLocator;
 import org.gradle.cache.AutoCloseCacheFactory;
 import org.gradle.cache.CacheFactory;
+import org.gradle.groovy.scripts.ScriptClassCache;
 import org.gradle.initialization.ClassLoaderFactory;
 import org.gradle.initialization.CommandLineConverter;
 import org.gradle.initialization.DefaultClassLoaderFactory;
@@ -60,6 +61,12 @@ public class GlobalServicesRegistryTest {
         assertThat(registry.get(ClassLoaderFactory.class), instanceOf(DefaultClassLoaderFactory.class));
     }
 
+    @Test
+    public void providesAScriptClassCache() {
+        assertThat(registry.get(ScriptClassCache.class), instanceOf(ScriptClassCache.class));
+        assertThat(registry.get(ScriptClassCache.class), sameInstance(registry.get(ScriptClassCache.class)));
+    }
+
     @Test
     public void providesALoggingManagerFactory() {
         assertThat(registry.getFactory(LoggingManagerInternal.class), instanceOf(DefaultLoggingManagerFactory.class));
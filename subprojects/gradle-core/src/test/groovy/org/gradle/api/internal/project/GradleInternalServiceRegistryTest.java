@@ -28,6 +28,7 @@ import org.gradle.execution.DefaultTaskGraphExecuter;
 import org.gradle.execution.TaskGraphExecuter;
 import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.util.JUnit4GroovyMockery;
 import org.gradle.util.MultiParentClassLoader;
 import org.jmock.Expectations;
@@ -51,6 +52,7 @@ public class GradleInternalServiceRegistryTest {
     private final PublishModuleDescriptorConverter publishModuleDescriptorConverter =
             context.mock(PublishModuleDescriptorConverter.class);
     private final ListenerManager listenerManager = context.mock(ListenerManager.class);
+    private final ExecutorFactory executorFactory = context.mock(ExecutorFactory.class);
 
     @Before
     public void setUp() {
@@ -59,6 +61,8 @@ public class GradleInternalServiceRegistryTest {
             will(returnValue(publishModuleDescriptorConverter));
             allowing(parent).get(ListenerManager.class);
             will(returnValue(listenerManager));
+            allowing(parent).get(ExecutorFactory.class);
+            will(returnValue(executorFactory));
             allowing(gradle).getStartParameter();
             will(returnValue(startParameter));
             allowing(gradle).getScriptClassLoader();
@@ -35,6 +35,7 @@ import org.gradle.configuration.DefaultBuildConfigurer;
 import org.gradle.configuration.DefaultScriptPluginFactory;
 import org.gradle.configuration.ScriptPluginFactory;
 import org.gradle.groovy.scripts.DefaultScriptCompilerFactory;
+import org.gradle.groovy.scripts.ScriptClassCache;
 import org.gradle.groovy.scripts.ScriptCompilerFactory;
 import org.gradle.initialization.*;
 import org.gradle.listener.DefaultListenerManager;
@@ -76,6 +77,7 @@ public class TopLevelBuildServiceRegistryTest {
     private final ClassLoaderFactory classLoaderFactory = context.mock(ClassLoaderFactory.class);
     private final Factory<LoggingManagerInternal> loggingManagerFactory = context.mock(Factory.class);
     private final ProgressLoggerFactory progressLoggerFactory = context.mock(ProgressLoggerFactory.class);
+    private final ScriptClassCache scriptClassCache = new ScriptClassCache(getClass().getClassLoader());
 
     @Before
     public void setUp() {
@@ -91,6 +93,8 @@ public class TopLevelBuildServiceRegistryTest {
             will(returnValue(loggingManagerFactory));
             allowing(parent).get(ProgressLoggerFactory.class);
             will(returnValue(progressLoggerFactory));
+            allowing(parent).get(ScriptClassCache.class);
+            will(returnValue(scriptClassCache));
         }});
     }
     
@@ -0,0 +1,214 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache;
+
+import org.gradle.util.TemporaryFolder;
+import org.gradle.util.TestFile;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.nio.channels.OverlappingFileLockException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class CacheLockTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final TestFile lockFile = tmpDir.file("cache.lock");
+    private final AtomicInteger changes = new AtomicInteger();
+    private Runnable onChange;
+    private final Runnable changeAction = new Runnable() {
+        public void run() {
+            changes.incrementAndGet();
+            if (onChange != null) {
+                onChange.run();
+            }
+        }
+    };
+    private final CacheLock lock = new CacheLock(lockFile, changeAction);
+    private final CacheLock otherLock = new CacheLock(lockFile);
+
+    @After
+    public void teardown() {
+        lock.close();
+        otherLock.close();
+    }
+
+    @Test
+    public void multipleThreadsCanHoldSharedLock() throws InterruptedException {
+        final CountDownLatch locked = new CountDownLatch(2);
+        final CountDownLatch release = new CountDownLatch(1);
+        Runnable reader = new Runnable() {
+            public void run() {
+                lock.lockShared();
+                try {
+                    locked.countDown();
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                } finally {
+                    lock.unlockShared();
+                }
+            }
+        };
+        Thread reader1 = new Thread(reader);
+        Thread reader2 = new Thread(reader);
+        reader1.start();
+        reader2.start();
+
+        assertTrue(locked.await(10, TimeUnit.SECONDS));
+        release.countDown();
+        reader1.join();
+        reader2.join();
+
+        lock.lockExclusive();
+        lock.unlockExclusive();
+    }
+
+    @Test
+    public void exclusiveLockIsReentrant() {
+        lock.lockExclusive();
+        lock.lockExclusive();
+        lock.markModified();
+        lock.unlockExclusive();
+        lock.unlockExclusive();
+
+        lock.lockShared();
+        lock.unlockShared();
+        assertThat(changes.get(), equalTo(0));
+    }
+
+    @Test
+    public void runsChangeActionWhenModifiedByAnotherLockHolder() {
+        lock.lockShared();
+        lock.unlockShared();
+
+        otherLock.lockExclusive();
+        otherLock.markModified();
+        otherLock.unlockExclusive();
+
+        lock.lockShared();
+        lock.unlockShared();
+        assertThat(changes.get(), equalTo(1));
+
+        lock.lockExclusive();
+        lock.unlockExclusive();
+        assertThat(changes.get(), equalTo(1));
+    }
+
+    @Test
+    public void doesNotRunChangeActionWhenNotModified() {
+        lock.lockShared();
+        lock.unlockShared();
+
+        otherLock.lockExclusive();
+        otherLock.unlockExclusive();
+        otherLock.lockShared();
+        otherLock.unlockShared();
+
+        lock.lockExclusive();
+        lock.unlockExclusive();
+        assertThat(changes.get(), equalTo(0));
+    }
+
+    @Test
+    public void doesNotRunChangeActionForOwnModifications() {
+        lock.lockExclusive();
+        lock.markModified();
+        lock.unlockExclusive();
+
+        lock.lockShared();
+        lock.unlockShared();
+        assertThat(changes.get(), equalTo(0));
+    }
+
+    @Test
+    public void changeActionCanModifyCache() {
+        lock.lockShared();
+        lock.unlockShared();
+
+        otherLock.lockExclusive();
+        otherLock.markModified();
+        otherLock.unlockExclusive();
+
+        onChange = new Runnable() {
+            public void run() {
+                lock.markModified();
+            }
+        };
+        lock.lockShared();
+        lock.unlockShared();
+        assertThat(changes.get(), equalTo(1));
+
+        onChange = null;
+        otherLock.lockShared();
+        otherLock.unlockShared();
+        lock.lockShared();
+        lock.unlockShared();
+        assertThat(changes.get(), equalTo(1));
+    }
+
+    @Test
+    public void holdsFileLockOnlyWhileLockIsHeld() {
+        lock.lockShared();
+        try {
+            otherLock.lockExclusive();
+            fail();
+        } catch (OverlappingFileLockException e) {
+            // expected
+        }
+        lock.unlockShared();
+
+        otherLock.lockExclusive();
+        otherLock.unlockExclusive();
+
+        lock.lockExclusive();
+        lock.unlockExclusive();
+        otherLock.lockShared();
+        otherLock.unlockShared();
+    }
+
+    @Test
+    public void writerCanAcquireSharedLock() {
+        lock.lockExclusive();
+        lock.lockShared();
+        lock.unlockShared();
+        lock.unlockExclusive();
+
+        otherLock.lockExclusive();
+        otherLock.unlockExclusive();
+    }
+
+    @Test
+    public void writesModificationCountWhenFirstMarkedModified() {
+        lock.lockExclusive();
+        lock.markModified();
+        assertThat(lockFile.length(), equalTo(8L));
+        lock.markModified();
+        lock.unlockExclusive();
+
+        otherLock.lockShared();
+        otherLock.unlockShared();
+        lock.lockShared();
+        lock.unlockShared();
+        assertThat(changes.get(), equalTo(0));
+    }
+}
@@ -130,4 +130,13 @@ public class DefaultCacheRepositoryTest {
 
         assertThat(repository.cache("a/b/c").invalidateOnVersionChange().forObject(gradle).open(), sameInstance(cache));
     }
+
+    @Test
+    public void closesCacheUsingFactory() {
+        context.checking(new Expectations() {{
+            one(cacheFactory).close(cache);
+        }});
+
+        repository.close(cache);
+    }
 }
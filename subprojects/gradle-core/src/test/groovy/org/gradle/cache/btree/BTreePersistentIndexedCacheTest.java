@@ -263,6 +263,119 @@ public class BTreePersistentIndexedCacheTest {
         assertThat(cache.get(new File("File")), equalTo(3));
     }
 
+    @Test
+    public void persistsEntriesUsingMappedFile() {
+        cache.close();
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100, true);
+
+        checkAdds(3, 2, 11, 5, 7, 1, 10, 8, 9, 4, 6, 0);
+        checkAddsAndRemoves(1, 2, 3, 4, 5, 6, 7, 8, 9, 10);
+        cache.verify();
+    }
+
+    @Test
+    public void mappedFileCanReadEntriesWrittenUsingFileBackedStore() {
+        checkAdds(1, 2, 3, 4, 5);
+        cache.close();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100, true);
+        assertThat(cache.get("key_3"), equalTo(3));
+        checkAdds(6, 7, 8);
+        cache.close();
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100, false);
+        assertThat(cache.get("key_1"), equalTo(1));
+        assertThat(cache.get("key_8"), equalTo(8));
+        cache.verify();
+    }
+
+    @Test
+    public void mappedFileCanGrowBeyondInitialRegion() {
+        cache.close();
+        BTreePersistentIndexedCache<String, String> cache = new BTreePersistentIndexedCache<String, String>(
+                backingCache, new DefaultSerializer<String>(), (short) 4, 100, true);
+        char[] chars = new char[64 * 1024];
+        Arrays.fill(chars, 'a');
+        String value = new String(chars);
+
+        for (int i = 0; i < 40; i++) {
+            cache.put(String.format("key_%d", i), value + i);
+        }
+        assertThat(tmpDir.getDir().file("cache.bin").length(), greaterThan((long) MappedFileBlockStore.GROWTH_CHUNK_SIZE));
+        for (int i = 0; i < 40; i++) {
+            assertThat(cache.get(String.format("key_%d", i)), equalTo(value + i));
+        }
+        cache.verify();
+        cache.close();
+    }
+
+    @Test
+    public void mappedFileDiscardsBadlyFormedCacheFile() throws IOException {
+        cache.close();
+        TestFile testFile = tmpDir.getDir().file("cache.bin");
+        testFile.write("some junk");
+
+        cache = new BTreePersistentIndexedCache<String, Integer>(backingCache, serializer, (short) 4, 100, true);
+
+        assertNull(cache.get("key_1"));
+        checkAdds(1, 2, 3);
+        cache.verify();
+    }
+
+    @Test
+    public void seesChangesMadeThroughAnotherInstance() {
+        cache.put("key_1", 1);
+
+        BTreePersistentIndexedCache<String, Integer> other = new BTreePersistentIndexedCache<String, Integer>(
+                backingCache, serializer, (short) 4, 100);
+        assertThat(other.get("key_1"), equalTo(1));
+        other.put("key_1", 11);
+        other.put("key_2", 2);
+
+        assertThat(cache.get("key_1"), equalTo(11));
+        assertThat(cache.get("key_2"), equalTo(2));
+
+        cache.put("key_3", 3);
+        assertThat(other.get("key_3"), equalTo(3));
+
+        other.close();
+        cache.verify();
+    }
+
+    @Test
+    public void multipleThreadsCanReadEntriesConcurrently() throws InterruptedException {
+        List<Integer> values = new ArrayList<Integer>();
+        for (int i = 0; i < 100; i++) {
+            values.add(i);
+        }
+        final Map<String, Integer> entries = checkAdds(values);
+        final List<Throwable> failures = Collections.synchronizedList(new ArrayList<Throwable>());
+        List<Thread> readers = new ArrayList<Thread>();
+        for (int i = 0; i < 4; i++) {
+            readers.add(new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        for (Map.Entry<String, Integer> entry : entries.entrySet()) {
+                            assertThat(cache.get(entry.getKey()), equalTo(entry.getValue()));
+                        }
+                    } catch (Throwable throwable) {
+                        failures.add(throwable);
+                    }
+                }
+            });
+        }
+        for (Thread reader : readers) {
+            reader.start();
+        }
+        for (Thread reader : readers) {
+            reader.join();
+        }
+
+        assertThat(failures, equalTo(Collections.<Throwable>emptyList()));
+        cache.verify();
+    }
+
     private void checkAdds(Integer... values) {
         checkAdds(Arrays.asList(values));
     }
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.cache.btree;
+
+import org.gradle.util.TemporaryFolder;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+public class CachingBlockStoreTest {
+    @Rule
+    public TemporaryFolder tmpDir = new TemporaryFolder();
+    private final BlockStore.Factory factory = new BlockStore.Factory() {
+        public Object create(Class<? extends BlockPayload> type) {
+            return new TestBlock();
+        }
+    };
+    private FileBackedBlockStore backingStore;
+    private CachingBlockStore store;
+
+    @Before
+    public void setup() {
+        backingStore = new FileBackedBlockStore(tmpDir.file("cache.bin"));
+    }
+
+    @After
+    public void teardown() {
+        store.close();
+    }
+
+    @Test
+    public void servesReadsOfCachedBlocksFromMemory() {
+        open(10, 10000, CachingBlockStore.EvictionPolicy.LEAST_RECENTLY_USED);
+        TestBlock block = write(12);
+        store.flush();
+
+        assertThat(store.read(block.getPos(), TestBlock.class), sameInstance(block));
+        assertThat(store.read(block.getPos(), TestBlock.class), sameInstance(block));
+
+        assertThat(store.getStatistics().getHits(), equalTo(2L));
+        assertThat(store.getStatistics().getMisses(), equalTo(0L));
+        assertThat(store.getStatistics().getEvictions(), equalTo(0L));
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedBlockWhenMaxBlockCountReached() {
+        open(2, 10000, CachingBlockStore.EvictionPolicy.LEAST_RECENTLY_USED);
+        TestBlock block1 = write(1);
+        TestBlock block2 = write(2);
+        store.flush();
+        store.read(block1.getPos(), TestBlock.class);
+
+        write(3);
+        store.flush();
+
+        assertThat(store.getStatistics().getEvictions(), equalTo(1L));
+        assertThat(store.read(block1.getPos(), TestBlock.class), sameInstance(block1));
+        TestBlock reloaded = store.read(block2.getPos(), TestBlock.class);
+        assertThat(reloaded, not(sameInstance(block2)));
+        assertThat(reloaded.value, equalTo(2));
+        assertThat(store.getStatistics().getMisses(), equalTo(1L));
+    }
+
+    @Test
+    public void evictsFirstAddedBlockWhenUsingFifoPolicy() {
+        open(2, 10000, CachingBlockStore.EvictionPolicy.FIRST_IN_FIRST_OUT);
+        TestBlock block1 = write(1);
+        TestBlock block2 = write(2);
+        store.flush();
+        store.read(block1.getPos(), TestBlock.class);
+
+        write(3);
+        store.flush();
+
+        assertThat(store.read(block2.getPos(), TestBlock.class), sameInstance(block2));
+        assertThat(store.read(block1.getPos(), TestBlock.class), not(sameInstance(block1)));
+    }
+
+    @Test
+    public void evictsBlocksWhenMaxBytesReached() {
+        int blockSize = new TestBlock().getSize() + 14;
+        open(100, blockSize * 3, CachingBlockStore.EvictionPolicy.LEAST_RECENTLY_USED);
+        for (int i = 0; i < 5; i++) {
+            write(i);
+        }
+        store.flush();
+
+        assertThat(store.getStatistics().getEvictions(), equalTo(2L));
+    }
+
+    @Test
+    public void doesNotCacheRemovedBlocks() {
+        open(10, 10000, CachingBlockStore.EvictionPolicy.LEAST_RECENTLY_USED);
+        TestBlock block = write(1);
+        store.flush();
+        BlockPointer pos = block.getPos();
+
+        store.remove(block);
+        TestBlock replacement = new TestBlock();
+        replacement.value = 2;
+        store.write(replacement);
+        store.flush();
+
+        assertThat(store.read(replacement.getPos(), TestBlock.class).value, equalTo(2));
+        assertThat(store.read(pos, TestBlock.class), not(sameInstance(block)));
+    }
+
+    private void open(int maxBlocks, long maxBytes, CachingBlockStore.EvictionPolicy policy) {
+        store = new CachingBlockStore(backingStore, maxBlocks, maxBytes, policy, TestBlock.class);
+        store.open(new Runnable() {
+            public void run() {
+            }
+        }, factory);
+    }
+
+    private TestBlock write(int value) {
+        TestBlock block = new TestBlock();
+        block.value = value;
+        store.write(block);
+        return block;
+    }
+
+    private static class TestBlock extends BlockPayload {
+        int value;
+
+        @Override
+        protected int getSize() {
+            return Block.INT_SIZE;
+        }
+
+        @Override
+        protected int getType() {
+            return 0x11;
+        }
+
+        @Override
+        protected void read(DataInputStream inputStream) throws Exception {
+            value = inputStream.readInt();
+        }
+
+        @Override
+        protected void write(DataOutputStream outputStream) throws Exception {
+            outputStream.writeInt(value);
+        }
+    }
+}
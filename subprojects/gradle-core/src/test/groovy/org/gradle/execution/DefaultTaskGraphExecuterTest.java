@@ -30,6 +30,7 @@ import org.gradle.api.tasks.TaskExecutionException;
 import org.gradle.api.tasks.TaskState;
 import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
+import org.gradle.messaging.concurrent.DefaultExecutorFactory;
 import org.gradle.util.TestClosure;
 import org.jmock.Expectations;
 import org.jmock.integration.junit4.JMock;
@@ -39,6 +40,7 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.Callable;
 
@@ -57,7 +59,7 @@ public class DefaultTaskGraphExecuterTest {
     private final ListenerManager listenerManager = context.mock(ListenerManager.class);
     TaskGraphExecuter taskExecuter;
     ProjectInternal root;
-    List<Task> executedTasks = new ArrayList<Task>();
+    List<Task> executedTasks = Collections.synchronizedList(new ArrayList<Task>());
 
     @Before
     public void setUp() {
@@ -385,6 +387,76 @@ public class DefaultTaskGraphExecuterTest {
         assertThat(taskExecuter.getAllTasks(), equalTo(toList(b, c)));
     }
 
+    @Test
+    public void testExecutesTasksInParallelInDependencyOrder() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter(3);
+        Task a = createTask("a");
+        Task b = createTask("b", a);
+        Task c = createTask("c");
+        Task d = createTask("d", c);
+        Task e = createTask("e", b, d);
+
+        parallelExecuter.execute(toList(e));
+
+        assertThat(executedTasks.size(), equalTo(5));
+        assertExecutedBefore(a, b);
+        assertExecutedBefore(c, d);
+        assertExecutedBefore(b, e);
+        assertExecutedBefore(d, e);
+    }
+
+    @Test
+    public void testExecutesBatchesInOrderAddedWhenExecutingInParallel() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter(3);
+        Task a = createTask("a");
+        Task b = createTask("b");
+        Task c = createTask("c");
+
+        parallelExecuter.addTasks(toList(a, b));
+        parallelExecuter.addTasks(toList(c));
+        parallelExecuter.execute();
+
+        assertThat(executedTasks.size(), equalTo(3));
+        assertExecutedBefore(a, c);
+        assertExecutedBefore(b, c);
+    }
+
+    @Test
+    public void testDoesNotStartDependentTasksWhenTaskFailsWhenExecutingInParallel() {
+        TaskGraphExecuter parallelExecuter = createParallelExecuter(2);
+        final RuntimeException failure = new RuntimeException();
+        Task a = createTask("a");
+        a.doLast(new Action<Task>() {
+            public void execute(Task task) {
+                throw failure;
+            }
+        });
+        Task b = createTask("b", a);
+
+        try {
+            parallelExecuter.execute(toList(b));
+            fail();
+        } catch (TaskExecutionException e) {
+            assertThat(e.getCause(), sameInstance((Throwable) failure));
+        }
+
+        assertThat(executedTasks, equalTo(toList(a)));
+    }
+
+    private TaskGraphExecuter createParallelExecuter(int maxParallelTasks) {
+        context.checking(new Expectations(){{
+            one(listenerManager).createAnonymousBroadcaster(TaskExecutionGraphListener.class);
+            will(returnValue(new ListenerBroadcast<TaskExecutionGraphListener>(TaskExecutionGraphListener.class)));
+            one(listenerManager).createAnonymousBroadcaster(TaskExecutionListener.class);
+            will(returnValue(new ListenerBroadcast<TaskExecutionListener>(TaskExecutionListener.class)));
+        }});
+        return new DefaultTaskGraphExecuter(listenerManager, new DefaultExecutorFactory(), maxParallelTasks);
+    }
+
+    private void assertExecutedBefore(Task first, Task second) {
+        assertThat(executedTasks.indexOf(first), lessThan(executedTasks.indexOf(second)));
+    }
+
     private Task createTask(String name, final Task... dependsOn) {
         final TaskInternal task = AbstractTask.injectIntoNewInstance(root, name, new Callable<TaskInternal>() {
             public TaskInternal call() throws Exception {
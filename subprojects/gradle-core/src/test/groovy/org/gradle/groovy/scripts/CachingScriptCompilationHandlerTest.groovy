@@ -15,11 +15,16 @@
  */
 package org.gradle.groovy.scripts
 
+import org.gradle.api.internal.resource.Resource
+import org.gradle.util.MultiParentClassLoader
 import spock.lang.Specification
 
 class CachingScriptCompilationHandlerTest extends Specification {
     private final ScriptCompilationHandler target = Mock()
-    private final CachingScriptCompilationHandler handler = new CachingScriptCompilationHandler(target)
+    private final ScriptClassCacheListener listener = Mock()
+    private final ClassLoader rootClassLoader = new URLClassLoader([] as URL[])
+    private final ScriptClassCache sharedCache = new ScriptClassCache(rootClassLoader)
+    private final CachingScriptCompilationHandler handler = new CachingScriptCompilationHandler(target, sharedCache, listener)
 
     def cachesScriptClassForGivenClassDirAndParentClassLoader() {
         ScriptSource script1 = scriptSource('script')
@@ -83,9 +88,79 @@ class CachingScriptCompilationHandlerTest extends Specification {
         1 * target.loadFromDir(script2, parentClassLoader2, cacheDir, Script.class) >> Script.class
     }
     
-    def scriptSource(String className = 'script') {
+    def reusesScriptClassLoadedByEarlierBuildWithClassLoaderWhichAddsNoClasses() {
+        ScriptSource script1 = scriptSource('script')
+        ScriptSource script2 = scriptSource('script')
+        CachingScriptCompilationHandler laterBuild = new CachingScriptCompilationHandler(target, sharedCache, listener)
+        File cacheDir = new File('cacheDir')
+
+        when:
+        def c1 = handler.loadFromDir(script1, new MultiParentClassLoader(rootClassLoader), cacheDir, Script.class)
+        def c2 = laterBuild.loadFromDir(script2, new URLClassLoader([] as URL[], new MultiParentClassLoader(rootClassLoader)), cacheDir, Script.class)
+
+        then:
+        c2 == c1
+        1 * target.loadFromDir(script1, _, cacheDir, Script.class) >> Script.class
+        1 * listener.scriptClassReused(script2, _)
+        0 * target._
+    }
+
+    def doesNotReuseScriptClassWhenScriptHasChanged() {
+        ScriptSource script1 = scriptSource('script', 'content')
+        ScriptSource script2 = scriptSource('script', 'changed')
+        CachingScriptCompilationHandler laterBuild = new CachingScriptCompilationHandler(target, sharedCache, listener)
+        File cacheDir = new File('cacheDir')
+
+        when:
+        handler.loadFromDir(script1, rootClassLoader, cacheDir, Script.class)
+        laterBuild.loadFromDir(script2, rootClassLoader, cacheDir, Script.class)
+
+        then:
+        1 * target.loadFromDir(script1, rootClassLoader, cacheDir, Script.class) >> Script.class
+        1 * target.loadFromDir(script2, rootClassLoader, cacheDir, Script.class) >> Script.class
+        0 * listener._
+    }
+
+    def doesNotReuseScriptClassWhenScriptIsRecompiled() {
+        ScriptSource script1 = scriptSource('script')
+        ScriptSource script2 = scriptSource('script')
+        CachingScriptCompilationHandler laterBuild = new CachingScriptCompilationHandler(target, sharedCache, listener)
+        File cacheDir = new File('cacheDir')
+
+        when:
+        handler.loadFromDir(script1, rootClassLoader, cacheDir, Script.class)
+        laterBuild.compileToDir(script2, rootClassLoader, cacheDir, null, Script.class)
+        laterBuild.loadFromDir(script2, rootClassLoader, cacheDir, Script.class)
+
+        then:
+        1 * target.loadFromDir(script1, rootClassLoader, cacheDir, Script.class) >> Script.class
+        1 * target.loadFromDir(script2, rootClassLoader, cacheDir, Script.class) >> Script.class
+        0 * listener._
+    }
+
+    def doesNotShareScriptClassLoadedWithClassLoaderWhichAddsClasses() {
+        ScriptSource script1 = scriptSource('script')
+        ScriptSource script2 = scriptSource('script')
+        CachingScriptCompilationHandler laterBuild = new CachingScriptCompilationHandler(target, sharedCache, listener)
+        ClassLoader parentClassLoader = new URLClassLoader([new File('lib.jar').toURI().toURL()] as URL[], rootClassLoader)
+        File cacheDir = new File('cacheDir')
+
+        when:
+        handler.loadFromDir(script1, parentClassLoader, cacheDir, Script.class)
+        laterBuild.loadFromDir(script2, parentClassLoader, cacheDir, Script.class)
+
+        then:
+        1 * target.loadFromDir(script1, parentClassLoader, cacheDir, Script.class) >> Script.class
+        1 * target.loadFromDir(script2, parentClassLoader, cacheDir, Script.class) >> Script.class
+        0 * listener._
+    }
+
+    def scriptSource(String className = 'script', String content = 'content') {
         ScriptSource script = Mock()
+        Resource resource = Mock()
         _ * script.className >> className
+        _ * script.resource >> resource
+        _ * resource.text >> content
         script
     }
 }
@@ -64,6 +64,7 @@ public class DefaultCommandLineConverterTest {
     private boolean expectedColorOutput = true;
     private StartParameter actualStartParameter;
     private boolean expectedProfile;
+    private int expectedParallelThreadCount;
 
     private final DefaultCommandLineConverter commandLineConverter = new DefaultCommandLineConverter();
 
@@ -95,6 +96,7 @@ public class DefaultCommandLineConverterTest {
         assertEquals(expectedExcludedTasks, startParameter.getExcludedTaskNames());
         assertEquals(expectedInitScripts, startParameter.getInitScripts());
         assertEquals(expectedProfile, startParameter.isProfile());
+        assertEquals(expectedParallelThreadCount, startParameter.getParallelThreadCount());
     }
 
     private void checkConversion(final boolean embedded, String... args) {
@@ -352,6 +354,22 @@ public class DefaultCommandLineConverterTest {
         checkConversion("--profile");
     }
 
+    @Test
+    public void withParallelThreads() {
+        expectedParallelThreadCount = 4;
+        checkConversion("--parallel-threads", "4");
+    }
+
+    @Test(expected = CommandLineArgumentException.class)
+    public void withNonNumericParallelThreads() {
+        checkConversion("--parallel-threads", "many");
+    }
+
+    @Test(expected = CommandLineArgumentException.class)
+    public void withZeroParallelThreads() {
+        checkConversion("--parallel-threads", "0");
+    }
+
     @Test(expected = CommandLineArgumentException.class)
     public void withUnknownOption() {
         checkConversion("--unknown");
@@ -22,6 +22,7 @@ import org.gradle.util.MultithreadedTestCase
 import org.jmock.integration.junit4.JMock
 import org.junit.Test
 import org.junit.runner.RunWith
+import java.util.concurrent.TimeUnit
 import static org.hamcrest.Matchers.*
 import static org.junit.Assert.*
 
@@ -30,6 +31,7 @@ public class AsyncDispatchTest extends MultithreadedTestCase {
     private final JUnit4GroovyMockery context = new JUnit4GroovyMockery()
     private final Dispatch<String> target1 = context.mock(Dispatch.class, "target1")
     private final Dispatch<String> target2 = context.mock(Dispatch.class, "target2")
+    private final BatchDispatch<String> batchTarget = context.mock(BatchDispatch.class, "batchTarget")
     private final AsyncDispatch<String> dispatch = new AsyncDispatch<String>(executor)
 
     @Test
@@ -82,6 +84,45 @@ public class AsyncDispatchTest extends MultithreadedTestCase {
         dispatch.stop()
     }
 
+    @Test
+    public void dispatchesQueuedMessagesToBatchTargetAsASingleBatch() {
+        context.checking {
+            one(batchTarget).dispatchBatch(['message1'])
+            will {
+                syncAt(1)
+                syncAt(2)
+            }
+            one(batchTarget).dispatchBatch(['message2', 'message3'])
+        }
+
+        run {
+            dispatch.dispatchTo(batchTarget)
+            dispatch.dispatch('message1')
+            syncAt(1)
+
+            dispatch.dispatch('message2')
+            dispatch.dispatch('message3')
+            syncAt(2)
+        }
+
+        dispatch.stop()
+    }
+
+    @Test
+    public void waitsForBatchDelayBeforeDispatchingBatch() {
+        context.checking {
+            one(batchTarget).dispatchBatch(['message1', 'message2', 'message3'])
+        }
+
+        dispatch.setBatchDelay(60, TimeUnit.SECONDS)
+        dispatch.dispatchTo(batchTarget)
+        dispatch.dispatch('message1')
+        dispatch.dispatch('message2')
+        dispatch.dispatch('message3')
+
+        dispatch.stop()
+    }
+
     @Test
     public void canStopFromMultipleThreads() {
         dispatch.dispatchTo(target1)
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.dispatch
+
+import org.gradle.util.MultithreadedTestCase
+import org.junit.Test
+import java.util.concurrent.CopyOnWriteArrayList
+import static org.hamcrest.Matchers.*
+import static org.junit.Assert.*
+
+public class MessageQueueTest extends MultithreadedTestCase {
+    private final MessageQueue<String> queue = new MessageQueue<String>(2)
+
+    @Test
+    public void takesMessagesInTheOrderTheyWereAdded() {
+        assertTrue(queue.put('message1'))
+        assertTrue(queue.put('message2'))
+
+        assertThat(queue.take(), equalTo('message1'))
+        assertThat(queue.take(), equalTo('message2'))
+        assertTrue(queue.isEmpty())
+    }
+
+    @Test
+    public void takeBlocksUntilMessageAdded() {
+        run {
+            start {
+                expectBlocksUntil(1) {
+                    assertThat(queue.take(), equalTo('message1'))
+                }
+            }
+            syncAt(1)
+            queue.put('message1')
+        }
+    }
+
+    @Test
+    public void putBlocksWhileQueueIsFull() {
+        queue.put('message1')
+        queue.put('message2')
+
+        run {
+            start {
+                expectBlocksUntil(1) {
+                    assertTrue(queue.put('message3'))
+                }
+            }
+            syncAt(1)
+            assertThat(queue.take(), equalTo('message1'))
+        }
+
+        waitForAll()
+        assertThat(queue.takeAll(0), equalTo(['message2', 'message3']))
+    }
+
+    @Test
+    public void takeReturnsRemainingMessagesAndThenNullAfterClose() {
+        queue.put('message1')
+        queue.close()
+
+        assertFalse(queue.put('message2'))
+        assertThat(queue.take(), equalTo('message1'))
+        assertThat(queue.take(), nullValue())
+        assertThat(queue.takeAll(0), equalTo([]))
+    }
+
+    @Test
+    public void closeWakesUpWaitingConsumer() {
+        run {
+            start {
+                expectBlocksUntil(1) {
+                    assertThat(queue.take(), nullValue())
+                }
+            }
+            syncAt(1)
+            queue.close()
+        }
+    }
+
+    @Test
+    public void closeWakesUpWaitingProducer() {
+        queue.put('message1')
+        queue.put('message2')
+
+        run {
+            start {
+                expectBlocksUntil(1) {
+                    assertFalse(queue.put('message3'))
+                }
+            }
+            syncAt(1)
+            queue.close()
+        }
+    }
+
+    @Test
+    public void takeAllWaitsForQueueToFillUp() {
+        run {
+            start {
+                expectBlocksUntil(1) {
+                    assertThat(queue.takeAll(60000000000L), equalTo(['message1', 'message2', 'message3']))
+                }
+            }
+            syncAt(1)
+            queue.put('message1')
+            queue.put('message2')
+            queue.put('message3')
+        }
+    }
+
+    @Test
+    public void deliversAllMessagesFromMultipleProducers() {
+        MessageQueue<Integer> queue = new MessageQueue<Integer>(10)
+        int producers = 4
+        int messages = 5000
+        producers.times { producer ->
+            start {
+                messages.times { queue.put(producer * messages + it) }
+            }
+        }
+
+        List<Integer> received = []
+        (producers * messages).times { received << queue.take() }
+        waitForAll()
+
+        assertTrue(queue.isEmpty())
+        producers.times { producer ->
+            assertThat(received.findAll { it / messages as int == producer }, equalTo((0..<messages).collect { producer * messages + it }))
+        }
+    }
+
+    @Test
+    public void producerWhichFailsToAddMessageOnCloseDoesNotDiscardAnEqualMessageOfAnotherProducer() {
+        MessageQueue<EqualMessage> queue = new MessageQueue<EqualMessage>(10)
+        List<EqualMessage> added = new CopyOnWriteArrayList<EqualMessage>()
+        4.times {
+            start {
+                while (true) {
+                    EqualMessage message = new EqualMessage()
+                    if (!queue.put(message)) {
+                        break
+                    }
+                    added << message
+                }
+            }
+        }
+
+        List<EqualMessage> received = []
+        1000.times { received << queue.take() }
+        queue.close()
+        EqualMessage message
+        while ((message = queue.take()) != null) {
+            received << message
+        }
+        waitForAll()
+
+        assertThat(received.size(), equalTo(added.size()))
+        received.each { r -> assertTrue(added.any { it.is(r) }) }
+    }
+}
+
+class EqualMessage {
+    @Override
+    boolean equals(Object o) {
+        return o instanceof EqualMessage
+    }
+
+    @Override
+    int hashCode() {
+        return 0
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.messaging.remote.internal
+
+import spock.lang.Specification
+
+class MessageWriterReaderTest extends Specification {
+    private final ByteArrayOutputStream outputStream = new ByteArrayOutputStream()
+    private final MessageWriter writer = new MessageWriter(outputStream)
+
+    def readsMessagesInTheOrderTheyWereWritten() {
+        when:
+        writer.write('message 1')
+        writer.write(['message', 2])
+        writer.write(new File('message3'))
+        def reader = reader()
+
+        then:
+        reader.read() == 'message 1'
+        reader.read() == ['message', 2]
+        reader.read() == new File('message3')
+    }
+
+    def readsChannelMessagesAndMethodInvocations() {
+        def message1 = new ChannelMessage(4, new RemoteMethodInvocation(12, ['a', 2] as Object[]))
+        def message2 = new RemoteMethodInvocation(13, null)
+        def message3 = new ChannelMessage('channel', new RemoteMethodInvocation('method', [] as Object[]))
+
+        when:
+        writer.write(message1)
+        writer.write(message2)
+        writer.write(message3)
+        def reader = reader()
+
+        then:
+        reader.read() == message1
+        reader.read() == message2
+        reader.read() == message3
+    }
+
+    def readsLongStringsWhichAreRepeatedAcrossMessages() {
+        def value = 'a string which is long enough to be shared'
+
+        when:
+        writer.write(new String(value))
+        writer.write([new String(value), new String(value)])
+        def reader = reader()
+
+        then:
+        reader.read() == value
+        reader.read() == [value, value]
+    }
+
+    def repeatedMessagesAreWrittenInFewerBytes() {
+        def message = { new ChannelMessage(1, new RemoteMethodInvocation(2, [new File('some-file'), 'a string which is long enough to be shared'] as Object[])) }
+
+        when:
+        writer.write(message())
+        def firstSize = outputStream.size()
+        writer.write(message())
+        def secondSize = outputStream.size() - firstSize
+        def reader = reader()
+
+        then:
+        secondSize < firstSize / 2
+        reader.read() == message()
+        reader.read() == message()
+    }
+
+    def readsExceptions() {
+        def failure = new RuntimeException('broken', new IOException('cause'))
+
+        when:
+        writer.write(failure)
+        writer.write(failure)
+        def reader = reader()
+        def transported1 = reader.read()
+        def transported2 = reader.read()
+
+        then:
+        [transported1, transported2].each {
+            assert it.class == RuntimeException
+            assert it.message == 'broken'
+            assert it.cause.class == IOException
+            assert it.cause.message == 'cause'
+        }
+    }
+
+    def doesNotWritePartOfMessageWhichCannotBeSerialized() {
+        writer.write('message 1')
+
+        when:
+        writer.write(['message', new Object()])
+
+        then:
+        thrown(NotSerializableException)
+        !new String(outputStream.toByteArray(), 'ISO-8859-1').contains(ArrayList.name)
+
+        when:
+        writer.write('message 2')
+        def reader = reader()
+
+        then:
+        reader.read() == 'message 1'
+        reader.read() == 'message 2'
+    }
+
+    def canWriteMessagesAfterMessageWhichCannotBeSerialized() {
+        def value = 'a string which is long enough to be shared'
+
+        when:
+        writer.write('message 1')
+        writer.write([new String(value), new File('file'), new Object()])
+
+        then:
+        thrown(NotSerializableException)
+
+        when:
+        writer.write([new String(value), new File('file')])
+        writer.write(new String(value))
+        def reader = reader()
+
+        then:
+        reader.read() == 'message 1'
+        reader.read() == [value, new File('file')]
+        reader.read() == value
+    }
+
+    def readerThrowsEOFExceptionAtEndOfStream() {
+        writer.write('message')
+        def reader = reader()
+        reader.read()
+
+        when:
+        reader.read()
+
+        then:
+        thrown(EOFException)
+    }
+
+    private MessageReader reader() {
+        return new MessageReader(new ByteArrayInputStream(outputStream.toByteArray()), getClass().classLoader)
+    }
+}
@@ -87,6 +87,25 @@ public class DefaultWorkerProcessFactoryTest {
         assertThat(instr.readObject(), instanceOf(IsolatedApplicationClassLoaderWorker.class));
     }
 
+    @Test
+    public void cannotCreateReusableWorkerProcessWhichLoadsApplicationInSystemClassLoader() {
+        context.checking(new Expectations() {{
+            ignoring(fileResolver);
+        }});
+
+        WorkerProcessBuilder builder = factory.create();
+        builder.worker(new TestAction());
+        builder.setReusable(true);
+        builder.setLoadApplicationInSystemClassLoader(true);
+
+        try {
+            builder.build();
+            fail();
+        } catch (IllegalStateException e) {
+            assertThat(e.getMessage(), equalTo("A reusable worker process cannot load the application classes in the system ClassLoader."));
+        }
+    }
+
     private static class TestAction implements Action<WorkerProcessContext>, Serializable {
         public void execute(WorkerProcessContext workerProcessContext) {
             throw new UnsupportedOperationException();
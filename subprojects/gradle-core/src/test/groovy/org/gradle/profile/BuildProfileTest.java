@@ -20,7 +20,9 @@ import org.gradle.api.Project;
 import org.junit.Before;
 import org.junit.Test;
 
+import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThat;
 
 /**
  * @author Tomek Kaczanowski
@@ -39,4 +41,14 @@ public class BuildProfileTest {
     public void afterConstructionItHasNoTasks() {
         assertFalse(profile.hasMoreThanOneTask());
     }
+
+    @Test
+    public void accumulatesTimeSavedByReusingScriptClasses() {
+        BuildProfile buildProfile = new BuildProfile(null);
+        buildProfile.addReusedScriptClass(20);
+        buildProfile.addReusedScriptClass(15);
+
+        assertThat(buildProfile.getReusedScriptClasses(), equalTo(2));
+        assertThat(buildProfile.getElapsedScriptLoadingSaved(), equalTo(35L));
+    }
 }
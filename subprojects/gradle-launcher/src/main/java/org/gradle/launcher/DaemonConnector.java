@@ -37,51 +37,73 @@ import org.gradle.util.UncheckedException;
 import java.io.*;
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.concurrent.locks.Condition;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantLock;
 
+/**
+ * Manages a pool of daemons. A client is connected to an idle daemon which runs in a compatible JVM, and a new daemon
+ * is started when there is no such daemon. Each daemon runs one build at a time. The daemons are listed in a {@link
+ * DaemonRegistry} in the Gradle user home directory.
+ */
 public class DaemonConnector {
     private static final Logger LOGGER = Logging.getLogger(DaemonConnector.class);
+    private static final List<String> DAEMON_JVM_ARGS = Arrays.asList("-Xmx1024m", "-XX:MaxPermSize=256m");
+    static final int MAX_IDLE_DAEMONS = 3;
     private final File userHomeDir;
+    private final DaemonRegistry registry;
 
     public DaemonConnector(File userHomeDir) {
         this.userHomeDir = userHomeDir;
+        registry = new DaemonRegistry(getRegistryFile());
     }
 
     /**
-     * Attempts to connect to the daemon, if it is running.
+     * Attempts to connect to an idle daemon which runs in a compatible JVM.
      *
-     * @return The connection, or null if not running.
+     * @return The connection, or null if there is no such daemon.
      */
     Connection<Object> maybeConnect() {
-        try {
-            URI uri;
-            try {
-                FileInputStream inputStream = new FileInputStream(getRegistryFile());
-                try {
-                    // Acquire shared lock on file while reading it
-                    inputStream.getChannel().lock(0, Long.MAX_VALUE, true);
-                    DataInputStream dataInputStream = new DataInputStream(inputStream);
-                    uri = new URI(dataInputStream.readUTF());
-                } finally {
-                    // Also releases the lock
-                    inputStream.close();
-                }
-            } catch (FileNotFoundException e) {
-                // Ignore
+        String key = getDaemonKey();
+        while (true) {
+            DaemonRegistry.Entry entry = registry.reserveIdle(key);
+            if (entry == null) {
                 return null;
             }
-            try {
-                return new TcpOutgoingConnector(getClass().getClassLoader()).connect(uri);
-            } catch (ConnectException e) {
-                // Ignore
-                return null;
+            Connection<Object> connection = maybeConnect(entry);
+            if (connection != null) {
+                return connection;
             }
-        } catch (Exception e) {
-            throw UncheckedException.asUncheckedException(e);
+        }
+    }
+
+    /**
+     * Connects to each running daemon, whether it is idle or not.
+     *
+     * @return The connections. Returns an empty list when no daemons are running.
+     */
+    List<Connection<Object>> connectToAll() {
+        List<Connection<Object>> connections = new ArrayList<Connection<Object>>();
+        for (DaemonRegistry.Entry entry : registry.getAll()) {
+            Connection<Object> connection = maybeConnect(entry);
+            if (connection != null) {
+                connections.add(connection);
+            }
+        }
+        return connections;
+    }
+
+    private Connection<Object> maybeConnect(DaemonRegistry.Entry entry) {
+        try {
+            return new TcpOutgoingConnector(getClass().getClassLoader()).connect(entry.getAddress());
+        } catch (ConnectException e) {
+            // The daemon is no longer running
+            LOGGER.debug("Removing {} from the daemon registry, as it is not running.", entry);
+            registry.remove(entry.getAddress());
+            return null;
         }
     }
 
@@ -117,8 +139,7 @@ public class DaemonConnector {
     private void startDaemon() throws IOException {
         List<String> daemonArgs = new ArrayList<String>();
         daemonArgs.add(Jvm.current().getJavaExecutable().getAbsolutePath());
-        daemonArgs.add("-Xmx1024m");
-        daemonArgs.add("-XX:MaxPermSize=256m");
+        daemonArgs.addAll(DAEMON_JVM_ARGS);
         daemonArgs.add("-cp");
         daemonArgs.add(GUtil.join(new DefaultClassPathRegistry().getClassPathFiles("GRADLE_RUNTIME"),
                 File.pathSeparator));
@@ -135,7 +156,18 @@ public class DaemonConnector {
     }
 
     /**
-     * Starts accepting connections.
+     * Returns the key which describes the JVM of the daemons used by this process. This process only uses daemons with
+     * the same key, and a daemon registers itself with the key of its own JVM.
+     */
+    String getDaemonKey() {
+        List<String> key = new ArrayList<String>();
+        key.add(Jvm.current().getJavaExecutable().getAbsolutePath());
+        key.addAll(DAEMON_JVM_ARGS);
+        return GUtil.join(key, " ");
+    }
+
+    /**
+     * Starts accepting connections. Connections are handled one at a time.
      *
      * @param handler The handler for connections.
      */
@@ -143,47 +175,40 @@ public class DaemonConnector {
         DefaultExecutorFactory executorFactory = new DefaultExecutorFactory();
         TcpIncomingConnector incomingConnector = new TcpIncomingConnector(executorFactory, getClass().getClassLoader());
         final CompletionHandler finished = new CompletionHandler();
+        final Lock handlerLock = new ReentrantLock();
+        final URI[] address = new URI[1];
 
         LOGGER.lifecycle("Awaiting requests.");
         
         URI uri = incomingConnector.accept(new Action<ConnectEvent<Connection<Object>>>() {
             public void execute(ConnectEvent<Connection<Object>> connectionConnectEvent) {
+                handlerLock.lock();
                 try {
+                    registry.markBusy(address[0]);
                     finished.onStartActivity();
                     handler.handle(connectionConnectEvent.getConnection(), finished);
                 } finally {
                     finished.onActivityComplete();
                     connectionConnectEvent.getConnection().stop();
+                    if (finished.isStopped()) {
+                        registry.remove(address[0]);
+                    } else if (!registry.markIdle(address[0], MAX_IDLE_DAEMONS)) {
+                        LOGGER.lifecycle("Enough idle daemons are running. Stopping.");
+                        finished.stop();
+                    }
+                    handlerLock.unlock();
                 }
             }
         });
-
-        try {
-            File registryFile = getRegistryFile();
-            registryFile.getParentFile().mkdirs();
-//            registryFile.createNewFile();
-            FileOutputStream outputStream = new FileOutputStream(registryFile);
-            try {
-                // Lock file while writing to it
-                outputStream.getChannel().lock();
-                DataOutputStream dataOutputStream = new DataOutputStream(outputStream);
-                dataOutputStream.writeUTF(uri.toString());
-                dataOutputStream.flush();
-            } finally {
-                // Also releases the lock
-                outputStream.close();
-            }
-        } catch (IOException e) {
-            throw UncheckedException.asUncheckedException(e);
-        }
+        address[0] = uri;
+        registry.register(uri, getDaemonKey());
 
         boolean stopped = finished.awaitStop();
         if (!stopped) {
             LOGGER.lifecycle("Time-out waiting for requests. Stopping.");
         }
+        registry.remove(uri);
         new CompositeStoppable(incomingConnector, executorFactory).stop();
-
-        getRegistryFile().delete();
     }
 
     private File getRegistryFile() {
@@ -233,6 +258,15 @@ public class DaemonConnector {
             }
         }
 
+        public boolean isStopped() {
+            lock.lock();
+            try {
+                return stopped;
+            } finally {
+                lock.unlock();
+            }
+        }
+
         public void onStartActivity() {
             lock.lock();
             try {
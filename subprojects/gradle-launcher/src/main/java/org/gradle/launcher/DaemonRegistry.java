@@ -0,0 +1,297 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher;
+
+import org.gradle.util.UncheckedException;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * The registry of the daemons running for a given Gradle user home and Gradle version. The registry is kept in a file,
+ * which is locked while it is read or updated, so that it can be shared by the daemons and their clients.
+ *
+ * <p>Each daemon is registered with a key which describes the JVM it runs in. A client uses only daemons with the same
+ * key as itself. A client reserves an idle daemon before it connects to it, so that each daemon is used by at most
+ * one client at a time.</p>
+ */
+public class DaemonRegistry {
+    static final long RESERVATION_TIMEOUT = 30000L;
+    private static final int MAGIC = 0x6744524d;
+    private static final Object LOCK = new Object();
+    private final File registryFile;
+
+    public enum State {
+        IDLE, RESERVED, BUSY
+    }
+
+    public DaemonRegistry(File registryFile) {
+        this.registryFile = registryFile;
+    }
+
+    /**
+     * Returns all daemons in the registry.
+     */
+    public List<Entry> getAll() {
+        return update(new Update<List<Entry>>() {
+            public List<Entry> apply(List<Entry> entries) {
+                return new ArrayList<Entry>(entries);
+            }
+        });
+    }
+
+    public void register(final URI address, final String key) {
+        update(new Update<Void>() {
+            public Void apply(List<Entry> entries) {
+                removeEntry(entries, address);
+                entries.add(new Entry(address, key, State.IDLE, System.currentTimeMillis()));
+                return null;
+            }
+        });
+    }
+
+    public void remove(final URI address) {
+        update(new Update<Void>() {
+            public Void apply(List<Entry> entries) {
+                removeEntry(entries, address);
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Reserves an idle daemon with the given key. A reservation which has not been taken up by the client within
+     * {@link #RESERVATION_TIMEOUT} ms is discarded.
+     *
+     * @return The reserved daemon, or null if there is no idle daemon with the given key.
+     */
+    public Entry reserveIdle(final String key) {
+        return update(new Update<Entry>() {
+            public Entry apply(List<Entry> entries) {
+                long now = System.currentTimeMillis();
+                for (int i = 0; i < entries.size(); i++) {
+                    Entry entry = entries.get(i);
+                    if (entry.key.equals(key) && entry.isAvailable(now)) {
+                        Entry reserved = new Entry(entry.address, key, State.RESERVED, now);
+                        entries.set(i, reserved);
+                        return reserved;
+                    }
+                }
+                return null;
+            }
+        });
+    }
+
+    /**
+     * Marks the given daemon as running a build.
+     */
+    public void markBusy(final URI address) {
+        setState(address, State.BUSY);
+    }
+
+    /**
+     * Marks the given daemon as idle, unless there are already the given number of other idle daemons with the same
+     * key. In that case the daemon is removed from the registry instead.
+     *
+     * @return true if the daemon was marked as idle, false if it was removed.
+     */
+    public boolean markIdle(final URI address, final int maxIdleDaemons) {
+        return update(new Update<Boolean>() {
+            public Boolean apply(List<Entry> entries) {
+                Entry entry = findEntry(entries, address);
+                if (entry == null) {
+                    return false;
+                }
+                long now = System.currentTimeMillis();
+                int idle = 0;
+                for (Entry other : entries) {
+                    if (other != entry && other.key.equals(entry.key) && other.isAvailable(now)) {
+                        idle++;
+                    }
+                }
+                entries.remove(entry);
+                if (idle >= maxIdleDaemons) {
+                    return false;
+                }
+                entries.add(new Entry(address, entry.key, State.IDLE, now));
+                return true;
+            }
+        });
+    }
+
+    private void setState(final URI address, final State state) {
+        update(new Update<Void>() {
+            public Void apply(List<Entry> entries) {
+                Entry entry = findEntry(entries, address);
+                if (entry != null) {
+                    entries.set(entries.indexOf(entry), new Entry(address, entry.key, state,
+                            System.currentTimeMillis()));
+                }
+                return null;
+            }
+        });
+    }
+
+    private static Entry findEntry(List<Entry> entries, URI address) {
+        for (Entry entry : entries) {
+            if (entry.address.equals(address)) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private static void removeEntry(List<Entry> entries, URI address) {
+        for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext();) {
+            if (iterator.next().address.equals(address)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    private <T> T update(Update<T> update) {
+        // File locks are held by the process, so also serialise access by the threads of this process
+        synchronized (LOCK) {
+            try {
+                registryFile.getParentFile().mkdirs();
+                RandomAccessFile file = new RandomAccessFile(registryFile, "rw");
+                try {
+                    // Also released when the file is closed
+                    file.getChannel().lock();
+                    List<Entry> entries = read(file);
+                    List<Entry> original = new ArrayList<Entry>(entries);
+                    T result = update.apply(entries);
+                    if (!entries.equals(original)) {
+                        write(file, entries);
+                    }
+                    return result;
+                } finally {
+                    file.close();
+                }
+            } catch (IOException e) {
+                throw UncheckedException.asUncheckedException(e);
+            }
+        }
+    }
+
+    private static List<Entry> read(RandomAccessFile file) throws IOException {
+        List<Entry> entries = new ArrayList<Entry>();
+        if (file.length() == 0) {
+            return entries;
+        }
+        byte[] content = new byte[(int) file.length()];
+        file.seek(0);
+        file.readFully(content);
+        DataInputStream inputStream = new DataInputStream(new ByteArrayInputStream(content));
+        try {
+            if (inputStream.readInt() != MAGIC) {
+                // Written by an earlier version
+                return entries;
+            }
+            int count = inputStream.readInt();
+            for (int i = 0; i < count; i++) {
+                URI address = new URI(inputStream.readUTF());
+                String key = inputStream.readUTF();
+                State state = State.valueOf(inputStream.readUTF());
+                long timestamp = inputStream.readLong();
+                entries.add(new Entry(address, key, state, timestamp));
+            }
+        } catch (EOFException e) {
+            // Partially written. Discard it
+            entries.clear();
+        } catch (URISyntaxException e) {
+            entries.clear();
+        } catch (IllegalArgumentException e) {
+            entries.clear();
+        }
+        return entries;
+    }
+
+    private static void write(RandomAccessFile file, List<Entry> entries) throws IOException {
+        ByteArrayOutputStream content = new ByteArrayOutputStream();
+        DataOutputStream outputStream = new DataOutputStream(content);
+        outputStream.writeInt(MAGIC);
+        outputStream.writeInt(entries.size());
+        for (Entry entry : entries) {
+            outputStream.writeUTF(entry.address.toString());
+            outputStream.writeUTF(entry.key);
+            outputStream.writeUTF(entry.state.name());
+            outputStream.writeLong(entry.timestamp);
+        }
+        outputStream.flush();
+        file.setLength(0);
+        file.seek(0);
+        file.write(content.toByteArray());
+    }
+
+    private interface Update<T> {
+        T apply(List<Entry> entries);
+    }
+
+    public static class Entry {
+        private final URI address;
+        private final String key;
+        private final State state;
+        private final long timestamp;
+
+        Entry(URI address, String key, State state, long timestamp) {
+            this.address = address;
+            this.key = key;
+            this.state = state;
+            this.timestamp = timestamp;
+        }
+
+        public URI getAddress() {
+            return address;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        public State getState() {
+            return state;
+        }
+
+        boolean isAvailable(long now) {
+            return state == State.IDLE || state == State.RESERVED && now - timestamp > RESERVATION_TIMEOUT;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Entry)) {
+                return false;
+            }
+            Entry other = (Entry) obj;
+            return address.equals(other.address) && key.equals(other.key) && state == other.state
+                    && timestamp == other.timestamp;
+        }
+
+        @Override
+        public int hashCode() {
+            return address.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s (%s)", address, state);
+        }
+    }
+}
@@ -23,6 +23,8 @@ import org.gradle.launcher.protocol.Stop;
 import org.gradle.logging.internal.OutputEventListener;
 import org.gradle.messaging.remote.internal.Connection;
 
+import java.util.List;
+
 public class StopDaemonAction extends DaemonClientAction implements Action<ExecutionListener> {
     private static final Logger LOGGER = Logging.getLogger(StopDaemonAction.class);
     private final DaemonConnector connector;
@@ -35,12 +37,14 @@ public class StopDaemonAction extends DaemonClientAction implements Action<Execu
     }
 
     public void execute(ExecutionListener executionListener) {
-        Connection<Object> connection = connector.maybeConnect();
-        if (connection == null) {
+        List<Connection<Object>> connections = connector.connectToAll();
+        if (connections.isEmpty()) {
             LOGGER.lifecycle("Gradle daemon is not running.");
             return;
         }
-        run(new Stop(clientMetaData), connection, executionListener);
-        LOGGER.lifecycle("Gradle daemon stopped.");
+        for (Connection<Object> connection : connections) {
+            run(new Stop(clientMetaData), connection, executionListener);
+        }
+        LOGGER.lifecycle(connections.size() == 1 ? "Gradle daemon stopped." : String.format("%s Gradle daemons stopped.", connections.size()));
     }
 }
@@ -0,0 +1,111 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.launcher
+
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+class DaemonRegistryTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final URI daemon1 = new URI('tcp://localhost:1001')
+    final URI daemon2 = new URI('tcp://localhost:1002')
+    DaemonRegistry registry
+
+    def setup() {
+        registry = new DaemonRegistry(tmpDir.dir.file('daemon/registry.bin'))
+    }
+
+    def hasNoDaemonsWhenRegistryFileDoesNotExist() {
+        expect:
+        registry.all.empty
+        registry.reserveIdle('key') == null
+    }
+
+    def reservesIdleDaemonWithMatchingKey() {
+        registry.register(daemon1, 'other')
+        registry.register(daemon2, 'key')
+
+        when:
+        def entry = registry.reserveIdle('key')
+
+        then:
+        entry.address == daemon2
+        entry.state == DaemonRegistry.State.RESERVED
+        registry.reserveIdle('key') == null
+    }
+
+    def registryIsSharedBetweenInstances() {
+        registry.register(daemon1, 'key')
+        DaemonRegistry other = new DaemonRegistry(tmpDir.dir.file('daemon/registry.bin'))
+
+        expect:
+        other.reserveIdle('key').address == daemon1
+        registry.reserveIdle('key') == null
+    }
+
+    def doesNotReserveBusyDaemon() {
+        registry.register(daemon1, 'key')
+        registry.markBusy(daemon1)
+
+        expect:
+        registry.reserveIdle('key') == null
+    }
+
+    def daemonCanBeReservedAgainWhenItBecomesIdle() {
+        registry.register(daemon1, 'key')
+        registry.reserveIdle('key')
+        registry.markBusy(daemon1)
+
+        when:
+        def idle = registry.markIdle(daemon1, 3)
+
+        then:
+        idle
+        registry.reserveIdle('key').address == daemon1
+    }
+
+    def removesDaemonInsteadOfMarkingItIdleWhenEnoughOtherDaemonsAreIdle() {
+        registry.register(daemon1, 'key')
+        registry.register(daemon2, 'key')
+        registry.markBusy(daemon2)
+
+        when:
+        def idle = registry.markIdle(daemon2, 1)
+
+        then:
+        !idle
+        registry.all*.address == [daemon1]
+    }
+
+    def removesDaemon() {
+        registry.register(daemon1, 'key')
+        registry.register(daemon2, 'key')
+
+        when:
+        registry.remove(daemon1)
+
+        then:
+        registry.all*.address == [daemon2]
+    }
+
+    def ignoresRegistryFileInUnknownFormat() {
+        tmpDir.dir.file('daemon/registry.bin').write('tcp://localhost:1001')
+
+        expect:
+        registry.all.empty
+    }
+}
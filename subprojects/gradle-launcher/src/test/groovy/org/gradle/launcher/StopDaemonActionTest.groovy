@@ -36,19 +36,37 @@ class StopDaemonActionTest extends Specification {
         action.execute(executionListener)
 
         then:
-        1 * connector.maybeConnect() >> connection
+        1 * connector.connectToAll() >> [connection]
         1 * connection.dispatch({it instanceof Stop})
         1 * connection.receive() >> new CommandComplete(null)
         1 * connection.stop()
         0 * _._
     }
 
+    def executesStopCommandForEachRunningDaemon() {
+        Connection<Object> connection1 = Mock()
+        Connection<Object> connection2 = Mock()
+
+        when:
+        action.execute(executionListener)
+
+        then:
+        1 * connector.connectToAll() >> [connection1, connection2]
+        1 * connection1.dispatch({it instanceof Stop})
+        1 * connection1.receive() >> new CommandComplete(null)
+        1 * connection1.stop()
+        1 * connection2.dispatch({it instanceof Stop})
+        1 * connection2.receive() >> new CommandComplete(null)
+        1 * connection2.stop()
+        0 * _._
+    }
+
     def doesNothingWhenDaemonIsNotRunning() {
         when:
         action.execute(executionListener)
 
         then:
-        1 * connector.maybeConnect() >> null
+        1 * connector.connectToAll() >> []
         0 * _._
     }
 
@@ -60,7 +78,7 @@ class StopDaemonActionTest extends Specification {
         action.execute(executionListener)
 
         then:
-        1 * connector.maybeConnect() >> connection
+        1 * connector.connectToAll() >> [connection]
         1 * connection.dispatch({it instanceof Stop})
         1 * connection.receive() >> new CommandComplete(failure)
         1 * connection.stop()
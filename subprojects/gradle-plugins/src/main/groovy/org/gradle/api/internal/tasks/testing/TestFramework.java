@@ -49,4 +49,11 @@ public interface TestFramework {
      * executed before starting each worker process.
      */
     Action<WorkerProcessBuilder> getWorkerConfigurationAction();
+
+    /**
+     * Returns true when the test class processors of this framework execute each test class as they receive it, and
+     * report the completion of the test class. Returns false when they execute the test classes only when they are
+     * stopped.
+     */
+    boolean executesTestClassesOnReceipt();
 }
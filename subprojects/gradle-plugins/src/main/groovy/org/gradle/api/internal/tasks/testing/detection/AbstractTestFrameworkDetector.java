@@ -41,8 +41,11 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
     private final File testClassesDirectory;
     private final FileCollection testClasspath;
     private List<File> testClassDirectories;
+    private List<File> libraryJars;
     private ClassFileExtractionManager classFileExtractionManager;
     private final Map<File, Boolean> superClasses;
+    private final Set<File> libraryClassFiles = new HashSet<File>();
+    private TestClassIndex index;
 
     protected TestClassProcessor testClassProcessor;
 
@@ -78,17 +81,39 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
         if (superTestClassFile != null) {
             return superTestClassFile;
         } else { // super test class file not in test class directories
-            return classFileExtractionManager.getLibraryClassFile(superClassName);
+            return getLibraryClassFile(superClassName);
         }
     }
 
+    private File getLibraryClassFile(String className) {
+        if (index != null && index.isMissingLibraryClass(className)) {
+            return null;
+        }
+
+        // Listing the packages of the jars is expensive, so only do this when a class needs to be looked up
+        if (classFileExtractionManager == null) {
+            classFileExtractionManager = new ClassFileExtractionManager();
+            for (File libraryJar : libraryJars) {
+                classFileExtractionManager.addLibraryJar(libraryJar);
+            }
+        }
+
+        File classFile = classFileExtractionManager.getLibraryClassFile(className);
+        if (classFile != null) {
+            libraryClassFiles.add(classFile);
+        } else if (index != null) {
+            index.addMissingLibraryClass(className);
+        }
+        return classFile;
+    }
+
     private void prepareClasspath() {
-        if (classFileExtractionManager != null) {
+        if (testClassDirectories != null) {
             return;
         }
 
-        classFileExtractionManager = new ClassFileExtractionManager();
         testClassDirectories = new ArrayList<File>();
+        libraryJars = new ArrayList<File>();
 
         testClassDirectories.add(testClassesDirectory);
         if (testClasspath != null) {
@@ -96,13 +121,32 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
                 if (file.isDirectory()) {
                     testClassDirectories.add(file);
                 } else if (file.isFile() && file.getName().endsWith(".jar")) {
-                    classFileExtractionManager.addLibraryJar(file);
+                    libraryJars.add(file);
                 }
             }
         }
+        if (index != null) {
+            index.setLibraries(libraryJars);
+        }
+    }
+
+    public void setTestClassIndex(TestClassIndex index) {
+        this.index = index;
+        if (index != null && libraryJars != null) {
+            index.setLibraries(libraryJars);
+        }
     }
 
     protected TestClassVisitor classVisitor(final File testClassFile) {
+        // Classes extracted from jars are written to a new temporary file each time, so are not indexed
+        boolean indexed = index != null && !libraryClassFiles.contains(testClassFile);
+        if (indexed) {
+            TestClassIndex.Entry entry = index.get(testClassFile);
+            if (entry != null) {
+                return new IndexedTestClassVisitor(this, entry);
+            }
+        }
+
         final TestClassVisitor classVisitor = createClassVisitor();
 
         InputStream classStream = null;
@@ -116,6 +160,9 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
             IOUtils.closeQuietly(classStream);
         }
 
+        if (indexed) {
+            index.put(testClassFile, classVisitor);
+        }
         return classVisitor;
     }
 
@@ -176,4 +223,29 @@ public abstract class AbstractTestFrameworkDetector<T extends TestClassVisitor>
 
         return isKnownTestCase;
     }
+
+    private static class IndexedTestClassVisitor extends TestClassVisitor {
+        private final TestClassIndex.Entry entry;
+
+        private IndexedTestClassVisitor(TestFrameworkDetector detector, TestClassIndex.Entry entry) {
+            super(detector);
+            this.entry = entry;
+        }
+
+        public String getClassName() {
+            return entry.getClassName();
+        }
+
+        public boolean isTest() {
+            return entry.isTest();
+        }
+
+        public boolean isAbstract() {
+            return entry.isAbstract();
+        }
+
+        public String getSuperClassName() {
+            return entry.getSuperClassName();
+        }
+    }
 }
@@ -35,12 +35,23 @@ public class DefaultTestClassScanner implements Runnable {
     private final FileTree candidateClassFiles;
     private final TestFrameworkDetector testFrameworkDetector;
     private final TestClassProcessor testClassProcessor;
+    private final File indexFile;
 
     public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
                                    TestClassProcessor testClassProcessor) {
+        this(candidateClassFiles, testFrameworkDetector, testClassProcessor, null);
+    }
+
+    /**
+     * @param indexFile The file to keep the {@link TestClassIndex} for the detection scan in. May be null, in which
+     * case every class file is parsed.
+     */
+    public DefaultTestClassScanner(FileTree candidateClassFiles, TestFrameworkDetector testFrameworkDetector,
+                                   TestClassProcessor testClassProcessor, File indexFile) {
         this.candidateClassFiles = candidateClassFiles;
         this.testFrameworkDetector = testFrameworkDetector;
         this.testClassProcessor = testClassProcessor;
+        this.indexFile = indexFile;
     }
 
     public void run() {
@@ -52,12 +63,22 @@ public class DefaultTestClassScanner implements Runnable {
     }
 
     private void detectionScan() {
+        TestClassIndex index = null;
+        if (indexFile != null) {
+            index = new TestClassIndex(indexFile, testFrameworkDetector.getClass().getName());
+            index.load();
+            testFrameworkDetector.setTestClassIndex(index);
+        }
         testFrameworkDetector.startDetection(testClassProcessor);
         candidateClassFiles.visit(new ClassFileVisitor() {
             public void visitClassFile(FileVisitDetails fileDetails) {
                 testFrameworkDetector.processTestClass(fileDetails.getFile());
             }
         });
+        if (index != null) {
+            testFrameworkDetector.setTestClassIndex(null);
+            index.save();
+        }
     }
 
     private void filenameScan() {
@@ -19,18 +19,29 @@ package org.gradle.api.internal.tasks.testing.detection;
 import org.gradle.api.file.FileTree;
 import org.gradle.api.internal.Factory;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
 import org.gradle.api.internal.tasks.testing.TestFramework;
 import org.gradle.api.internal.tasks.testing.TestResultProcessor;
 import org.gradle.api.internal.tasks.testing.WorkerTestClassProcessorFactory;
 import org.gradle.api.internal.tasks.testing.processors.MaxNParallelTestClassProcessor;
 import org.gradle.api.internal.tasks.testing.processors.RestartEveryNTestClassProcessor;
+import org.gradle.api.internal.tasks.testing.processors.TestClassHistory;
 import org.gradle.api.internal.tasks.testing.processors.TestMainAction;
 import org.gradle.api.internal.tasks.testing.worker.ForkingTestClassProcessor;
 import org.gradle.api.tasks.testing.Test;
+import org.gradle.cache.CacheRepository;
+import org.gradle.cache.PersistentCache;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentStateCache;
+import org.gradle.listener.ListenerBroadcast;
 import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.process.internal.WorkerProcessBuilder;
 import org.gradle.util.TrueTimeProvider;
 
+import java.io.File;
+import java.util.Comparator;
+import java.util.Set;
+
 /**
  * The default test class scanner factory.
  *
@@ -39,10 +50,21 @@ import org.gradle.util.TrueTimeProvider;
 public class DefaultTestExecuter implements TestExecuter {
     private final Factory<? extends WorkerProcessBuilder> workerFactory;
     private final ActorFactory actorFactor;
+    private final CacheRepository cacheRepository;
 
     public DefaultTestExecuter(Factory<? extends WorkerProcessBuilder> workerFactory, ActorFactory actorFactor) {
+        this(workerFactory, actorFactor, null);
+    }
+
+    /**
+     * @param cacheRepository The repository to keep the test class history in. May be null, in which case the test
+     * classes are executed in the order they are detected.
+     */
+    public DefaultTestExecuter(Factory<? extends WorkerProcessBuilder> workerFactory, ActorFactory actorFactor,
+                               CacheRepository cacheRepository) {
         this.workerFactory = workerFactory;
         this.actorFactor = actorFactor;
+        this.cacheRepository = cacheRepository;
     }
 
     public void execute(final Test testTask, TestResultProcessor testResultProcessor) {
@@ -51,7 +73,8 @@ public class DefaultTestExecuter implements TestExecuter {
         final Factory<TestClassProcessor> forkingProcessorFactory = new Factory<TestClassProcessor>() {
             public TestClassProcessor create() {
                 return new ForkingTestClassProcessor(workerFactory, testInstanceFactory, testTask,
-                        testTask.getClasspath(), testFramework.getWorkerConfigurationAction());
+                        testTask.getClasspath(), testFramework.getWorkerConfigurationAction(),
+                        testTask.isReuseForks());
             }
         };
         Factory<TestClassProcessor> reforkingProcessorFactory = new Factory<TestClassProcessor>() {
@@ -60,18 +83,56 @@ public class DefaultTestExecuter implements TestExecuter {
             }
         };
 
+        Comparator<TestClassRunInfo> executionOrder = null;
+        PersistentCache historyCache = null;
+        TestClassHistory history = null;
+        if (cacheRepository != null) {
+            historyCache = cacheRepository.cache(String.format("testHistory/%s", testTask.getName())).forObject(
+                    testTask.getProject().getProjectDir()).open();
+            history = openHistory(historyCache);
+            executionOrder = history.getExecutionOrder();
+            ListenerBroadcast<TestResultProcessor> resultProcessors = new ListenerBroadcast<TestResultProcessor>(
+                    TestResultProcessor.class);
+            resultProcessors.add(testResultProcessor);
+            resultProcessors.add(history.getRecorder());
+            testResultProcessor = resultProcessors.getSource();
+        }
+
+        try {
+            execute(testTask, testFramework, reforkingProcessorFactory, executionOrder, testResultProcessor);
+            if (history != null) {
+                history.removeClassesNotExecuted();
+            }
+        } finally {
+            if (historyCache != null) {
+                cacheRepository.close(historyCache);
+            }
+        }
+    }
+
+    private void execute(Test testTask, TestFramework testFramework,
+                         Factory<TestClassProcessor> reforkingProcessorFactory,
+                         Comparator<TestClassRunInfo> executionOrder, TestResultProcessor testResultProcessor) {
         TestClassProcessor processor = new MaxNParallelTestClassProcessor(testTask.getMaxParallelForks(),
-                reforkingProcessorFactory, actorFactor);
+                reforkingProcessorFactory, actorFactor, executionOrder, testFramework.executesTestClassesOnReceipt());
 
         final FileTree testClassFiles = testTask.getCandidateClassFiles();
 
         Runnable detector;
         if (testTask.isScanForTestClasses()) {
             TestFrameworkDetector testFrameworkDetector = testTask.getTestFramework().getDetector();
-            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor);
+            detector = new DefaultTestClassScanner(testClassFiles, testFrameworkDetector, processor, new File(
+                    testTask.getTemporaryDir(), "testClassIndex.bin"));
         } else {
             detector = new DefaultTestClassScanner(testClassFiles, null, processor);
         }
         new TestMainAction(detector, processor, testResultProcessor, new TrueTimeProvider()).run();
     }
+
+    private TestClassHistory openHistory(PersistentCache cache) {
+        PersistentIndexedCache<String, TestClassHistory.TestClassExecution> executions = cache.openIndexedCache(
+                TestClassHistory.getSerializer());
+        PersistentStateCache<Set<String>> classNames = cache.openStateCache();
+        return new TestClassHistory(executions, classNames);
+    }
 }
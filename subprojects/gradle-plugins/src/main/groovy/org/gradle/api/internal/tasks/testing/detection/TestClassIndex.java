@@ -0,0 +1,251 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.detection;
+
+import org.gradle.api.GradleException;
+import org.gradle.util.HashUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * A persistent index of the class files examined by a {@link TestFrameworkDetector}, which allows a class file to be
+ * skipped when it has not changed since the previous scan.
+ *
+ * <p>For each class file, the index holds what the detector extracted from the class file: its name, its super class,
+ * and whether it is abstract or itself declares tests. A class file is considered unchanged when its size and
+ * modification time, or else its hash, are the same as when it was indexed. The detector still walks up the super
+ * classes of each class using the index, so a change to a super class is picked up.</p>
+ *
+ * <p>The index also holds the names of the super classes which could not be found in the test class directories or in
+ * the jars of the test classpath. These are discarded when the jars change.</p>
+ */
+public class TestClassIndex {
+    private static final Logger LOGGER = LoggerFactory.getLogger(TestClassIndex.class);
+    private static final int MAGIC = 0x67544349;
+    private final File indexFile;
+    private final String detectorType;
+    private final Map<String, Entry> previousEntries = new HashMap<String, Entry>();
+    private final Map<String, Entry> entries = new HashMap<String, Entry>();
+    private String librariesHash = "";
+    private final Set<String> missingLibraryClasses = new HashSet<String>();
+
+    /**
+     * @param indexFile The file to keep the index in.
+     * @param detectorType Identifies the detector which the index is used by. An index written for another detector
+     * type is discarded.
+     */
+    public TestClassIndex(File indexFile, String detectorType) {
+        this.indexFile = indexFile;
+        this.detectorType = detectorType;
+    }
+
+    /**
+     * Returns the information indexed for the given class file, or null if the class file is not in the index or has
+     * changed since it was indexed.
+     */
+    public Entry get(File classFile) {
+        String path = classFile.getAbsolutePath();
+        Entry entry = entries.get(path);
+        if (entry == null) {
+            entry = previousEntries.remove(path);
+        }
+        if (entry == null) {
+            return null;
+        }
+        if (entry.length != classFile.length()) {
+            return null;
+        }
+        long lastModified = classFile.lastModified();
+        if (entry.lastModified != lastModified) {
+            // Recompiled, but possibly to the same content
+            if (!Arrays.equals(entry.hash, HashUtil.createHash(classFile))) {
+                return null;
+            }
+            entry = new Entry(entry.length, lastModified, entry.hash, entry.className, entry.superClassName,
+                    entry.test, entry.isAbstract);
+        }
+        entries.put(path, entry);
+        return entry;
+    }
+
+    /**
+     * Adds the information extracted from the given class file to the index.
+     */
+    public Entry put(File classFile, TestClassVisitor classVisitor) {
+        Entry entry = new Entry(classFile.length(), classFile.lastModified(), HashUtil.createHash(classFile),
+                classVisitor.getClassName(), classVisitor.getSuperClassName(), classVisitor.isTest(),
+                classVisitor.isAbstract());
+        entries.put(classFile.getAbsolutePath(), entry);
+        return entry;
+    }
+
+    /**
+     * Sets the jars which super classes are looked up in. Discards the missing super classes when the jars have changed
+     * since the previous scan.
+     */
+    public void setLibraries(Collection<File> libraries) {
+        StringBuilder content = new StringBuilder();
+        for (File library : libraries) {
+            content.append(library.getAbsolutePath()).append(':').append(library.length()).append(':').append(
+                    library.lastModified()).append('\n');
+        }
+        String hash = HashUtil.createHash(content.toString());
+        if (!hash.equals(librariesHash)) {
+            librariesHash = hash;
+            missingLibraryClasses.clear();
+        }
+    }
+
+    /**
+     * Returns true if the given class was not found in the jars the last time it was looked up.
+     */
+    public boolean isMissingLibraryClass(String className) {
+        return missingLibraryClasses.contains(className);
+    }
+
+    public void addMissingLibraryClass(String className) {
+        missingLibraryClasses.add(className);
+    }
+
+    /**
+     * Loads the index from the index file, if present. An index file which cannot be read is ignored.
+     */
+    public void load() {
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try {
+            DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(
+                    indexFile)));
+            try {
+                if (inputStream.readInt() != MAGIC || !inputStream.readUTF().equals(detectorType)) {
+                    return;
+                }
+                librariesHash = inputStream.readUTF();
+                int count = inputStream.readInt();
+                for (int i = 0; i < count; i++) {
+                    missingLibraryClasses.add(inputStream.readUTF());
+                }
+                count = inputStream.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = inputStream.readUTF();
+                    long length = inputStream.readLong();
+                    long lastModified = inputStream.readLong();
+                    byte[] hash = new byte[inputStream.readUnsignedByte()];
+                    inputStream.readFully(hash);
+                    String className = inputStream.readUTF();
+                    String superClassName = inputStream.readBoolean() ? inputStream.readUTF() : null;
+                    boolean test = inputStream.readBoolean();
+                    boolean isAbstract = inputStream.readBoolean();
+                    previousEntries.put(path, new Entry(length, lastModified, hash, className, superClassName, test,
+                            isAbstract));
+                }
+            } finally {
+                inputStream.close();
+            }
+        } catch (IOException e) {
+            LOGGER.debug("Could not read test class index {}. Ignoring it.", indexFile);
+            previousEntries.clear();
+            missingLibraryClasses.clear();
+            librariesHash = "";
+        }
+    }
+
+    /**
+     * Writes the index to the index file. Only the class files which were looked up or added since the index was loaded
+     * are written, so that class files which have been removed are dropped from the index.
+     */
+    public void save() {
+        indexFile.getParentFile().mkdirs();
+        try {
+            DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                    indexFile)));
+            try {
+                outputStream.writeInt(MAGIC);
+                outputStream.writeUTF(detectorType);
+                outputStream.writeUTF(librariesHash);
+                outputStream.writeInt(missingLibraryClasses.size());
+                for (String className : missingLibraryClasses) {
+                    outputStream.writeUTF(className);
+                }
+                outputStream.writeInt(entries.size());
+                for (Map.Entry<String, Entry> mapEntry : entries.entrySet()) {
+                    Entry entry = mapEntry.getValue();
+                    outputStream.writeUTF(mapEntry.getKey());
+                    outputStream.writeLong(entry.length);
+                    outputStream.writeLong(entry.lastModified);
+                    outputStream.writeByte(entry.hash.length);
+                    outputStream.write(entry.hash);
+                    outputStream.writeUTF(entry.className);
+                    outputStream.writeBoolean(entry.superClassName != null);
+                    if (entry.superClassName != null) {
+                        outputStream.writeUTF(entry.superClassName);
+                    }
+                    outputStream.writeBoolean(entry.test);
+                    outputStream.writeBoolean(entry.isAbstract);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test class index '%s'.", indexFile), e);
+        }
+    }
+
+    /**
+     * The information indexed for a class file.
+     */
+    public static class Entry {
+        private final long length;
+        private final long lastModified;
+        private final byte[] hash;
+        private final String className;
+        private final String superClassName;
+        private final boolean test;
+        private final boolean isAbstract;
+
+        private Entry(long length, long lastModified, byte[] hash, String className, String superClassName,
+                      boolean test, boolean isAbstract) {
+            this.length = length;
+            this.lastModified = lastModified;
+            this.hash = hash;
+            this.className = className;
+            this.superClassName = superClassName;
+            this.test = test;
+            this.isAbstract = isAbstract;
+        }
+
+        public String getClassName() {
+            return className;
+        }
+
+        public String getSuperClassName() {
+            return superClassName;
+        }
+
+        public boolean isTest() {
+            return test;
+        }
+
+        public boolean isAbstract() {
+            return isAbstract;
+        }
+    }
+}
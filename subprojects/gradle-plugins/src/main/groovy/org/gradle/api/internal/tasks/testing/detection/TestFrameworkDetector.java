@@ -26,4 +26,9 @@ public interface TestFrameworkDetector {
     void startDetection(TestClassProcessor testClassProcessor);
 
     boolean processTestClass(File testClassFile);
+
+    /**
+     * Sets the index to use to skip the class files which have not changed since the previous scan. May be null.
+     */
+    void setTestClassIndex(TestClassIndex index);
 }
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor.TestState;
+
+import java.io.*;
+
+/**
+ * Writes a binary results file for each test class, which is used to generate the HTML test report. See {@link
+ * TestClassResult}.
+ */
+public class BinaryResultGenerator implements TestClassReportWriter {
+    private final File resultsDir;
+    private TestClassResult classResult;
+
+    public BinaryResultGenerator(File testResultsDir) {
+        this.resultsDir = TestClassResult.getResultsDir(testResultsDir);
+    }
+
+    public void testClassStarted(TestState testClass) {
+        classResult = new TestClassResult(testClass.test.getClassName(), testClass.getStartTime());
+    }
+
+    public void testCompleted(TestState test) {
+        classResult.add(new TestClassResult.TestMethodResult(test.test.getName(), test.getExecutionTime(),
+                test.resultType, test.failure == null ? null : TestClassResult.TestFailure.from(test.failure)));
+    }
+
+    public void testClassCompleted(TestState testClass, OutputSpool stdOut, OutputSpool stdErr) {
+        classResult.setDuration(testClass.getExecutionTime());
+        if (testClass.failure != null) {
+            classResult.setFailure(TestClassResult.TestFailure.from(testClass.failure));
+        }
+        File resultsFile = TestClassResult.getResultsFile(resultsDir, classResult.getClassName());
+        try {
+            writeResults(resultsFile, stdOut, stdErr);
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test results file '%s'.", resultsFile), e);
+        } finally {
+            classResult = null;
+        }
+    }
+
+    private void writeResults(File resultsFile, OutputSpool stdOut, OutputSpool stdErr) throws IOException {
+        resultsDir.mkdirs();
+        DataOutputStream outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(
+                resultsFile)));
+        try {
+            classResult.write(outputStream);
+            TestClassResult.writeOutput(outputStream, stdOut);
+            TestClassResult.writeOutput(outputStream, stdErr);
+        } finally {
+            outputStream.close();
+        }
+    }
+}
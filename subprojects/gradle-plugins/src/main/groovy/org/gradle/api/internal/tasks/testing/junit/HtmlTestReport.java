@@ -0,0 +1,463 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.GradleException;
+import org.gradle.api.UncheckedIOException;
+import org.gradle.api.tasks.testing.TestResult;
+import org.gradle.messaging.concurrent.ExecutorFactory;
+import org.gradle.messaging.concurrent.StoppableExecutor;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Generates the HTML test report from the binary results files written by {@link BinaryResultGenerator}.
+ *
+ * <p>The report contains an index page, a page for each package, and a page for each test class. The pages of each
+ * package are generated by a separate task, and the tasks are executed in parallel. The page of a test class is written
+ * while its results file is read, so only the summaries of the test classes are kept in memory.</p>
+ */
+public class HtmlTestReport {
+    private static final String DEFAULT_PACKAGE = "default-package";
+    private final ExecutorFactory executorFactory;
+    private final int maxThreads;
+
+    public HtmlTestReport(ExecutorFactory executorFactory) {
+        this(executorFactory, Runtime.getRuntime().availableProcessors());
+    }
+
+    HtmlTestReport(ExecutorFactory executorFactory, int maxThreads) {
+        this.executorFactory = executorFactory;
+        this.maxThreads = maxThreads;
+    }
+
+    public void generateReport(File testResultsDir, File reportDir) {
+        SortedMap<String, SortedMap<String, File>> packages = findResultsFiles(TestClassResult.getResultsDir(
+                testResultsDir));
+        new File(reportDir, "packages").mkdirs();
+        new File(reportDir, "classes").mkdirs();
+        try {
+            copyStylesheet(reportDir);
+            List<PackageSummary> summaries = generatePackages(packages, reportDir);
+            generateIndex(summaries, reportDir);
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir), e);
+        } catch (UncheckedIOException e) {
+            throw new GradleException(String.format("Could not generate test report to '%s'.", reportDir),
+                    e.getCause());
+        }
+    }
+
+    private SortedMap<String, SortedMap<String, File>> findResultsFiles(File resultsDir) {
+        SortedMap<String, SortedMap<String, File>> packages = new TreeMap<String, SortedMap<String, File>>();
+        File[] files = resultsDir.listFiles();
+        if (files == null) {
+            return packages;
+        }
+        for (File file : files) {
+            if (!file.getName().endsWith(".bin")) {
+                continue;
+            }
+            String className = file.getName().substring(0, file.getName().length() - 4);
+            String packageName = TestClassResult.getPackageName(className);
+            SortedMap<String, File> classes = packages.get(packageName);
+            if (classes == null) {
+                classes = new TreeMap<String, File>();
+                packages.put(packageName, classes);
+            }
+            classes.put(className, file);
+        }
+        return packages;
+    }
+
+    private List<PackageSummary> generatePackages(SortedMap<String, SortedMap<String, File>> packages,
+                                                  final File reportDir) {
+        final List<Map.Entry<String, SortedMap<String, File>>> work
+                = new ArrayList<Map.Entry<String, SortedMap<String, File>>>(packages.entrySet());
+        final PackageSummary[] summaries = new PackageSummary[work.size()];
+        final AtomicInteger next = new AtomicInteger();
+        Runnable worker = new Runnable() {
+            public void run() {
+                for (int i = next.getAndIncrement(); i < summaries.length; i = next.getAndIncrement()) {
+                    Map.Entry<String, SortedMap<String, File>> entry = work.get(i);
+                    try {
+                        summaries[i] = generatePackage(entry.getKey(), entry.getValue().values(), reportDir);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            }
+        };
+
+        int threads = Math.min(maxThreads, work.size());
+        if (threads <= 1) {
+            worker.run();
+            return Arrays.asList(summaries);
+        }
+        StoppableExecutor executor = executorFactory.create("Test report");
+        try {
+            for (int i = 0; i < threads; i++) {
+                executor.execute(worker);
+            }
+        } finally {
+            // Waits for the packages to be generated, and rethrows the first failure
+            executor.stop();
+        }
+        return Arrays.asList(summaries);
+    }
+
+    private PackageSummary generatePackage(String packageName, Collection<File> resultsFiles, File reportDir)
+            throws IOException {
+        PackageSummary summary = new PackageSummary(packageName);
+        List<TestClassResult> classResults = new ArrayList<TestClassResult>();
+        for (File resultsFile : resultsFiles) {
+            TestClassResult classResult = generateClass(resultsFile, reportDir);
+            summary.add(classResult);
+            classResults.add(classResult);
+        }
+
+        Writer writer = openPage(new File(reportDir, "packages/" + summary.getFileName()));
+        try {
+            writeHeader(writer, "Package " + summary.getDisplayName(), "../");
+            writer.write("<p class=\"breadcrumbs\"><a href=\"../index.html\">all</a> &gt; ");
+            writeEscaped(writer, summary.getDisplayName());
+            writer.write("</p>\n");
+            writeSummary(writer, summary.testCount, summary.failureCount, summary.duration);
+            writer.write("<h2>Classes</h2>\n");
+            writer.write("<table>\n<tr><th>Class</th><th class=\"numeric\">Tests</th><th class=\"numeric\">Failures</th>"
+                    + "<th class=\"numeric\">Duration</th><th class=\"numeric\">Success rate</th></tr>\n");
+            for (TestClassResult classResult : classResults) {
+                writeRow(writer, "../classes/" + classResult.getClassName() + ".html", classResult.getSimpleName(),
+                        classResult.getTestCount(), classResult.getFailureCount(), classResult.getDuration(),
+                        isFailed(classResult));
+            }
+            writer.write("</table>\n");
+            writeFooter(writer);
+        } finally {
+            writer.close();
+        }
+        return summary;
+    }
+
+    private TestClassResult generateClass(File resultsFile, File reportDir) throws IOException {
+        DataInputStream inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(resultsFile)));
+        try {
+            TestClassResult classResult = TestClassResult.read(inputStream);
+            Writer writer = openPage(new File(reportDir, "classes/" + classResult.getClassName() + ".html"));
+            try {
+                String packageName = classResult.getPackageName();
+                String packageDisplayName = packageName.length() == 0 ? DEFAULT_PACKAGE : packageName;
+                writeHeader(writer, "Class " + classResult.getClassName(), "../");
+                writer.write("<p class=\"breadcrumbs\"><a href=\"../index.html\">all</a> &gt; <a href=\"../packages/");
+                writeEscaped(writer, packageDisplayName);
+                writer.write(".html\">");
+                writeEscaped(writer, packageDisplayName);
+                writer.write("</a> &gt; ");
+                writeEscaped(writer, classResult.getSimpleName());
+                writer.write("</p>\n");
+                writeSummary(writer, classResult.getTestCount(), classResult.getFailureCount(),
+                        classResult.getDuration());
+
+                writer.write("<h2>Tests</h2>\n");
+                writer.write("<table>\n<tr><th>Test</th><th class=\"numeric\">Duration</th><th>Result</th></tr>\n");
+                for (TestClassResult.TestMethodResult methodResult : classResult.getMethodResults()) {
+                    writer.write("<tr class=\"");
+                    writer.write(resultClass(methodResult.getResultType()));
+                    writer.write("\"><td>");
+                    writeEscaped(writer, methodResult.getName());
+                    writer.write("</td><td class=\"numeric\">");
+                    writer.write(formatDuration(methodResult.getDuration()));
+                    writer.write("</td><td>");
+                    writer.write(resultText(methodResult.getResultType()));
+                    writer.write("</td></tr>\n");
+                }
+                writer.write("</table>\n");
+
+                if (isFailed(classResult)) {
+                    writer.write("<h2>Failures</h2>\n");
+                    if (classResult.getFailure() != null) {
+                        writeFailure(writer, classResult.getSimpleName(), classResult.getFailure());
+                    }
+                    for (TestClassResult.TestMethodResult methodResult : classResult.getMethodResults()) {
+                        if (methodResult.getFailure() != null) {
+                            writeFailure(writer, methodResult.getName(), methodResult.getFailure());
+                        }
+                    }
+                }
+
+                // The output follows the class result in the results file, and is copied straight into the page
+                writer.write("<h2>Standard output</h2>\n<pre>");
+                TestClassResult.readOutput(inputStream, new HtmlEscapingWriter(writer));
+                writer.write("</pre>\n<h2>Standard error</h2>\n<pre>");
+                TestClassResult.readOutput(inputStream, new HtmlEscapingWriter(writer));
+                writer.write("</pre>\n");
+                writeFooter(writer);
+            } finally {
+                writer.close();
+            }
+            return classResult;
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private void generateIndex(List<PackageSummary> summaries, File reportDir) throws IOException {
+        int testCount = 0;
+        int failureCount = 0;
+        long duration = 0;
+        for (PackageSummary summary : summaries) {
+            testCount += summary.testCount;
+            failureCount += summary.failureCount;
+            duration += summary.duration;
+        }
+
+        Writer writer = openPage(new File(reportDir, "index.html"));
+        try {
+            writeHeader(writer, "All tests", "");
+            writeSummary(writer, testCount, failureCount, duration);
+            writer.write("<h2>Packages</h2>\n");
+            writer.write("<table>\n<tr><th>Package</th><th class=\"numeric\">Tests</th><th class=\"numeric\">Failures</th>"
+                    + "<th class=\"numeric\">Duration</th><th class=\"numeric\">Success rate</th></tr>\n");
+            for (PackageSummary summary : summaries) {
+                writeRow(writer, "packages/" + summary.getFileName(), summary.getDisplayName(), summary.testCount,
+                        summary.failureCount, summary.duration, !summary.failedClasses.isEmpty());
+            }
+            writer.write("</table>\n");
+
+            boolean hasFailures = false;
+            for (PackageSummary summary : summaries) {
+                for (String className : summary.failedClasses) {
+                    if (!hasFailures) {
+                        writer.write("<h2>Failed test classes</h2>\n<ul>\n");
+                        hasFailures = true;
+                    }
+                    writer.write("<li class=\"failures\"><a href=\"classes/");
+                    writeEscaped(writer, className);
+                    writer.write(".html\">");
+                    writeEscaped(writer, className);
+                    writer.write("</a></li>\n");
+                }
+            }
+            if (hasFailures) {
+                writer.write("</ul>\n");
+            }
+            writeFooter(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    private void copyStylesheet(File reportDir) throws IOException {
+        InputStream inputStream = HtmlTestReport.class.getResourceAsStream("report.css");
+        if (inputStream == null) {
+            throw new IOException("Could not find the test report stylesheet.");
+        }
+        try {
+            OutputStream outputStream = new FileOutputStream(new File(reportDir, "style.css"));
+            try {
+                byte[] buffer = new byte[8192];
+                int count;
+                while ((count = inputStream.read(buffer)) >= 0) {
+                    outputStream.write(buffer, 0, count);
+                }
+            } finally {
+                outputStream.close();
+            }
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    private static Writer openPage(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+    }
+
+    private static void writeHeader(Writer writer, String title, String rootPath) throws IOException {
+        writer.write("<!DOCTYPE html PUBLIC \"-//W3C//DTD HTML 4.01//EN\" \"http://www.w3.org/TR/html4/strict.dtd\">\n");
+        writer.write("<html>\n<head>\n<meta http-equiv=\"Content-Type\" content=\"text/html; charset=utf-8\">\n");
+        writer.write("<title>Test results - ");
+        writeEscaped(writer, title);
+        writer.write("</title>\n<link href=\"");
+        writer.write(rootPath);
+        writer.write("style.css\" rel=\"stylesheet\" type=\"text/css\">\n</head>\n<body>\n<h1>");
+        writeEscaped(writer, title);
+        writer.write("</h1>\n");
+    }
+
+    private static void writeSummary(Writer writer, int testCount, int failureCount, long duration)
+            throws IOException {
+        writer.write("<table>\n<tr><th class=\"numeric\">Tests</th><th class=\"numeric\">Failures</th>"
+                + "<th class=\"numeric\">Duration</th><th class=\"numeric\">Success rate</th></tr>\n");
+        writer.write(failureCount > 0 ? "<tr class=\"failures\">" : "<tr>");
+        writeCells(writer, testCount, failureCount, duration);
+        writer.write("</tr>\n</table>\n");
+    }
+
+    private static void writeRow(Writer writer, String link, String name, int testCount, int failureCount,
+                                 long duration, boolean failed) throws IOException {
+        writer.write(failed ? "<tr class=\"failures\">" : "<tr>");
+        writer.write("<td><a href=\"");
+        writeEscaped(writer, link);
+        writer.write("\">");
+        writeEscaped(writer, name);
+        writer.write("</a></td>");
+        writeCells(writer, testCount, failureCount, duration);
+        writer.write("</tr>\n");
+    }
+
+    private static void writeCells(Writer writer, int testCount, int failureCount, long duration)
+            throws IOException {
+        writer.write("<td class=\"numeric\">" + testCount + "</td>");
+        writer.write("<td class=\"numeric\">" + failureCount + "</td>");
+        writer.write("<td class=\"numeric\">" + formatDuration(duration) + "</td>");
+        writer.write("<td class=\"numeric\">" + successRate(testCount, failureCount) + "</td>");
+    }
+
+    private static void writeFailure(Writer writer, String name, TestClassResult.TestFailure failure)
+            throws IOException {
+        writer.write("<h3 class=\"failures\">");
+        writeEscaped(writer, name);
+        writer.write("</h3>\n<pre>");
+        writeEscaped(writer, failure.getStackTrace());
+        writer.write("</pre>\n");
+    }
+
+    private static void writeFooter(Writer writer) throws IOException {
+        writer.write("<p class=\"footer\">Generated at ");
+        writeEscaped(writer, new Date().toString());
+        writer.write("</p>\n</body>\n</html>\n");
+    }
+
+    private static void writeEscaped(Writer writer, String text) throws IOException {
+        new HtmlEscapingWriter(writer).write(text);
+    }
+
+    private static boolean isFailed(TestClassResult classResult) {
+        return classResult.getFailureCount() > 0;
+    }
+
+    private static String formatDuration(long duration) {
+        return String.format(Locale.US, "%.3fs", duration / 1000.0);
+    }
+
+    private static String successRate(int testCount, int failureCount) {
+        if (testCount == 0) {
+            return "-";
+        }
+        return (testCount - failureCount) * 100 / testCount + "%";
+    }
+
+    private static String resultClass(TestResult.ResultType resultType) {
+        switch (resultType) {
+            case FAILURE:
+                return "failures";
+            case SKIPPED:
+                return "skipped";
+            default:
+                return "success";
+        }
+    }
+
+    private static String resultText(TestResult.ResultType resultType) {
+        switch (resultType) {
+            case FAILURE:
+                return "failed";
+            case SKIPPED:
+                return "ignored";
+            default:
+                return "passed";
+        }
+    }
+
+    private static class PackageSummary {
+        private final String name;
+        private int testCount;
+        private int failureCount;
+        private long duration;
+        private final List<String> failedClasses = new ArrayList<String>();
+
+        private PackageSummary(String name) {
+            this.name = name;
+        }
+
+        String getDisplayName() {
+            return name.length() == 0 ? DEFAULT_PACKAGE : name;
+        }
+
+        String getFileName() {
+            return getDisplayName() + ".html";
+        }
+
+        void add(TestClassResult classResult) {
+            testCount += classResult.getTestCount();
+            failureCount += classResult.getFailureCount();
+            duration += classResult.getDuration();
+            if (isFailed(classResult)) {
+                failedClasses.add(classResult.getClassName());
+            }
+        }
+    }
+
+    private static class HtmlEscapingWriter extends Writer {
+        private final Writer target;
+
+        private HtmlEscapingWriter(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            int end = offset + length;
+            int start = offset;
+            for (int i = offset; i < end; i++) {
+                String replacement;
+                switch (chars[i]) {
+                    case '<':
+                        replacement = "&lt;";
+                        break;
+                    case '>':
+                        replacement = "&gt;";
+                        break;
+                    case '&':
+                        replacement = "&amp;";
+                        break;
+                    case '"':
+                        replacement = "&quot;";
+                        break;
+                    default:
+                        continue;
+                }
+                target.write(chars, start, i - start);
+                target.write(replacement);
+                start = i + 1;
+            }
+            target.write(chars, start, end - start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+            // The target is closed by the owner
+        }
+    }
+}
@@ -50,7 +50,8 @@ public class JUnitTestClassProcessor implements TestClassProcessor {
         ClassLoader applicationClassLoader = Thread.currentThread().getContextClassLoader();
         ListenerBroadcast<TestResultProcessor> processors = new ListenerBroadcast<TestResultProcessor>(
                 TestResultProcessor.class);
-        processors.add(new JUnitXmlReportGenerator(testResultsDir));
+        processors.add(new TestClassReportGenerator(new JUnitXmlReportGenerator(testResultsDir),
+                new BinaryResultGenerator(testResultsDir)));
         processors.add(resultProcessor);
         TestResultProcessor resultProcessorChain = new AttachParentTestResultProcessor(new CaptureTestOutputTestResultProcessor(processors.getSource(), outputRedirector));
         JUnitTestResultProcessorAdapter listener = new JUnit4TestResultProcessorAdapter(resultProcessorChain,
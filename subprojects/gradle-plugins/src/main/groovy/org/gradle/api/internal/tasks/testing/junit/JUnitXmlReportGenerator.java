@@ -17,144 +17,207 @@
 package org.gradle.api.internal.tasks.testing.junit;
 
 import org.apache.tools.ant.taskdefs.optional.junit.XMLConstants;
-import org.apache.tools.ant.util.DOMElementWriter;
 import org.apache.tools.ant.util.DateUtils;
 import org.gradle.api.GradleException;
-import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
-import org.gradle.api.internal.tasks.testing.TestOutputEvent;
-import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor.TestState;
 import org.gradle.util.UncheckedException;
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 import java.io.*;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
-import java.util.EnumMap;
-import java.util.Map;
 
-public class JUnitXmlReportGenerator extends StateTrackingTestResultProcessor {
+/**
+ * Writes a JUnit XML report file for each test class. The report is streamed: the test cases of a test class are
+ * collected as the tests execute, in memory up to a limit and in a temporary file beyond it, and are copied into the
+ * report file along with the output of the test class when the test class completes.
+ */
+public class JUnitXmlReportGenerator implements TestClassReportWriter {
+    static final int MAX_BUFFERED_CHARS = 64 * 1024;
+    private static final String INDENT = "    ";
     private final File testResultsDir;
-    private final DocumentBuilder documentBuilder;
     private final String hostName;
-    private Document testSuiteReport;
-    private TestState testSuite;
-    private Element rootElement;
-    private Map<TestOutputEvent.Destination, StringBuilder> outputs
-            = new EnumMap<TestOutputEvent.Destination, StringBuilder>(TestOutputEvent.Destination.class);
+    private final int maxBufferedChars;
+    private OutputSpool testCases;
 
     public JUnitXmlReportGenerator(File testResultsDir) {
+        this(testResultsDir, MAX_BUFFERED_CHARS);
+    }
+
+    JUnitXmlReportGenerator(File testResultsDir, int maxBufferedChars) {
         this.testResultsDir = testResultsDir;
-        try {
-            documentBuilder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-        } catch (Exception e) {
-            throw UncheckedException.asUncheckedException(e);
-        }
+        this.maxBufferedChars = maxBufferedChars;
         hostName = getHostname();
     }
 
-    @Override
-    public void output(Object testId, TestOutputEvent event) {
-        outputs.get(event.getDestination()).append(event.getMessage());
+    public void testClassStarted(TestState testClass) {
+        testCases = new OutputSpool(maxBufferedChars);
     }
 
-    @Override
-    protected void started(TestState state) {
-        TestDescriptorInternal test = state.test;
-        if (test.getName().equals(test.getClassName())) {
-            testSuiteReport = documentBuilder.newDocument();
-            rootElement = testSuiteReport.createElement(XMLConstants.TESTSUITE);
-            testSuiteReport.appendChild(rootElement);
-            // Add an empty properties element for compatibility
-            rootElement.appendChild(testSuiteReport.createElement(XMLConstants.PROPERTIES));
-            outputs.put(TestOutputEvent.Destination.StdOut, new StringBuilder());
-            outputs.put(TestOutputEvent.Destination.StdErr, new StringBuilder());
-            testSuite = state;
-        }
+    public void testCompleted(TestState test) {
+        writeTestCase(test);
     }
 
-    @Override
-    protected void completed(TestState state) {
-        String testClassName = state.test.getClassName();
-        Element element;
-        if (!state.equals(testSuite)) {
-            element = testSuiteReport.createElement(XMLConstants.TESTCASE);
-            element.setAttribute(XMLConstants.ATTR_NAME, state.test.getName());
-            element.setAttribute(XMLConstants.ATTR_CLASSNAME, testClassName);
-            rootElement.appendChild(element);
-        } else {
-            element = rootElement;
-            rootElement.setAttribute(XMLConstants.ATTR_NAME, testClassName);
-            rootElement.setAttribute(XMLConstants.ATTR_TESTS, String.valueOf(state.testCount));
-            rootElement.setAttribute(XMLConstants.ATTR_FAILURES, String.valueOf(state.failedCount));
-            rootElement.setAttribute(XMLConstants.ATTR_ERRORS, "0");
-            rootElement.setAttribute(XMLConstants.TIMESTAMP, DateUtils.format(state.getStartTime(),
-                    DateUtils.ISO8601_DATETIME_PATTERN));
-            rootElement.setAttribute(XMLConstants.HOSTNAME, hostName);
-            Element stdoutElement = testSuiteReport.createElement(XMLConstants.SYSTEM_OUT);
-            stdoutElement.appendChild(testSuiteReport.createCDATASection(outputs.get(
-                    TestOutputEvent.Destination.StdOut).toString()));
-            rootElement.appendChild(stdoutElement);
-            Element stderrElement = testSuiteReport.createElement(XMLConstants.SYSTEM_ERR);
-            stderrElement.appendChild(testSuiteReport.createCDATASection(outputs.get(
-                    TestOutputEvent.Destination.StdErr).toString()));
-            rootElement.appendChild(stderrElement);
+    public void testClassCompleted(TestState testClass, OutputSpool stdOut, OutputSpool stdErr) {
+        File reportFile = new File(testResultsDir, "TEST-" + testClass.test.getClassName() + ".xml");
+        try {
+            try {
+                writeReport(testClass, stdOut, stdErr, reportFile);
+            } finally {
+                discardCollectedContent();
+            }
+        } catch (IOException e) {
+            throw new GradleException(String.format("Could not write test report file '%s'.", reportFile), e);
         }
+    }
 
-        element.setAttribute(XMLConstants.ATTR_TIME, String.valueOf(state.getExecutionTime() / 1000.0));
-        if (state.failure != null) {
-            Element failure = testSuiteReport.createElement(XMLConstants.FAILURE);
-            element.appendChild(failure);
-            failure.setAttribute(XMLConstants.ATTR_MESSAGE, failureMessage(state));
-            failure.setAttribute(XMLConstants.ATTR_TYPE, state.failure.getClass().getName());
-            failure.appendChild(testSuiteReport.createTextNode(stackTrace(state)));
+    private void writeTestCase(TestState state) {
+        StringWriter writer = new StringWriter();
+        try {
+            writer.write(INDENT);
+            writer.write('<');
+            writer.write(XMLConstants.TESTCASE);
+            writeAttribute(writer, XMLConstants.ATTR_NAME, state.test.getName());
+            writeAttribute(writer, XMLConstants.ATTR_CLASSNAME, state.test.getClassName());
+            writeAttribute(writer, XMLConstants.ATTR_TIME, executionTime(state));
+            if (state.failure == null) {
+                writer.write(" />\n");
+            } else {
+                writer.write(">\n");
+                writeFailure(writer, state, INDENT + INDENT);
+                writer.write(INDENT);
+                writeEndTag(writer, XMLConstants.TESTCASE);
+            }
+            testCases.append(writer.toString());
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
         }
+    }
 
-        if (state.equals(testSuite)) {
-            File reportFile = new File(testResultsDir, "TEST-" + testClassName + ".xml");
-            try {
-                OutputStream outstr = new BufferedOutputStream(new FileOutputStream(reportFile));
-                try {
-                    new DOMElementWriter(true).write(rootElement, outstr);
-                } finally {
-                    outstr.close();
-                }
-            } catch (IOException e) {
-                throw new GradleException(String.format("Could not write test report file '%s'.", reportFile), e);
+    private void writeReport(TestState state, OutputSpool stdOut, OutputSpool stdErr, File reportFile)
+            throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(reportFile), "UTF-8"));
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write('<');
+            writer.write(XMLConstants.TESTSUITE);
+            writeAttribute(writer, XMLConstants.ATTR_NAME, state.test.getClassName());
+            writeAttribute(writer, XMLConstants.ATTR_TESTS, String.valueOf(state.testCount));
+            writeAttribute(writer, XMLConstants.ATTR_FAILURES, String.valueOf(state.failedCount));
+            writeAttribute(writer, XMLConstants.ATTR_ERRORS, "0");
+            writeAttribute(writer, XMLConstants.TIMESTAMP, DateUtils.format(state.getStartTime(),
+                    DateUtils.ISO8601_DATETIME_PATTERN));
+            writeAttribute(writer, XMLConstants.HOSTNAME, hostName);
+            writeAttribute(writer, XMLConstants.ATTR_TIME, executionTime(state));
+            writer.write(">\n");
+
+            // Add an empty properties element for compatibility
+            writer.write(INDENT);
+            writer.write('<');
+            writer.write(XMLConstants.PROPERTIES);
+            writer.write(" />\n");
+
+            testCases.writeTo(writer);
+            writeOutput(writer, XMLConstants.SYSTEM_OUT, stdOut);
+            writeOutput(writer, XMLConstants.SYSTEM_ERR, stdErr);
+            if (state.failure != null) {
+                writeFailure(writer, state, INDENT);
             }
 
-            testSuite = null;
-            outputs.clear();
+            writeEndTag(writer, XMLConstants.TESTSUITE);
+        } finally {
+            writer.close();
         }
     }
 
-    private String stackTrace(TestState state) {
+    private void writeOutput(Writer writer, String elementName, OutputSpool output) throws IOException {
+        writer.write(INDENT);
+        writer.write('<');
+        writer.write(elementName);
+        writer.write("><![CDATA[");
+        output.writeTo(new CDataWriter(writer));
+        writer.write("]]>");
+        writeEndTag(writer, elementName);
+    }
+
+    private void writeFailure(Writer writer, TestState state, String indent) throws IOException {
+        writer.write(indent);
+        writer.write('<');
+        writer.write(XMLConstants.FAILURE);
+        TestClassResult.TestFailure failure = TestClassResult.TestFailure.from(state.failure);
+        writeAttribute(writer, XMLConstants.ATTR_MESSAGE, failure.getMessage());
+        writeAttribute(writer, XMLConstants.ATTR_TYPE, failure.getExceptionType());
+        writer.write('>');
+        writeEscaped(writer, failure.getStackTrace(), false);
+        writeEndTag(writer, XMLConstants.FAILURE);
+    }
+
+    private void discardCollectedContent() throws IOException {
         try {
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter writer = new PrintWriter(stringWriter);
-            state.failure.printStackTrace(writer);
-            writer.close();
-            return stringWriter.toString();
-        } catch (Throwable t) {
-            StringWriter stringWriter = new StringWriter();
-            PrintWriter writer = new PrintWriter(stringWriter);
-            t.printStackTrace(writer);
-            writer.close();
-            return stringWriter.toString();
+            testCases.discard();
+        } finally {
+            testCases = null;
         }
     }
 
-    private String failureMessage(TestState state) {
-        try {
-            return state.failure.toString();
-        } catch (Throwable t) {
-            return String.format("Could not determine failure message for exception of type %s: %s",
-                    state.failure.getClass().getName(), t);
+    private static void writeEndTag(Writer writer, String elementName) throws IOException {
+        writer.write("</");
+        writer.write(elementName);
+        writer.write(">\n");
+    }
+
+    private static void writeAttribute(Writer writer, String name, String value) throws IOException {
+        writer.write(' ');
+        writer.write(name);
+        writer.write("=\"");
+        writeEscaped(writer, value, true);
+        writer.write('"');
+    }
+
+    private static void writeEscaped(Writer writer, String text, boolean attribute) throws IOException {
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '<':
+                    writer.write("&lt;");
+                    break;
+                case '>':
+                    writer.write("&gt;");
+                    break;
+                case '&':
+                    writer.write("&amp;");
+                    break;
+                case '"':
+                    writer.write("&quot;");
+                    break;
+                case '\'':
+                    writer.write("&apos;");
+                    break;
+                case '\n':
+                case '\r':
+                case '\t':
+                    // Line breaks and tabs in attribute values are normalised to spaces, unless they are encoded
+                    if (attribute) {
+                        writer.write("&#" + (int) ch + ";");
+                    } else {
+                        writer.write(ch);
+                    }
+                    break;
+                default:
+                    if (isLegalCharacter(ch)) {
+                        writer.write(ch);
+                    }
+            }
         }
     }
 
+    private static boolean isLegalCharacter(char ch) {
+        return ch == '\t' || ch == '\n' || ch == '\r' || ch >= 0x20 && ch <= 0xfffd;
+    }
+
+    private String executionTime(TestState state) {
+        return String.valueOf(state.getExecutionTime() / 1000.0);
+    }
+
     private String getHostname() {
         try {
             return InetAddress.getLocalHost().getHostName();
@@ -162,4 +225,48 @@ public class JUnitXmlReportGenerator extends StateTrackingTestResultProcessor {
             return "localhost";
         }
     }
+
+    /**
+     * Writes the content of a CDATA section. Removes the characters which are not allowed in XML, and splits the section
+     * wherever the content contains the ]]&gt; terminator.
+     */
+    private static class CDataWriter extends Writer {
+        private final Writer target;
+        private int trailingBrackets;
+
+        private CDataWriter(Writer target) {
+            this.target = target;
+        }
+
+        @Override
+        public void write(char[] chars, int offset, int length) throws IOException {
+            int end = offset + length;
+            int start = offset;
+            for (int i = offset; i < end; i++) {
+                char ch = chars[i];
+                if (!isLegalCharacter(ch)) {
+                    target.write(chars, start, i - start);
+                    start = i + 1;
+                    continue;
+                }
+                if (ch == '>' && trailingBrackets >= 2) {
+                    target.write(chars, start, i - start);
+                    target.write("]]><![CDATA[");
+                    start = i;
+                }
+                trailingBrackets = ch == ']' ? trailingBrackets + 1 : 0;
+            }
+            target.write(chars, start, end - start);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            target.flush();
+        }
+
+        @Override
+        public void close() {
+            // The target is closed by the owner
+        }
+    }
 }
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import java.io.*;
+
+/**
+ * Collects text in memory until it reaches a given number of characters, and in a temporary file beyond that.
+ */
+class OutputSpool {
+    private final int maxBufferedChars;
+    private final StringBuilder buffer = new StringBuilder();
+    private File spoolFile;
+    private Writer spoolWriter;
+
+    OutputSpool(int maxBufferedChars) {
+        this.maxBufferedChars = maxBufferedChars;
+    }
+
+    boolean isSpooled() {
+        return spoolFile != null;
+    }
+
+    void append(String text) throws IOException {
+        if (spoolWriter == null && buffer.length() + text.length() <= maxBufferedChars) {
+            buffer.append(text);
+            return;
+        }
+        if (spoolWriter == null) {
+            spoolFile = File.createTempFile("gradle-test-output", ".txt");
+            spoolWriter = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(spoolFile), "UTF-8"));
+            spoolWriter.append(buffer);
+            buffer.setLength(0);
+        }
+        spoolWriter.write(text);
+    }
+
+    /**
+     * Writes the collected text to the given writer.
+     */
+    void writeTo(Writer writer) throws IOException {
+        if (spoolWriter == null) {
+            writer.append(buffer);
+            return;
+        }
+        spoolWriter.flush();
+        Reader reader = new InputStreamReader(new FileInputStream(spoolFile), "UTF-8");
+        try {
+            char[] chars = new char[8192];
+            int count;
+            while ((count = reader.read(chars)) >= 0) {
+                writer.write(chars, 0, count);
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Discards the collected text, and deletes the temporary file if there is one.
+     */
+    void discard() throws IOException {
+        buffer.setLength(0);
+        if (spoolWriter != null) {
+            try {
+                spoolWriter.close();
+            } finally {
+                spoolWriter = null;
+                spoolFile.delete();
+                spoolFile = null;
+            }
+        }
+    }
+}
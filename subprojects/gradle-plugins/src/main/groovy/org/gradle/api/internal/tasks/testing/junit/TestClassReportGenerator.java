@@ -0,0 +1,109 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestOutputEvent;
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
+import org.gradle.util.UncheckedException;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Collects the results and output of each test class, and passes them to a set of report writers. The output of a test
+ * class is collected once, in memory up to a limit and in temporary files beyond it, and is shared by all the writers.
+ */
+class TestClassReportGenerator extends StateTrackingTestResultProcessor {
+    private final int maxBufferedChars;
+    private final List<TestClassReportWriter> writers;
+    private TestState testClass;
+    private final Map<TestOutputEvent.Destination, OutputSpool> outputs
+            = new EnumMap<TestOutputEvent.Destination, OutputSpool>(TestOutputEvent.Destination.class);
+
+    TestClassReportGenerator(TestClassReportWriter... writers) {
+        this(JUnitXmlReportGenerator.MAX_BUFFERED_CHARS, writers);
+    }
+
+    TestClassReportGenerator(int maxBufferedChars, TestClassReportWriter... writers) {
+        this.maxBufferedChars = maxBufferedChars;
+        this.writers = Arrays.asList(writers);
+    }
+
+    @Override
+    public void output(Object testId, TestOutputEvent event) {
+        OutputSpool output = outputs.get(event.getDestination());
+        if (output == null) {
+            return;
+        }
+        try {
+            output.append(event.getMessage());
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        }
+    }
+
+    @Override
+    protected void started(TestState state) {
+        TestDescriptorInternal test = state.test;
+        if (test.getName().equals(test.getClassName())) {
+            outputs.put(TestOutputEvent.Destination.StdOut, new OutputSpool(maxBufferedChars));
+            outputs.put(TestOutputEvent.Destination.StdErr, new OutputSpool(maxBufferedChars));
+            testClass = state;
+            for (TestClassReportWriter writer : writers) {
+                writer.testClassStarted(state);
+            }
+        }
+    }
+
+    @Override
+    protected void completed(TestState state) {
+        if (!state.equals(testClass)) {
+            if (testClass != null) {
+                for (TestClassReportWriter writer : writers) {
+                    writer.testCompleted(state);
+                }
+            }
+            return;
+        }
+
+        try {
+            for (TestClassReportWriter writer : writers) {
+                writer.testClassCompleted(state, outputs.get(TestOutputEvent.Destination.StdOut), outputs.get(
+                        TestOutputEvent.Destination.StdErr));
+            }
+        } finally {
+            discardOutput();
+        }
+    }
+
+    private void discardOutput() {
+        testClass = null;
+        try {
+            for (OutputSpool output : outputs.values()) {
+                output.discard();
+            }
+        } catch (IOException e) {
+            throw UncheckedException.asUncheckedException(e);
+        } finally {
+            outputs.clear();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor.TestState;
+
+/**
+ * Writes a report for each test class, from the results collected by a {@link TestClassReportGenerator}.
+ */
+interface TestClassReportWriter {
+    void testClassStarted(TestState testClass);
+
+    /**
+     * Called when a test of the current test class completes.
+     */
+    void testCompleted(TestState test);
+
+    /**
+     * Called when the current test class completes. The output is discarded once this method returns.
+     */
+    void testClassCompleted(TestState testClass, OutputSpool stdOut, OutputSpool stdErr);
+}
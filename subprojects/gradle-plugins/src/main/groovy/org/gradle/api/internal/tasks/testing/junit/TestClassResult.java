@@ -0,0 +1,304 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.junit;
+
+import org.gradle.api.tasks.testing.TestResult;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The results of a test class, as written to the binary results file of the test class. The file contains the class
+ * result, followed by the standard output and the standard error of the test class.
+ */
+class TestClassResult {
+    static final String RESULTS_DIR_NAME = "binary";
+    private static final int MAGIC = 0x67545231;
+    private final String className;
+    private final long startTime;
+    private long duration;
+    private TestFailure failure;
+    private final List<TestMethodResult> methodResults = new ArrayList<TestMethodResult>();
+
+    TestClassResult(String className, long startTime) {
+        this.className = className;
+        this.startTime = startTime;
+    }
+
+    static File getResultsDir(File testResultsDir) {
+        return new File(testResultsDir, RESULTS_DIR_NAME);
+    }
+
+    static File getResultsFile(File resultsDir, String className) {
+        return new File(resultsDir, className + ".bin");
+    }
+
+    String getClassName() {
+        return className;
+    }
+
+    String getPackageName() {
+        return getPackageName(className);
+    }
+
+    static String getPackageName(String className) {
+        int index = className.lastIndexOf('.');
+        return index < 0 ? "" : className.substring(0, index);
+    }
+
+    String getSimpleName() {
+        return className.substring(className.lastIndexOf('.') + 1);
+    }
+
+    long getStartTime() {
+        return startTime;
+    }
+
+    long getDuration() {
+        return duration;
+    }
+
+    void setDuration(long duration) {
+        this.duration = duration;
+    }
+
+    /**
+     * Returns the failure of the test class itself, such as a failure in a class level set-up method, or null.
+     */
+    TestFailure getFailure() {
+        return failure;
+    }
+
+    void setFailure(TestFailure failure) {
+        this.failure = failure;
+    }
+
+    List<TestMethodResult> getMethodResults() {
+        return Collections.unmodifiableList(methodResults);
+    }
+
+    void add(TestMethodResult methodResult) {
+        methodResults.add(methodResult);
+    }
+
+    /**
+     * Returns the number of tests of this test class. A failure of the test class itself is counted as a test.
+     */
+    int getTestCount() {
+        return methodResults.size() + (failure != null ? 1 : 0);
+    }
+
+    /**
+     * Returns the number of failed tests of this test class, including any failure of the test class itself.
+     */
+    int getFailureCount() {
+        int count = failure != null ? 1 : 0;
+        for (TestMethodResult methodResult : methodResults) {
+            if (methodResult.getResultType() == TestResult.ResultType.FAILURE) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void write(DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(MAGIC);
+        writeString(outputStream, className);
+        outputStream.writeLong(startTime);
+        outputStream.writeLong(duration);
+        writeFailure(outputStream, failure);
+        outputStream.writeInt(methodResults.size());
+        for (TestMethodResult methodResult : methodResults) {
+            writeString(outputStream, methodResult.name);
+            outputStream.writeLong(methodResult.duration);
+            outputStream.writeByte(methodResult.resultType.ordinal());
+            writeFailure(outputStream, methodResult.failure);
+        }
+    }
+
+    static TestClassResult read(DataInputStream inputStream) throws IOException {
+        if (inputStream.readInt() != MAGIC) {
+            throw new IOException("Unexpected test results file format.");
+        }
+        TestClassResult result = new TestClassResult(readString(inputStream), inputStream.readLong());
+        result.duration = inputStream.readLong();
+        result.failure = readFailure(inputStream);
+        int count = inputStream.readInt();
+        for (int i = 0; i < count; i++) {
+            String name = readString(inputStream);
+            long duration = inputStream.readLong();
+            TestResult.ResultType resultType = TestResult.ResultType.values()[inputStream.readByte()];
+            result.add(new TestMethodResult(name, duration, resultType, readFailure(inputStream)));
+        }
+        return result;
+    }
+
+    /**
+     * Writes the given output as a sequence of chunks.
+     */
+    static void writeOutput(final DataOutputStream outputStream, OutputSpool output) throws IOException {
+        output.writeTo(new Writer() {
+            @Override
+            public void write(char[] chars, int offset, int length) throws IOException {
+                if (length > 0) {
+                    writeString(outputStream, new String(chars, offset, length));
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+        writeString(outputStream, null);
+    }
+
+    /**
+     * Copies output written by {@link #writeOutput(java.io.DataOutputStream, OutputSpool)} to the given writer.
+     */
+    static void readOutput(DataInputStream inputStream, Writer writer) throws IOException {
+        String chunk;
+        while ((chunk = readString(inputStream)) != null) {
+            writer.write(chunk);
+        }
+    }
+
+    private static void writeFailure(DataOutputStream outputStream, TestFailure failure) throws IOException {
+        outputStream.writeBoolean(failure != null);
+        if (failure != null) {
+            writeString(outputStream, failure.message);
+            writeString(outputStream, failure.exceptionType);
+            writeString(outputStream, failure.stackTrace);
+        }
+    }
+
+    private static TestFailure readFailure(DataInputStream inputStream) throws IOException {
+        if (!inputStream.readBoolean()) {
+            return null;
+        }
+        return new TestFailure(readString(inputStream), readString(inputStream), readString(inputStream));
+    }
+
+    // Strings are not written using writeUTF(), as messages, stack traces and output can be longer than 64k
+    private static void writeString(DataOutputStream outputStream, String value) throws IOException {
+        if (value == null) {
+            outputStream.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes("UTF-8");
+        outputStream.writeInt(bytes.length);
+        outputStream.write(bytes);
+    }
+
+    private static String readString(DataInputStream inputStream) throws IOException {
+        int length = inputStream.readInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        inputStream.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    static class TestMethodResult {
+        private final String name;
+        private final long duration;
+        private final TestResult.ResultType resultType;
+        private final TestFailure failure;
+
+        TestMethodResult(String name, long duration, TestResult.ResultType resultType, TestFailure failure) {
+            this.name = name;
+            this.duration = duration;
+            this.resultType = resultType;
+            this.failure = failure;
+        }
+
+        String getName() {
+            return name;
+        }
+
+        long getDuration() {
+            return duration;
+        }
+
+        TestResult.ResultType getResultType() {
+            return resultType;
+        }
+
+        TestFailure getFailure() {
+            return failure;
+        }
+    }
+
+    static class TestFailure {
+        private final String message;
+        private final String exceptionType;
+        private final String stackTrace;
+
+        TestFailure(String message, String exceptionType, String stackTrace) {
+            this.message = message;
+            this.exceptionType = exceptionType;
+            this.stackTrace = stackTrace;
+        }
+
+        static TestFailure from(Throwable failure) {
+            return new TestFailure(failureMessage(failure), failure.getClass().getName(), stackTrace(failure));
+        }
+
+        private static String stackTrace(Throwable failure) {
+            try {
+                StringWriter stringWriter = new StringWriter();
+                PrintWriter writer = new PrintWriter(stringWriter);
+                failure.printStackTrace(writer);
+                writer.close();
+                return stringWriter.toString();
+            } catch (Throwable t) {
+                StringWriter stringWriter = new StringWriter();
+                PrintWriter writer = new PrintWriter(stringWriter);
+                t.printStackTrace(writer);
+                writer.close();
+                return stringWriter.toString();
+            }
+        }
+
+        private static String failureMessage(Throwable failure) {
+            try {
+                return failure.toString();
+            } catch (Throwable t) {
+                return String.format("Could not determine failure message for exception of type %s: %s",
+                        failure.getClass().getName(), t);
+            }
+        }
+
+        String getMessage() {
+            return message;
+        }
+
+        String getExceptionType() {
+            return exceptionType;
+        }
+
+        String getStackTrace() {
+            return stackTrace;
+        }
+    }
+}
@@ -17,36 +17,71 @@
 package org.gradle.api.internal.tasks.testing.processors;
 
 import org.gradle.api.internal.Factory;
-import org.gradle.api.internal.tasks.testing.TestClassProcessor;
-import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
-import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.*;
 import org.gradle.messaging.actor.Actor;
 import org.gradle.messaging.actor.ActorFactory;
 import org.gradle.messaging.concurrent.CompositeStoppable;
 import org.gradle.messaging.dispatch.DispatchException;
 import org.gradle.util.UncheckedException;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Manages a set of parallel TestClassProcessors. Uses a simple round-robin algorithm to assign test classes to
- * processors.
+ * Manages a set of parallel TestClassProcessors. Test classes are queued, and each processor is given a single test
+ * class at a time. When a processor reports that it has completed its test class, it is given the next test class
+ * from the queue. A new processor is started when a test class is queued and all the processors are busy, up to the
+ * maximum number of processors. When stopped, waits until all the queued test classes have been handed out, then
+ * stops the processors.
+ *
+ * <p>Processors which execute their test classes only when they are stopped, rather than reporting the completion of
+ * each test class, are instead given each test class as it is received, using the processor with the fewest test
+ * classes.</p>
+ *
+ * <p>The processors are never called while holding the lock, as they may block waiting for their queue to drain,
+ * which in turn may be waiting for this processor to accept the completion of a test class.</p>
  */
 public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     private final int maxProcessors;
     private final Factory<? extends TestClassProcessor> factory;
     private final ActorFactory actorFactory;
+    private final boolean onDemand;
+    private final Lock lock = new ReentrantLock();
+    private final Condition queueEmpty = lock.newCondition();
+    private final Queue<QueuedTestClass> queue;
     private TestResultProcessor resultProcessor;
-    private int pos;
-    private List<TestClassProcessor> processors = new ArrayList<TestClassProcessor>();
+    private long sequence;
+    private List<ProcessorState> processors = new ArrayList<ProcessorState>();
     private List<Actor> actors = new ArrayList<Actor>();
     private Actor resultProcessorActor;
 
     public MaxNParallelTestClassProcessor(int maxProcessors, Factory<? extends TestClassProcessor> factory, ActorFactory actorFactory) {
+        this(maxProcessors, factory, actorFactory, null);
+    }
+
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<? extends TestClassProcessor> factory, ActorFactory actorFactory, Comparator<? super TestClassRunInfo> order) {
+        this(maxProcessors, factory, actorFactory, order, true);
+    }
+
+    /**
+     * Creates a processor which hands out queued test classes in the order given by the given comparator, for
+     * example to start the longest running test classes first. Test classes which the comparator considers equal
+     * are handed out in the order they were queued.
+     *
+     * @param order The order to hand out queued test classes in. May be null, in which case they are handed out in
+     * the order they were queued.
+     * @param onDemand True when the processors report the completion of each test class, so that test classes can be
+     * handed out as the processors become idle. False when the processors execute their test classes only when they
+     * are stopped, in which case each test class is handed out as soon as it is received, and the order is ignored.
+     */
+    public MaxNParallelTestClassProcessor(int maxProcessors, Factory<? extends TestClassProcessor> factory, ActorFactory actorFactory, Comparator<? super TestClassRunInfo> order, boolean onDemand) {
         this.maxProcessors = maxProcessors;
         this.factory = factory;
         this.actorFactory = actorFactory;
+        this.onDemand = onDemand;
+        queue = new PriorityQueue<QueuedTestClass>(11, new QueueOrder(order));
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
@@ -55,26 +90,200 @@ public class MaxNParallelTestClassProcessor implements TestClassProcessor {
     }
 
     public void processTestClass(TestClassRunInfo testClass) {
-        TestClassProcessor processor;
-        if (processors.size() < maxProcessors) {
-            processor = factory.create();
-            Actor actor = actorFactory.createActor(processor);
-            processor = actor.getProxy(TestClassProcessor.class);
-            actors.add(actor);
-            processors.add(processor);
-            processor.startProcessing(resultProcessor);
-        } else {
-            processor = processors.get(pos);
-            pos = (pos + 1) % processors.size();
-        }
-        processor.processTestClass(testClass);
+        ProcessorState processor;
+        ProcessorState newProcessor = null;
+        TestClassRunInfo next = null;
+        lock.lock();
+        try {
+            processor = findIdleProcessor();
+            if (processor == null && processors.size() < maxProcessors) {
+                newProcessor = createProcessor();
+                processor = newProcessor;
+            }
+            if (onDemand) {
+                queue.add(new QueuedTestClass(testClass, sequence++));
+                if (processor != null) {
+                    next = takeNext(processor);
+                }
+            } else {
+                if (processor == null) {
+                    processor = findLeastBusyProcessor();
+                }
+                processor.outstanding++;
+                next = testClass;
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        if (newProcessor != null) {
+            newProcessor.processor.startProcessing(new CompletionTrackingResultProcessor(newProcessor, resultProcessor));
+        }
+        if (next != null) {
+            processor.processor.processTestClass(next);
+        }
     }
 
     public void stop() {
+        lock.lock();
+        try {
+            // Wait for the processors to take the remaining test classes as they complete their current test class
+            while (!queue.isEmpty()) {
+                try {
+                    queueEmpty.await();
+                } catch (InterruptedException e) {
+                    throw new UncheckedException(e);
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // Stopping the processors waits for them to complete their current test class
+        List<TestClassProcessor> stoppables = new ArrayList<TestClassProcessor>();
+        for (ProcessorState processor : processors) {
+            stoppables.add(processor.processor);
+        }
         try {
-            new CompositeStoppable(processors).add(actors).add(resultProcessorActor).stop();
+            new CompositeStoppable(stoppables).add(actors).add(resultProcessorActor).stop();
         } catch (DispatchException e) {
             throw UncheckedException.asUncheckedException(e.getCause());
         }
     }
+
+    private ProcessorState createProcessor() {
+        TestClassProcessor processor = factory.create();
+        Actor actor = actorFactory.createActor(processor);
+        processor = actor.getProxy(TestClassProcessor.class);
+        actors.add(actor);
+        ProcessorState state = new ProcessorState(processor);
+        processors.add(state);
+        return state;
+    }
+
+    private ProcessorState findIdleProcessor() {
+        for (ProcessorState processor : processors) {
+            if (processor.outstanding == 0) {
+                return processor;
+            }
+        }
+        return null;
+    }
+
+    private ProcessorState findLeastBusyProcessor() {
+        ProcessorState leastBusy = processors.get(0);
+        for (ProcessorState processor : processors) {
+            if (processor.outstanding < leastBusy.outstanding) {
+                leastBusy = processor;
+            }
+        }
+        return leastBusy;
+    }
+
+    private TestClassRunInfo takeNext(ProcessorState processor) {
+        QueuedTestClass next = queue.poll();
+        if (queue.isEmpty()) {
+            queueEmpty.signalAll();
+        }
+        if (next == null) {
+            return null;
+        }
+        processor.outstanding++;
+        return next.testClass;
+    }
+
+    private void testClassCompleted(ProcessorState processor) {
+        TestClassRunInfo next = null;
+        lock.lock();
+        try {
+            processor.outstanding--;
+            if (processor.outstanding == 0) {
+                next = takeNext(processor);
+            }
+        } finally {
+            lock.unlock();
+        }
+        if (next != null) {
+            processor.processor.processTestClass(next);
+        }
+    }
+
+    private static class ProcessorState {
+        private final TestClassProcessor processor;
+        private int outstanding;
+
+        private ProcessorState(TestClassProcessor processor) {
+            this.processor = processor;
+        }
+    }
+
+    private static class QueuedTestClass {
+        private final TestClassRunInfo testClass;
+        private final long sequence;
+
+        private QueuedTestClass(TestClassRunInfo testClass, long sequence) {
+            this.testClass = testClass;
+            this.sequence = sequence;
+        }
+    }
+
+    private static class QueueOrder implements Comparator<QueuedTestClass> {
+        private final Comparator<? super TestClassRunInfo> order;
+
+        private QueueOrder(Comparator<? super TestClassRunInfo> order) {
+            this.order = order;
+        }
+
+        public int compare(QueuedTestClass left, QueuedTestClass right) {
+            if (order != null) {
+                int result = order.compare(left.testClass, right.testClass);
+                if (result != 0) {
+                    return result;
+                }
+            }
+            return left.sequence < right.sequence ? -1 : left.sequence > right.sequence ? 1 : 0;
+        }
+    }
+
+    /**
+     * Forwards the results of a processor, and notices when the processor has completed a test class.
+     */
+    private class CompletionTrackingResultProcessor implements TestResultProcessor {
+        private final ProcessorState processor;
+        private final TestResultProcessor resultProcessor;
+        private final Set<Object> runningTestClasses = new HashSet<Object>();
+
+        private CompletionTrackingResultProcessor(ProcessorState processor, TestResultProcessor resultProcessor) {
+            this.processor = processor;
+            this.resultProcessor = resultProcessor;
+        }
+
+        public void started(TestDescriptorInternal test, TestStartEvent event) {
+            resultProcessor.started(test, event);
+            if (test.isComposite() && test.getClassName() != null) {
+                synchronized (runningTestClasses) {
+                    runningTestClasses.add(test.getId());
+                }
+            }
+        }
+
+        public void completed(Object testId, TestCompleteEvent event) {
+            resultProcessor.completed(testId, event);
+            boolean testClass;
+            synchronized (runningTestClasses) {
+                testClass = runningTestClasses.remove(testId);
+            }
+            if (testClass) {
+                testClassCompleted(processor);
+            }
+        }
+
+        public void output(Object testId, TestOutputEvent event) {
+            resultProcessor.output(testId, event);
+        }
+
+        public void failure(Object testId, Throwable result) {
+            resultProcessor.failure(testId, result);
+        }
+    }
 }
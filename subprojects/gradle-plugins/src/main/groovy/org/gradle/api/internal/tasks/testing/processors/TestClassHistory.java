@@ -0,0 +1,176 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.gradle.api.internal.tasks.testing.processors;
+
+import org.gradle.api.internal.tasks.testing.TestClassRunInfo;
+import org.gradle.api.internal.tasks.testing.TestDescriptorInternal;
+import org.gradle.api.internal.tasks.testing.TestResultProcessor;
+import org.gradle.api.internal.tasks.testing.results.StateTrackingTestResultProcessor;
+import org.gradle.cache.PersistentIndexedCache;
+import org.gradle.cache.PersistentStateCache;
+import org.gradle.cache.Serializer;
+
+import java.io.*;
+import java.util.*;
+
+/**
+ * <p>The results of the previous execution of each test class of a test task, which are used to decide the order to
+ * execute the test classes in.</p>
+ *
+ * <p>Test classes which failed the last time they were executed are executed first, so that a failure which has not been
+ * fixed is reported as early as possible. These are followed by the test classes which have not been executed before, as
+ * these are likely to be under development. The remaining test classes are executed longest first, so that the parallel
+ * test processes finish at around the same time.</p>
+ *
+ * <p>Only the test classes executed by the most recent run are kept in the history. The entries of the other test
+ * classes are removed by {@link #removeClassesNotExecuted()}.</p>
+ */
+public class TestClassHistory {
+    private final PersistentIndexedCache<String, TestClassExecution> cache;
+    private final PersistentStateCache<Set<String>> classNames;
+    private final Map<String, TestClassExecution> executions = new HashMap<String, TestClassExecution>();
+    private final Set<String> executed = new HashSet<String>();
+
+    /**
+     * @param cache The cache to keep the history in. Should use the serializer returned by {@link #getSerializer()}.
+     * @param classNames The cache to keep the names of the test classes in the history in.
+     */
+    public TestClassHistory(PersistentIndexedCache<String, TestClassExecution> cache,
+                            PersistentStateCache<Set<String>> classNames) {
+        this.cache = cache;
+        this.classNames = classNames;
+    }
+
+    public static Serializer<TestClassExecution> getSerializer() {
+        return new TestClassExecutionSerializer();
+    }
+
+    /**
+     * Returns the order to execute test classes in.
+     */
+    public Comparator<TestClassRunInfo> getExecutionOrder() {
+        return new ExecutionOrder();
+    }
+
+    /**
+     * Returns a result processor which records the results of the test classes in this history.
+     */
+    public TestResultProcessor getRecorder() {
+        return new Recorder();
+    }
+
+    /**
+     * Returns the previous execution of the given test class, or null if the test class has not been executed before.
+     */
+    public synchronized TestClassExecution getExecution(String className) {
+        if (executions.containsKey(className)) {
+            return executions.get(className);
+        }
+        TestClassExecution execution = cache.get(className);
+        executions.put(className, execution);
+        return execution;
+    }
+
+    /**
+     * Removes the history of the test classes which have not been executed since this history was opened, so that
+     * the history does not keep growing as test classes are renamed or deleted. Should be called once the test
+     * classes have been executed.
+     */
+    public synchronized void removeClassesNotExecuted() {
+        Set<String> previous = classNames.get();
+        if (previous != null) {
+            for (String className : previous) {
+                if (!executed.contains(className)) {
+                    cache.remove(className);
+                }
+            }
+        }
+        classNames.set(new HashSet<String>(executed));
+    }
+
+    private synchronized void addExecution(String className, TestClassExecution execution) {
+        cache.put(className, execution);
+        executed.add(className);
+    }
+
+    public static class TestClassExecution {
+        private final long executionTime;
+        private final boolean failed;
+
+        public TestClassExecution(long executionTime, boolean failed) {
+            this.executionTime = executionTime;
+            this.failed = failed;
+        }
+
+        public long getExecutionTime() {
+            return executionTime;
+        }
+
+        public boolean isFailed() {
+            return failed;
+        }
+    }
+
+    private class ExecutionOrder implements Comparator<TestClassRunInfo> {
+        public int compare(TestClassRunInfo left, TestClassRunInfo right) {
+            TestClassExecution leftExecution = getExecution(left.getTestClassName());
+            TestClassExecution rightExecution = getExecution(right.getTestClassName());
+            int leftRank = rank(leftExecution);
+            int rightRank = rank(rightExecution);
+            if (leftRank != rightRank) {
+                return leftRank < rightRank ? -1 : 1;
+            }
+            if (leftExecution == null) {
+                return 0;
+            }
+            long leftTime = leftExecution.executionTime;
+            long rightTime = rightExecution.executionTime;
+            return leftTime > rightTime ? -1 : leftTime < rightTime ? 1 : 0;
+        }
+
+        private int rank(TestClassExecution execution) {
+            if (execution == null) {
+                return 1;
+            }
+            return execution.failed ? 0 : 2;
+        }
+    }
+
+    private class Recorder extends StateTrackingTestResultProcessor {
+        @Override
+        protected void completed(TestState state) {
+            TestDescriptorInternal test = state.test;
+            if (test.getClassName() != null && test.getName().equals(test.getClassName())) {
+                addExecution(test.getClassName(), new TestClassExecution(state.getExecutionTime(), state.isFailed()));
+            }
+        }
+    }
+
+    private static class TestClassExecutionSerializer implements Serializer<TestClassExecution> {
+        public TestClassExecution read(InputStream instr) throws Exception {
+            DataInputStream inputStream = new DataInputStream(instr);
+            return new TestClassExecution(inputStream.readLong(), inputStream.readBoolean());
+        }
+
+        public void write(OutputStream outstr, TestClassExecution value) throws Exception {
+            DataOutputStream outputStream = new DataOutputStream(outstr);
+            outputStream.writeLong(value.executionTime);
+            outputStream.writeBoolean(value.failed);
+            outputStream.flush();
+        }
+    }
+}
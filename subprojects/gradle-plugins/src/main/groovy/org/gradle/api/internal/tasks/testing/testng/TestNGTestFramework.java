@@ -63,6 +63,11 @@ public class TestNGTestFramework implements TestFramework {
         };
     }
 
+    public boolean executesTestClassesOnReceipt() {
+        // The test classes are executed together when the processor is stopped
+        return false;
+    }
+
     public void report() {
         // TODO currently reports are always generated because the antTestNGExecute task uses the
         // default listeners and these generate reports by default.
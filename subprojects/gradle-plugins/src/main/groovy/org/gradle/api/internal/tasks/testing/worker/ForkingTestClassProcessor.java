@@ -34,16 +34,27 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
     private final JavaForkOptions options;
     private final Iterable<File> classPath;
     private final Action<WorkerProcessBuilder> buildConfigAction;
+    private final boolean reuseWorkerProcess;
     private RemoteTestClassProcessor remoteProcessor;
     private WorkerProcess workerProcess;
     private TestResultProcessor resultProcessor;
 
     public ForkingTestClassProcessor(Factory<? extends WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction) {
+        this(workerFactory, processorFactory, options, classPath, buildConfigAction, false);
+    }
+
+    /**
+     * @param reuseWorkerProcess When true, the tests are run in a reusable worker process, with the test classes loaded
+     * in an isolated ClassLoader. Otherwise, a new worker process is started, with the test classes loaded in the system
+     * ClassLoader.
+     */
+    public ForkingTestClassProcessor(Factory<? extends WorkerProcessBuilder> workerFactory, WorkerTestClassProcessorFactory processorFactory, JavaForkOptions options, Iterable<File> classPath, Action<WorkerProcessBuilder> buildConfigAction, boolean reuseWorkerProcess) {
         this.workerFactory = workerFactory;
         this.processorFactory = processorFactory;
         this.options = options;
         this.classPath = classPath;
         this.buildConfigAction = buildConfigAction;
+        this.reuseWorkerProcess = reuseWorkerProcess;
     }
 
     public void startProcessing(TestResultProcessor resultProcessor) {
@@ -54,7 +65,11 @@ public class ForkingTestClassProcessor implements TestClassProcessor {
         if (remoteProcessor == null) {
             WorkerProcessBuilder builder = workerFactory.create();
             builder.applicationClasspath(classPath);
-            builder.setLoadApplicationInSystemClassLoader(true);
+            if (reuseWorkerProcess) {
+                builder.setReusable(true);
+            } else {
+                builder.setLoadApplicationInSystemClassLoader(true);
+            }
             builder.worker(new TestWorker(processorFactory));
             options.copyTo(builder.getJavaCommand());
             buildConfigAction.execute(builder);
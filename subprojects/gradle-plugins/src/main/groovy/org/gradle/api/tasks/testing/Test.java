@@ -36,10 +36,12 @@ import org.gradle.api.specs.Spec;
 import org.gradle.api.tasks.*;
 import org.gradle.api.tasks.util.PatternFilterable;
 import org.gradle.api.tasks.util.PatternSet;
+import org.gradle.cache.CacheRepository;
 import org.gradle.listener.ListenerBroadcast;
 import org.gradle.listener.ListenerManager;
 import org.gradle.logging.ProgressLoggerFactory;
 import org.gradle.messaging.actor.ActorFactory;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.process.JavaForkOptions;
 import org.gradle.process.ProcessForkOptions;
 import org.gradle.process.internal.DefaultJavaForkOptions;
@@ -73,13 +75,14 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
     private boolean scanForTestClasses = true;
     private long forkEvery;
     private int maxParallelForks = 1;
+    private boolean reuseForks;
     private ListenerBroadcast<TestListener> testListenerBroadcaster;
 
     public Test() {
         testListenerBroadcaster = getServices().get(ListenerManager.class).createAnonymousBroadcaster(
                 TestListener.class);
         this.testExecuter = new DefaultTestExecuter(getServices().getFactory(WorkerProcessBuilder.class), getServices().get(
-                ActorFactory.class));
+                ActorFactory.class), getServices().get(CacheRepository.class));
         options = new DefaultJavaForkOptions(getServices().get(FileResolver.class));
         options.setEnableAssertions(true);
     }
@@ -641,7 +644,7 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
      * of type {@link org.gradle.api.tasks.testing.junit.JUnitOptions}.
      */
     public TestFramework useJUnit(Closure testFrameworkConfigure) {
-        return useTestFramework(new JUnitTestFramework(this), testFrameworkConfigure);
+        return useTestFramework(new JUnitTestFramework(this, getServices().get(ExecutorFactory.class)), testFrameworkConfigure);
     }
 
     /**
@@ -748,6 +751,31 @@ public class Test extends ConventionTask implements JavaForkOptions, PatternFilt
         this.maxParallelForks = maxParallelForks;
     }
 
+    /**
+     * Returns whether the forked test processes may be reused. When true, a forked test process is not stopped when it
+     * has finished executing tests. Instead, it is used to execute the tests of a later test task with the same fork
+     * options, or to continue executing tests of this task when {@link #getForkEvery()} is reached. The forked test
+     * processes are stopped at the end of the build. The default value is false.
+     *
+     * <p>A reused test process loads the test classes into a new ClassLoader each time it is used, rather than into
+     * the system ClassLoader. The system properties and the system classes are shared by all tests executed by the
+     * process, so tests should not rely on being the first to use the process.</p>
+     *
+     * @return true if the forked test processes may be reused.
+     */
+    public boolean isReuseForks() {
+        return reuseForks;
+    }
+
+    /**
+     * Sets whether the forked test processes may be reused.
+     *
+     * @param reuseForks true to reuse the forked test processes.
+     */
+    public void setReuseForks(boolean reuseForks) {
+        this.reuseForks = reuseForks;
+    }
+
     /**
      * Returns the classes files to scan for test classes.
      *
@@ -26,11 +26,15 @@ import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.jmock.Sequence
 import org.gradle.api.file.FileTree
 import static org.hamcrest.Matchers.*
+import static org.junit.Assert.*
 import org.gradle.api.file.FileVisitDetails
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
 
 @RunWith(JMock.class)
 public class DefaultTestClassScannerTest {
     private final JUnit4GroovyMockery context = new JUnit4GroovyMockery()
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
     private final TestFrameworkDetector detector = context.mock(TestFrameworkDetector.class)
     private final TestClassProcessor processor = context.mock(TestClassProcessor.class)
     private final FileTree files = context.mock(FileTree.class)
@@ -55,4 +59,30 @@ public class DefaultTestClassScannerTest {
         
         scanner.run()
     }
+
+    @Test
+    public void usesAndSavesTestClassIndexWhenIndexFileProvided() {
+        File indexFile = tmpDir.file('index.bin')
+        DefaultTestClassScanner scanner = new DefaultTestClassScanner(files, detector, processor, indexFile)
+
+        context.checking {
+            Sequence sequence = context.sequence('seq')
+            one(files).visit(withParam(notNullValue()))
+            will { visitor ->
+                visitor.visitFile({new File('class1.class')} as FileVisitDetails)
+            }
+            one(detector).setTestClassIndex(withParam(notNullValue()))
+            inSequence(sequence)
+            one(detector).startDetection(processor)
+            inSequence(sequence)
+            one(detector).processTestClass(new File('class1.class'))
+            inSequence(sequence)
+            one(detector).setTestClassIndex(null)
+            inSequence(sequence)
+        }
+
+        scanner.run()
+
+        assertTrue(indexFile.isFile())
+    }
 }
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.detection
+
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+class TestClassIndexTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestFile indexFile = tmpDir.dir.file('index.bin')
+    final TestFile classFile = tmpDir.dir.file('SomeTest.class')
+    final TestFile jarFile = tmpDir.dir.file('lib.jar')
+
+    def setup() {
+        classFile.write('class file')
+        jarFile.write('jar file')
+    }
+
+    def returnsIndexedClassWhenClassFileHasNotChanged() {
+        createAndSaveIndex()
+
+        when:
+        def entry = reload().get(classFile)
+
+        then:
+        entry.className == 'org/gradle/SomeTest'
+        entry.superClassName == 'org/gradle/BaseTest'
+        entry.test
+        !entry.abstract
+    }
+
+    def returnsIndexedClassWhenClassFileIsRewrittenWithSameContent() {
+        createAndSaveIndex()
+        classFile.write('class file')
+        classFile.setLastModified(classFile.lastModified() - 10000)
+
+        expect:
+        reload().get(classFile) != null
+    }
+
+    def doesNotReturnIndexedClassWhenClassFileHasChanged() {
+        createAndSaveIndex()
+        classFile.write('other file')
+        classFile.setLastModified(classFile.lastModified() - 10000)
+
+        expect:
+        reload().get(classFile) == null
+    }
+
+    def discardsClassFilesNotUsedInScan() {
+        createAndSaveIndex()
+        reload().save()
+
+        expect:
+        reload().get(classFile) == null
+    }
+
+    def discardsIndexWrittenForAnotherDetector() {
+        createAndSaveIndex()
+        def index = new TestClassIndex(indexFile, 'other')
+        index.load()
+
+        expect:
+        index.get(classFile) == null
+    }
+
+    def ignoresIndexFileInUnknownFormat() {
+        indexFile.write('broken')
+        def index = new TestClassIndex(indexFile, 'detector')
+
+        when:
+        index.load()
+
+        then:
+        index.get(classFile) == null
+    }
+
+    def remembersMissingLibraryClassesUntilLibrariesChange() {
+        def index = createAndSaveIndex()
+
+        when:
+        index = reload()
+        index.setLibraries([jarFile])
+
+        then:
+        index.isMissingLibraryClass('java/lang/Object')
+
+        when:
+        jarFile.write('changed jar file')
+        index.setLibraries([jarFile])
+
+        then:
+        !index.isMissingLibraryClass('java/lang/Object')
+    }
+
+    def createAndSaveIndex() {
+        def index = new TestClassIndex(indexFile, 'detector')
+        index.load()
+        index.setLibraries([jarFile])
+        index.put(classFile, new TestClassVisitor({} as TestFrameworkDetector) {
+            String getClassName() { 'org/gradle/SomeTest' }
+            boolean isTest() { true }
+            boolean isAbstract() { false }
+            String getSuperClassName() { 'org/gradle/BaseTest' }
+        })
+        index.addMissingLibraryClass('java/lang/Object')
+        index.save()
+        return index
+    }
+
+    def reload() {
+        def index = new TestClassIndex(indexFile, 'detector')
+        index.load()
+        return index
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.messaging.concurrent.DefaultExecutorFactory
+import org.gradle.util.TemporaryFolder
+import org.gradle.util.TestFile
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.testing.TestOutputEvent.Destination.*
+
+class HtmlTestReportTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestFile resultsDir = tmpDir.dir.file('results')
+    final TestFile reportDir = tmpDir.dir.file('report')
+    final TestResultProcessor generator = new TestClassReportGenerator(10, new BinaryResultGenerator(resultsDir))
+    final HtmlTestReport report = new HtmlTestReport(new DefaultExecutorFactory(), 2)
+    long id
+
+    def generatesEmptyReportWhenThereAreNoResults() {
+        when:
+        report.generateReport(resultsDir, reportDir)
+
+        then:
+        reportDir.file('index.html').assertIsFile()
+        reportDir.file('style.css').assertIsFile()
+    }
+
+    def generatesPagesForEachPackageAndClass() {
+        executeTestClass('org.gradle.SomeTest', ok: null)
+        executeTestClass('org.gradle.OtherTest', ok: null, broken: new RuntimeException('broken'))
+        executeTestClass('org.gradle.sub.SubTest', ok: null)
+        executeTestClass('DefaultTest', ok: null)
+
+        when:
+        report.generateReport(resultsDir, reportDir)
+
+        then:
+        def index = reportDir.file('index.html').text
+        index.contains('<a href="packages/org.gradle.html">org.gradle</a>')
+        index.contains('<a href="packages/org.gradle.sub.html">org.gradle.sub</a>')
+        index.contains('<a href="packages/default-package.html">default-package</a>')
+        index.contains('<a href="classes/org.gradle.OtherTest.html">org.gradle.OtherTest</a>')
+        !index.contains('classes/org.gradle.SomeTest.html')
+
+        def packagePage = reportDir.file('packages/org.gradle.html').text
+        packagePage.contains('<a href="../classes/org.gradle.SomeTest.html">SomeTest</a>')
+        packagePage.contains('<a href="../classes/org.gradle.OtherTest.html">OtherTest</a>')
+        !packagePage.contains('SubTest')
+
+        def classPage = reportDir.file('classes/org.gradle.OtherTest.html').text
+        classPage.contains('<td>ok</td>')
+        classPage.contains('<td>broken</td>')
+        classPage.contains('java.lang.RuntimeException: broken')
+
+        reportDir.file('classes/org.gradle.sub.SubTest.html').assertIsFile()
+        reportDir.file('classes/DefaultTest.html').assertIsFile()
+    }
+
+    def includesOutputOfTestClass() {
+        def output = (1..100).collect { "line $it <&>\n" }.join('')
+        executeTestClass([ok: null], 'org.gradle.SomeTest', output, 'error')
+
+        when:
+        report.generateReport(resultsDir, reportDir)
+
+        then:
+        def classPage = reportDir.file('classes/org.gradle.SomeTest.html').text
+        classPage.contains(output.replace('&', '&amp;').replace('<', '&lt;').replace('>', '&gt;'))
+        classPage.contains('<pre>error</pre>')
+    }
+
+    def countsFailureOfTestClassInTotals() {
+        generator.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        generator.failure(1, new RuntimeException('broken'))
+        generator.completed(1, new TestCompleteEvent(2000))
+
+        when:
+        report.generateReport(resultsDir, reportDir)
+
+        then:
+        def index = reportDir.file('index.html').text
+        index.contains('<tr class="failures"><td class="numeric">1</td><td class="numeric">1</td>')
+        index.contains('<a href="classes/org.gradle.SomeTest.html">org.gradle.SomeTest</a>')
+
+        def classPage = reportDir.file('classes/org.gradle.SomeTest.html').text
+        classPage.contains('java.lang.RuntimeException: broken')
+    }
+
+    def executeTestClass(Map<String, Throwable> tests, String className, String stdout = '', String stderr = '') {
+        long classId = ++id
+        generator.started(new DefaultTestClassDescriptor(classId, className), new TestStartEvent(1000))
+        tests.each { name, failure ->
+            long testId = ++id
+            generator.started(new DefaultTestMethodDescriptor(testId, className, name), new TestStartEvent(1000, classId))
+            if (failure) {
+                generator.failure(testId, failure)
+            }
+            generator.completed(testId, new TestCompleteEvent(1100))
+        }
+        stdout.eachLine { generator.output(classId, new TestOutputEvent(StdOut, "$it\n")) }
+        if (stderr) {
+            generator.output(classId, new TestOutputEvent(StdErr, stderr))
+        }
+        generator.completed(classId, new TestCompleteEvent(2000))
+    }
+}
@@ -20,6 +20,7 @@ import org.gradle.api.internal.project.ServiceRegistry;
 import org.gradle.api.internal.tasks.testing.AbstractTestFrameworkTest;
 import org.gradle.api.internal.tasks.testing.TestClassProcessor;
 import org.gradle.api.tasks.testing.junit.JUnitOptions;
+import org.gradle.messaging.concurrent.ExecutorFactory;
 import org.gradle.util.IdGenerator;
 import org.jmock.Expectations;
 import org.junit.Before;
@@ -33,19 +34,21 @@ import static org.junit.Assert.*;
  */
 public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
     private JUnitTestFramework jUnitTestFramework;
-    private AntJUnitReport antJUnitReportMock;
+    private HtmlTestReport testReportMock;
     private JUnitOptions jUnitOptionsMock;
     private IdGenerator<?> idGenerator;
     private ServiceRegistry serviceRegistry;
+    private ExecutorFactory executorFactory;
 
     @Before
     public void setUp() throws Exception {
         super.setUp();
 
-        antJUnitReportMock = context.mock(AntJUnitReport.class);
+        testReportMock = context.mock(HtmlTestReport.class);
         jUnitOptionsMock = context.mock(JUnitOptions.class);
         idGenerator = context.mock(IdGenerator.class);
         serviceRegistry = context.mock(ServiceRegistry.class);
+        executorFactory = context.mock(ExecutorFactory.class);
 
         context.checking(new Expectations(){{
             allowing(testMock).getTestClassesDir();will(returnValue(testClassesDir));
@@ -55,16 +58,16 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testInitialize() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         assertNotNull(jUnitTestFramework.getOptions());
-        assertNotNull(jUnitTestFramework.getAntJUnitReport());
+        assertNotNull(jUnitTestFramework.getTestReport());
     }
 
     @org.junit.Test
     public void testCreatesTestProcessor() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         context.checking(new Expectations() {{
@@ -78,18 +81,14 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testReport() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         context.checking(new Expectations() {{
             one(testMock).getTestResultsDir(); will(returnValue(testResultsDir));
             one(testMock).getTestReportDir(); will(returnValue(testReportDir));
-            one(projectMock).getAnt(); will(returnValue(antBuilderMock));
             one(testMock).isTestReport(); will(returnValue(true));
-            one(antJUnitReportMock).execute(
-                    testResultsDir, testReportDir,
-                    antBuilderMock
-            );
+            one(testReportMock).generateReport(testResultsDir, testReportDir);
         }});
 
         jUnitTestFramework.report();
@@ -97,7 +96,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
 
     @org.junit.Test
     public void testReportWithDisabledReport() {
-        jUnitTestFramework = new JUnitTestFramework(testMock);
+        jUnitTestFramework = new JUnitTestFramework(testMock, executorFactory);
         setMocks();
 
         context.checking(new Expectations() {{
@@ -108,7 +107,7 @@ public class JUnitTestFrameworkTest extends AbstractTestFrameworkTest {
     }
 
     private void setMocks() {
-        jUnitTestFramework.setAntJUnitReport(antJUnitReportMock);
+        jUnitTestFramework.setTestReport(testReportMock);
         jUnitTestFramework.setOptions(jUnitOptionsMock);
     }
 }
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.gradle.api.internal.tasks.testing.junit
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestOutputEvent
+import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.util.TemporaryFolder
+import org.junit.Rule
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.testing.TestOutputEvent.Destination.*
+
+class JUnitXmlReportGeneratorTest extends Specification {
+    @Rule public final TemporaryFolder tmpDir = new TemporaryFolder()
+    final TestResultProcessor generator = new TestClassReportGenerator(10, new JUnitXmlReportGenerator(tmpDir.dir, 10))
+
+    def writesReportForTestClass() {
+        when:
+        generator.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        generator.started(new DefaultTestMethodDescriptor(2, 'org.gradle.SomeTest', 'ok'), new TestStartEvent(1000, 1))
+        generator.completed(2, new TestCompleteEvent(1200))
+        generator.started(new DefaultTestMethodDescriptor(3, 'org.gradle.SomeTest', 'broken'), new TestStartEvent(1200, 1))
+        generator.failure(3, new RuntimeException('broken'))
+        generator.completed(3, new TestCompleteEvent(1500))
+        generator.completed(1, new TestCompleteEvent(2000))
+
+        then:
+        def report = parseReport('org.gradle.SomeTest')
+        report.@name.text() == 'org.gradle.SomeTest'
+        report.@tests.text() == '2'
+        report.@failures.text() == '1'
+        report.@errors.text() == '0'
+        report.@time.text() == '1.0'
+        report.children()[0].name() == 'properties'
+        report.testcase.size() == 2
+        report.testcase[0].@name.text() == 'ok'
+        report.testcase[0].@classname.text() == 'org.gradle.SomeTest'
+        report.testcase[0].@time.text() == '0.2'
+        report.testcase[0].failure.size() == 0
+        report.testcase[1].@name.text() == 'broken'
+        report.testcase[1].failure.@message.text() == 'java.lang.RuntimeException: broken'
+        report.testcase[1].failure.@type.text() == 'java.lang.RuntimeException'
+        report.testcase[1].failure.text().startsWith('java.lang.RuntimeException: broken')
+    }
+
+    def includesOutputWhichDoesNotFitInMemory() {
+        def output = (1..100).collect { "line $it\n" }.join('')
+
+        when:
+        generator.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        generator.started(new DefaultTestMethodDescriptor(2, 'org.gradle.SomeTest', 'ok'), new TestStartEvent(1000, 1))
+        output.eachLine { generator.output(2, new TestOutputEvent(StdOut, "$it\n")) }
+        generator.output(2, new TestOutputEvent(StdErr, 'err'))
+        generator.completed(2, new TestCompleteEvent(1200))
+        generator.completed(1, new TestCompleteEvent(2000))
+
+        then:
+        def report = parseReport('org.gradle.SomeTest')
+        report.'system-out'.text() == output
+        report.'system-err'.text() == 'err'
+    }
+
+    def escapesTextAndOutput() {
+        when:
+        generator.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        generator.started(new DefaultTestMethodDescriptor(2, 'org.gradle.SomeTest', '<"&\'>'), new TestStartEvent(1000, 1))
+        generator.failure(2, new RuntimeException('message\nwith <markup>'))
+        generator.output(2, new TestOutputEvent(StdOut, 'a]]'))
+        generator.output(2, new TestOutputEvent(StdOut, '>b]]>\u0000c'))
+        generator.completed(2, new TestCompleteEvent(1200))
+        generator.completed(1, new TestCompleteEvent(2000))
+
+        then:
+        def report = parseReport('org.gradle.SomeTest')
+        report.testcase[0].@name.text() == '<"&\'>'
+        report.testcase[0].failure.@message.text() == 'java.lang.RuntimeException: message\nwith <markup>'
+        report.'system-out'.text() == 'a]]>b]]>c'
+    }
+
+    def writesSeparateReportForEachTestClass() {
+        when:
+        generator.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        generator.output(1, new TestOutputEvent(StdOut, 'first'))
+        generator.completed(1, new TestCompleteEvent(2000))
+        generator.started(new DefaultTestClassDescriptor(2, 'org.gradle.OtherTest'), new TestStartEvent(2000))
+        generator.output(2, new TestOutputEvent(StdOut, 'second'))
+        generator.completed(2, new TestCompleteEvent(3000))
+
+        then:
+        parseReport('org.gradle.SomeTest').'system-out'.text() == 'first'
+        parseReport('org.gradle.OtherTest').'system-out'.text() == 'second'
+    }
+
+    def parseReport(String className) {
+        return new XmlSlurper().parse(tmpDir.file("TEST-${className}.xml"))
+    }
+}
@@ -16,9 +16,14 @@
 
 package org.gradle.api.internal.tasks.testing.processors
 
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor
 import org.gradle.api.internal.tasks.testing.TestClassProcessor
 import org.gradle.api.internal.tasks.testing.TestClassRunInfo
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
 import org.gradle.api.internal.tasks.testing.TestResultProcessor
+import org.gradle.api.internal.tasks.testing.TestStartEvent
 import org.gradle.messaging.actor.Actor
 import org.gradle.messaging.actor.ActorFactory
 import spock.lang.Specification
@@ -73,7 +78,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * factory.create() >> processor1
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor1.startProcessing(!null)
         1 * asyncProcessor1.processTestClass(test)
 
         when:
@@ -103,7 +108,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * factory.create() >> processor1
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor1.startProcessing(!null)
         1 * asyncProcessor1.processTestClass(test)
 
         when:
@@ -113,7 +118,7 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * factory.create() >> processor2
         1 * actorFactory.createActor(processor2) >> actor2
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
+        1 * asyncProcessor2.startProcessing(!null)
         1 * asyncProcessor2.processTestClass(test)
 
         when:
@@ -124,47 +129,212 @@ class MaxNParallelTestClassProcessorTest extends Specification {
         1 * asyncProcessor2.stop()
     }
 
-    def roundRobinsTestClassesToProcessors() {
-        TestClassRunInfo test = Mock()
+    def givesTestClassToProcessorWhenItCompletesItsPreviousTestClass() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
         TestClassProcessor processor1 = Mock()
         TestClassProcessor processor2 = Mock()
         TestClassProcessor asyncProcessor1 = Mock()
         TestClassProcessor asyncProcessor2 = Mock()
         Actor actor1 = Mock()
         Actor actor2 = Mock()
+        TestResultProcessor processor2Results
 
         startProcessor()
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+
+        then:
+        2 * factory.create() >>> [processor1, processor2]
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor1.startProcessing(!null)
+        1 * asyncProcessor2.startProcessing(!null) >> { processor2Results = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
+
+        when:
+        processor.processTestClass(test3)
+
+        then:
+        0 * asyncProcessor1._
+        0 * asyncProcessor2._
+
+        when:
+        completeTestClass(processor2Results, 'test2')
+
+        then:
+        1 * asyncResultProcessor.started({ it.id == 'test2' }, _)
+        1 * asyncResultProcessor.completed('test2', _)
+        1 * asyncProcessor2.processTestClass(test3)
+        0 * asyncProcessor1._
+    }
+
+    def doesNotTreatCompletionOfTestMethodAsCompletionOfTestClass() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        Actor actor1 = Mock()
+        TestResultProcessor processor1Results
+        MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory)
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
 
         then:
         1 * factory.create() >> processor1
         1 * actorFactory.createActor(processor1) >> actor1
         1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
-        1 * asyncProcessor1.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.startProcessing(!null) >> { processor1Results = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
 
         when:
-        processor.processTestClass(test)
+        processor1Results.started(new DefaultTestMethodDescriptor('method', 'SomeTest', 'method'), new TestStartEvent(0))
+        processor1Results.completed('method', new TestCompleteEvent(0))
 
         then:
-        1 * factory.create() >> processor2
+        0 * asyncProcessor1.processTestClass(_)
+    }
+
+    def waitsForQueuedTestClassesToBeHandedOutOnStop() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        TestResultProcessor processor1Results
+
+        startProcessor()
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
+
+        then:
+        2 * factory.create() >>> [processor1, processor2]
+        1 * actorFactory.createActor(processor1) >> actor1
         1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
         1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
-        1 * asyncProcessor2.startProcessing(asyncResultProcessor)
-        1 * asyncProcessor2.processTestClass(test)
+        1 * asyncProcessor1.startProcessing(!null) >> { processor1Results = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
 
         when:
-        processor.processTestClass(test)
+        Thread completer = new Thread({
+            Thread.sleep(100)
+            completeTestClass(processor1Results, 'test1')
+        } as Runnable)
+        completer.start()
+        processor.stop()
+        completer.join()
 
         then:
-        1 * asyncProcessor1.processTestClass(test)
+        1 * asyncProcessor1.processTestClass(test3)
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    def handsOutTestClassesAsReceivedWhenProcessorsExecuteTestClassesOnStop() {
+        TestClassRunInfo test1 = Mock()
+        TestClassRunInfo test2 = Mock()
+        TestClassRunInfo test3 = Mock()
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor processor2 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        TestClassProcessor asyncProcessor2 = Mock()
+        Actor actor1 = Mock()
+        Actor actor2 = Mock()
+        MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(2, factory, actorFactory, null, false)
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
 
         when:
-        processor.processTestClass(test)
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
 
         then:
-        1 * asyncProcessor2.processTestClass(test)
+        2 * factory.create() >>> [processor1, processor2]
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actorFactory.createActor(processor2) >> actor2
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * actor2.getProxy(TestClassProcessor) >> asyncProcessor2
+        1 * asyncProcessor1.processTestClass(test1)
+        1 * asyncProcessor2.processTestClass(test2)
+        1 * asyncProcessor1.processTestClass(test3)
+
+        when:
+        processor.stop()
+
+        then:
+        1 * asyncProcessor1.stop()
+        1 * asyncProcessor2.stop()
+    }
+
+    def handsOutQueuedTestClassesInGivenOrder() {
+        TestClassRunInfo test1 = new DefaultTestClassRunInfo('Short')
+        TestClassRunInfo test2 = new DefaultTestClassRunInfo('Medium')
+        TestClassRunInfo test3 = new DefaultTestClassRunInfo('Long')
+        TestClassProcessor processor1 = Mock()
+        TestClassProcessor asyncProcessor1 = Mock()
+        Actor actor1 = Mock()
+        TestResultProcessor processor1Results
+        Map<String, Integer> durations = [Short: 1, Medium: 5, Long: 10]
+        Comparator<TestClassRunInfo> longestFirst = { a, b -> durations[b.testClassName] <=> durations[a.testClassName] } as Comparator
+        MaxNParallelTestClassProcessor processor = new MaxNParallelTestClassProcessor(1, factory, actorFactory, longestFirst)
+
+        1 * actorFactory.createActor(resultProcessor) >> resultProcessorActor
+        1 * resultProcessorActor.getProxy(TestResultProcessor) >> asyncResultProcessor
+        processor.startProcessing(resultProcessor)
+
+        when:
+        processor.processTestClass(test1)
+        processor.processTestClass(test2)
+        processor.processTestClass(test3)
+
+        then:
+        1 * factory.create() >> processor1
+        1 * actorFactory.createActor(processor1) >> actor1
+        1 * actor1.getProxy(TestClassProcessor) >> asyncProcessor1
+        1 * asyncProcessor1.startProcessing(!null) >> { processor1Results = it[0] }
+        1 * asyncProcessor1.processTestClass(test1)
+
+        when:
+        completeTestClass(processor1Results, 'test1')
+
+        then:
+        1 * asyncProcessor1.processTestClass(test3)
+
+        when:
+        completeTestClass(processor1Results, 'test3')
+
+        then:
+        1 * asyncProcessor1.processTestClass(test2)
+    }
+
+    def completeTestClass(TestResultProcessor results, String id) {
+        results.started(new DefaultTestClassDescriptor(id, id), new TestStartEvent(0))
+        results.completed(id, new TestCompleteEvent(0))
     }
 }
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2010 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.gradle.api.internal.tasks.testing.processors
+
+import org.gradle.api.internal.tasks.testing.DefaultTestClassDescriptor
+import org.gradle.api.internal.tasks.testing.DefaultTestClassRunInfo
+import org.gradle.api.internal.tasks.testing.DefaultTestMethodDescriptor
+import org.gradle.api.internal.tasks.testing.TestCompleteEvent
+import org.gradle.api.internal.tasks.testing.TestStartEvent
+import org.gradle.cache.PersistentIndexedCache
+import org.gradle.cache.PersistentStateCache
+import spock.lang.Specification
+
+import static org.gradle.api.internal.tasks.testing.processors.TestClassHistory.TestClassExecution
+
+class TestClassHistoryTest extends Specification {
+    private final Map<String, TestClassExecution> entries = [:]
+    private final PersistentIndexedCache<String, TestClassExecution> cache = [
+            get: { String key -> entries[key] },
+            put: { String key, TestClassExecution value -> entries[key] = value },
+            remove: { String key -> entries.remove(key) }
+    ] as PersistentIndexedCache
+    private Set<String> names
+    private final PersistentStateCache<Set<String>> classNames = [
+            get: { names },
+            set: { Set<String> value -> names = value }
+    ] as PersistentStateCache
+    private final TestClassHistory history = new TestClassHistory(cache, classNames)
+
+    def ordersFailedClassesFirstThenNewClassesThenLongestClassesFirst() {
+        entries['Short'] = new TestClassExecution(100, false)
+        entries['Long'] = new TestClassExecution(1000, false)
+        entries['Failed'] = new TestClassExecution(10, true)
+        def classes = ['Short', 'New', 'Long', 'Failed'].collect { new DefaultTestClassRunInfo(it) }
+
+        when:
+        Collections.sort(classes, history.executionOrder)
+
+        then:
+        classes*.testClassName == ['Failed', 'New', 'Long', 'Short']
+    }
+
+    def recordsExecutionTimeAndFailureOfEachTestClass() {
+        def recorder = history.recorder
+
+        when:
+        recorder.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        recorder.started(new DefaultTestMethodDescriptor(2, 'org.gradle.SomeTest', 'broken'), new TestStartEvent(1000, 1))
+        recorder.failure(2, new RuntimeException('broken'))
+        recorder.completed(2, new TestCompleteEvent(1200))
+        recorder.completed(1, new TestCompleteEvent(1500))
+        recorder.started(new DefaultTestClassDescriptor(3, 'org.gradle.OtherTest'), new TestStartEvent(2000))
+        recorder.completed(3, new TestCompleteEvent(2300))
+
+        then:
+        entries.keySet() == ['org.gradle.SomeTest', 'org.gradle.OtherTest'] as Set
+        entries['org.gradle.SomeTest'].executionTime == 500
+        entries['org.gradle.SomeTest'].failed
+        entries['org.gradle.OtherTest'].executionTime == 300
+        !entries['org.gradle.OtherTest'].failed
+    }
+
+    def removesClassesWhichWereNotExecutedByTheLatestRun() {
+        entries['org.gradle.SomeTest'] = new TestClassExecution(100, false)
+        entries['org.gradle.DeletedTest'] = new TestClassExecution(100, false)
+        names = ['org.gradle.SomeTest', 'org.gradle.DeletedTest'] as Set
+        def recorder = history.recorder
+
+        when:
+        recorder.started(new DefaultTestClassDescriptor(1, 'org.gradle.SomeTest'), new TestStartEvent(1000))
+        recorder.completed(1, new TestCompleteEvent(1500))
+        recorder.started(new DefaultTestClassDescriptor(2, 'org.gradle.NewTest'), new TestStartEvent(2000))
+        recorder.completed(2, new TestCompleteEvent(2300))
+        history.removeClassesNotExecuted()
+
+        then:
+        entries.keySet() == ['org.gradle.SomeTest', 'org.gradle.NewTest'] as Set
+        names == ['org.gradle.SomeTest', 'org.gradle.NewTest'] as Set
+    }
+
+    def serializesExecution() {
+        def serializer = TestClassHistory.serializer
+        def outstr = new ByteArrayOutputStream()
+
+        when:
+        serializer.write(outstr, new TestClassExecution(1234, true))
+        def execution = serializer.read(new ByteArrayInputStream(outstr.toByteArray()))
+
+        then:
+        execution.executionTime == 1234
+        execution.failed
+    }
+}
@@ -94,6 +94,22 @@ public class ForkingTestClassProcessorTest {
         processor.stop();
     }
 
+    @Test
+    public void usesReusableWorkerProcessWhenEnabled() {
+        ForkingTestClassProcessor processor = new ForkingTestClassProcessor(workerFactory, processorFactory, options, appClassPath, action, true);
+
+        expectWorkerProcessStarted(true);
+        context.checking(new Expectations() {{
+            one(worker).processTestClass(test1);
+            one(worker).stop();
+            one(workerProcess).waitForStop();
+        }});
+
+        processor.startProcessing(resultProcessor);
+        processor.processTestClass(test1);
+        processor.stop();
+    }
+
     @Test
     public void onEndProcessingDoesNothingIfNoTestsProcessed() {
         processor.startProcessing(resultProcessor);
@@ -101,6 +117,10 @@ public class ForkingTestClassProcessorTest {
     }
 
     private void expectWorkerProcessStarted() {
+        expectWorkerProcessStarted(false);
+    }
+
+    private void expectWorkerProcessStarted(final boolean reusable) {
         context.checking(new Expectations() {{
             WorkerProcessBuilder builder = context.mock(WorkerProcessBuilder.class);
             ObjectConnection connection = context.mock(ObjectConnection.class);
@@ -113,7 +133,11 @@ public class ForkingTestClassProcessorTest {
 
             one(builder).applicationClasspath(appClassPath);
 
-            one(builder).setLoadApplicationInSystemClassLoader(true);
+            if (reusable) {
+                one(builder).setReusable(true);
+            } else {
+                one(builder).setLoadApplicationInSystemClassLoader(true);
+            }
 
             one(action).execute(builder);
             